@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient;
+
+import io.cloudslang.content.httpclient.build.conn.ConnectionManagerBuilder;
+import io.cloudslang.content.httpclient.build.conn.ReloadableSSLIOSessionStrategy;
+import io.cloudslang.content.httpclient.build.conn.SSLConnectionSocketFactoryBuilder;
+import io.cloudslang.content.httpclient.consume.ResponseFileEntity;
+import io.cloudslang.content.httpclient.consume.SpillingAsyncResponseConsumer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpHostConnectException;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the request described by {@link HttpClientInputs} with the Apache asynchronous http client, so many slow
+ * requests can be awaited by the few I/O dispatcher threads of the client instead of one thread per request.
+ * The result map is the one returned by {@link CSHttpClient#execute(HttpClientInputs)}, without the connection
+ * pool statistics.
+ * <p/>
+ * The asynchronous clients are shared between executions and keyed like the connection pools of {@link CSHttpClient}.
+ * Their pools allow 50 connections per route and 200 in total, unless 'connectionsMaxPerRoute' and
+ * 'connectionsMaxTotal' say otherwise. A client evicted from the shared clients is closed once the requests
+ * executed with it are done.
+ * <p/>
+ * The response entity is received by a {@link SpillingAsyncResponseConsumer}, which applies 'responseMaxInMemorySize',
+ * and the response is parsed by a response thread so the I/O dispatcher threads only move bytes.
+ */
+public class CSHttpAsyncClient {
+    public static final int DEFAULT_MAX_PER_ROUTE = 50;
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int MAX_ASYNC_CLIENTS = 20;
+    public static final String RESPONSE_THREAD_NAME = "http-async-client-response";
+
+    //in access order, the first client is the least recently used one
+    private static final Map<String, AsyncClient> ASYNC_CLIENTS = new LinkedHashMap<>(16, 0.75f, true);
+    private static final ExecutorService RESPONSE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, RESPONSE_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Executes the request and waits for its result.
+     */
+    public Map<String, String> execute(HttpClientInputs httpClientInputs) {
+        Future<Map<String, String>> result = executeAsync(httpClientInputs, null);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing http request: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw buildExecutionException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts the request and returns without waiting for the response.
+     *
+     * @param httpClientInputs the inputs of the request
+     * @param callback         notified with the result map when the response is consumed, can be null
+     * @return the future of the result map, it fails with the exception of the request
+     */
+    public Future<Map<String, String>> executeAsync(final HttpClientInputs httpClientInputs,
+                                                    FutureCallback<Map<String, String>> callback) {
+        //a new client per request: its builders and consumers are not thread safe and the response is consumed by a dispatcher thread
+        final CSHttpClient csHttpClient = new CSHttpClient();
+        final HttpComponents httpComponents = csHttpClient.buildRequestComponents(httpClientInputs);
+        final AsyncClient asyncClient = getAsyncClient(httpClientInputs);
+
+        final BasicFuture<Map<String, String>> result = new BasicFuture<>(callback);
+        try {
+            asyncClient.client.execute(HttpAsyncMethods.create(httpComponents.getHttpRequestBase()),
+                    new SpillingAsyncResponseConsumer(httpClientInputs.getResponseMaxInMemorySize(),
+                            !StringUtils.isEmpty(httpClientInputs.getDestinationFile())),
+                    httpComponents.getHttpClientContext(),
+                    new FutureCallback<HttpResponse>() {
+                        @Override
+                        public void completed(final HttpResponse httpResponse) {
+                            asyncClient.release();
+                            //called by an I/O dispatcher thread, which must not wait for files or decoding
+                            RESPONSE_EXECUTOR.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    parseResponse(csHttpClient, httpComponents, httpClientInputs, httpResponse, result);
+                                }
+                            });
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            asyncClient.release();
+                            result.failed(e);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            asyncClient.release();
+                            result.cancel();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            asyncClient.release();
+            throw e;
+        }
+        return result;
+    }
+
+    private void parseResponse(CSHttpClient csHttpClient, HttpComponents httpComponents, HttpClientInputs httpClientInputs,
+                               HttpResponse httpResponse, BasicFuture<Map<String, String>> result) {
+        try {
+            result.completed(csHttpClient.parseResponse(httpResponse,
+                    httpClientInputs.getResponseCharacterSet(),
+                    httpClientInputs.getDestinationFile(),
+                    httpClientInputs.getResponseMaxInMemorySize(),
+                    httpComponents.getUri(),
+                    httpComponents.getHttpClientContext(),
+                    httpComponents.getCookieStore(),
+                    httpClientInputs.getCookieStoreSessionObject()));
+        } catch (RuntimeException e) {
+            if (httpResponse.getEntity() instanceof ResponseFileEntity) {
+                ((ResponseFileEntity) httpResponse.getEntity()).getFile().delete();
+            }
+            result.failed(e);
+        }
+    }
+
+    /**
+     * Closes all the asynchronous clients together with their connections and reactor threads.
+     */
+    public static void shutdown() {
+        List<AsyncClient> asyncClients;
+        synchronized (ASYNC_CLIENTS) {
+            asyncClients = new ArrayList<>(ASYNC_CLIENTS.values());
+            ASYNC_CLIENTS.clear();
+        }
+        for (AsyncClient asyncClient : asyncClients) {
+            asyncClient.close();
+        }
+    }
+
+    private AsyncClient getAsyncClient(HttpClientInputs httpClientInputs) {
+        SSLConnectionSocketFactoryBuilder sslConnectionSocketFactoryBuilder = new SSLConnectionSocketFactoryBuilder()
+                .setTrustAllRoots(httpClientInputs.getTrustAllRoots())
+                .setKeystore(httpClientInputs.getKeystore())
+                .setKeystorePassword(httpClientInputs.getKeystorePassword())
+                .setTrustKeystore(httpClientInputs.getTrustKeystore())
+                .setTrustPassword(httpClientInputs.getTrustPassword())
+                .setX509HostnameVerifier(httpClientInputs.getX509HostnameVerifier());
+        SSLIOSessionStrategy sslStrategy = sslConnectionSocketFactoryBuilder.buildSSLIOSessionStrategy();
+
+        boolean keepAlive = StringUtils.isEmpty(httpClientInputs.getKeepAlive()) || Boolean.parseBoolean(httpClientInputs.getKeepAlive());
+        String clientKey = ConnectionManagerBuilder.buildConnectionManagerMapKey(
+                ConnectionManagerBuilder.buildConnectionManagerMapKey(httpClientInputs, sslConnectionSocketFactoryBuilder.getSocketFactoryKey()),
+                String.valueOf(keepAlive));
+
+        AsyncClient asyncClient;
+        AsyncClient evictedClient = null;
+        synchronized (ASYNC_CLIENTS) {
+            asyncClient = ASYNC_CLIENTS.get(clientKey);
+            if (asyncClient == null) {
+                asyncClient = new AsyncClient(sslStrategy, keepAlive);
+                ASYNC_CLIENTS.put(clientKey, asyncClient);
+                if (ASYNC_CLIENTS.size() > MAX_ASYNC_CLIENTS) {
+                    Iterator<AsyncClient> eldest = ASYNC_CLIENTS.values().iterator();
+                    evictedClient = eldest.next();
+                    eldest.remove();
+                }
+            }
+            //leased while the clients are locked, so it cannot be evicted and closed before the request is executed
+            asyncClient.lease();
+        }
+        if (evictedClient != null) {
+            //unlike the blocking clients, an asynchronous client owns its connection manager and reactor threads,
+            //they are stopped without holding the clients lock
+            evictedClient.evict();
+        }
+        asyncClient.reloadSslStrategy(sslStrategy);
+        asyncClient.setLimits(httpClientInputs.getConnectionsMaxPerRoute(), httpClientInputs.getConnectionsMaxTotal());
+        return asyncClient;
+    }
+
+    private RuntimeException buildExecutionException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof SocketTimeoutException) {
+            return new RuntimeException("Socket timeout: " + cause.getMessage(), cause);
+        }
+        if (cause instanceof HttpHostConnectException || cause instanceof ConnectException) {
+            return new RuntimeException("Connection error: " + cause.getMessage(), cause);
+        }
+        if (cause instanceof IOException) {
+            return new RuntimeException("Error while executing http request: " + cause.getMessage(), cause);
+        }
+        return new RuntimeException(cause != null ? cause.getMessage() : "Http request failed", cause);
+    }
+
+    private static class AsyncClient {
+        private final PoolingNHttpClientConnectionManager connManager;
+        private final CloseableHttpAsyncClient client;
+        private final ReloadableSSLIOSessionStrategy reloadableSslStrategy;
+        private int leases;
+        private boolean evicted;
+
+        private AsyncClient(SSLIOSessionStrategy sslStrategy, boolean keepAlive) {
+            reloadableSslStrategy = new ReloadableSSLIOSessionStrategy(sslStrategy);
+            Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                    .register("http", NoopIOSessionStrategy.INSTANCE)
+                    .register("https", reloadableSslStrategy)
+                    .build();
+            try {
+                connManager = new PoolingNHttpClientConnectionManager(
+                        new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT), sessionStrategyRegistry);
+            } catch (IOReactorException e) {
+                throw new RuntimeException("Could not start the http I/O reactor: " + e.getMessage(), e);
+            }
+            connManager.setDefaultMaxPerRoute(DEFAULT_MAX_PER_ROUTE);
+            connManager.setMaxTotal(DEFAULT_MAX_TOTAL);
+            client = HttpAsyncClients.custom()
+                    .setConnectionManager(connManager)
+                    .setConnectionReuseStrategy(keepAlive ? DefaultConnectionReuseStrategy.INSTANCE : NoConnectionReuseStrategy.INSTANCE)
+                    .build();
+            client.start();
+        }
+
+        private void reloadSslStrategy(SSLIOSessionStrategy sslStrategy) {
+            //the strategy is rebuilt when a keystore changes on disk, the connections of the previous one are dropped
+            if (reloadableSslStrategy.getSslStrategy() != sslStrategy) {
+                reloadableSslStrategy.setSslStrategy(sslStrategy);
+                connManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void setLimits(String defaultMaxPerRoute, String totalMax) {
+            if (!StringUtils.isEmpty(totalMax)) {
+                int maxTotal = parseLimit(totalMax, HttpClientInputs.CONNECTIONS_MAX_TOTAL);
+                if (connManager.getMaxTotal() != maxTotal) {
+                    connManager.setMaxTotal(maxTotal);
+                }
+            }
+            if (!StringUtils.isEmpty(defaultMaxPerRoute)) {
+                int maxPerRoute = parseLimit(defaultMaxPerRoute, HttpClientInputs.CONNECTIONS_MAX_PER_ROUTE);
+                if (connManager.getDefaultMaxPerRoute() != maxPerRoute) {
+                    connManager.setDefaultMaxPerRoute(maxPerRoute);
+                }
+            }
+        }
+
+        private int parseLimit(String value, String inputName) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("the '" + inputName + "' input should be integer" + e.getMessage(), e);
+            }
+        }
+
+        private synchronized void lease() {
+            leases++;
+        }
+
+        private void release() {
+            boolean close;
+            synchronized (this) {
+                leases--;
+                close = evicted && leases == 0;
+            }
+            if (close) {
+                close();
+            }
+        }
+
+        /**
+         * Closes the client now if it is not used, otherwise when its last request is done.
+         */
+        private void evict() {
+            boolean close;
+            synchronized (this) {
+                evicted = true;
+                close = leases == 0;
+            }
+            if (close) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
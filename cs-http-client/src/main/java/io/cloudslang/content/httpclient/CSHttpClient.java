@@ -17,15 +17,18 @@ import io.cloudslang.content.httpclient.build.auth.AuthSchemeProviderLookupBuild
 import io.cloudslang.content.httpclient.build.auth.AuthTypes;
 import io.cloudslang.content.httpclient.build.auth.CredentialsProviderBuilder;
 import io.cloudslang.content.httpclient.build.conn.ConnectionManagerBuilder;
+import io.cloudslang.content.httpclient.build.conn.HttpClientCache;
 import io.cloudslang.content.httpclient.build.conn.SSLConnectionSocketFactoryBuilder;
 import io.cloudslang.content.httpclient.consume.FinalLocationConsumer;
 import io.cloudslang.content.httpclient.consume.HeadersConsumer;
 import io.cloudslang.content.httpclient.consume.HttpResponseConsumer;
+import io.cloudslang.content.httpclient.consume.PoolStatsConsumer;
 import io.cloudslang.content.httpclient.consume.StatusConsumer;
 import io.cloudslang.content.httpclient.execute.HttpClientExecutor;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthSchemeProvider;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
@@ -36,10 +39,7 @@ import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Lookup;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.ContentType;
-import org.apache.http.impl.DefaultConnectionReuseStrategy;
-import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 import java.io.IOException;
@@ -64,6 +64,11 @@ public class CSHttpClient {
     public static final String RESPONSE_HEADERS = "responseHeaders";
     public static final String PROTOCOL_VERSION = "protocolVersion";
     public static final String REASON_PHRASE = "reasonPhrase";
+    public static final String RESPONSE_FILE = "responseFile";
+    public static final String CONNECTIONS_LEASED = "connectionsLeased";
+    public static final String CONNECTIONS_AVAILABLE = "connectionsAvailable";
+    public static final String CONNECTIONS_PENDING = "connectionsPending";
+    public static final String CONNECTIONS_MAX = "connectionsMax";
 
     private CookieStoreBuilder cookieStoreBuilder;
     private AuthSchemeProviderLookupBuilder authSchemeProviderLookupBuilder;
@@ -82,6 +87,8 @@ public class CSHttpClient {
     private FinalLocationConsumer finalLocationConsumer;
     private HeadersConsumer headersConsumer;
     private StatusConsumer statusConsumer;
+    private HttpClientCache httpClientCache;
+    private PoolStatsConsumer poolStatsConsumer;
 
     public Map<String, String> execute(HttpClientInputs httpClientInputs) {
         initSessionsObjects(httpClientInputs);
@@ -94,6 +101,7 @@ public class CSHttpClient {
         Map<String, String> result = parseResponse(httpResponse,
                 httpClientInputs.getResponseCharacterSet(),
                 httpClientInputs.getDestinationFile(),
+                httpClientInputs.getResponseMaxInMemorySize(),
                 httpComponents.getUri(),
                 httpComponents.getHttpClientContext(),
                 httpComponents.getCookieStore(),
@@ -104,6 +112,8 @@ public class CSHttpClient {
                 httpClientInputs.getKeepAlive(),
                 httpResponse);
 
+        poolStatsConsumer.setConnManager(httpComponents.getConnManager()).consume(result);
+
         return result;
     }
 
@@ -112,14 +122,51 @@ public class CSHttpClient {
         if (cookieStoreSessionObject == null) {
             httpClientInputs.setCookieStoreSessionObject(new SerializableSessionObject());
         }
+    }
+
+    public HttpComponents buildHttpComponents(HttpClientInputs httpClientInputs) {
+        HttpComponents result = buildRequestComponents(httpClientInputs);
 
-        GlobalSessionObject globalSessionObject = httpClientInputs.getConnectionPoolSessionObject();
-        if (globalSessionObject == null) {
-            httpClientInputs.setConnectionPoolSessionObject(new GlobalSessionObject());
+        SSLConnectionSocketFactory sslConnectionSocketFactory = sslConnectionSocketFactoryBuilder
+                .setTrustAllRoots(httpClientInputs.getTrustAllRoots())
+                .setKeystore(httpClientInputs.getKeystore())
+                .setKeystorePassword(httpClientInputs.getKeystorePassword())
+                .setTrustKeystore(httpClientInputs.getTrustKeystore())
+                .setTrustPassword(httpClientInputs.getTrustPassword())
+                .setX509HostnameVerifier(httpClientInputs.getX509HostnameVerifier())
+                .build();
+
+        //without a session object the pool serves only this request, nobody releases it so it is not reaped
+        GlobalSessionObject connectionPoolSessionObject = httpClientInputs.getConnectionPoolSessionObject();
+        boolean sessionPool = connectionPoolSessionObject != null;
+        if (!sessionPool) {
+            connectionPoolSessionObject = new GlobalSessionObject();
         }
+
+        String connectionKey = ConnectionManagerBuilder.buildConnectionManagerMapKey(httpClientInputs,
+                sslConnectionSocketFactoryBuilder.getSocketFactoryKey());
+        PoolingHttpClientConnectionManager connManager = poolingHttpClientConnectionManagerBuilder
+                .setConnectionManagerMapKey(connectionKey)
+                .setConnectionPoolHolder(connectionPoolSessionObject)
+                .setReapIdleConnections(sessionPool)
+                .setHttpClientCache(httpClientCache)
+                .setSslsf(sslConnectionSocketFactory)
+                .setDefaultMaxPerRoute(httpClientInputs.getConnectionsMaxPerRoute())
+                .setTotalMax(httpClientInputs.getConnectionsMaxTotal())
+                .buildConnectionManager();
+
+        boolean keepAlive = StringUtils.isEmpty(httpClientInputs.getKeepAlive()) || Boolean.parseBoolean(httpClientInputs.getKeepAlive());
+        CloseableHttpClient closeableHttpClient = httpClientCache.getHttpClient(connectionKey, keepAlive, connManager);
+
+        result.setCloseableHttpClient(closeableHttpClient);
+        result.setConnManager(connManager);
+        return result;
     }
 
-    public HttpComponents buildHttpComponents(HttpClientInputs httpClientInputs) {
+    /**
+     * Builds the request and its context, without the http client and the connection manager used to execute it.
+     */
+    public HttpComponents buildRequestComponents(HttpClientInputs httpClientInputs) {
         buildDefaultServices();
 
         URI uri = uriBuilder.setUrl(httpClientInputs.getUrl())
@@ -168,8 +215,6 @@ public class CSHttpClient {
                 .buildRequestConfig();
         httpRequestBase.setConfig(requestConfig);
 
-        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
-
         AuthTypes authTypes = new AuthTypes(httpClientInputs.getAuthType());
 
         CredentialsProvider credentialsProvider = credentialsProviderBuilder
@@ -183,7 +228,6 @@ public class CSHttpClient {
                 .setProxyHost(httpClientInputs.getProxyHost())
                 .setProxyPort(httpClientInputs.getProxyPort())
                 .buildCredentialsProvider();
-        httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
 
         Lookup<AuthSchemeProvider> authSchemeLookup = authSchemeProviderLookupBuilder
                 .setAuthTypes(authTypes)
@@ -195,7 +239,6 @@ public class CSHttpClient {
                 .setUsername(httpClientInputs.getUsername())
                 .setPassword(httpClientInputs.getPassword())
                 .buildAuthSchemeProviderLookup();
-        httpClientBuilder.setDefaultAuthSchemeRegistry(authSchemeLookup);
 
         httpRequestBase.setHeaders(theHeaders.toArray(new Header[theHeaders.size()]));
 
@@ -203,56 +246,20 @@ public class CSHttpClient {
                 .setUseCookies(httpClientInputs.getUseCookies())
                 .setCookieStoreSessionObject(httpClientInputs.getCookieStoreSessionObject())
                 .buildCookieStore();
-        if (cookieStore != null) {
-            httpClientBuilder.setDefaultCookieStore(cookieStore);
-        }
-
-        SSLConnectionSocketFactory sslConnectionSocketFactory = sslConnectionSocketFactoryBuilder
-                .setTrustAllRoots(httpClientInputs.getTrustAllRoots())
-                .setKeystore(httpClientInputs.getKeystore())
-                .setKeystorePassword(httpClientInputs.getKeystorePassword())
-                .setTrustKeystore(httpClientInputs.getTrustKeystore())
-                .setTrustPassword(httpClientInputs.getTrustPassword())
-                .setX509HostnameVerifier(httpClientInputs.getX509HostnameVerifier())
-                .build();
-
-        String connectionKey = ConnectionManagerBuilder.buildConnectionManagerMapKey(httpClientInputs.getTrustAllRoots(),
-                httpClientInputs.getX509HostnameVerifier(),
-                httpClientInputs.getKeystore(),
-                httpClientInputs.getTrustKeystore());
-        PoolingHttpClientConnectionManager connManager = poolingHttpClientConnectionManagerBuilder
-                .setConnectionManagerMapKey(connectionKey)
-                .setConnectionPoolHolder(httpClientInputs.getConnectionPoolSessionObject())
-                .setSslsf(sslConnectionSocketFactory)
-                .setDefaultMaxPerRoute(httpClientInputs.getConnectionsMaxPerRoute())
-                .setTotalMax(httpClientInputs.getConnectionsMaxTotal())
-                .buildConnectionManager();
-
-        httpClientBuilder.setConnectionManager(connManager);
-
-        if (StringUtils.isEmpty(httpClientInputs.getKeepAlive()) || Boolean.parseBoolean(httpClientInputs.getKeepAlive())) {
-            httpClientBuilder.setConnectionReuseStrategy(DefaultConnectionReuseStrategy.INSTANCE);
-        } else {
-            httpClientBuilder.setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE);
-        }
-
-        CloseableHttpClient closeableHttpClient = httpClientBuilder.build();
 
         HttpClientContext context = contextBuilder
                 .setAuthSchemeLookup(authSchemeLookup)
                 .setAuthTypes(authTypes)
                 .setCredentialsProvider(credentialsProvider)
+                .setCookieStore(cookieStore)
                 .setUri(uri)
                 .setPreemptiveAuth(httpClientInputs.getPreemptiveAuth()).build();
 
         HttpComponents result = new HttpComponents();
-        result.setCloseableHttpClient(closeableHttpClient);
         result.setHttpRequestBase(httpRequestBase);
         result.setHttpClientContext(context);
         result.setUri(uri);
-        result.setConnManager(connManager);
         result.setCookieStore(cookieStore);
-        result.setHttpClientBuilder(httpClientBuilder);
         return result;
     }
 
@@ -268,9 +275,10 @@ public class CSHttpClient {
                 .execute();
     }
 
-    public Map<String, String> parseResponse(CloseableHttpResponse httpResponse,
+    public Map<String, String> parseResponse(HttpResponse httpResponse,
                                              String responseCharacterSet,
                                              String destinationFile,
+                                             String responseMaxInMemorySize,
                                              URI uri,
                                              HttpClientContext httpClientContext,
                                              CookieStore cookieStore,
@@ -283,6 +291,7 @@ public class CSHttpClient {
                     .setHttpResponse(httpResponse)
                     .setResponseCharacterSet(responseCharacterSet)
                     .setDestinationFile(destinationFile)
+                    .setResponseMaxInMemorySize(responseMaxInMemorySize)
                     .consume(result);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -361,6 +370,14 @@ public class CSHttpClient {
         this.poolingHttpClientConnectionManagerBuilder = poolingHttpClientConnectionManagerBuilder;
     }
 
+    public void setHttpClientCache(HttpClientCache httpClientCache) {
+        this.httpClientCache = httpClientCache;
+    }
+
+    public void setPoolStatsConsumer(PoolStatsConsumer poolStatsConsumer) {
+        this.poolStatsConsumer = poolStatsConsumer;
+    }
+
     private void buildDefaultServices() {
         if (uriBuilder == null) {
             uriBuilder = new URIBuilder();
@@ -413,5 +430,11 @@ public class CSHttpClient {
         if (statusConsumer == null) {
             statusConsumer = new StatusConsumer();
         }
+        if (httpClientCache == null) {
+            httpClientCache = HttpClientCache.getInstance();
+        }
+        if (poolStatsConsumer == null) {
+            poolStatsConsumer = new PoolStatsConsumer();
+        }
     }
 }
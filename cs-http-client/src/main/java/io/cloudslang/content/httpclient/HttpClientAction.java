@@ -103,9 +103,12 @@ public class HttpClientAction {
      * @param keepAlive                          Specifies whether to create a shared connection that will be used in subsequent calls.
      *                                           If keepAlive is false, the already open connection will be used and after execution it will close it.
      *                                           The operation will use a connection pool stored in a GlobalSessionObject that will be available throughout
-     *                                           the execution (the flow and subflows, between parallel split lanes). Default value: true. Valid values: true, false.
+     *                                           the execution (the flow and subflows, between parallel split lanes). Connections idle for more than
+     *                                           30 seconds are closed in the background and the pool is shut down when the session object is released.
+     *                                           Default value: true. Valid values: true, false.
      * @param connectionsMaxPerRoot              The maximum limit of connections on a per route basis.
-     *                                           The default will create no more than 2 concurrent connections per given route. Default value: 2
+     *                                           The default will create no more than 2 concurrent connections per given route and will double this
+     *                                           limit, up to 'connectionsMaxTotal', while requests are waiting for a connection. Default value: 2
      * @param connectionsMaxTotal                The maximum limit of connections in total.
      *                                           The default will create no more than 2 concurrent connections in total. Default value: 20
      * @param headers                            The list containing the headers to use for the request separated by new line (CRLF).
@@ -114,9 +117,12 @@ public class HttpClientAction {
      * @param responseCharacterSet               The character encoding to be used for the HTTP response.
      *                                           If responseCharacterSet is empty, the charset from the 'Content-Type' HTTP response header will be used.
      *                                           If responseCharacterSet is empty and the charset from the HTTP response Content-Type header is empty,
-     *                                           the default value will be used. You should not use this for method=HEAD or OPTIONS. Default value: ISO-8859-1
+     *                                           a UTF-8 or UTF-16 byte order mark at the start of the entity is used and otherwise the default value.
+     *                                           This is not used when the entity is saved to a file.
+     *                                           You should not use this for method=HEAD or OPTIONS. Default value: ISO-8859-1
      * @param destinationFile                    The absolute path of a file on disk where to save the entity returned by the response.
      *                                           'returnResult' will no longer be populated with the entity if this is specified.
+     *                                           The entity is saved as it was received, without any character set conversion.
      *                                           You should not use this for method=HEAD or OPTIONS. Example: C:\temp\destinationFile.txt
      * @param followRedirects                    Specifies whether the HTTP client automatically follows redirects.
      *                                           Redirects explicitly prohibited by the HTTP specification as requiring user intervention
@@ -203,9 +209,14 @@ public class HttpClientAction {
      * @param method                             The HTTP method used. This is a required input.
      * @param httpClientCookieSession            the session object that holds the cookies if the useCookies input is true.
      * @param httpClientPoolingConnectionManager the GlobalSessionObject that holds the http client pooling connection manager.
+     * @param responseMaxInMemorySize            The maximum size in bytes of a response entity that is returned in 'returnResult'.
+     *                                           A bigger entity is saved to a temporary file instead and its path is returned in 'responseFile'.
+     *                                           The temporary file should be deleted by the caller. This is ignored if 'destinationFile' is specified.
+     *                                           Default value: no limit. Example: 10485760
      * @return a map containing the output of the operation. Keys present in the map are:
-     * <br><br><b>returnResult</b> - This will contain the response entity (unless 'destinationFile' is specified).
-     * In case of an error this output will contain the error message.
+     * <br><br><b>returnResult</b> - This will contain the response entity (unless 'destinationFile' is specified
+     * or the entity is bigger than 'responseMaxInMemorySize'). In case of an error this output will contain the error message.
+     * <br><b>responseFile</b> - The temporary file holding the response entity when it is bigger than 'responseMaxInMemorySize'.
      * <br><b>exception</b> - In case of success response, this result is empty. In case of failure response,
      * this result contains the java stack trace of the runtime exception.
      * <br><b>statusCode</b> - The HTTP status code.
@@ -228,6 +239,10 @@ public class HttpClientAction {
      * Request Timeout, Switching Protocols, Non Authoritative Information, Reset Content, Partial Content,
      * Gateway Timeout, Http Version Not Supported, Gone, Length Required, Requested Range Not Satisfiable, Expectation Failed
      * <p/>
+     * <br><br><b>connectionsLeased</b> - The number of connections of the connection pool in use after the request.
+     * <br><b>connectionsAvailable</b> - The number of idle connections kept alive by the connection pool after the request.
+     * <br><b>connectionsPending</b> - The number of requests waiting for a connection of the connection pool.
+     * <br><b>connectionsMax</b> - The maximum number of connections of the connection pool.
      * <br><br><b>returnCode</b> - The returnCode of the operation: 0 for success, -1 for failure.
      * @see io.cloudslang.content.httpclient
      */
@@ -239,6 +254,11 @@ public class HttpClientAction {
                     @Output(CSHttpClient.RESPONSE_HEADERS),
                     @Output(CSHttpClient.PROTOCOL_VERSION),
                     @Output(CSHttpClient.REASON_PHRASE),
+                    @Output(CSHttpClient.RESPONSE_FILE),
+                    @Output(CSHttpClient.CONNECTIONS_LEASED),
+                    @Output(CSHttpClient.CONNECTIONS_AVAILABLE),
+                    @Output(CSHttpClient.CONNECTIONS_PENDING),
+                    @Output(CSHttpClient.CONNECTIONS_MAX),
                     @Output("returnCode"),
                     @Output("returnResult")
             },
@@ -293,7 +313,8 @@ public class HttpClientAction {
             @Param(HttpClientInputs.CHUNKED_REQUEST_ENTITY) String chunkedRequestEntity,
             @Param(value = HttpClientInputs.METHOD, required = true) String method,
             @Param(HttpClientInputs.SESSION_COOKIES) SerializableSessionObject httpClientCookieSession,
-            @Param(HttpClientInputs.SESSION_CONNECTION_POOL) GlobalSessionObject httpClientPoolingConnectionManager) {
+            @Param(HttpClientInputs.SESSION_CONNECTION_POOL) GlobalSessionObject httpClientPoolingConnectionManager,
+            @Param(HttpClientInputs.RESPONSE_MAX_IN_MEMORY_SIZE) String responseMaxInMemorySize) {
 
         HttpClientInputs httpClientInputs = new HttpClientInputs();
         httpClientInputs.setUrl(url);
@@ -325,6 +346,7 @@ public class HttpClientAction {
         httpClientInputs.setHeaders(headers);
         httpClientInputs.setResponseCharacterSet(responseCharacterSet);
         httpClientInputs.setDestinationFile(destinationFile);
+        httpClientInputs.setResponseMaxInMemorySize(responseMaxInMemorySize);
         httpClientInputs.setFollowRedirects(followRedirects);
         httpClientInputs.setQueryParams(queryParams);
         httpClientInputs.setQueryParamsAreURLEncoded(queryParamsAreURLEncoded);
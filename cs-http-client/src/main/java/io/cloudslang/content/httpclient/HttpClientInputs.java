@@ -57,6 +57,7 @@ public class HttpClientInputs {
     public static final String HEADERS = "headers";
     public static final String RESPONSE_CHARACTER_SET = "responseCharacterSet";
     public static final String DESTINATION_FILE = "destinationFile";
+    public static final String RESPONSE_MAX_IN_MEMORY_SIZE = "responseMaxInMemorySize";
     public static final String MULTIPART_BODIES = "multipartBodies";
     public static final String MULTIPART_BODIES_CONTENT_TYPE = "multipartBodiesContentType";
     public static final String MULTIPART_FILES = "multipartFiles";
@@ -94,6 +95,7 @@ public class HttpClientInputs {
     private String headers;
     private String responseCharacterSet;
     private String destinationFile;
+    private String responseMaxInMemorySize;
     private String followRedirects;
     private String queryParams;
     private String queryParamsAreURLEncoded;
@@ -331,6 +333,14 @@ public class HttpClientInputs {
         this.destinationFile = destinationFile;
     }
 
+    public String getResponseMaxInMemorySize() {
+        return responseMaxInMemorySize;
+    }
+
+    public void setResponseMaxInMemorySize(String responseMaxInMemorySize) {
+        this.responseMaxInMemorySize = responseMaxInMemorySize;
+    }
+
     public String getFollowRedirects() {
         return followRedirects;
     }
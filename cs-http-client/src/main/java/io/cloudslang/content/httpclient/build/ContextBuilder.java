@@ -15,10 +15,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthSchemeProvider;
 import org.apache.http.client.AuthCache;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Lookup;
 import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCookieStore;
 
 import java.net.URI;
 
@@ -33,6 +35,7 @@ public class ContextBuilder {
     private AuthTypes authTypes;
     private CredentialsProvider credentialsProvider;
     private String preemptiveAuth;
+    private CookieStore cookieStore;
 
     public ContextBuilder setAuthSchemeLookup(Lookup<AuthSchemeProvider> authSchemeLookup) {
         this.authSchemeLookup = authSchemeLookup;
@@ -59,16 +62,25 @@ public class ContextBuilder {
         return this;
     }
 
+    public ContextBuilder setCookieStore(CookieStore cookieStore) {
+        this.cookieStore = cookieStore;
+        return this;
+    }
+
     public HttpClientContext build() {
         if (StringUtils.isEmpty(preemptiveAuth)) {
             preemptiveAuth = "true";
         }
         HttpClientContext context = HttpClientContext.create();
+        //the http client is shared between requests, so everything that belongs to a single request lives in the context
+        context.setCredentialsProvider(credentialsProvider);
+        context.setAuthSchemeRegistry(authSchemeLookup);
+        //a throwaway store keeps the cookies of this request away from the shared client when cookies are not used
+        context.setCookieStore(cookieStore != null ? cookieStore : new BasicCookieStore());
         if (authTypes.size() == 1 && Boolean.parseBoolean(preemptiveAuth) && !authTypes.contains(AuthTypes.ANONYMOUS)) {
             AuthCache authCache = new BasicAuthCache();
             authCache.put(new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme()),
                     authSchemeLookup.lookup(authTypes.iterator().next()).create(context));
-            context.setCredentialsProvider(credentialsProvider);
             context.setAuthCache(authCache);
         }
         return context;
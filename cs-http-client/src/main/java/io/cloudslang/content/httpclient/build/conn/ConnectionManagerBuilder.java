@@ -20,9 +20,12 @@ import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class ConnectionManagerBuilder {
     private GlobalSessionObject<Map<String, PoolingHttpClientConnectionManager>> connectionPoolHolder;
@@ -30,6 +33,8 @@ public class ConnectionManagerBuilder {
     private String connectionManagerMapKey;
     private String defaultMaxPerRoute;
     private String totalMax;
+    private HttpClientCache httpClientCache = HttpClientCache.getInstance();
+    private boolean reapIdleConnections = true;
 
     public ConnectionManagerBuilder setConnectionPoolHolder(GlobalSessionObject connectionPoolHolder) {
         this.connectionPoolHolder = connectionPoolHolder;
@@ -41,6 +46,25 @@ public class ConnectionManagerBuilder {
         return this;
     }
 
+    /**
+     * @param httpClientCache the cache of the clients built on top of the pools, they are removed from it when
+     *                        the pools are released
+     */
+    public ConnectionManagerBuilder setHttpClientCache(HttpClientCache httpClientCache) {
+        this.httpClientCache = httpClientCache;
+        return this;
+    }
+
+    /**
+     * @param reapIdleConnections whether a new pool is registered with the IdleConnectionReaper, which keeps it until
+     *                            the pool holder is released. A pool whose holder is never released must not be
+     *                            registered, so that it can be garbage collected.
+     */
+    public ConnectionManagerBuilder setReapIdleConnections(boolean reapIdleConnections) {
+        this.reapIdleConnections = reapIdleConnections;
+        return this;
+    }
+
     public ConnectionManagerBuilder setTotalMax(String totalMax) {
         this.totalMax = totalMax;
         return this;
@@ -67,60 +91,180 @@ public class ConnectionManagerBuilder {
         return keyBuilder.toString();
     }
 
+    /**
+     * Builds the key of the connection pool used for the given inputs.
+     *
+     * @param socketFactoryKey the key of the keystore locations and passwords, it does not change with the content
+     *                         of the keystores: the pool of a changed keystore is given the new ssl socket factory
+     */
+    public static String buildConnectionManagerMapKey(HttpClientInputs httpClientInputs, String socketFactoryKey) {
+        return buildConnectionManagerMapKey(httpClientInputs.getTrustAllRoots(),
+                httpClientInputs.getX509HostnameVerifier(),
+                httpClientInputs.getKeystore(),
+                httpClientInputs.getTrustKeystore(),
+                socketFactoryKey);
+    }
+
     public PoolingHttpClientConnectionManager buildConnectionManager() {
         if (connectionPoolHolder != null) {
-            PoolingHttpClientConnectionManager connManager = null;
-            synchronized (connectionPoolHolder) {
-                Map<String, PoolingHttpClientConnectionManager> connectionManagerMap
-                        = connectionPoolHolder.get();
+            Map<String, PoolingHttpClientConnectionManager> connectionManagerMap = getConnectionManagerMap();
 
-                if (connectionManagerMap == null) {
-                    final HashMap<String, PoolingHttpClientConnectionManager> connectionManagerMapFinal = new HashMap<>();
-                    connectionPoolHolder.setResource(new SessionResource<Map<String, PoolingHttpClientConnectionManager>>() {
-                        @Override
-                        public Map<String, PoolingHttpClientConnectionManager> get() {
-                            return connectionManagerMapFinal;
-                        }
-
-                        @Override
-                        public void release() {
-                        }
-                    });
-                    connectionManagerMap = connectionPoolHolder.get();
-                }
-
-                connManager = connectionManagerMap.get(connectionManagerMapKey);
-                if (connManager == null) {
-                    Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-                            .register("http", PlainConnectionSocketFactory.getSocketFactory())
-                            .register("https", sslsf)
-                            .build();
-                    connManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
-
-                    connectionManagerMap.put(connectionManagerMapKey, connManager);
-                }
+            PoolingHttpClientConnectionManager connManager = connectionManagerMap.get(connectionManagerMapKey);
+            if (connManager == null) {
+                Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new ReloadableSSLConnectionSocketFactory(sslsf))
+                        .build();
+                connManager = putConnectionManager(connectionManagerMap, new SSLReloadingConnectionManager(socketFactoryRegistry));
+            }
+            if (connManager instanceof SSLReloadingConnectionManager) {
+                ((SSLReloadingConnectionManager) connManager).reloadSslsf(sslsf);
             }
 
-            //the DefaultMaxPerRoute default is 2
-            if (!StringUtils.isEmpty(defaultMaxPerRoute)) {
+            //the Default totalMax default is 20
+            if (!StringUtils.isEmpty(totalMax)) {
+                int maxTotal;
                 try {
-                    connManager.setDefaultMaxPerRoute(Integer.parseInt(defaultMaxPerRoute));
+                    maxTotal = Integer.parseInt(totalMax);
                 } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("the '" + HttpClientInputs.CONNECTIONS_MAX_PER_ROUTE
+                    throw new IllegalArgumentException("the '" + HttpClientInputs.CONNECTIONS_MAX_TOTAL
                             + "' input should be integer" + e.getMessage(), e);
                 }
+                if (connManager.getMaxTotal() != maxTotal) {
+                    connManager.setMaxTotal(maxTotal);
+                }
             }
-            //the Default totalMax default is 20
-            if (!StringUtils.isEmpty(totalMax)) {
+            //the DefaultMaxPerRoute default is 2
+            if (!StringUtils.isEmpty(defaultMaxPerRoute)) {
+                int maxPerRoute;
                 try {
-                    connManager.setMaxTotal(Integer.parseInt(totalMax));
+                    maxPerRoute = Integer.parseInt(defaultMaxPerRoute);
                 } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("the '" + HttpClientInputs.CONNECTIONS_MAX_TOTAL
+                    throw new IllegalArgumentException("the '" + HttpClientInputs.CONNECTIONS_MAX_PER_ROUTE
                             + "' input should be integer" + e.getMessage(), e);
                 }
+                if (connManager.getDefaultMaxPerRoute() != maxPerRoute) {
+                    connManager.setDefaultMaxPerRoute(maxPerRoute);
+                }
+            } else {
+                adaptDefaultMaxPerRoute(connManager);
             }
             return connManager;
         }
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Raises the per route limit of a pool whose limit was not given explicitly while there are requests waiting
+     * for a connection, doubling it each time up to the total limit of the pool.
+     */
+    protected void adaptDefaultMaxPerRoute(PoolingHttpClientConnectionManager connManager) {
+        PoolStats totalStats = connManager.getTotalStats();
+        int maxPerRoute = connManager.getDefaultMaxPerRoute();
+        if (totalStats != null && totalStats.getPending() > 0 && maxPerRoute < connManager.getMaxTotal()) {
+            connManager.setDefaultMaxPerRoute(Math.min(maxPerRoute * 2, connManager.getMaxTotal()));
+        }
+    }
+
+    private Map<String, PoolingHttpClientConnectionManager> getConnectionManagerMap() {
+        Map<String, PoolingHttpClientConnectionManager> connectionManagerMap = connectionPoolHolder.get();
+        if (connectionManagerMap == null) {
+            //only the creation of the map is serialized, the lookups are done on the concurrent map
+            synchronized (connectionPoolHolder) {
+                connectionManagerMap = connectionPoolHolder.get();
+                if (connectionManagerMap == null) {
+                    connectionPoolHolder.setResource(new ConnectionPoolResource(
+                            new ConcurrentHashMap<String, PoolingHttpClientConnectionManager>(), httpClientCache));
+                    connectionManagerMap = connectionPoolHolder.get();
+                }
+            }
+        }
+        return connectionManagerMap;
+    }
+
+    private PoolingHttpClientConnectionManager putConnectionManager(Map<String, PoolingHttpClientConnectionManager> connectionManagerMap,
+                                                                    PoolingHttpClientConnectionManager connManager) {
+        PoolingHttpClientConnectionManager existingConnManager;
+        if (connectionManagerMap instanceof ConcurrentMap) {
+            existingConnManager = ((ConcurrentMap<String, PoolingHttpClientConnectionManager>) connectionManagerMap)
+                    .putIfAbsent(connectionManagerMapKey, connManager);
+        } else {
+            synchronized (connectionManagerMap) {
+                existingConnManager = connectionManagerMap.get(connectionManagerMapKey);
+                if (existingConnManager == null) {
+                    connectionManagerMap.put(connectionManagerMapKey, connManager);
+                }
+            }
+        }
+        if (existingConnManager != null) {
+            //another request created the pool meanwhile
+            connManager.shutdown();
+            return existingConnManager;
+        }
+        if (reapIdleConnections) {
+            IdleConnectionReaper.getInstance().register(connManager);
+        }
+        return connManager;
+    }
+
+    /**
+     * A connection manager that creates its https connections with the last ssl socket factory given to it, the socket
+     * factory is rebuilt when a keystore changes on disk while the pool itself is keyed by the keystore locations.
+     */
+    public static class SSLReloadingConnectionManager extends PoolingHttpClientConnectionManager {
+        private final ReloadableSSLConnectionSocketFactory reloadableSslsf;
+
+        private SSLReloadingConnectionManager(Registry<ConnectionSocketFactory> socketFactoryRegistry) {
+            super(socketFactoryRegistry);
+            this.reloadableSslsf = (ReloadableSSLConnectionSocketFactory) socketFactoryRegistry.lookup("https");
+        }
+
+        public SSLConnectionSocketFactory getSslsf() {
+            return reloadableSslsf.getSslsf();
+        }
+
+        /**
+         * Moves the pool to the given socket factory and closes its idle connections, which were opened with the
+         * previous keystores. The leased connections are kept until they are released.
+         */
+        public void reloadSslsf(SSLConnectionSocketFactory sslsf) {
+            if (sslsf != null && reloadableSslsf.getSslsf() != sslsf) {
+                reloadableSslsf.setSslsf(sslsf);
+                closeIdleConnections(0, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Holds the connection managers of a GlobalSessionObject and shuts them down when the session is released.
+     */
+    public static class ConnectionPoolResource extends SessionResource<Map<String, PoolingHttpClientConnectionManager>> {
+        private final Map<String, PoolingHttpClientConnectionManager> connectionManagerMap;
+        private final HttpClientCache httpClientCache;
+
+        public ConnectionPoolResource(Map<String, PoolingHttpClientConnectionManager> connectionManagerMap) {
+            this(connectionManagerMap, HttpClientCache.getInstance());
+        }
+
+        public ConnectionPoolResource(Map<String, PoolingHttpClientConnectionManager> connectionManagerMap,
+                                      HttpClientCache httpClientCache) {
+            this.connectionManagerMap = connectionManagerMap;
+            this.httpClientCache = httpClientCache;
+        }
+
+        @Override
+        public Map<String, PoolingHttpClientConnectionManager> get() {
+            return connectionManagerMap;
+        }
+
+        @Override
+        public void release() {
+            for (PoolingHttpClientConnectionManager connManager : connectionManagerMap.values()) {
+                IdleConnectionReaper.getInstance().unregister(connManager);
+                httpClientCache.remove(connManager);
+                connManager.shutdown();
+            }
+            connectionManagerMap.clear();
+        }
+    }
+}
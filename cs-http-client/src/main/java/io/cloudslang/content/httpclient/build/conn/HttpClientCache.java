@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the http clients built on top of the pooled connection managers, so that a request only has to
+ * build the per request state (credentials, auth schemes, cookies) and can reuse the client itself.
+ * <p/>
+ * The clients are keyed by the same key used for the connection manager map of the
+ * {@link ConnectionManagerBuilder} (trustAllRoots, x509HostnameVerifier, keystore, trustKeystore) and by the
+ * connection reuse strategy. A cached client is only returned while it still wraps the given connection manager.
+ * <p/>
+ * Evicted clients are not closed: closing a client shuts down its connection manager which is still owned
+ * by the connection pool session object.
+ */
+public class HttpClientCache {
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private static final HttpClientCache INSTANCE = new HttpClientCache(DEFAULT_MAX_SIZE);
+
+    private final Map<String, CachedClient> clients;
+
+    public HttpClientCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The http client cache size should be greater than 0");
+        }
+        this.clients = new LinkedHashMap<String, CachedClient>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedClient> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static HttpClientCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static String buildClientKey(String connectionManagerMapKey, boolean keepAlive,
+                                        PoolingHttpClientConnectionManager connManager) {
+        //the identity hash keeps the pools of different sessions that share the same key apart
+        return ConnectionManagerBuilder.buildConnectionManagerMapKey(connectionManagerMapKey,
+                String.valueOf(keepAlive), String.valueOf(System.identityHashCode(connManager)));
+    }
+
+    public CloseableHttpClient getHttpClient(String connectionManagerMapKey, boolean keepAlive,
+                                             PoolingHttpClientConnectionManager connManager) {
+        if (connManager == null) {
+            return buildHttpClient(keepAlive, null);
+        }
+        String key = buildClientKey(connectionManagerMapKey, keepAlive, connManager);
+        synchronized (clients) {
+            CachedClient cachedClient = clients.get(key);
+            if (cachedClient != null && cachedClient.connManager == connManager) {
+                return cachedClient.client;
+            }
+            CloseableHttpClient client = buildHttpClient(keepAlive, connManager);
+            clients.put(key, new CachedClient(connManager, client));
+            return client;
+        }
+    }
+
+    public void remove(PoolingHttpClientConnectionManager connManager) {
+        synchronized (clients) {
+            Iterator<CachedClient> iterator = clients.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().connManager == connManager) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (clients) {
+            return clients.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (clients) {
+            clients.clear();
+        }
+    }
+
+    protected CloseableHttpClient buildHttpClient(boolean keepAlive, PoolingHttpClientConnectionManager connManager) {
+        ConnectionReuseStrategy reuseStrategy = keepAlive ? DefaultConnectionReuseStrategy.INSTANCE
+                : NoConnectionReuseStrategy.INSTANCE;
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                .setConnectionReuseStrategy(reuseStrategy);
+        if (connManager != null) {
+            httpClientBuilder.setConnectionManager(connManager);
+        }
+        return httpClientBuilder.build();
+    }
+
+    private static class CachedClient {
+        private final PoolingHttpClientConnectionManager connManager;
+        private final CloseableHttpClient client;
+
+        private CachedClient(PoolingHttpClientConnectionManager connManager, CloseableHttpClient client) {
+            this.connManager = connManager;
+            this.client = client;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes, in a background thread, the expired connections and the connections that stayed idle too long in the
+ * registered connection managers, so that a request does not pick a connection already half closed by the server.
+ */
+public class IdleConnectionReaper {
+    public static final long DEFAULT_REAP_INTERVAL_MILLIS = 5000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+    public static final String REAPER_THREAD_NAME = "http-client-idle-connection-reaper";
+
+    private static final IdleConnectionReaper INSTANCE = new IdleConnectionReaper(DEFAULT_REAP_INTERVAL_MILLIS,
+            DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+    private final Set<HttpClientConnectionManager> connManagers =
+            Collections.newSetFromMap(new ConcurrentHashMap<HttpClientConnectionManager, Boolean>());
+    private final long reapIntervalMillis;
+    private final long idleTimeoutMillis;
+    private ScheduledExecutorService executor;
+
+    public IdleConnectionReaper(long reapIntervalMillis, long idleTimeoutMillis) {
+        this.reapIntervalMillis = reapIntervalMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public static IdleConnectionReaper getInstance() {
+        return INSTANCE;
+    }
+
+    public void register(HttpClientConnectionManager connManager) {
+        connManagers.add(connManager);
+        start();
+    }
+
+    public void unregister(HttpClientConnectionManager connManager) {
+        connManagers.remove(connManager);
+    }
+
+    public boolean isRegistered(HttpClientConnectionManager connManager) {
+        return connManagers.contains(connManager);
+    }
+
+    public int size() {
+        return connManagers.size();
+    }
+
+    public void reap() {
+        for (HttpClientConnectionManager connManager : connManagers) {
+            try {
+                connManager.closeExpiredConnections();
+                connManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                //a connection manager that was shut down meanwhile is no longer reaped
+                connManagers.remove(connManager);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized void start() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, REAPER_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reap();
+                }
+            }, reapIntervalMillis, reapIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
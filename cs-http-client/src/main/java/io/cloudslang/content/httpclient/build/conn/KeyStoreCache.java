@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Consts;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the keystores loaded from files, so that the same keystore (e.g. the JVM cacerts) is not read
+ * and parsed again for every request.
+ * <p/>
+ * A keystore is located by its url and a digest of its password, and its content is identified by the size and
+ * last modification time of its file as well, so a keystore that is changed on disk is loaded again. Keystores that
+ * are not file based (e.g. loaded over http) are not cached because they cannot be checked for changes.
+ */
+public class KeyStoreCache {
+    public static final int DEFAULT_MAX_SIZE = 50;
+
+    private static final KeyStoreCache INSTANCE = new KeyStoreCache(DEFAULT_MAX_SIZE);
+
+    private final Map<String, KeyStore> keyStores;
+
+    public KeyStoreCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The keystore cache size should be greater than 0");
+        }
+        this.keyStores = new LinkedHashMap<String, KeyStore>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeyStore> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static KeyStoreCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the key that identifies the current content of a keystore.
+     *
+     * @param url      the url of the keystore
+     * @param password the password of the keystore
+     * @return the key of the keystore or null if the keystore is not file based or the file does not exist
+     */
+    public static String buildKeyStoreKey(String url, String password) {
+        File file = toFile(url);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        return ConnectionManagerBuilder.buildConnectionManagerMapKey(buildKeyStoreLocationKey(url, password),
+                String.valueOf(file.length()), String.valueOf(file.lastModified()));
+    }
+
+    /**
+     * Builds the key that identifies a keystore by its location only, it does not change with the keystore content.
+     *
+     * @param url      the url of the keystore
+     * @param password the password of the keystore
+     * @return the key of the keystore location
+     */
+    public static String buildKeyStoreLocationKey(String url, String password) {
+        return ConnectionManagerBuilder.buildConnectionManagerMapKey(url, digest(password));
+    }
+
+    /**
+     * @return true if the keystore url points to a file, whether the file exists or not
+     */
+    public static boolean isFileBased(String url) {
+        return toFile(url) != null;
+    }
+
+    public KeyStore get(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (keyStores) {
+            return keyStores.get(key);
+        }
+    }
+
+    public void put(String key, KeyStore keyStore) {
+        if (key != null && keyStore != null) {
+            synchronized (keyStores) {
+                keyStores.put(key, keyStore);
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (keyStores) {
+            return keyStores.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (keyStores) {
+            keyStores.clear();
+        }
+    }
+
+    private static File toFile(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            return FileUtils.toFile(new URL(url));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static String digest(String password) {
+        if (password == null) {
+            return "";
+        }
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, messageDigest.digest(password.getBytes(Consts.UTF_8))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+}
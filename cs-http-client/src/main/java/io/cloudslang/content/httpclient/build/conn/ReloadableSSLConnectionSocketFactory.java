@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Registered for https in the pooled connection managers, it creates the connections with the ssl socket factory
+ * last set on it. The registry of a connection manager cannot be changed, so this is how a pool moves to the socket
+ * factory built from a keystore that was changed on disk instead of being replaced by a new pool.
+ */
+public class ReloadableSSLConnectionSocketFactory implements LayeredConnectionSocketFactory {
+    private volatile SSLConnectionSocketFactory sslsf;
+
+    public ReloadableSSLConnectionSocketFactory(SSLConnectionSocketFactory sslsf) {
+        this.sslsf = sslsf;
+    }
+
+    public SSLConnectionSocketFactory getSslsf() {
+        return sslsf;
+    }
+
+    public void setSslsf(SSLConnectionSocketFactory sslsf) {
+        this.sslsf = sslsf;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return sslsf.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, HttpContext context) throws IOException {
+        return sslsf.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+        return sslsf.createLayeredSocket(socket, target, port, context);
+    }
+}
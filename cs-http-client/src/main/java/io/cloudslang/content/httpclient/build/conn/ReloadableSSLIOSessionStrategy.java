@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.HttpHost;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOSession;
+
+import java.io.IOException;
+
+/**
+ * The asynchronous counterpart of {@link ReloadableSSLConnectionSocketFactory}: it upgrades the sessions with the
+ * ssl strategy last set on it.
+ */
+public class ReloadableSSLIOSessionStrategy implements SchemeIOSessionStrategy {
+    private volatile SSLIOSessionStrategy sslStrategy;
+
+    public ReloadableSSLIOSessionStrategy(SSLIOSessionStrategy sslStrategy) {
+        this.sslStrategy = sslStrategy;
+    }
+
+    public SSLIOSessionStrategy getSslStrategy() {
+        return sslStrategy;
+    }
+
+    public void setSslStrategy(SSLIOSessionStrategy sslStrategy) {
+        this.sslStrategy = sslStrategy;
+    }
+
+    @Override
+    public boolean isLayeringRequired() {
+        return sslStrategy.isLayeringRequired();
+    }
+
+    @Override
+    public IOSession upgrade(HttpHost host, IOSession session) throws IOException {
+        return sslStrategy.upgrade(host, session);
+    }
+}
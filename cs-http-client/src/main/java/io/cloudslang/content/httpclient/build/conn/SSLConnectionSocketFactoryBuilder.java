@@ -12,6 +12,7 @@ package io.cloudslang.content.httpclient.build.conn;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.conn.ssl.*;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,6 +21,9 @@ import java.net.URL;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Created with IntelliJ IDEA.
@@ -44,6 +48,28 @@ public class SSLConnectionSocketFactoryBuilder {
     private String trustKeystore;
     private String trustPassword;
     private String x509HostnameVerifierInputValue = "strict";
+    private String socketFactoryKey;
+    private String keystoresContentKey;
+    private boolean useClientCert;
+    private boolean useTrustCert;
+    private KeyStoreCache keyStoreCache = KeyStoreCache.getInstance();
+
+    private static final String NOT_FILE_BASED = "notFileBased";
+    private static final int SOCKET_FACTORY_CACHE_SIZE = 50;
+    private static final Map<String, CachedSSL<SSLConnectionSocketFactory>> SOCKET_FACTORY_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedSSL<SSLConnectionSocketFactory>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSSL<SSLConnectionSocketFactory>> eldest) {
+                    return size() > SOCKET_FACTORY_CACHE_SIZE;
+                }
+            });
+    private static final Map<String, CachedSSL<SSLIOSessionStrategy>> SESSION_STRATEGY_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedSSL<SSLIOSessionStrategy>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSSL<SSLIOSessionStrategy>> eldest) {
+                    return size() > SOCKET_FACTORY_CACHE_SIZE;
+                }
+            });
 
     protected KeyStore createKeyStore(final URL url, final String password)
             throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
@@ -62,16 +88,65 @@ public class SSLConnectionSocketFactoryBuilder {
     }
 
     public SSLConnectionSocketFactory build() {
+        boolean trustAllRoots = resolveKeystores();
+        SSLConnectionSocketFactory cachedSslsf = getCached(SOCKET_FACTORY_CACHE);
+        if (cachedSslsf != null) {
+            return cachedSslsf;
+        }
+
+        SSLContextBuilder sslContextBuilder = createSSLContextBuilder(trustAllRoots);
+        SSLConnectionSocketFactory sslsf;
+        try {
+            X509HostnameVerifier x509HostnameVerifier = buildX509HostnameVerifier();
+            // Allow SSLv3, TLSv1, TLSv1.1 and TLSv1.2 protocols only. Client-server communication starts with TLSv1.2 and fallbacks to SSLv3 if needed.
+            sslsf = new SSLConnectionSocketFactory(sslContextBuilder.build(), SUPPORTED_PROTOCOLS, null, x509HostnameVerifier);
+        } catch (Exception e) {
+            throw buildSSLException(e);
+        }
+        putCached(SOCKET_FACTORY_CACHE, sslsf);
+        return sslsf;
+    }
+
+    /**
+     * Builds the ssl strategy used by the asynchronous http client, from the same keystores and with the same
+     * protocols and hostname verification as the socket factory returned by {@link #build()}.
+     */
+    public SSLIOSessionStrategy buildSSLIOSessionStrategy() {
+        boolean trustAllRoots = resolveKeystores();
+        SSLIOSessionStrategy cachedStrategy = getCached(SESSION_STRATEGY_CACHE);
+        if (cachedStrategy != null) {
+            return cachedStrategy;
+        }
+
+        SSLContextBuilder sslContextBuilder = createSSLContextBuilder(trustAllRoots);
+        SSLIOSessionStrategy sslStrategy;
+        try {
+            X509HostnameVerifier x509HostnameVerifier = buildX509HostnameVerifier();
+            sslStrategy = new SSLIOSessionStrategy(sslContextBuilder.build(), SUPPORTED_PROTOCOLS, null, x509HostnameVerifier);
+        } catch (Exception e) {
+            throw buildSSLException(e);
+        }
+        putCached(SESSION_STRATEGY_CACHE, sslStrategy);
+        return sslStrategy;
+    }
+
+    /**
+     * Validates 'trustAllRoots', falls back to the JVM cacerts for the keystores that were not given
+     * and computes the keys of the keystores.
+     *
+     * @return the value of 'trustAllRoots'
+     */
+    private boolean resolveKeystores() {
         if (!"true".equalsIgnoreCase(trustAllRootsStr) && !"false".equalsIgnoreCase(trustAllRootsStr)) {
             throw new IllegalArgumentException("'trustAllRoots' can only be 'true' or 'false'");
         }
         boolean trustAllRoots = Boolean.parseBoolean(trustAllRootsStr);
-
-        SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+        useClientCert = false;
+        useTrustCert = false;
         if (!trustAllRoots) {
-            boolean useClientCert = !StringUtils.isEmpty(keystore);
+            useClientCert = !StringUtils.isEmpty(keystore);
             //validate SSL certificates sent by the server
-            boolean useTrustCert = !StringUtils.isEmpty(trustKeystore);
+            useTrustCert = !StringUtils.isEmpty(trustKeystore);
 
             String javaKeystore = System.getProperty("java.home") + "/lib/security/cacerts";
             boolean storeExists = new File(javaKeystore).exists();
@@ -80,7 +155,7 @@ public class SSLConnectionSocketFactoryBuilder {
                 keystore = "file:" + javaKeystore;
                 keystorePassword = (StringUtils.isEmpty(keystorePassword)) ? "changeit" : keystorePassword;
                 useClientCert = true;
-            } else if (useClientCert && !keystore.startsWith("http")) {
+            } else if (useClientCert && !keystore.startsWith("http") && !keystore.startsWith("file:")) {
                 keystore = "file:" + keystore;
             }
 
@@ -88,9 +163,38 @@ public class SSLConnectionSocketFactoryBuilder {
                 trustKeystore = "file:" + javaKeystore;
                 trustPassword = (StringUtils.isEmpty(trustPassword)) ? "changeit" : trustPassword;
                 useTrustCert = true;
-            } else if (useTrustCert && !trustKeystore.startsWith("http")) {
+            } else if (useTrustCert && !trustKeystore.startsWith("http") && !trustKeystore.startsWith("file:")) {
                 trustKeystore = "file:" + trustKeystore;
             }
+        }
+        socketFactoryKey = buildSocketFactoryKey(trustAllRoots, useClientCert, useTrustCert);
+        keystoresContentKey = buildKeystoresContentKey(useClientCert, useTrustCert);
+        return trustAllRoots;
+    }
+
+    /**
+     * @return the cached object built from the current content of the keystores or null if there is none
+     */
+    private <T> T getCached(Map<String, CachedSSL<T>> cache) {
+        if (keystoresContentKey == null) {
+            return null;
+        }
+        CachedSSL<T> cached = cache.get(socketFactoryKey);
+        return cached != null && cached.contentKey.equals(keystoresContentKey) ? cached.value : null;
+    }
+
+    /**
+     * Caches the object under the location of the keystores, replacing the one built from their previous content.
+     */
+    private <T> void putCached(Map<String, CachedSSL<T>> cache, T value) {
+        if (keystoresContentKey != null) {
+            cache.put(socketFactoryKey, new CachedSSL<>(keystoresContentKey, value));
+        }
+    }
+
+    private SSLContextBuilder createSSLContextBuilder(boolean trustAllRoots) {
+        SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+        if (!trustAllRoots) {
             createTrustKeystore(sslContextBuilder, useTrustCert);
             //todo client key authentication should not depend on 'trustAllRoots'
             createKeystore(sslContextBuilder, useClientCert);
@@ -111,40 +215,89 @@ public class SSLConnectionSocketFactoryBuilder {
 
         sslContextBuilder.useSSL();
         sslContextBuilder.useTLS();
+        return sslContextBuilder;
+    }
 
-        SSLConnectionSocketFactory sslsf;
-        try {
-            String x509HostnameVerifierStr = x509HostnameVerifierInputValue.toLowerCase();
-            X509HostnameVerifier x509HostnameVerifier;
-            switch (x509HostnameVerifierStr) {
-                case "strict":
-                    x509HostnameVerifier = SSLConnectionSocketFactory.STRICT_HOSTNAME_VERIFIER;
-                    break;
-                case "browser_compatible":
-                    x509HostnameVerifier = SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
-                    break;
-                case "allow_all":
-                    x509HostnameVerifier = SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-                    break;
-                default:
-                    throw new IllegalArgumentException("Invalid value '" + x509HostnameVerifierInputValue + "' for input 'x509HostnameVerifier'. Valid values: 'strict','browser_compatible','allow_all'.");
-            }
-            // Allow SSLv3, TLSv1, TLSv1.1 and TLSv1.2 protocols only. Client-server communication starts with TLSv1.2 and fallbacks to SSLv3 if needed.
-            sslsf = new SSLConnectionSocketFactory(sslContextBuilder.build(), SUPPORTED_PROTOCOLS, null, x509HostnameVerifier);
-        } catch (Exception e) {
-            if (e instanceof IllegalArgumentException) {
-                throw new IllegalArgumentException(e.getMessage());
-            }
-            throw new RuntimeException(e.getMessage() + ". " + SSL_CONNECTION_ERROR, e);
+    private X509HostnameVerifier buildX509HostnameVerifier() {
+        String x509HostnameVerifierStr = x509HostnameVerifierInputValue.toLowerCase();
+        switch (x509HostnameVerifierStr) {
+            case "strict":
+                return SSLConnectionSocketFactory.STRICT_HOSTNAME_VERIFIER;
+            case "browser_compatible":
+                return SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER;
+            case "allow_all":
+                return SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
+            default:
+                throw new IllegalArgumentException("Invalid value '" + x509HostnameVerifierInputValue + "' for input 'x509HostnameVerifier'. Valid values: 'strict','browser_compatible','allow_all'.");
         }
-        return sslsf;
+    }
+
+    private RuntimeException buildSSLException(Exception e) {
+        if (e instanceof IllegalArgumentException) {
+            return new IllegalArgumentException(e.getMessage());
+        }
+        return new RuntimeException(e.getMessage() + ". " + SSL_CONNECTION_ERROR, e);
+    }
+
+    /**
+     * Builds the key identifying the locations and passwords of the keystores the socket factory is created from.
+     * The key does not change with the content of the keystore files, so it is also used to key the connection
+     * manager holding the socket factory.
+     */
+    protected String buildSocketFactoryKey(boolean trustAllRoots, boolean useClientCert, boolean useTrustCert) {
+        String keystoreKey = useClientCert ? KeyStoreCache.buildKeyStoreLocationKey(keystore, keystorePassword) : "";
+        String trustKeystoreKey = useTrustCert ? KeyStoreCache.buildKeyStoreLocationKey(trustKeystore, trustPassword) : "";
+        return ConnectionManagerBuilder.buildConnectionManagerMapKey(String.valueOf(trustAllRoots),
+                x509HostnameVerifierInputValue.toLowerCase(), keystoreKey, trustKeystoreKey);
+    }
+
+    /**
+     * Builds the key identifying the content of the keystores, the cached socket factory is rebuilt when it changes.
+     * Keystores that are not file based cannot be checked for changes: their socket factory is kept until it is
+     * evicted from the cache, as a pool kept the socket factory it was created with.
+     *
+     * @return the key or null when a keystore file does not exist, the socket factory is not cached then
+     */
+    protected String buildKeystoresContentKey(boolean useClientCert, boolean useTrustCert) {
+        String keystoreKey = useClientCert ? buildKeyStoreContentKey(keystore, keystorePassword) : "";
+        String trustKeystoreKey = useTrustCert ? buildKeyStoreContentKey(trustKeystore, trustPassword) : "";
+        if (keystoreKey == null || trustKeystoreKey == null) {
+            return null;
+        }
+        return ConnectionManagerBuilder.buildConnectionManagerMapKey(keystoreKey, trustKeystoreKey);
+    }
+
+    private String buildKeyStoreContentKey(String url, String password) {
+        if (!KeyStoreCache.isFileBased(url)) {
+            return NOT_FILE_BASED;
+        }
+        return KeyStoreCache.buildKeyStoreKey(url, password);
+    }
+
+    /**
+     * @return the key of the keystore locations used by the last {@link #build()} or
+     * {@link #buildSSLIOSessionStrategy()}
+     */
+    public String getSocketFactoryKey() {
+        return socketFactoryKey;
+    }
+
+    protected KeyStore loadKeyStore(String url, String password)
+            throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
+        String keyStoreKey = KeyStoreCache.buildKeyStoreKey(url, password);
+        KeyStore keyStore = keyStoreCache.get(keyStoreKey);
+        if (keyStore == null) {
+            keyStore = createKeyStore(new URL(url), password);
+            keyStoreCache.put(keyStoreKey, keyStore);
+        }
+        return keyStore;
     }
 
     protected void createKeystore(SSLContextBuilder sslContextBuilder, boolean useClientCert) {
         if (useClientCert) {
             KeyStore clientKeyStore;
             try {
-                clientKeyStore = createKeyStore(new URL(keystore), keystorePassword);
+                clientKeyStore = loadKeyStore(keystore, keystorePassword);
                 sslContextBuilder.loadKeyMaterial(clientKeyStore, keystorePassword.toCharArray());
             } catch (UnrecoverableKeyException | IOException ue) {
                 throw new IllegalArgumentException(ue.getMessage() + ". " + BAD_KEYSTORE_ERROR, ue);
@@ -158,8 +311,7 @@ public class SSLConnectionSocketFactoryBuilder {
         if (useTrustCert) {
             KeyStore trustKeyStore;
             try {
-                //todo should we do this 'create' in each and every step?
-                trustKeyStore = createKeyStore(new URL(trustKeystore), trustPassword);
+                trustKeyStore = loadKeyStore(trustKeystore, trustPassword);
                 sslContextBuilder.loadTrustMaterial(trustKeyStore);
             } catch (IOException ioe) {
                 throw new IllegalArgumentException(ioe.getMessage() + ". " + BAD_TRUST_KEYSTORE_ERROR, ioe);
@@ -169,6 +321,11 @@ public class SSLConnectionSocketFactoryBuilder {
         }
     }
 
+    public SSLConnectionSocketFactoryBuilder setKeyStoreCache(KeyStoreCache keyStoreCache) {
+        this.keyStoreCache = keyStoreCache;
+        return this;
+    }
+
     public SSLConnectionSocketFactoryBuilder setTrustAllRoots(String trustAllRoots) {
         if (!StringUtils.isEmpty(trustAllRoots)) {
             this.trustAllRootsStr = trustAllRoots;
@@ -202,4 +359,14 @@ public class SSLConnectionSocketFactoryBuilder {
         }
         return this;
     }
+
+    private static class CachedSSL<T> {
+        private final String contentKey;
+        private final T value;
+
+        private CachedSSL(String contentKey, T value) {
+            this.contentKey = contentKey;
+            this.value = value;
+        }
+    }
 }
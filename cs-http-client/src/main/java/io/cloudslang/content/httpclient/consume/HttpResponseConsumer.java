@@ -10,18 +10,26 @@
 
 package io.cloudslang.content.httpclient.consume;
 
-import io.cloudslang.content.httpclient.HttpClientInputs;
 import io.cloudslang.content.httpclient.CSHttpClient;
-import org.apache.commons.io.IOUtils;
+import io.cloudslang.content.httpclient.HttpClientInputs;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Consts;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.message.BasicHeaderValueParser;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 /**
@@ -30,9 +38,19 @@ import java.util.Map;
  * Date: 7/28/14
  */
 public class HttpResponseConsumer {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final String RESPONSE_FILE_PREFIX = "httpClientResponse";
+    public static final String RESPONSE_FILE_SUFFIX = ".tmp";
+    private static final int MAX_INITIAL_BUFFER_SIZE = 16 * 1024 * 1024;
+    private static final byte[] UTF_8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] UTF_16BE_BOM = {(byte) 0xFE, (byte) 0xFF};
+    private static final byte[] UTF_16LE_BOM = {(byte) 0xFF, (byte) 0xFE};
+
     private HttpResponse httpResponse;
     private String responseCharacterSet;
     private String destinationFile;
+    private String responseMaxInMemorySize;
+    private Charset charset;
 
     public HttpResponseConsumer setHttpResponse(HttpResponse httpResponse) {
         this.httpResponse = httpResponse;
@@ -49,6 +67,11 @@ public class HttpResponseConsumer {
         return this;
     }
 
+    public HttpResponseConsumer setResponseMaxInMemorySize(String responseMaxInMemorySize) {
+        this.responseMaxInMemorySize = responseMaxInMemorySize;
+        return this;
+    }
+
     public void consume(Map<String, String> result) throws IOException {
         if (httpResponse.getEntity() != null) {
             if (responseCharacterSet == null || responseCharacterSet.isEmpty()) {
@@ -63,55 +86,161 @@ public class HttpResponseConsumer {
                         }
                     }
                 }
-                if (responseCharacterSet == null || responseCharacterSet.isEmpty()) {
-                    responseCharacterSet = Consts.ISO_8859_1.name();
-                }
             }
+            //validated before the entity is consumed, whether it is decoded or saved to a file as it was received
+            charset = parseCharset();
             consumeResponseContent(result);
         }
     }
 
     protected void consumeResponseContent(Map<String, String> result) throws IOException {
         if (StringUtils.isEmpty(destinationFile)) {
-            String document;
+            long maxInMemorySize = parseMaxInMemorySize(responseMaxInMemorySize);
+            HttpEntity entity = httpResponse.getEntity();
+            if (entity instanceof ResponseFileEntity) {
+                //the entity was already saved to a temporary file while it was received
+                result.put(CSHttpClient.RESPONSE_FILE, ((ResponseFileEntity) entity).getFile().getAbsolutePath());
+                return;
+            }
+            InputStream content = entity.getContent();
+            if (content == null) {
+                return;
+            }
             try {
-                document = IOUtils.toString(httpResponse.getEntity().getContent(), responseCharacterSet);
-            } catch (UnsupportedCharsetException e) {
-                throw new IllegalArgumentException("Could not parse responseCharacterSet. " + e.getMessage(), e);
+                ByteArrayOutputStream body = new ByteArrayOutputStream(initialBufferSize(entity.getContentLength(), maxInMemorySize));
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int length;
+                while ((length = content.read(buffer)) != -1) {
+                    if (body.size() + length > maxInMemorySize) {
+                        //the entity does not fit in memory, so the rest of it goes straight to a temporary file
+                        File responseFile = File.createTempFile(RESPONSE_FILE_PREFIX, RESPONSE_FILE_SUFFIX);
+                        boolean copied = false;
+                        FileOutputStream fos = null;
+                        try {
+                            fos = new FileOutputStream(responseFile);
+                            body.writeTo(fos);
+                            fos.write(buffer, 0, length);
+                            copy(content, fos.getChannel());
+                            copied = true;
+                        } finally {
+                            safeClose(fos);
+                            if (!copied) {
+                                //a partial response is not returned, so its file is not left behind either
+                                responseFile.delete();
+                            }
+                        }
+                        result.put(CSHttpClient.RESPONSE_FILE, responseFile.getAbsolutePath());
+                        return;
+                    }
+                    body.write(buffer, 0, length);
+                }
+                result.put(CSHttpClient.RETURN_RESULT, decode(body.toByteArray()));
+            } finally {
+                safeClose(content);
             }
-            result.put(CSHttpClient.RETURN_RESULT, document);
         } else {
             consumeToDestinationFile();
         }
     }
 
     private void consumeToDestinationFile() throws IOException {
-        BufferedReader reader;
-        BufferedWriter fileWriter = null;
+        if (httpResponse.getEntity() instanceof ResponseFileEntity) {
+            Files.move(((ResponseFileEntity) httpResponse.getEntity()).getFile().toPath(), new File(destinationFile).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        InputStream content = httpResponse.getEntity().getContent();
         FileOutputStream fos = null;
         try {
-            try {
-                reader = new BufferedReader(new InputStreamReader(httpResponse.getEntity().getContent(), responseCharacterSet));
-                fos = new FileOutputStream(new File(destinationFile));
-                fileWriter = new BufferedWriter(new OutputStreamWriter(fos, responseCharacterSet));
-            } catch (UnsupportedEncodingException e) {
-                throw new IllegalArgumentException("Could not parse '" + HttpClientInputs.RESPONSE_CHARACTER_SET
-                        + "'. " + e.getMessage(), e);
+            fos = new FileOutputStream(new File(destinationFile));
+            if (content != null) {
+                //the entity is saved as it was received, there is no need to decode and encode it again
+                copy(content, fos.getChannel());
             }
-            char[] buffer = new char[1024];
-            int b;
-            while ((b = reader.read(buffer, 0, buffer.length)) != -1) {
-                fileWriter.write(buffer, 0, b);
-            }
-            fileWriter.flush();
         } finally {
             if (fos != null) {
                 safeClose(fos);
             }
-            if (fileWriter != null) {
-                safeClose(fileWriter);
+            if (content != null) {
+                safeClose(content);
+            }
+        }
+    }
+
+    protected String decode(byte[] bytes) {
+        Charset charset = this.charset;
+        int offset = 0;
+        if (charset == null) {
+            //no charset was declared, so look for a byte order mark before falling back to the http default
+            if (startsWith(bytes, UTF_8_BOM)) {
+                charset = Consts.UTF_8;
+                offset = UTF_8_BOM.length;
+            } else if (startsWith(bytes, UTF_16BE_BOM) || startsWith(bytes, UTF_16LE_BOM)) {
+                charset = Charset.forName("UTF-16");
+            } else {
+                charset = Consts.ISO_8859_1;
+            }
+        }
+        return new String(bytes, offset, bytes.length - offset, charset);
+    }
+
+    /**
+     * @return the charset of 'responseCharacterSet' or null if it was not given
+     */
+    private Charset parseCharset() {
+        if (responseCharacterSet == null || responseCharacterSet.isEmpty()) {
+            return null;
+        }
+        try {
+            return Charset.forName(responseCharacterSet);
+        } catch (UnsupportedCharsetException | IllegalCharsetNameException e) {
+            throw new IllegalArgumentException("Could not parse responseCharacterSet. " + e.getMessage(), e);
+        }
+    }
+
+    static long parseMaxInMemorySize(String responseMaxInMemorySize) {
+        if (StringUtils.isEmpty(responseMaxInMemorySize)) {
+            return Integer.MAX_VALUE;
+        }
+        long maxInMemorySize;
+        try {
+            maxInMemorySize = Long.parseLong(responseMaxInMemorySize);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("the '" + HttpClientInputs.RESPONSE_MAX_IN_MEMORY_SIZE
+                    + "' input should be integer" + e.getMessage(), e);
+        }
+        return maxInMemorySize <= 0 ? Integer.MAX_VALUE : Math.min(maxInMemorySize, Integer.MAX_VALUE);
+    }
+
+    private static int initialBufferSize(long contentLength, long maxInMemorySize) {
+        if (contentLength <= 0) {
+            return BUFFER_SIZE;
+        }
+        return (int) Math.min(Math.min(contentLength, maxInMemorySize), MAX_INITIAL_BUFFER_SIZE);
+    }
+
+    private static void copy(InputStream in, FileChannel out) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
             }
         }
+        return true;
     }
 
     private void safeClose(Closeable closeable) {
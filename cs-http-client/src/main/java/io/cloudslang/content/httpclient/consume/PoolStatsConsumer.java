@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.consume;
+
+import io.cloudslang.content.httpclient.CSHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.Map;
+
+public class PoolStatsConsumer {
+    private PoolingHttpClientConnectionManager connManager;
+
+    public PoolStatsConsumer setConnManager(PoolingHttpClientConnectionManager connManager) {
+        this.connManager = connManager;
+        return this;
+    }
+
+    public void consume(Map<String, String> returnResult) {
+        PoolStats poolStats = (connManager != null) ? connManager.getTotalStats() : null;
+        if (poolStats != null) {
+            returnResult.put(CSHttpClient.CONNECTIONS_LEASED, String.valueOf(poolStats.getLeased()));
+            returnResult.put(CSHttpClient.CONNECTIONS_AVAILABLE, String.valueOf(poolStats.getAvailable()));
+            returnResult.put(CSHttpClient.CONNECTIONS_PENDING, String.valueOf(poolStats.getPending()));
+            returnResult.put(CSHttpClient.CONNECTIONS_MAX, String.valueOf(poolStats.getMax()));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+
+package io.cloudslang.content.httpclient.consume;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+
+import java.io.File;
+
+/**
+ * A response entity that was already saved to a temporary file while it was received, so
+ * {@link HttpResponseConsumer} returns or moves the file instead of copying the entity again.
+ */
+public class ResponseFileEntity extends FileEntity {
+
+    public ResponseFileEntity(File file, ContentType contentType) {
+        super(file, contentType);
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
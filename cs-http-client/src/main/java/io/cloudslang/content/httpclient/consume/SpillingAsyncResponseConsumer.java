@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+
+package io.cloudslang.content.httpclient.consume;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Receives the response of the asynchronous http client the way {@link HttpResponseConsumer} reads the one of the
+ * blocking client: the entity is kept in memory up to 'responseMaxInMemorySize' bytes and the rest of it goes to a
+ * temporary file, which the response then holds as a {@link ResponseFileEntity}.
+ */
+public class SpillingAsyncResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+    private final long maxInMemorySize;
+    private final ByteBuffer buffer = ByteBuffer.allocate(HttpResponseConsumer.BUFFER_SIZE);
+    private HttpResponse httpResponse;
+    private HttpEntity receivedEntity;
+    private ByteArrayOutputStream body;
+    private File responseFile;
+    private FileOutputStream responseFileStream;
+    private boolean completed;
+
+    /**
+     * @param responseMaxInMemorySize the 'responseMaxInMemorySize' input
+     * @param saveToFile              true if the whole entity is saved to a file, e.g. to be moved to 'destinationFile'
+     */
+    public SpillingAsyncResponseConsumer(String responseMaxInMemorySize, boolean saveToFile) {
+        this.maxInMemorySize = saveToFile ? 0 : HttpResponseConsumer.parseMaxInMemorySize(responseMaxInMemorySize);
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) {
+        this.httpResponse = response;
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        this.receivedEntity = entity;
+        long contentLength = entity.getContentLength();
+        if (contentLength > maxInMemorySize) {
+            spill();
+        } else {
+            body = new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : HttpResponseConsumer.BUFFER_SIZE);
+        }
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+        int length;
+        while ((length = decoder.read(buffer)) > 0) {
+            if (body != null && body.size() + length > maxInMemorySize) {
+                spill();
+            }
+            if (body != null) {
+                body.write(buffer.array(), 0, length);
+            } else {
+                buffer.flip();
+                FileChannel channel = responseFileStream.getChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            buffer.clear();
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) throws IOException {
+        if (receivedEntity != null) {
+            AbstractHttpEntity entity;
+            if (responseFile != null) {
+                responseFileStream.close();
+                entity = new ResponseFileEntity(responseFile, null);
+            } else {
+                entity = new ByteArrayEntity(body.toByteArray());
+            }
+            entity.setContentType(receivedEntity.getContentType());
+            entity.setContentEncoding(receivedEntity.getContentEncoding());
+            httpResponse.setEntity(entity);
+        }
+        completed = true;
+        return httpResponse;
+    }
+
+    @Override
+    protected void releaseResources() {
+        if (responseFileStream != null) {
+            try {
+                responseFileStream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (responseFile != null && !completed) {
+            //the request failed or was cancelled, its partial response is not returned
+            responseFile.delete();
+        }
+        body = null;
+    }
+
+    private void spill() throws IOException {
+        responseFile = File.createTempFile(HttpResponseConsumer.RESPONSE_FILE_PREFIX, HttpResponseConsumer.RESPONSE_FILE_SUFFIX);
+        responseFileStream = new FileOutputStream(responseFile);
+        if (body != null) {
+            body.writeTo(responseFileStream);
+            body = null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.Consts;
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+public class CSHttpAsyncClientTest {
+
+    private static final String RESPONSE_BODY = "slow response";
+    private static final long RESPONSE_DELAY_MILLIS = 500;
+    private static final int REQUESTS = 10;
+
+    private HttpServer server;
+    private String url;
+    private String concurrentUrl;
+    private CountDownLatch requestsInFlight;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(RESPONSE_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = RESPONSE_BODY.getBytes(Consts.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        requestsInFlight = new CountDownLatch(REQUESTS);
+        server.createContext("/concurrent", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                //answered only when all the requests reached the server at the same time
+                requestsInFlight.countDown();
+                boolean concurrent;
+                try {
+                    concurrent = requestsInFlight.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    concurrent = false;
+                }
+                byte[] body = RESPONSE_BODY.getBytes(Consts.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+                exchange.sendResponseHeaders(concurrent ? 200 : 503, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(REQUESTS));
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/slow";
+        concurrentUrl = "http://localhost:" + server.getAddress().getPort() + "/concurrent";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @AfterClass
+    public static void shutdown() {
+        CSHttpAsyncClient.shutdown();
+    }
+
+    @Test
+    public void executeAsyncConcurrently() throws Exception {
+        CSHttpAsyncClient asyncClient = new CSHttpAsyncClient();
+        List<Future<Map<String, String>>> results = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            results.add(asyncClient.executeAsync(buildInputs(concurrentUrl), null));
+        }
+        for (Future<Map<String, String>> result : results) {
+            Map<String, String> response = result.get();
+            assertEquals("the requests did not run concurrently", "200", response.get(CSHttpClient.STATUS_CODE));
+            assertEquals(RESPONSE_BODY, response.get(CSHttpClient.RETURN_RESULT));
+        }
+        assertEquals(0, requestsInFlight.getCount());
+    }
+
+    @Test
+    public void execute() {
+        Map<String, String> response = new CSHttpAsyncClient().execute(buildInputs(url));
+        assertEquals("200", response.get(CSHttpClient.STATUS_CODE));
+        assertEquals(RESPONSE_BODY, response.get(CSHttpClient.RETURN_RESULT));
+    }
+
+    @Test
+    public void executeAsyncParsesResponseOffDispatcher() throws Exception {
+        final List<String> callbackThreads = new ArrayList<>();
+        final CountDownLatch callbackDone = new CountDownLatch(1);
+        new CSHttpAsyncClient().executeAsync(buildInputs(url), new FutureCallback<Map<String, String>>() {
+            @Override
+            public void completed(Map<String, String> result) {
+                callbackThreads.add(Thread.currentThread().getName());
+                callbackDone.countDown();
+            }
+
+            @Override
+            public void failed(Exception e) {
+            }
+
+            @Override
+            public void cancelled() {
+            }
+        }).get();
+        assertTrue(callbackDone.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(CSHttpAsyncClient.RESPONSE_THREAD_NAME), callbackThreads);
+    }
+
+    @Test
+    public void executeOverMaxInMemorySize() throws Exception {
+        HttpClientInputs httpClientInputs = buildInputs(url);
+        httpClientInputs.setResponseMaxInMemorySize("4");
+
+        Map<String, String> response = new CSHttpAsyncClient().execute(httpClientInputs);
+        assertNull(response.get(CSHttpClient.RETURN_RESULT));
+        File file = new File(response.get(CSHttpClient.RESPONSE_FILE));
+        try {
+            assertEquals(RESPONSE_BODY, FileUtils.readFileToString(file, "UTF-8"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void executeWithDestinationFile() throws Exception {
+        File file = File.createTempFile("test", ".txt");
+        try {
+            HttpClientInputs httpClientInputs = buildInputs(url);
+            httpClientInputs.setDestinationFile(file.getAbsolutePath());
+
+            Map<String, String> response = new CSHttpAsyncClient().execute(httpClientInputs);
+            assertNull(response.get(CSHttpClient.RETURN_RESULT));
+            assertNull(response.get(CSHttpClient.RESPONSE_FILE));
+            assertEquals(RESPONSE_BODY, FileUtils.readFileToString(file, "UTF-8"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void executeConnectionError() {
+        String closedUrl = url;
+        server.stop(0);
+        try {
+            new CSHttpAsyncClient().execute(buildInputs(closedUrl));
+            fail("the request should fail");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Connection error: "));
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void executeAsyncFailure() throws Exception {
+        String closedUrl = url;
+        server.stop(0);
+        new CSHttpAsyncClient().executeAsync(buildInputs(closedUrl), null).get();
+    }
+
+    private HttpClientInputs buildInputs(String url) {
+        HttpClientInputs httpClientInputs = new HttpClientInputs();
+        httpClientInputs.setUrl(url);
+        httpClientInputs.setMethod("GET");
+        return httpClientInputs;
+    }
+}
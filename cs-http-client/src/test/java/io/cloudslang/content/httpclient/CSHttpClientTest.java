@@ -2,10 +2,14 @@ package io.cloudslang.content.httpclient;
 
 
 import com.hp.oo.sdk.content.plugin.SerializableSessionObject;
+import io.cloudslang.content.httpclient.build.conn.IdleConnectionReaper;
+import io.cloudslang.content.httpclient.build.conn.SSLConnectionSocketFactoryBuilder;
+import io.cloudslang.content.httpclient.consume.PoolStatsConsumer;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.junit.Before;
@@ -49,6 +53,7 @@ public class CSHttpClientTest {
     private String responseCharacterSet;
     @Mock
     private String destinationFile;
+    private String responseMaxInMemorySize = "1024";
     @Mock
     private URI uri;
     @Mock
@@ -63,12 +68,13 @@ public class CSHttpClientTest {
     @Before
     public void setUp() throws Exception {
         csHttpClient = PowerMockito.spy(new CSHttpClient());
+        csHttpClient.setPoolStatsConsumer(new PoolStatsConsumer());
 
         PowerMockito.doNothing().when(csHttpClient, "initSessionsObjects", httpClientInputs);
         PowerMockito.doReturn(httpComponents).when(csHttpClient, "buildHttpComponents", httpClientInputs);
         PowerMockito.doReturn(httpResponse).when(csHttpClient, "execute", closeableHttpClient, httpRequestBase, httpClientContext);
         PowerMockito.doReturn(result).when(csHttpClient, "parseResponse", httpResponse, responseCharacterSet, destinationFile,
-                uri, httpClientContext, cookieStore, serializableSessionObject);
+                responseMaxInMemorySize, uri, httpClientContext, cookieStore, serializableSessionObject);
 
         PowerMockito.when(httpComponents.getHttpRequestBase()).thenReturn(httpRequestBase);
         PowerMockito.when(httpComponents.getCloseableHttpClient()).thenReturn(closeableHttpClient);
@@ -79,9 +85,32 @@ public class CSHttpClientTest {
 
         PowerMockito.when(httpClientInputs.getResponseCharacterSet()).thenReturn(responseCharacterSet);
         PowerMockito.when(httpClientInputs.getDestinationFile()).thenReturn(destinationFile);
+        PowerMockito.when(httpClientInputs.getResponseMaxInMemorySize()).thenReturn(responseMaxInMemorySize);
         PowerMockito.when(httpClientInputs.getCookieStoreSessionObject()).thenReturn(serializableSessionObject);
     }
 
+    @Test
+    public void buildHttpComponentsWithoutSessionObjectIsNotReaped() {
+        HttpClientInputs inputs = new HttpClientInputs();
+        inputs.setUrl("http://localhost:8080/");
+        inputs.setMethod("GET");
+        CSHttpClient client = new CSHttpClient();
+        client.setSslConnectionSocketFactoryBuilder(new SSLConnectionSocketFactoryBuilder() {
+            @Override
+            public SSLConnectionSocketFactory build() {
+                //the url is not https
+                return null;
+            }
+        });
+        int registered = IdleConnectionReaper.getInstance().size();
+
+        for (int i = 0; i < 3; i++) {
+            client.buildHttpComponents(inputs);
+        }
+
+        assertEquals(registered, IdleConnectionReaper.getInstance().size());
+    }
+
     @Test
     public void executeKeepAliveTrue() {
         PowerMockito.when(httpClientInputs.getKeepAlive()).thenReturn("true");
@@ -14,6 +14,7 @@ import com.hp.oo.sdk.content.plugin.GlobalSessionObject;
 import com.hp.oo.sdk.content.plugin.SessionResource;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
@@ -21,8 +22,10 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import static junit.framework.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * User: Adina Tusa
@@ -76,4 +79,138 @@ public class ConnectionManagerBuilderTest {
                 .buildConnectionManager();
         assertEquals(connectionManagerMock, connectionManager);
     }
+
+    @Test
+    public void buildConnectionManagerWithoutReapingIsNotRegistered() {
+        GlobalSessionObject holder = new GlobalSessionObject();
+        PoolingHttpClientConnectionManager connectionManager = new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .setReapIdleConnections(false)
+                .buildConnectionManager();
+        assertFalse(IdleConnectionReaper.getInstance().isRegistered(connectionManager));
+        holder.getResource().release();
+    }
+
+    @Test
+    public void buildConnectionManagerReusesConnectionManager() {
+        GlobalSessionObject holder = new GlobalSessionObject();
+        PoolingHttpClientConnectionManager connectionManager = new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .buildConnectionManager();
+        assertTrue(holder.get() instanceof ConcurrentMap);
+        assertTrue(IdleConnectionReaper.getInstance().isRegistered(connectionManager));
+        assertSame(connectionManager, new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .buildConnectionManager());
+        holder.getResource().release();
+    }
+
+    @Test
+    public void buildConnectionManagerReloadsSocketFactory() {
+        GlobalSessionObject holder = new GlobalSessionObject();
+        SSLConnectionSocketFactory reloadedSslsf = mock(SSLConnectionSocketFactory.class);
+        PoolingHttpClientConnectionManager connectionManager = new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .buildConnectionManager();
+        assertSame(sslConnectionSocketFactoryMock,
+                ((ConnectionManagerBuilder.SSLReloadingConnectionManager) connectionManager).getSslsf());
+        assertSame(connectionManager, new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(reloadedSslsf)
+                .setConnectionPoolHolder(holder)
+                .buildConnectionManager());
+        assertSame(reloadedSslsf, ((ConnectionManagerBuilder.SSLReloadingConnectionManager) connectionManager).getSslsf());
+        holder.getResource().release();
+    }
+
+    @Test
+    public void buildConnectionManagerWithLimits() {
+        GlobalSessionObject holder = new GlobalSessionObject();
+        PoolingHttpClientConnectionManager connectionManager = new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .setDefaultMaxPerRoute("5")
+                .setTotalMax("50")
+                .buildConnectionManager();
+        assertEquals(5, connectionManager.getDefaultMaxPerRoute());
+        assertEquals(50, connectionManager.getMaxTotal());
+        holder.getResource().release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void buildConnectionManagerWithInvalidLimit() {
+        new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(new GlobalSessionObject())
+                .setDefaultMaxPerRoute("five")
+                .buildConnectionManager();
+    }
+
+    @Test
+    public void adaptDefaultMaxPerRouteWithPendingRequests() {
+        when(connectionManagerMock.getTotalStats()).thenReturn(new PoolStats(2, 3, 0, 20));
+        when(connectionManagerMock.getDefaultMaxPerRoute()).thenReturn(2);
+        when(connectionManagerMock.getMaxTotal()).thenReturn(20);
+        new ConnectionManagerBuilder().adaptDefaultMaxPerRoute(connectionManagerMock);
+        verify(connectionManagerMock).setDefaultMaxPerRoute(4);
+    }
+
+    @Test
+    public void adaptDefaultMaxPerRouteUpToMaxTotal() {
+        when(connectionManagerMock.getTotalStats()).thenReturn(new PoolStats(16, 3, 0, 20));
+        when(connectionManagerMock.getDefaultMaxPerRoute()).thenReturn(16);
+        when(connectionManagerMock.getMaxTotal()).thenReturn(20);
+        new ConnectionManagerBuilder().adaptDefaultMaxPerRoute(connectionManagerMock);
+        verify(connectionManagerMock).setDefaultMaxPerRoute(20);
+    }
+
+    @Test
+    public void adaptDefaultMaxPerRouteWithoutPendingRequests() {
+        when(connectionManagerMock.getTotalStats()).thenReturn(new PoolStats(2, 0, 0, 20));
+        when(connectionManagerMock.getDefaultMaxPerRoute()).thenReturn(2);
+        when(connectionManagerMock.getMaxTotal()).thenReturn(20);
+        new ConnectionManagerBuilder().adaptDefaultMaxPerRoute(connectionManagerMock);
+        verify(connectionManagerMock, never()).setDefaultMaxPerRoute(anyInt());
+    }
+
+    @Test
+    public void releaseShutsDownConnectionManagers() {
+        Map<String, PoolingHttpClientConnectionManager> connectionManagerMap = new HashMap<>();
+        connectionManagerMap.put("key1:key2", connectionManagerMock);
+        IdleConnectionReaper.getInstance().register(connectionManagerMock);
+
+        new ConnectionManagerBuilder.ConnectionPoolResource(connectionManagerMap).release();
+
+        verify(connectionManagerMock).shutdown();
+        assertTrue(connectionManagerMap.isEmpty());
+        assertFalse(IdleConnectionReaper.getInstance().isRegistered(connectionManagerMock));
+    }
+
+    @Test
+    public void releaseRemovesClientsFromGivenCache() {
+        HttpClientCache httpClientCache = new HttpClientCache(10);
+        GlobalSessionObject holder = new GlobalSessionObject();
+        PoolingHttpClientConnectionManager connectionManager = new ConnectionManagerBuilder()
+                .setConnectionManagerMapKey("key1", "key2")
+                .setSslsf(sslConnectionSocketFactoryMock)
+                .setConnectionPoolHolder(holder)
+                .setHttpClientCache(httpClientCache)
+                .buildConnectionManager();
+        httpClientCache.getHttpClient("key1:key2", true, connectionManager);
+        assertEquals(1, httpClientCache.size());
+
+        holder.getResource().release();
+
+        assertEquals(0, httpClientCache.size());
+    }
 }
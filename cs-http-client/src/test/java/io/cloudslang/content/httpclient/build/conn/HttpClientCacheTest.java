@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import static junit.framework.Assert.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HttpClientCacheTest {
+
+    @Mock
+    private PoolingHttpClientConnectionManager connectionManagerMock;
+    @Mock
+    private PoolingHttpClientConnectionManager otherConnectionManagerMock;
+
+    @Test
+    public void getHttpClientReusesClient() {
+        HttpClientCache cache = new HttpClientCache(10);
+        CloseableHttpClient client = cache.getHttpClient("key1:key2", true, connectionManagerMock);
+        assertNotNull(client);
+        assertSame(client, cache.getHttpClient("key1:key2", true, connectionManagerMock));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void getHttpClientByKeepAlive() {
+        HttpClientCache cache = new HttpClientCache(10);
+        CloseableHttpClient keepAliveClient = cache.getHttpClient("key1:key2", true, connectionManagerMock);
+        CloseableHttpClient noKeepAliveClient = cache.getHttpClient("key1:key2", false, connectionManagerMock);
+        assertNotSame(keepAliveClient, noKeepAliveClient);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void getHttpClientByConnectionManager() {
+        HttpClientCache cache = new HttpClientCache(10);
+        CloseableHttpClient client = cache.getHttpClient("key1:key2", true, connectionManagerMock);
+        assertNotSame(client, cache.getHttpClient("key1:key2", true, otherConnectionManagerMock));
+    }
+
+    @Test
+    public void getHttpClientWithoutConnectionManager() {
+        HttpClientCache cache = new HttpClientCache(10);
+        assertNotNull(cache.getHttpClient("key1:key2", true, null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void getHttpClientEvictsEldest() {
+        HttpClientCache cache = new HttpClientCache(1);
+        CloseableHttpClient client = cache.getHttpClient("key1", true, connectionManagerMock);
+        cache.getHttpClient("key2", true, otherConnectionManagerMock);
+        assertEquals(1, cache.size());
+        assertNotSame(client, cache.getHttpClient("key1", true, connectionManagerMock));
+    }
+
+    @Test
+    public void removeByConnectionManager() {
+        HttpClientCache cache = new HttpClientCache(10);
+        cache.getHttpClient("key1", true, connectionManagerMock);
+        cache.getHttpClient("key1", false, connectionManagerMock);
+        cache.getHttpClient("key2", true, otherConnectionManagerMock);
+        cache.remove(connectionManagerMock);
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCacheSize() {
+        new HttpClientCache(0);
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IdleConnectionReaperTest {
+
+    @Mock
+    private PoolingHttpClientConnectionManager connectionManagerMock;
+    private IdleConnectionReaper reaper;
+
+    @Before
+    public void setUp() {
+        reaper = new IdleConnectionReaper(10, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        reaper.shutdown();
+    }
+
+    @Test
+    public void reap() {
+        reaper.register(connectionManagerMock);
+        reaper.reap();
+        verify(connectionManagerMock, atLeastOnce()).closeExpiredConnections();
+        verify(connectionManagerMock, atLeastOnce()).closeIdleConnections(1000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void reapInBackground() {
+        reaper.register(connectionManagerMock);
+        verify(connectionManagerMock, timeout(5000).atLeast(2)).closeIdleConnections(1000, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void unregister() {
+        reaper.register(connectionManagerMock);
+        reaper.unregister(connectionManagerMock);
+        reaper.reap();
+        assertFalse(reaper.isRegistered(connectionManagerMock));
+        verify(connectionManagerMock, never()).closeExpiredConnections();
+    }
+
+    @Test
+    public void reapDropsFailingConnectionManager() {
+        doThrow(new IllegalStateException("Connection pool shut down")).when(connectionManagerMock).closeExpiredConnections();
+        reaper.register(connectionManagerMock);
+        assertTrue(reaper.isRegistered(connectionManagerMock));
+        reaper.reap();
+        assertFalse(reaper.isRegistered(connectionManagerMock));
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.build.conn;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.*;
+
+public class KeyStoreCacheTest {
+
+    private static final String PASSWORD = "changeit";
+    private File keystoreFile;
+    private String keystoreUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        keystoreFile = File.createTempFile("keystore", ".jks");
+        storeKeyStore(keystoreFile);
+        keystoreUrl = keystoreFile.toURI().toURL().toString();
+    }
+
+    @After
+    public void tearDown() {
+        keystoreFile.delete();
+    }
+
+    @Test
+    public void buildKeyStoreKey() {
+        String key = KeyStoreCache.buildKeyStoreKey(keystoreUrl, PASSWORD);
+        assertNotNull(key);
+        assertEquals(key, KeyStoreCache.buildKeyStoreKey(keystoreUrl, PASSWORD));
+        assertFalse(key.contains(PASSWORD));
+    }
+
+    @Test
+    public void buildKeyStoreKeyChangesWithPassword() {
+        assertFalse(KeyStoreCache.buildKeyStoreKey(keystoreUrl, PASSWORD)
+                .equals(KeyStoreCache.buildKeyStoreKey(keystoreUrl, "otherPassword")));
+    }
+
+    @Test
+    public void buildKeyStoreKeyChangesWithFile() {
+        String key = KeyStoreCache.buildKeyStoreKey(keystoreUrl, PASSWORD);
+        assertTrue(keystoreFile.setLastModified(keystoreFile.lastModified() - 10000));
+        assertFalse(key.equals(KeyStoreCache.buildKeyStoreKey(keystoreUrl, PASSWORD)));
+    }
+
+    @Test
+    public void buildKeyStoreKeyNotFileBased() {
+        assertNull(KeyStoreCache.buildKeyStoreKey("http://localhost/keystore.jks", PASSWORD));
+        assertNull(KeyStoreCache.buildKeyStoreKey("file:" + keystoreFile.getAbsolutePath() + ".missing", PASSWORD));
+        assertNull(KeyStoreCache.buildKeyStoreKey(null, PASSWORD));
+    }
+
+    @Test
+    public void buildKeyStoreLocationKey() {
+        String key = KeyStoreCache.buildKeyStoreLocationKey(keystoreUrl, PASSWORD);
+        assertTrue(keystoreFile.setLastModified(keystoreFile.lastModified() - 10000));
+        assertEquals(key, KeyStoreCache.buildKeyStoreLocationKey(keystoreUrl, PASSWORD));
+        assertFalse(key.equals(KeyStoreCache.buildKeyStoreLocationKey(keystoreUrl, "otherPassword")));
+        assertFalse(key.contains(PASSWORD));
+        assertTrue(KeyStoreCache.isFileBased(keystoreUrl));
+        assertFalse(KeyStoreCache.isFileBased("http://localhost/keystore.jks"));
+    }
+
+    @Test
+    public void socketFactoryReplacedWhenKeyStoreChanges() {
+        SSLConnectionSocketFactory sslsf = buildSocketFactory();
+        assertSame(sslsf, buildSocketFactory());
+
+        assertTrue(keystoreFile.setLastModified(keystoreFile.lastModified() - 10000));
+        SSLConnectionSocketFactoryBuilder builder = newSocketFactoryBuilder();
+        assertNotSame(sslsf, builder.build());
+        assertEquals("false:strict:" + KeyStoreCache.buildKeyStoreLocationKey(keystoreUrl, PASSWORD) + ":"
+                + KeyStoreCache.buildKeyStoreLocationKey(keystoreUrl, PASSWORD), builder.getSocketFactoryKey());
+    }
+
+    @Test
+    public void putAndGet() throws Exception {
+        KeyStoreCache cache = new KeyStoreCache(1);
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        cache.put("key1", keyStore);
+        assertSame(keyStore, cache.get("key1"));
+        cache.put("key2", keyStore);
+        assertNull(cache.get("key1"));
+        assertEquals(1, cache.size());
+        assertNull(cache.get(null));
+    }
+
+    @Test
+    public void loadKeyStoreOnlyOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        SSLConnectionSocketFactoryBuilder builder = new SSLConnectionSocketFactoryBuilder() {
+            @Override
+            protected KeyStore createKeyStore(URL url, String password)
+                    throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
+                loads.incrementAndGet();
+                return super.createKeyStore(url, password);
+            }
+        }.setKeyStoreCache(new KeyStoreCache(10));
+
+        KeyStore keyStore = builder.loadKeyStore(keystoreUrl, PASSWORD);
+        assertSame(keyStore, builder.loadKeyStore(keystoreUrl, PASSWORD));
+        assertEquals(1, loads.get());
+
+        assertTrue(keystoreFile.setLastModified(keystoreFile.lastModified() - 10000));
+        assertNotSame(keyStore, builder.loadKeyStore(keystoreUrl, PASSWORD));
+        assertEquals(2, loads.get());
+    }
+
+    private SSLConnectionSocketFactory buildSocketFactory() {
+        return newSocketFactoryBuilder().build();
+    }
+
+    private SSLConnectionSocketFactoryBuilder newSocketFactoryBuilder() {
+        return new SSLConnectionSocketFactoryBuilder()
+                .setKeystore(keystoreUrl)
+                .setKeystorePassword(PASSWORD)
+                .setTrustKeystore(keystoreUrl)
+                .setTrustPassword(PASSWORD);
+    }
+
+    private void storeKeyStore(File file) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        keyStore.load(null, PASSWORD.toCharArray());
+        OutputStream os = new FileOutputStream(file);
+        try {
+            keyStore.store(os, PASSWORD.toCharArray());
+        } finally {
+            os.close();
+        }
+    }
+}
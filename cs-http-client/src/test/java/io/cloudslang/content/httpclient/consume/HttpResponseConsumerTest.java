@@ -10,8 +10,7 @@
 
 package io.cloudslang.content.httpclient.consume;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.http.Consts;
+import org.apache.commons.io.FileUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.entity.BasicHttpEntity;
@@ -20,41 +19,31 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
-import org.powermock.core.classloader.annotations.PrepareForTest;
-import org.powermock.modules.junit4.PowerMockRunner;
+import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.*;
-import java.net.URL;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
-import static junit.framework.Assert.assertEquals;
-import static junit.framework.Assert.assertNull;
-import static org.mockito.Matchers.*;
+import static junit.framework.Assert.*;
 import static org.mockito.Mockito.when;
-import static org.powermock.api.mockito.PowerMockito.mockStatic;
-import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 
 /**
  * User: Adina Tusa
  * Date: 8/20/14
  */
-@RunWith(PowerMockRunner.class)
-@PrepareForTest({IOUtils.class, HttpResponseConsumer.class})
+@RunWith(MockitoJUnitRunner.class)
 public class HttpResponseConsumerTest {
 
     private static final String CONTENT_TYPE = "text/plain;charset=UTF-8";
     private static final String RETURN_RESULT = "returnResult";
+    private static final String RESPONSE_FILE = "responseFile";
+    private static final String DOCUMENT = "doc \u00e9\u00e8";
     private HttpResponseConsumer httpResponseConsumer;
     @Mock
     private HttpResponse httpResponseMock;
-    @Mock
-    private InputStream inputStreamMock;
-    @Mock
-    private BufferedReader bufferedReaderMock;
-    @Mock
-    private InputStreamReader inputStreamReaderMock;
     private Map<String, String> result;
 
     @Before
@@ -71,54 +60,182 @@ public class HttpResponseConsumerTest {
 
     @Test
     public void consume() throws IOException {
-        setHttpResponseEntity("text/plain;charset=");
+        setHttpResponseEntity("text/plain;charset=", DOCUMENT.getBytes("ISO-8859-1"));
 
-        mockStatic(IOUtils.class);
-        when(IOUtils.toString(inputStreamMock, Consts.ISO_8859_1.name())).thenReturn("doc");
         httpResponseConsumer
                 .setHttpResponse(httpResponseMock)
                 .setDestinationFile(null)
                 .setResponseCharacterSet(null)
                 .consume(result);
-        assertEquals("doc", result.get(RETURN_RESULT));
+        assertEquals(DOCUMENT, result.get(RETURN_RESULT));
     }
 
     @Test
     public void consumeWithContentType() throws IOException {
-        setHttpResponseEntity(CONTENT_TYPE);
+        setHttpResponseEntity(CONTENT_TYPE, DOCUMENT.getBytes("UTF-8"));
 
-        mockStatic(IOUtils.class);
-        when(IOUtils.toString(inputStreamMock, Consts.UTF_8.name())).thenReturn("doc");
         httpResponseConsumer
                 .setHttpResponse(httpResponseMock)
                 .setDestinationFile(null)
                 .setResponseCharacterSet(null)
                 .consume(result);
-        assertEquals("doc", result.get(RETURN_RESULT));
+        assertEquals(DOCUMENT, result.get(RETURN_RESULT));
+    }
+
+    @Test
+    public void consumeWithByteOrderMark() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        content.write(DOCUMENT.getBytes("UTF-8"));
+        setHttpResponseEntity("text/plain", content.toByteArray());
+
+        httpResponseConsumer
+                .setHttpResponse(httpResponseMock)
+                .setResponseCharacterSet(null)
+                .consume(result);
+        assertEquals(DOCUMENT, result.get(RETURN_RESULT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void consumeWithInvalidCharacterSet() throws IOException {
+        setHttpResponseEntity(CONTENT_TYPE, DOCUMENT.getBytes("UTF-8"));
+
+        httpResponseConsumer
+                .setHttpResponse(httpResponseMock)
+                .setResponseCharacterSet("invalid-charset")
+                .consume(result);
     }
 
     @Test
     public void consumeWithDestinationFile() throws Exception {
-        setHttpResponseEntity(CONTENT_TYPE);
+        byte[] content = DOCUMENT.getBytes("UTF-8");
+        setHttpResponseEntity(CONTENT_TYPE, content);
+
+        File file = File.createTempFile("test", ".txt");
+        try {
+            httpResponseConsumer
+                    .setHttpResponse(httpResponseMock)
+                    .setDestinationFile(file.getAbsolutePath())
+                    .setResponseCharacterSet(null)
+                    .consume(result);
+
+            assertNull(result.get(RETURN_RESULT));
+            assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(file)));
+        } finally {
+            file.delete();
+        }
+    }
 
-        whenNew(InputStreamReader.class).withArguments(anyObject(), anyString()).thenReturn(inputStreamReaderMock);
-        whenNew(BufferedReader.class).withArguments(inputStreamReaderMock).thenReturn(bufferedReaderMock);
-        when(bufferedReaderMock.read((char[]) anyObject(), anyInt(), anyInt())).thenReturn(-1);
+    @Test
+    public void consumeOverMaxInMemorySize() throws Exception {
+        byte[] content = new byte[HttpResponseConsumer.BUFFER_SIZE * 3 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        setHttpResponseEntity(CONTENT_TYPE, content);
 
         httpResponseConsumer
                 .setHttpResponse(httpResponseMock)
-                .setDestinationFile("test.txt")
-                .setResponseCharacterSet(null)
+                .setResponseMaxInMemorySize(String.valueOf(HttpResponseConsumer.BUFFER_SIZE))
                 .consume(result);
 
-        File file = new File("test.txt");
-        file.delete();
         assertNull(result.get(RETURN_RESULT));
+        File file = new File(result.get(RESPONSE_FILE));
+        try {
+            assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(file)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void consumeOverMaxInMemorySizeDeletesFileOnFailure() throws Exception {
+        final byte[] content = new byte[HttpResponseConsumer.BUFFER_SIZE * 2];
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new InputStream() {
+            private int read;
+
+            @Override
+            public int read() throws IOException {
+                if (read == content.length) {
+                    throw new IOException("Connection reset");
+                }
+                return content[read++];
+            }
+        });
+        when(httpResponseMock.getEntity()).thenReturn(entity);
+
+        int responseFiles = countResponseFiles();
+        try {
+            httpResponseConsumer
+                    .setHttpResponse(httpResponseMock)
+                    .setResponseMaxInMemorySize(String.valueOf(HttpResponseConsumer.BUFFER_SIZE))
+                    .consume(result);
+            fail("The failed read should be thrown");
+        } catch (IOException e) {
+            assertEquals("Connection reset", e.getMessage());
+        }
+        assertNull(result.get(RESPONSE_FILE));
+        assertEquals(responseFiles, countResponseFiles());
+    }
+
+    @Test
+    public void consumeWithDestinationFileAndInvalidCharacterSet() throws Exception {
+        setHttpResponseEntity(CONTENT_TYPE, DOCUMENT.getBytes("UTF-8"));
+
+        File file = File.createTempFile("test", ".txt");
+        try {
+            httpResponseConsumer
+                    .setHttpResponse(httpResponseMock)
+                    .setDestinationFile(file.getAbsolutePath())
+                    .setResponseCharacterSet("invalid-charset")
+                    .consume(result);
+            fail("The invalid responseCharacterSet should be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Could not parse responseCharacterSet"));
+            assertEquals(0, file.length());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void consumeUnderMaxInMemorySize() throws Exception {
+        setHttpResponseEntity(CONTENT_TYPE, DOCUMENT.getBytes("UTF-8"));
+
+        httpResponseConsumer
+                .setHttpResponse(httpResponseMock)
+                .setResponseMaxInMemorySize("1024")
+                .consume(result);
+
+        assertEquals(DOCUMENT, result.get(RETURN_RESULT));
+        assertNull(result.get(RESPONSE_FILE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void consumeWithInvalidMaxInMemorySize() throws Exception {
+        setHttpResponseEntity(CONTENT_TYPE, DOCUMENT.getBytes("UTF-8"));
+
+        httpResponseConsumer
+                .setHttpResponse(httpResponseMock)
+                .setResponseMaxInMemorySize("abc")
+                .consume(result);
+    }
+
+    private int countResponseFiles() {
+        String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(HttpResponseConsumer.RESPONSE_FILE_PREFIX);
+            }
+        });
+        return files == null ? 0 : files.length;
     }
 
-    private void setHttpResponseEntity(String contentType) {
+    private void setHttpResponseEntity(String contentType, byte[] content) {
         BasicHttpEntity entity = new BasicHttpEntity();
-        entity.setContent(inputStreamMock);
+        entity.setContent(new ByteArrayInputStream(content));
+        entity.setContentLength(content.length);
         Header contentTypeHeader = new HeaderEntity("Content-Type", contentType);
         entity.setContentType(contentTypeHeader);
         when(httpResponseMock.getEntity()).thenReturn(entity);
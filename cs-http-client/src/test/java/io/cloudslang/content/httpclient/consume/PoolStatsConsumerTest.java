@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.httpclient.consume;
+
+import io.cloudslang.content.httpclient.CSHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PoolStatsConsumerTest {
+
+    @Mock
+    private PoolingHttpClientConnectionManager connectionManagerMock;
+
+    @Test
+    public void consume() {
+        when(connectionManagerMock.getTotalStats()).thenReturn(new PoolStats(1, 2, 3, 20));
+        Map<String, String> result = new HashMap<>();
+        new PoolStatsConsumer().setConnManager(connectionManagerMock).consume(result);
+        assertEquals("1", result.get(CSHttpClient.CONNECTIONS_LEASED));
+        assertEquals("2", result.get(CSHttpClient.CONNECTIONS_PENDING));
+        assertEquals("3", result.get(CSHttpClient.CONNECTIONS_AVAILABLE));
+        assertEquals("20", result.get(CSHttpClient.CONNECTIONS_MAX));
+    }
+
+    @Test
+    public void consumeWithoutConnectionManager() {
+        Map<String, String> result = new HashMap<>();
+        new PoolStatsConsumer().setConnManager(null).consume(result);
+        assertTrue(result.isEmpty());
+    }
+}
@@ -16,11 +16,13 @@ import com.hp.oo.sdk.content.annotations.Param;
 import com.hp.oo.sdk.content.annotations.Response;
 import com.hp.oo.sdk.content.plugin.ActionMetadata.MatchType;
 import com.hp.oo.sdk.content.plugin.ActionMetadata.ResponseType;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.internal.JsonReader;
-import com.jayway.jsonpath.internal.spi.json.AbstractJsonProvider;
 import com.jayway.jsonpath.internal.spi.json.JacksonJsonNodeJsonProvider;
 import io.cloudslang.content.json.utils.ActionsEnum;
 import io.cloudslang.content.json.utils.Constants;
+import io.cloudslang.content.json.utils.JsonPathCache;
 import io.cloudslang.content.json.utils.JsonUtils;
 
 import java.util.HashMap;
@@ -72,11 +74,11 @@ public class EditJson {
 
         Map<String, String> returnResult = new HashMap<>();
         JsonReader jsonReader;
-        final AbstractJsonProvider provider = new JacksonJsonNodeJsonProvider();
+        final Configuration configuration = JsonPathCache.getConfiguration(JacksonJsonNodeJsonProvider.class);
         boolean validateValueBoolean = JsonUtils.parseBooleanWithDefault(validateValue, true);
         try {
             JsonUtils.validateEditJsonInputs(jsonObject, jsonPath, action, name, value);
-            jsonReader = JsonUtils.getJsonReader(jsonObject, provider);
+            jsonReader = JsonUtils.getJsonReader(jsonObject, configuration);
         } catch (Exception e) {
             return populateResult(returnResult, e);
         }
@@ -84,10 +86,8 @@ public class EditJson {
         String result;
         try {
             Object valueObject;
-            JsonReader valueJsonReader;
             try {
-                valueJsonReader = JsonUtils.getJsonReader(value, provider);
-                valueObject = valueJsonReader.json();
+                valueObject = JsonUtils.getJsonReader(value, configuration).json();
             } catch (Exception e) {
                 if (!validateValueBoolean || !actionEnum.getNeedValue()) {
                     valueObject = value;
@@ -105,23 +105,24 @@ public class EditJson {
 
     private Object editJson(String jsonPath, String action, String name, Object value, JsonReader jsonReader) {
         ActionsEnum myAction = ActionsEnum.valueOf(action.toLowerCase());
+        JsonPath path = JsonPathCache.getPath(jsonPath);
         Object json = null;
 
         switch (myAction) {
             case get:
-                json = jsonReader.read(jsonPath);
+                json = jsonReader.read(path);
                 break;
             case insert:
-                json = jsonReader.put(jsonPath, name, value).json();
+                json = jsonReader.put(path, name, value).json();
                 break;
             case add:
-                json = jsonReader.add(jsonPath, value).json();
+                json = jsonReader.add(path, value).json();
                 break;
             case update:
-                json = jsonReader.set(jsonPath, value).json();
+                json = jsonReader.set(path, value).json();
                 break;
             case delete:
-                json = jsonReader.delete(jsonPath).json();
+                json = jsonReader.delete(path).json();
                 break;
         }
         return json;
@@ -1,15 +1,17 @@
 package io.cloudslang.content.json.services;
 
-import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
 import com.jayway.jsonpath.internal.spi.json.GsonJsonProvider;
-import com.jayway.jsonpath.spi.json.JsonProvider;
 import io.cloudslang.content.json.exceptions.RemoveEmptyElementException;
+import io.cloudslang.content.json.utils.JsonPathCache;
 import io.cloudslang.content.json.utils.StringUtils;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.JSONStyle;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -19,6 +21,8 @@ import java.util.Set;
  * Created by Folea Ilie Cristian on 2/3/2016.
  */
 public class JsonService {
+    // json-smart reads longer decimal numbers as BigDecimal
+    private static final int MAX_DOUBLE_LENGTH = 18;
 
     public String removeEmptyElementsJson(String json) throws RemoveEmptyElementException {
         String normalizedJson = json.trim();
@@ -28,8 +32,10 @@ public class JsonService {
         Map<String, Object> jsonMap;
 
         try {
-            parseJsonForInconsistencies(normalizedJson);
-            jsonMap = JsonPath.read(normalizedJson, "$");
+            // a single parse with Gson, which rejects the inconsistencies json-smart would accept, into the
+            // json-smart structures the result is written from
+            JsonElement jsonElement = (JsonElement) JsonPathCache.getConfiguration(GsonJsonProvider.class).jsonProvider().parse(normalizedJson);
+            jsonMap = (Map<String, Object>) toJsonSmart(jsonElement);
         } catch (com.jayway.jsonpath.InvalidJsonException | com.google.gson.JsonSyntaxException ije) {
             throw new RemoveEmptyElementException(ije);
         }
@@ -50,10 +56,49 @@ public class JsonService {
     }
 
 
-    private void parseJsonForInconsistencies(String normalizedJson) {
-        JsonProvider provider = new GsonJsonProvider();
-        Configuration configuration =  Configuration.builder().jsonProvider(provider).build();
-        JsonPath.parse(normalizedJson, configuration);       //throws an exception at runtime if the json is malformed
+    /**
+     * Converts the parsed json to the structures json-smart builds when parsing the same json: LinkedHashMap for the
+     * objects, JSONArray for the arrays, and for the numbers the Integer, Long, BigInteger, Double or BigDecimal
+     * json-smart reads from their text.
+     */
+    private Object toJsonSmart(JsonElement jsonElement) {
+        if (jsonElement.isJsonObject()) {
+            Map<String, Object> jsonMap = new LinkedHashMap<>();
+            for (Map.Entry<String, JsonElement> member : jsonElement.getAsJsonObject().entrySet()) {
+                jsonMap.put(member.getKey(), toJsonSmart(member.getValue()));
+            }
+            return jsonMap;
+        }
+        if (jsonElement.isJsonArray()) {
+            JSONArray jsonArray = new JSONArray();
+            for (JsonElement item : jsonElement.getAsJsonArray()) {
+                jsonArray.add(toJsonSmart(item));
+            }
+            return jsonArray;
+        }
+        if (jsonElement.isJsonNull()) {
+            return null;
+        }
+        JsonPrimitive primitive = jsonElement.getAsJsonPrimitive();
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        if (primitive.isString()) {
+            return primitive.getAsString();
+        }
+        return toJsonSmartNumber(primitive.getAsString());
+    }
+
+    private Number toJsonSmartNumber(String number) {
+        if (number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0) {
+            return number.length() > MAX_DOUBLE_LENGTH ? new BigDecimal(number) : (Number) Double.parseDouble(number);
+        }
+        try {
+            long value = Long.parseLong(number);
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Number) (int) value : (Number) value;
+        } catch (NumberFormatException e) {
+            return new BigInteger(number);
+        }
     }
 
     /**
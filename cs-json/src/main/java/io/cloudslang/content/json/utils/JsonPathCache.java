@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+package io.cloudslang.content.json.utils;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps one JsonPath configuration per json provider and an LRU cache of compiled JsonPath objects. The providers
+ * shipped with JsonPath, the configurations and the compiled paths are not modified once created, so they are shared
+ * by all threads.
+ */
+public class JsonPathCache {
+    private static final int MAX_PATHS = 256;
+
+    private static final ConcurrentMap<Class<? extends JsonProvider>, Configuration> CONFIGURATIONS = new ConcurrentHashMap<>();
+    private static final Map<String, JsonPath> PATHS = Collections.synchronizedMap(new LinkedHashMap<String, JsonPath>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JsonPath> eldest) {
+            return size() > MAX_PATHS;
+        }
+    });
+
+    private JsonPathCache() {
+    }
+
+    /**
+     * Returns the default configuration with an instance of the given json provider, creating it on the first use.
+     *
+     * @param providerClass the json provider class, which must have a public no-argument constructor
+     * @return the shared configuration
+     */
+    public static Configuration getConfiguration(Class<? extends JsonProvider> providerClass) {
+        Configuration configuration = CONFIGURATIONS.get(providerClass);
+        if (configuration == null) {
+            try {
+                configuration = Configuration.defaultConfiguration().jsonProvider(providerClass.newInstance());
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Unable to create json provider " + providerClass.getName(), e);
+            }
+            Configuration previous = CONFIGURATIONS.putIfAbsent(providerClass, configuration);
+            if (previous != null) {
+                configuration = previous;
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Returns the compiled path from the cache, compiling it on the first use.
+     *
+     * @param jsonPath the JsonPath expression
+     * @return the compiled path
+     * @throws com.jayway.jsonpath.InvalidPathException if the expression is not valid
+     */
+    public static JsonPath getPath(String jsonPath) {
+        JsonPath path = PATHS.get(jsonPath);
+        if (path == null) {
+            path = JsonPath.compile(jsonPath);
+            PATHS.put(jsonPath, path);
+        }
+        return path;
+    }
+}
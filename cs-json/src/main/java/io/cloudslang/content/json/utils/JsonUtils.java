@@ -11,7 +11,6 @@ package io.cloudslang.content.json.utils;
 
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.internal.JsonReader;
-import com.jayway.jsonpath.internal.spi.json.AbstractJsonProvider;
 
 import java.util.Map;
 
@@ -90,8 +89,7 @@ public class JsonUtils {
         }
     }
 
-    public static JsonReader getJsonReader(String jsonObject, final AbstractJsonProvider provider) {
-        final Configuration configuration = Configuration.defaultConfiguration().jsonProvider(provider);
+    public static JsonReader getJsonReader(String jsonObject, final Configuration configuration) {
         JsonReader jsonReader = new JsonReader(configuration);
         jsonReader.parse(jsonObject);
         return jsonReader;
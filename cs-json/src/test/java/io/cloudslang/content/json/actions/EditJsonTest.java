@@ -495,6 +495,16 @@ public class EditJsonTest {
                 "\"bicycle\":{\"color\":\"red\",\"price\":19.95}},\"arrayTest\":[1,2,3]}", result.get(RETURN_RESULT));
     }
 
+    @Test
+    public void testSamePathOnSuccessiveCalls() throws Exception {
+        final String jsonPathQuery = "$.store.book[0].category";
+        final Map<String, String> deleteResult = editJson.execute(jsonFile, jsonPathQuery, "delete", "", "", VALIDATE_VALUE_FALSE);
+        final Map<String, String> secondDeleteResult = editJson.execute(jsonFile, jsonPathQuery, "delete", "", "", VALIDATE_VALUE_FALSE);
+        final Map<String, String> getResult = editJson.execute(jsonFile, jsonPathQuery, "get", "", "", VALIDATE_VALUE_FALSE);
+        assertEquals(deleteResult.get(RETURN_RESULT), secondDeleteResult.get(RETURN_RESULT));
+        assertEquals("\"reference\"", getResult.get(RETURN_RESULT));
+    }
+
 
     private static String jsonFile =
             "{" +
@@ -182,4 +182,15 @@ public class JsonServiceTest {
 
         assertEquals(expectedJsonStringOutput,actualJsonStringOutput);
     }
+
+    @Test
+    public void givenNumbersThenKeepTheirValues() throws RemoveEmptyElementException {
+        jsonStringInput = "{\"int\":-2, \"long\":9999999999, \"big\":12345678901234567890, \"decimal\":1.50, " +
+                "\"exponent\":1e5, \"removed\":[]}";
+        expectedJsonStringOutput = "{\"int\":-2,\"long\":9999999999,\"big\":12345678901234567890,\"decimal\":1.5," +
+                "\"exponent\":100000.0}";
+        actualJsonStringOutput = jsonServiceUnderTest.removeEmptyElementsJson(jsonStringInput);
+
+        assertEquals(JsonPath.parse(expectedJsonStringOutput).json(), JsonPath.parse(actualJsonStringOutput).json());
+    }
 }
@@ -74,6 +74,15 @@ public class PowerShellScriptAction {
      *                             Default value is 'en-US'.
      * @param operationTimeout     Defines the OperationTimeout value in seconds to indicate that the clients expect a response or a fault within the specified time.
      *                             Default value is '60'.
+     * @param reuseShell           Specifies whether the script may run on a remote shell left open by a previous execution on the same host
+     *                             with the same credentials. The shells are kept open for a short time after their last script, which saves the
+     *                             creation of a new shell for each script.
+     *                             Valid values are 'true' and 'false'.
+     *                             Default value is 'false'.
+     * @param maxOutputSize        The maximum number of characters kept from each of the output and error streams of the script.
+     *                             The rest of the output is read from the remote host but discarded and the outputTruncated
+     *                             output is 'true'. A value of '0' keeps the whole output.
+     *                             Default value is '0'.
      * @return
      */
     @Action(name = "PowerShell Script Action",
@@ -82,6 +91,7 @@ public class PowerShellScriptAction {
                     @Output(RETURN_RESULT),
                     @Output(STDERR),
                     @Output(SCRIPT_EXIT_CODE),
+                    @Output(OUTPUT_TRUNCATED),
                     @Output(EXCEPTION)
             },
             responses = {
@@ -112,7 +122,9 @@ public class PowerShellScriptAction {
             @Param(value = MAX_ENVELOP_SIZE) String maxEnvelopeSize,
             @Param(value = INPUT_SCRIPT, required = true) String script,
             @Param(value = WINRM_LOCALE) String winrmLocale,
-            @Param(value = OPERATION_TIMEOUT) String operationTimeout
+            @Param(value = OPERATION_TIMEOUT) String operationTimeout,
+            @Param(value = REUSE_SHELL) String reuseShell,
+            @Param(value = MAX_OUTPUT_SIZE) String maxOutputSize
     ) {
         Map<String, String> resultMap = new HashMap<>();
         try {
@@ -142,6 +154,8 @@ public class PowerShellScriptAction {
                     .withScript(script)
                     .withWinrmLocale(winrmLocale)
                     .withOperationTimeout(operationTimeout)
+                    .withReuseShell(reuseShell)
+                    .withMaxOutputSize(maxOutputSize)
                     .build();
 
             resultMap = wsManRemoteShellService.runCommand(wsManRequestInputs);
@@ -0,0 +1,292 @@
+package io.cloudslang.content.actions;
+
+import com.hp.oo.sdk.content.annotations.Action;
+import com.hp.oo.sdk.content.annotations.Output;
+import com.hp.oo.sdk.content.annotations.Param;
+import com.hp.oo.sdk.content.annotations.Response;
+import com.hp.oo.sdk.content.plugin.ActionMetadata.MatchType;
+import com.hp.oo.sdk.content.plugin.ActionMetadata.ResponseType;
+import com.hp.oo.sdk.content.plugin.GlobalSessionObject;
+import com.hp.oo.sdk.content.plugin.SessionResource;
+import io.cloudslang.content.entities.InputDefaults;
+import io.cloudslang.content.entities.WSManRequestInputs;
+import io.cloudslang.content.services.WSManRemoteShellService;
+import io.cloudslang.content.utils.Constants;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.cloudslang.content.httpclient.HttpClientInputs.*;
+import static io.cloudslang.content.utils.Constants.InputNames.*;
+import static io.cloudslang.content.utils.Constants.OutputNames.*;
+import static io.cloudslang.content.utils.Constants.ReturnCodes.RETURN_CODE_FAILURE;
+import static io.cloudslang.content.utils.Constants.ReturnCodes.RETURN_CODE_SUCCESS;
+
+/**
+ * Runs the same PowerShell script on several remote hosts at once.
+ */
+public class PowerShellScriptMultiHostAction {
+
+    private static final String ZERO_SCRIPT_EXIT_CODE = "0";
+    private static final int DEFAULT_CONNECTIONS_MAX_TOTAL = 20;
+    private static final String NO_HOSTS = "The hosts input does not contain any host.";
+    private static final String INVALID_CONCURRENCY = "The concurrency input must be a positive integer: ";
+    private static final String[] HOST_RESULT_FIELDS = {RETURN_CODE, RETURN_RESULT, STDERR, SCRIPT_EXIT_CODE,
+            OUTPUT_TRUNCATED, EXCEPTION};
+
+    /**
+     * Executes a PowerShell script on each of the given remote hosts. The hosts are processed in parallel by a bounded
+     * pool of threads, and the requests to all the hosts share one pool of HTTP connections.
+     *
+     * @param hosts                The hostnames or ip addresses of the remote hosts.
+     * @param hostsDelimiter       The delimiter of the hosts list.
+     *                             Default value is ','.
+     * @param concurrency          The maximum number of hosts on which the script runs at the same time.
+     *                             Default value is '10'.
+     * @param port                 The port to use when connecting to the remote WinRM server.
+     * @param protocol             The protocol to use when connecting to the remote server.
+     *                             Valid values are 'HTTP' and 'HTTPS'.
+     *                             Default value is 'HTTPS'.
+     * @param username             The username used to connect to the remote machine.
+     * @param password             The password used to connect to the remote machine.
+     * @param proxyHost            The proxy server used to access the remote host.
+     * @param proxyPort            The proxy server port.
+     * @param proxyUsername        The username used when connecting to the proxy.
+     * @param proxyPassword        The password used when connecting to the proxy.
+     * @param trustAllRoots        Specifies whether to enable weak security over SSL/TSL. A certificate is trusted even if no trusted certification authority issued it.
+     *                             Default value is 'false'.
+     *                             Valid values are 'true' and 'false'.
+     * @param x509HostnameVerifier Specifies the way the server hostname must match a domain name in the subject's Common Name (CN) or subjectAltName field of the
+     *                             X.509 certificate. The hostname verification system prevents communication with other hosts other than the ones you intended.
+     *                             This is done by checking that the hostname is in the subject alternative name extension of the certificate. This system is
+     *                             designed to ensure that, if an attacker(Man In The Middle) redirects traffic to his machine, the client will not accept the
+     *                             connection. If you set this input to "allow_all", this verification is ignored and you become vulnerable to security attacks.
+     *                             For the value "browser_compatible" the hostname verifier works the same way as Curl and Firefox. The hostname must match
+     *                             either the first CN, or any of the subject-alts. A wildcard can occur in the CN, and in any of the subject-alts. The only
+     *                             difference between "browser_compatible" and "strict" is that a wildcard (such as "*.foo.com") with "browser_compatible" matches
+     *                             all subdomains, including "a.b.foo.com". From the security perspective, to provide protection against possible Man-In-The-Middle
+     *                             attacks, we strongly recommend to use "strict" option.
+     *                             Valid values are 'strict', 'browser_compatible', 'allow_all'.
+     *                             Default value is 'strict'.
+     * @param trustKeystore        The pathname of the Java TrustStore file. This contains certificates from other parties that you expect to communicate with, or from
+     *                             Certificate Authorities that you trust to identify other parties.  If the protocol selected is not 'https' or if trustAllRoots
+     *                             is 'true' this input is ignored.
+     *                             Format of the keystore is Java KeyStore (JKS).
+     * @param trustPassword        The password associated with the TrustStore file. If trustAllRoots is false and trustKeystore is empty, trustPassword default will be supplied.
+     *                             Default value is 'changeit'.
+     * @param keystore             The pathname of the Java KeyStore file. You only need this if the server requires client authentication. If the protocol selected is not
+     *                             'https' or if trustAllRoots is 'true' this input is ignored.
+     *                             Format of the keystore is Java KeyStore (JKS).
+     * @param keystorePassword     The password associated with the KeyStore file. If trustAllRoots is false and keystore is empty, keystorePassword default will be supplied.
+     *                             Default value is 'changeit'.
+     * @param maxEnvelopeSize      The maximum size of a SOAP packet in bytes for all stream content.
+     *                             Default value is '153600'.
+     * @param script               The PowerShell script that will be executed on the remote shell.
+     * @param winrmLocale          The WinRM locale to use.
+     *                             Default value is 'en-US'.
+     * @param operationTimeout     Defines the OperationTimeout value in seconds to indicate that the clients expect a response or a fault within the specified time.
+     *                             Default value is '60'.
+     * @param reuseShell           Specifies whether the script may run on a remote shell left open by a previous execution on the same host
+     *                             with the same credentials. The shells are kept open for a short time after their last script, which saves the
+     *                             creation of a new shell for each script.
+     *                             Valid values are 'true' and 'false'.
+     *                             Default value is 'false'.
+     * @param maxOutputSize        The maximum number of characters kept from each of the output and error streams of the script.
+     *                             The rest of the output is read from the remote host but discarded and the outputTruncated
+     *                             output is 'true'. A value of '0' keeps the whole output.
+     *                             Default value is '0'.
+     * @return a map whose returnResult is a JSON array with the result of the script on each host, in the order of the hosts
+     * input. The returnCode is '0' only if the script succeeded on every host, failedHosts lists the other hosts.
+     */
+    @Action(name = "PowerShell Script Multi Host Action",
+            outputs = {
+                    @Output(RETURN_CODE),
+                    @Output(RETURN_RESULT),
+                    @Output(FAILED_HOSTS),
+                    @Output(EXCEPTION)
+            },
+            responses = {
+                    @Response(text = Constants.ResponseNames.SUCCESS, field = RETURN_CODE, value = RETURN_CODE_SUCCESS, matchType = MatchType.COMPARE_EQUAL, responseType = ResponseType.RESOLVED),
+                    @Response(text = Constants.ResponseNames.FAILURE, field = RETURN_CODE, value = RETURN_CODE_FAILURE, matchType = MatchType.COMPARE_EQUAL, responseType = ResponseType.ERROR, isOnFail = true)
+            }
+    )
+    public Map<String, String> execute(
+            @Param(value = INPUT_HOSTS, required = true) String hosts,
+            @Param(value = HOSTS_DELIMITER) String hostsDelimiter,
+            @Param(value = CONCURRENCY) String concurrency,
+            @Param(value = INPUT_PORT) String port,
+            @Param(value = PROTOCOL) String protocol,
+            @Param(value = USERNAME) String username,
+            @Param(value = PASSWORD, encrypted = true) String password,
+            @Param(value = AUTH_TYPE) String authType,
+            @Param(value = PROXY_HOST) String proxyHost,
+            @Param(value = PROXY_PORT) String proxyPort,
+            @Param(value = PROXY_USERNAME) String proxyUsername,
+            @Param(value = PROXY_PASSWORD, encrypted = true) String proxyPassword,
+            @Param(value = TRUST_ALL_ROOTS) String trustAllRoots,
+            @Param(value = X509_HOSTNAME_VERIFIER) String x509HostnameVerifier,
+            @Param(value = TRUST_KEYSTORE) String trustKeystore,
+            @Param(value = TRUST_PASSWORD, encrypted = true) String trustPassword,
+            @Param(value = KERBEROS_CONFIG_FILE) String kerberosConfFile,
+            @Param(value = KERBEROS_LOGIN_CONFIG_FILE) String kerberosLoginConfFile,
+            @Param(value = KERBEROS_SKIP_PORT_CHECK) String kerberosSkipPortForLookup,
+            @Param(value = KEYSTORE) String keystore,
+            @Param(value = KEYSTORE_PASSWORD, encrypted = true) String keystorePassword,
+            @Param(value = MAX_ENVELOP_SIZE) String maxEnvelopeSize,
+            @Param(value = INPUT_SCRIPT, required = true) String script,
+            @Param(value = WINRM_LOCALE) String winrmLocale,
+            @Param(value = OPERATION_TIMEOUT) String operationTimeout,
+            @Param(value = REUSE_SHELL) String reuseShell,
+            @Param(value = MAX_OUTPUT_SIZE) String maxOutputSize
+    ) {
+        Map<String, String> resultMap = new HashMap<>();
+        GlobalSessionObject<Map<String, PoolingHttpClientConnectionManager>> connectionPoolSessionObject = new GlobalSessionObject<>();
+        ExecutorService executor = null;
+        try {
+            String delimiter = StringUtils.defaultIfEmpty(hostsDelimiter, InputDefaults.HOSTS_DELIMITER.getValue());
+            List<String> hostList = splitHosts(hosts, delimiter);
+            int maxConcurrentHosts = Integer.parseInt(StringUtils.defaultIfBlank(concurrency, InputDefaults.CONCURRENCY.getValue()));
+            if (maxConcurrentHosts <= 0) {
+                throw new IllegalArgumentException(INVALID_CONCURRENCY + concurrency);
+            }
+
+            final WSManRequestInputs.WSManRequestInputsBuilder wsManRequestInputsBuilder = new WSManRequestInputs.WSManRequestInputsBuilder()
+                    .withPort(port)
+                    .withProtocol(protocol)
+                    .withUsername(username)
+                    .withPassword(password)
+                    .withAuthType(authType)
+                    .withKerberosConfFile(kerberosConfFile)
+                    .withKerberosLoginConfFile(kerberosLoginConfFile)
+                    .withKerberosSkipPortForLookup(kerberosSkipPortForLookup)
+                    .withProxyHost(proxyHost)
+                    .withProxyPort(proxyPort)
+                    .withProxyUsername(proxyUsername)
+                    .withProxyPassword(proxyPassword)
+                    .withMaxEnvelopeSize(maxEnvelopeSize)
+                    .withTrustAllRoots(trustAllRoots)
+                    .withX509HostnameVerifier(x509HostnameVerifier)
+                    .withKeystore(keystore)
+                    .withKeystorePassword(keystorePassword)
+                    .withTrustKeystore(trustKeystore)
+                    .withTrustPassword(trustPassword)
+                    .withScript(script)
+                    .withWinrmLocale(winrmLocale)
+                    .withOperationTimeout(operationTimeout)
+                    .withReuseShell(reuseShell)
+                    .withMaxOutputSize(maxOutputSize)
+                    .withConnectionPool(connectionPoolSessionObject, Math.max(DEFAULT_CONNECTIONS_MAX_TOTAL, 2 * maxConcurrentHosts));
+
+            executor = Executors.newFixedThreadPool(Math.min(maxConcurrentHosts, hostList.size()));
+            List<Future<Map<String, String>>> hostResults = new ArrayList<>();
+            for (String host : hostList) {
+                final WSManRequestInputs wsManRequestInputs = wsManRequestInputsBuilder.withHost(host).build();
+                hostResults.add(executor.submit(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() {
+                        return runScript(wsManRequestInputs);
+                    }
+                }));
+            }
+
+            StringBuilder returnResult = new StringBuilder("[");
+            List<String> failedHosts = new ArrayList<>();
+            for (int i = 0; i < hostList.size(); i++) {
+                Map<String, String> hostResult = hostResults.get(i).get();
+                if (!RETURN_CODE_SUCCESS.equals(hostResult.get(RETURN_CODE))) {
+                    failedHosts.add(hostList.get(i));
+                }
+                if (i > 0) {
+                    returnResult.append(',');
+                }
+                appendHostResult(returnResult, hostList.get(i), hostResult);
+            }
+            resultMap.put(RETURN_RESULT, returnResult.append(']').toString());
+            resultMap.put(FAILED_HOSTS, StringUtils.join(failedHosts, delimiter));
+            resultMap.put(RETURN_CODE, failedHosts.isEmpty() ? RETURN_CODE_SUCCESS : RETURN_CODE_FAILURE);
+        } catch (ExecutionException e) {
+            resultMap.put(EXCEPTION, ExceptionUtils.getStackTrace(e.getCause()));
+            resultMap.put(RETURN_CODE, RETURN_CODE_FAILURE);
+        } catch (Exception e) {
+            resultMap.put(EXCEPTION, ExceptionUtils.getStackTrace(e));
+            resultMap.put(RETURN_CODE, RETURN_CODE_FAILURE);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            releaseConnectionPool(connectionPoolSessionObject);
+        }
+        return resultMap;
+    }
+
+    /**
+     * Runs the script on one host. A failure on the host is reported in the host result, it does not stop the script
+     * on the other hosts.
+     *
+     * @param wsManRequestInputs
+     * @return the result of the script on the host.
+     */
+    private Map<String, String> runScript(WSManRequestInputs wsManRequestInputs) {
+        Map<String, String> hostResult = new HashMap<>();
+        try {
+            hostResult = new WSManRemoteShellService().runCommand(wsManRequestInputs);
+            if (ZERO_SCRIPT_EXIT_CODE.equals(hostResult.get(SCRIPT_EXIT_CODE))) {
+                hostResult.put(RETURN_CODE, RETURN_CODE_SUCCESS);
+            } else {
+                hostResult.put(RETURN_CODE, RETURN_CODE_FAILURE);
+            }
+        } catch (Exception e) {
+            hostResult.put(EXCEPTION, ExceptionUtils.getStackTrace(e));
+            hostResult.put(RETURN_CODE, RETURN_CODE_FAILURE);
+        }
+        return hostResult;
+    }
+
+    private List<String> splitHosts(String hosts, String delimiter) {
+        List<String> hostList = new ArrayList<>();
+        for (String host : StringUtils.splitByWholeSeparator(hosts, delimiter)) {
+            if (StringUtils.isNotBlank(host)) {
+                hostList.add(host.trim());
+            }
+        }
+        if (hostList.isEmpty()) {
+            throw new IllegalArgumentException(NO_HOSTS);
+        }
+        return hostList;
+    }
+
+    private void appendHostResult(StringBuilder returnResult, String host, Map<String, String> hostResult) {
+        returnResult.append("{\"").append(HOST).append("\":\"").append(StringEscapeUtils.escapeJson(host)).append('"');
+        for (String field : HOST_RESULT_FIELDS) {
+            String value = hostResult.get(field);
+            if (value != null) {
+                returnResult.append(",\"").append(field).append("\":\"").append(StringEscapeUtils.escapeJson(value)).append('"');
+            }
+        }
+        returnResult.append('}');
+    }
+
+    /**
+     * Releases the connection pool through its session resource, which also unregisters the connection managers from
+     * the idle connection reaper and drops the http clients built on them.
+     *
+     * @param connectionPoolSessionObject
+     */
+    private void releaseConnectionPool(GlobalSessionObject<Map<String, PoolingHttpClientConnectionManager>> connectionPoolSessionObject) {
+        SessionResource<Map<String, PoolingHttpClientConnectionManager>> connectionPoolResource = connectionPoolSessionObject.getResource();
+        if (connectionPoolResource != null) {
+            connectionPoolResource.release();
+        }
+    }
+}
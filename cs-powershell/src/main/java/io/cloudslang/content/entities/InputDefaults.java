@@ -11,7 +11,11 @@ public enum InputDefaults {
     X_509_HOSTNAME_VERIFIER("strict"),
     WINRM_LOCALE("en-US"),
     OPERATION_TIMEOUT("60"),
-    AUTH_TYPE("Basic");
+    AUTH_TYPE("Basic"),
+    REUSE_SHELL("false"),
+    MAX_OUTPUT_SIZE("0"),
+    HOSTS_DELIMITER(","),
+    CONCURRENCY("10");
 
     private String defaultValue;
 
@@ -1,5 +1,6 @@
 package io.cloudslang.content.entities;
 
+import com.hp.oo.sdk.content.plugin.GlobalSessionObject;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -30,6 +31,10 @@ public class WSManRequestInputs {
     private String script;
     private String winrmLocale;
     private int operationTimeout;
+    private boolean reuseShell;
+    private int maxOutputSize;
+    private GlobalSessionObject connectionPoolSessionObject;
+    private int connectionsMaxTotal;
 
     public WSManRequestInputs(WSManRequestInputsBuilder builder) {
         this.host = builder.host;
@@ -55,6 +60,10 @@ public class WSManRequestInputs {
         this.script = builder.script;
         this.winrmLocale = builder.winrmLocale;
         this.operationTimeout = builder.operationTimeout;
+        this.reuseShell = builder.reuseShell;
+        this.maxOutputSize = builder.maxOutputSize;
+        this.connectionPoolSessionObject = builder.connectionPoolSessionObject;
+        this.connectionsMaxTotal = builder.connectionsMaxTotal;
     }
 
     public String getHost() {
@@ -149,6 +158,22 @@ public class WSManRequestInputs {
         return operationTimeout;
     }
 
+    public boolean isReuseShell() {
+        return reuseShell;
+    }
+
+    public int getMaxOutputSize() {
+        return maxOutputSize;
+    }
+
+    public GlobalSessionObject getConnectionPoolSessionObject() {
+        return connectionPoolSessionObject;
+    }
+
+    public int getConnectionsMaxTotal() {
+        return connectionsMaxTotal;
+    }
+
     public static class WSManRequestInputsBuilder {
         private String host;
         private String port;
@@ -173,6 +198,10 @@ public class WSManRequestInputs {
         private String script;
         private String winrmLocale;
         private int operationTimeout;
+        private boolean reuseShell = Boolean.parseBoolean(InputDefaults.REUSE_SHELL.getValue());
+        private int maxOutputSize = Integer.parseInt(InputDefaults.MAX_OUTPUT_SIZE.getValue());
+        private GlobalSessionObject connectionPoolSessionObject;
+        private int connectionsMaxTotal;
 
         public WSManRequestInputs build() {
             return new WSManRequestInputs(this);
@@ -295,5 +324,31 @@ public class WSManRequestInputs {
             this.kerberosSkipPortForLookup = kerberosSkipPortForLookup;
             return this;
         }
+
+        public WSManRequestInputsBuilder withReuseShell(String reuseShell) {
+            reuseShell = StringUtils.isBlank(reuseShell) ? InputDefaults.REUSE_SHELL.getValue() : reuseShell;
+            this.reuseShell = Boolean.parseBoolean(reuseShell);
+            return this;
+        }
+
+        public WSManRequestInputsBuilder withMaxOutputSize(String maxOutputSize) {
+            maxOutputSize = StringUtils.isBlank(maxOutputSize) ? InputDefaults.MAX_OUTPUT_SIZE.getValue() : maxOutputSize;
+            this.maxOutputSize = Integer.parseInt(maxOutputSize);
+            return this;
+        }
+
+        /**
+         * Sets a connection pool shared by the requests of several scripts. The connections are kept alive after each
+         * request, the owner of the session object shuts the pool down.
+         *
+         * @param connectionPoolSessionObject The session object holding the connection pool.
+         * @param connectionsMaxTotal         The maximum number of connections of the pool.
+         * @return the builder.
+         */
+        public WSManRequestInputsBuilder withConnectionPool(GlobalSessionObject connectionPoolSessionObject, int connectionsMaxTotal) {
+            this.connectionPoolSessionObject = connectionPoolSessionObject;
+            this.connectionsMaxTotal = connectionsMaxTotal;
+            return this;
+        }
     }
 }
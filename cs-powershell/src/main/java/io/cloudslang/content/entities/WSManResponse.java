@@ -0,0 +1,155 @@
+package io.cloudslang.content.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values read from a WS-Man response document. The document is parsed once and every check of the response is
+ * made against this object.
+ */
+public class WSManResponse {
+
+    private String xml;
+    private String action;
+    private String shellId;
+    private String commandId;
+    private String commandState;
+    private String exitCode;
+    private String faultReason;
+    private String faultDetail;
+    private String faultCode;
+    private Map<String, List<String>> streams;
+
+    public WSManResponse(WSManResponseBuilder builder) {
+        this.xml = builder.xml;
+        this.action = builder.action;
+        this.shellId = builder.shellId;
+        this.commandId = builder.commandId;
+        this.commandState = builder.commandState;
+        this.exitCode = builder.exitCode;
+        this.faultReason = builder.faultReason;
+        this.faultDetail = builder.faultDetail;
+        this.faultCode = builder.faultCode;
+        this.streams = builder.streams;
+    }
+
+    public String getXml() {
+        return xml;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getShellId() {
+        return shellId;
+    }
+
+    public String getCommandId() {
+        return commandId;
+    }
+
+    public String getCommandState() {
+        return commandState;
+    }
+
+    public String getExitCode() {
+        return exitCode;
+    }
+
+    public String getFaultReason() {
+        return faultReason;
+    }
+
+    public String getFaultDetail() {
+        return faultDetail;
+    }
+
+    public String getFaultCode() {
+        return faultCode;
+    }
+
+    /**
+     * @param streamName The name of the stream, stdout or stderr.
+     * @return the base64 encoded contents of the stream elements with the given name, in document order.
+     */
+    public List<String> getStreams(String streamName) {
+        List<String> streamContents = streams.get(streamName);
+        return streamContents == null ? Collections.<String>emptyList() : streamContents;
+    }
+
+    public static class WSManResponseBuilder {
+        private String xml;
+        private String action = "";
+        private String shellId = "";
+        private String commandId = "";
+        private String commandState = "";
+        private String exitCode = "";
+        private String faultReason = "";
+        private String faultDetail = "";
+        private String faultCode = "";
+        private Map<String, List<String>> streams = new HashMap<>();
+
+        public WSManResponse build() {
+            return new WSManResponse(this);
+        }
+
+        public WSManResponseBuilder withXml(String xml) {
+            this.xml = xml;
+            return this;
+        }
+
+        public WSManResponseBuilder withAction(String action) {
+            this.action = action;
+            return this;
+        }
+
+        public WSManResponseBuilder withShellId(String shellId) {
+            this.shellId = shellId;
+            return this;
+        }
+
+        public WSManResponseBuilder withCommandId(String commandId) {
+            this.commandId = commandId;
+            return this;
+        }
+
+        public WSManResponseBuilder withCommandState(String commandState) {
+            this.commandState = commandState;
+            return this;
+        }
+
+        public WSManResponseBuilder withExitCode(String exitCode) {
+            this.exitCode = exitCode;
+            return this;
+        }
+
+        public WSManResponseBuilder withFaultReason(String faultReason) {
+            this.faultReason = faultReason;
+            return this;
+        }
+
+        public WSManResponseBuilder withFaultDetail(String faultDetail) {
+            this.faultDetail = faultDetail;
+            return this;
+        }
+
+        public WSManResponseBuilder withFaultCode(String faultCode) {
+            this.faultCode = faultCode;
+            return this;
+        }
+
+        public WSManResponseBuilder withStream(String streamName, String content) {
+            List<String> streamContents = streams.get(streamName);
+            if (streamContents == null) {
+                streamContents = new ArrayList<>();
+                streams.put(streamName, streamContents);
+            }
+            streamContents.add(content);
+            return this;
+        }
+    }
+}
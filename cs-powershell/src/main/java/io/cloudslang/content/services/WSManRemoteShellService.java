@@ -2,11 +2,14 @@ package io.cloudslang.content.services;
 
 import io.cloudslang.content.entities.EncoderDecoder;
 import io.cloudslang.content.entities.OutputStream;
+import io.cloudslang.content.entities.WSManResponse;
 import io.cloudslang.content.entities.WSManRequestInputs;
 import io.cloudslang.content.httpclient.HttpClientInputs;
 import io.cloudslang.content.httpclient.CSHttpClient;
+import io.cloudslang.content.utils.CommandOutputBuffer;
 import io.cloudslang.content.utils.Constants;
-import io.cloudslang.content.utils.ResourceLoader;
+import io.cloudslang.content.utils.RemoteShellPool;
+import io.cloudslang.content.utils.WSManRequestTemplate;
 import io.cloudslang.content.utils.WSManUtils;
 import io.cloudslang.content.utils.XMLUtils;
 import org.apache.commons.io.Charsets;
@@ -21,9 +24,12 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static io.cloudslang.content.utils.Constants.OutputNames.RETURN_RESULT;
@@ -42,10 +48,6 @@ public class WSManRemoteShellService {
     private static final String OPERATION_TIMEOUT_PLACEHOLDER_NAME = "$PLACEHOLDER_FOR_OPERATION_TIMEOUT";
     private static final String WINRM_LOCALE_PLACEHOLDER_NAME = "$PLACEHOLDER_FOR_LOCALE";
 
-    private static final String CREATE_RESPONSE_SHELL_ID_XPATH = "/Envelope/Body/ResourceCreated/ReferenceParameters/SelectorSet/Selector[@Name='ShellId']/text()";
-    private static final String COMMAND_RESULT_COMMAND_ID_XPATH = "/Envelope/Body/CommandResponse/CommandId";
-    private static final String RECEIVE_RESPONSE_XPATH = "/Envelope/Body/ReceiveResponse/Stream[@Name='%s'][%d]/text()";
-
     private static final String CREATE_RESPONSE_ACTION = "http://schemas.xmlsoap.org/ws/2004/09/transfer/CreateResponse";
     private static final String COMMAND_RESPONSE_ACTION = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandResponse";
     private static final String RECEIVE_RESPONSE_ACTION = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/ReceiveResponse";
@@ -57,7 +59,6 @@ public class WSManRemoteShellService {
     private static final String WSMAN_RESOURCE_URI = "/wsman";
     private static final String NEW_LINE_SEPARATOR = "\\n";
     private static final String UUID_LABEL = "uuid:";
-    private static final String PLACEHOLDER_NOT_FOUND = "Resource does not contain the expected placeholder name: ";
     private static final String CREATE_SHELL_REQUEST_XML = "templates/CreateShell.xml";
     private static final String EXECUTE_COMMAND_REQUEST_XML = "templates/ExecuteCommand.xml";
     private static final String RECEIVE_REQUEST_XML = "templates/Receive.xml";
@@ -71,11 +72,15 @@ public class WSManRemoteShellService {
     private static final String POWERSHELL_SCRIPT_PREFIX = "PowerShell -NonInteractive -EncodedCommand";
     private static final String UNAUTHORIZED_EXCEPTION_MESSAGE = "Unauthorized! Service responded with 401 status code!";
 
+    private static final long MIN_RECEIVE_POLL_DELAY = 10;
+    private static final long MAX_RECEIVE_POLL_DELAY = 1000;
+
     private long commandExecutionStartTime;
 
     /**
      * Executes a command on a remote shell by communicating with the WinRM server from the remote host.
      * Method creates a shell, runs a command on the shell, waits for the command execution to finnish, retrieves the result then deletes the shell.
+     * When the shell may be reused, the command runs on a shell of the pool instead, which is given back to the pool after the command.
      *
      * @param wsManRequestInputs
      * @return a map with the result of the command and the exit code of the command execution.
@@ -94,9 +99,12 @@ public class WSManRemoteShellService {
         HttpClientInputs httpClientInputs = new HttpClientInputs();
         URL url = buildURL(wsManRequestInputs, WSMAN_RESOURCE_URI);
         httpClientInputs = setCommonHttpInputs(httpClientInputs, url, wsManRequestInputs);
+        String commandStr = POWERSHELL_SCRIPT_PREFIX + " " + EncoderDecoder.encodeStringInBase64(wsManRequestInputs.getScript(), Charsets.UTF_16LE);
+        if (wsManRequestInputs.isReuseShell()) {
+            return runCommandOnPooledShell(csHttpClient, httpClientInputs, wsManRequestInputs, commandStr);
+        }
         String shellId = createShell(csHttpClient, httpClientInputs, wsManRequestInputs);
         WSManUtils.validateUUID(shellId, SHELL_ID);
-        String commandStr = POWERSHELL_SCRIPT_PREFIX + " " + EncoderDecoder.encodeStringInBase64(wsManRequestInputs.getScript(), Charsets.UTF_16LE);
         String commandId = executeCommand(csHttpClient, httpClientInputs, shellId, wsManRequestInputs, commandStr);
         WSManUtils.validateUUID(commandId, COMMAND_ID);
         Map<String, String> scriptResults = receiveCommandResult(csHttpClient, httpClientInputs, shellId, commandId, wsManRequestInputs);
@@ -104,6 +112,64 @@ public class WSManRemoteShellService {
         return scriptResults;
     }
 
+    /**
+     * Runs the command on a shell leased from the pool. The shell goes back to the pool only if the command completed,
+     * otherwise it is deleted. If the WinRM service answers that a shell that already ran commands does not exist
+     * anymore, the shell is considered dead, like the other free shells of the host, and the command is retried once
+     * on a new shell. Any other failure is thrown.
+     *
+     * @param csHttpClient
+     * @param httpClientInputs
+     * @param wsManRequestInputs
+     * @param command
+     * @return the command execution result and exit code.
+     */
+    private Map<String, String> runCommandOnPooledShell(final CSHttpClient csHttpClient, final HttpClientInputs httpClientInputs,
+                                                        final WSManRequestInputs wsManRequestInputs, String command) throws RuntimeException,
+            IOException, InterruptedException, ParserConfigurationException, TransformerException, XPathExpressionException,
+            TimeoutException, URISyntaxException, SAXException {
+        RemoteShellPool shellPool = RemoteShellPool.getInstance();
+        String shellKey = RemoteShellPool.buildShellKey(wsManRequestInputs);
+        RemoteShellPool.ShellFactory shellFactory = new RemoteShellPool.ShellFactory() {
+            @Override
+            public String create() throws Exception {
+                String shellId = createShell(csHttpClient, httpClientInputs, wsManRequestInputs);
+                WSManUtils.validateUUID(shellId, SHELL_ID);
+                return shellId;
+            }
+
+            @Override
+            public void delete(String shellId) throws Exception {
+                deleteShell(csHttpClient, httpClientInputs, shellId, wsManRequestInputs);
+            }
+        };
+        // an operation timeout of 0 means no timeout
+        long waitTimeout = wsManRequestInputs.getOperationTimeout() > 0 ?
+                TimeUnit.SECONDS.toMillis(wsManRequestInputs.getOperationTimeout()) : Integer.MAX_VALUE;
+        boolean retried = false;
+        while (true) {
+            RemoteShellPool.PooledShell pooledShell = shellPool.lease(shellKey, shellFactory, waitTimeout);
+            boolean reusable = false;
+            try {
+                WSManResponse executeCommandResponse = sendExecuteCommand(csHttpClient, httpClientInputs, pooledShell.getShellId(),
+                        wsManRequestInputs, command);
+                if (pooledShell.isReused() && !retried && WSManUtils.isShellNotFoundFault(executeCommandResponse)) {
+                    retried = true;
+                    shellPool.invalidate(shellKey);
+                    continue;
+                }
+                String commandId = getResourceId(executeCommandResponse, COMMAND_RESPONSE_ACTION,
+                        executeCommandResponse.getCommandId(), COMMAND_ID_NOT_RETRIEVED);
+                WSManUtils.validateUUID(commandId, COMMAND_ID);
+                Map<String, String> scriptResults = receiveCommandResult(csHttpClient, httpClientInputs, pooledShell.getShellId(), commandId, wsManRequestInputs);
+                reusable = true;
+                return scriptResults;
+            } finally {
+                shellPool.release(pooledShell, reusable);
+            }
+        }
+    }
+
     /**
      * Configures the HttpClientInputs object with the most common http parameters.
      *
@@ -138,6 +204,11 @@ public class WSManRemoteShellService {
             httpClientInputs.setHeaders(headers + NEW_LINE_SEPARATOR + CONTENT_TYPE_HEADER);
         }
         httpClientInputs.setMethod(HttpPost.METHOD_NAME);
+        if (wsManRequestInputs.getConnectionPoolSessionObject() != null) {
+            httpClientInputs.setConnectionPoolSessionObject(wsManRequestInputs.getConnectionPoolSessionObject());
+            httpClientInputs.setConnectionsMaxTotal(String.valueOf(wsManRequestInputs.getConnectionsMaxTotal()));
+            httpClientInputs.setKeepAlive(Boolean.TRUE.toString());
+        }
         return httpClientInputs;
     }
 
@@ -176,12 +247,11 @@ public class WSManRemoteShellService {
     private String createShell(CSHttpClient csHttpClient, HttpClientInputs httpClientInputs, WSManRequestInputs wsManRequestInputs)
             throws RuntimeException, IOException, URISyntaxException,
             TransformerException, XPathExpressionException, SAXException, ParserConfigurationException {
-        String document = ResourceLoader.loadAsString(CREATE_SHELL_REQUEST_XML);
-        document = createCreateShellRequestBody(document, httpClientInputs.getUrl(), String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()),
+        String document = createCreateShellRequestBody(WSManRequestTemplate.load(CREATE_SHELL_REQUEST_XML), httpClientInputs.getUrl(), String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()),
                 wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
         Map<String, String> createShellResult = executeRequest(csHttpClient, httpClientInputs, document);
-        return getResourceId(createShellResult.get(RETURN_RESULT), CREATE_RESPONSE_ACTION, CREATE_RESPONSE_SHELL_ID_XPATH,
-                SHELL_ID_NOT_RETRIEVED);
+        WSManResponse createShellResponse = XMLUtils.parseWSManResponse(createShellResult.get(RETURN_RESULT));
+        return getResourceId(createShellResponse, CREATE_RESPONSE_ACTION, createShellResponse.getShellId(), SHELL_ID_NOT_RETRIEVED);
     }
 
     /**
@@ -203,17 +273,28 @@ public class WSManRemoteShellService {
     private String executeCommand(CSHttpClient csHttpClient, HttpClientInputs httpClientInputs, String shellId,
                                   WSManRequestInputs wsManRequestInputs, String command) throws RuntimeException,
             IOException, URISyntaxException, TransformerException, XPathExpressionException, SAXException, ParserConfigurationException {
-        String documentStr = ResourceLoader.loadAsString(EXECUTE_COMMAND_REQUEST_XML);
-        documentStr = createExecuteCommandRequestBody(documentStr, httpClientInputs.getUrl(), shellId, command, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()),
+        WSManResponse executeCommandResponse = sendExecuteCommand(csHttpClient, httpClientInputs, shellId, wsManRequestInputs, command);
+        return getResourceId(executeCommandResponse, COMMAND_RESPONSE_ACTION, executeCommandResponse.getCommandId(), COMMAND_ID_NOT_RETRIEVED);
+    }
+
+    /**
+     * Sends the request that starts the command on the remote shell and returns the parsed response, which may be a fault.
+     */
+    private WSManResponse sendExecuteCommand(CSHttpClient csHttpClient, HttpClientInputs httpClientInputs, String shellId,
+                                             WSManRequestInputs wsManRequestInputs, String command) throws RuntimeException,
+            IOException, URISyntaxException, TransformerException, XPathExpressionException, SAXException, ParserConfigurationException {
+        String documentStr = createExecuteCommandRequestBody(WSManRequestTemplate.load(EXECUTE_COMMAND_REQUEST_XML), httpClientInputs.getUrl(), shellId, command, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()),
                 wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
         commandExecutionStartTime = System.currentTimeMillis() / 1000;
         Map<String, String> executeCommandResult = executeRequest(csHttpClient, httpClientInputs, documentStr);
-        return getResourceId(executeCommandResult.get(RETURN_RESULT), COMMAND_RESPONSE_ACTION, COMMAND_RESULT_COMMAND_ID_XPATH,
-                COMMAND_ID_NOT_RETRIEVED);
+        return XMLUtils.parseWSManResponse(executeCommandResult.get(RETURN_RESULT));
     }
 
     /**
      * Waits for a specific command that is running on a remote shell to finnish it's execution.
+     * The output of the command is decoded as the Receive responses arrive. The service holds each Receive request until
+     * the command has new output or the OperationTimeout expires, so a new request is sent right after a response with
+     * output, while responses without output are followed by an increasing delay.
      *
      * @param csHttpClient
      * @param httpClientInputs
@@ -235,25 +316,36 @@ public class WSManRemoteShellService {
                                                      String shellId, String commandId, WSManRequestInputs wsManRequestInputs) throws RuntimeException,
             IOException, URISyntaxException, TransformerException, TimeoutException, XPathExpressionException, SAXException,
             ParserConfigurationException, InterruptedException {
-        String documentStr = ResourceLoader.loadAsString(RECEIVE_REQUEST_XML);
-        documentStr = createReceiveRequestBody(documentStr, httpClientInputs.getUrl(), shellId, commandId, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()), wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
-        Map<String, String> receiveResult;
+        String documentStr = createReceiveRequestBody(WSManRequestTemplate.load(RECEIVE_REQUEST_XML), httpClientInputs.getUrl(), shellId, commandId, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()), wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
+        CommandOutputBuffer stdout = new CommandOutputBuffer(Charset.defaultCharset(), wsManRequestInputs.getMaxOutputSize());
+        CommandOutputBuffer stderr = new CommandOutputBuffer(Charset.defaultCharset(), wsManRequestInputs.getMaxOutputSize());
+        long pollDelay = MIN_RECEIVE_POLL_DELAY;
         while (true) {
-            receiveResult = executeRequest(csHttpClient, httpClientInputs, documentStr);
+            Map<String, String> receiveResult = executeRequest(csHttpClient, httpClientInputs, documentStr);
             if (executionIsTimedOut(commandExecutionStartTime, wsManRequestInputs.getOperationTimeout())) {
                 throw new TimeoutException(EXECUTION_TIMED_OUT);
-            } else if (WSManUtils.isSpecificResponseAction(receiveResult.get(RETURN_RESULT), RECEIVE_RESPONSE_ACTION) &&
-                    WSManUtils.commandExecutionIsDone(receiveResult.get(RETURN_RESULT))) {
-                return processCommandExecutionResponse(receiveResult);
-            } else if (WSManUtils.isFaultResponse(receiveResult.get(RETURN_RESULT))) {
-                throw new RuntimeException(WSManUtils.getResponseFault(receiveResult.get(RETURN_RESULT)));
             }
-
-            try {
-                Thread.sleep(200);
-            } catch (InterruptedException e) {
-                throw e;
+            WSManResponse receiveResponse = XMLUtils.parseWSManResponse(receiveResult.get(RETURN_RESULT));
+            boolean receivedOutput = false;
+            if (WSManUtils.isSpecificResponseAction(receiveResponse, RECEIVE_RESPONSE_ACTION)) {
+                receivedOutput = appendResponseStreams(receiveResponse, stdout, stderr);
+                if (WSManUtils.commandExecutionIsDone(receiveResponse)) {
+                    return processCommandExecutionResponse(receiveResponse, stdout, stderr);
+                }
             }
+            if (WSManUtils.isOperationTimeoutFault(receiveResponse)) {
+                // the service held the request for the whole OperationTimeout without new output
+                continue;
+            } else if (WSManUtils.isFaultResponse(receiveResponse)) {
+                throw new RuntimeException(WSManUtils.getResponseFault(receiveResponse));
+            } else if (receivedOutput) {
+                // the command is producing output, ask for the next part right away
+                pollDelay = MIN_RECEIVE_POLL_DELAY;
+                continue;
+            }
+
+            Thread.sleep(pollDelay);
+            pollDelay = Math.min(pollDelay * 2, MAX_RECEIVE_POLL_DELAY);
         }
 
     }
@@ -263,26 +355,21 @@ public class WSManRemoteShellService {
      *
      * @param response
      * @param resourceResponseAction
-     * @param resourceIdXpath
+     * @param resourceId                 The resource id read from the response.
      * @param resourceIdExceptionMessage
-     * @return
-     * @throws ParserConfigurationException
-     * @throws SAXException
-     * @throws XPathExpressionException
-     * @throws IOException
+     * @return the resource id.
      */
-    private String getResourceId(String response, String resourceResponseAction, String resourceIdXpath, String resourceIdExceptionMessage) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
+    private String getResourceId(WSManResponse response, String resourceResponseAction, String resourceId, String resourceIdExceptionMessage) {
         if (WSManUtils.isSpecificResponseAction(response, resourceResponseAction)) {
-            String shellId = XMLUtils.parseXml(response, resourceIdXpath);
-            if (StringUtils.isNotBlank(shellId)) {
-                return shellId;
+            if (StringUtils.isNotBlank(resourceId)) {
+                return resourceId;
             } else {
                 throw new RuntimeException(resourceIdExceptionMessage);
             }
         } else if (WSManUtils.isFaultResponse(response)) {
             throw new RuntimeException(WSManUtils.getResponseFault(response));
         } else {
-            throw new RuntimeException(UNEXPECTED_SERVICE_RESPONSE + response);
+            throw new RuntimeException(UNEXPECTED_SERVICE_RESPONSE + response.getXml());
         }
     }
 
@@ -303,57 +390,53 @@ public class WSManRemoteShellService {
      */
     private void deleteShell(CSHttpClient csHttpClient, HttpClientInputs httpClientInputs, String shellId, WSManRequestInputs wsManRequestInputs)
             throws RuntimeException, IOException, URISyntaxException, TransformerException, XPathExpressionException, SAXException, ParserConfigurationException {
-        String documentStr = ResourceLoader.loadAsString(DELETE_SHELL_REQUEST_XML);
-        documentStr = createDeleteShellRequestBody(documentStr, httpClientInputs.getUrl(), shellId, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()), wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
+        String documentStr = createDeleteShellRequestBody(WSManRequestTemplate.load(DELETE_SHELL_REQUEST_XML), httpClientInputs.getUrl(), shellId, String.valueOf(wsManRequestInputs.getMaxEnvelopeSize()), wsManRequestInputs.getWinrmLocale(), String.valueOf(wsManRequestInputs.getOperationTimeout()));
         Map<String, String> deleteShellResult = executeRequest(csHttpClient, httpClientInputs, documentStr);
-        if (WSManUtils.isSpecificResponseAction(deleteShellResult.get(RETURN_RESULT), DELETE_RESPONSE_ACTION)) {
+        WSManResponse deleteShellResponse = XMLUtils.parseWSManResponse(deleteShellResult.get(RETURN_RESULT));
+        if (WSManUtils.isSpecificResponseAction(deleteShellResponse, DELETE_RESPONSE_ACTION)) {
             return;
-        } else if (WSManUtils.isFaultResponse(deleteShellResult.get(RETURN_RESULT))) {
-            throw new RuntimeException(WSManUtils.getResponseFault(deleteShellResult.get(RETURN_RESULT)));
+        } else if (WSManUtils.isFaultResponse(deleteShellResponse)) {
+            throw new RuntimeException(WSManUtils.getResponseFault(deleteShellResponse));
         } else {
             throw new RuntimeException(UNEXPECTED_SERVICE_RESPONSE + deleteShellResult.get(RETURN_RESULT));
         }
     }
 
     /**
-     * This method separates the stdout and stderr response streams from the received execution response.
+     * Decodes the stdout and stderr streams of a Receive response into the output collected so far.
      *
-     * @param receiveResult A map containing the response from the service.
-     * @return a map containing the stdout, stderr streams and the script exit code.
-     * @throws ParserConfigurationException
-     * @throws SAXException
-     * @throws XPathExpressionException
-     * @throws IOException
+     * @param receiveResponse The parsed response from the service.
+     * @param stdout
+     * @param stderr
+     * @return true if the response contained output.
      */
-    private Map<String, String> processCommandExecutionResponse(Map<String, String> receiveResult) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        Map<String, String> scriptResults = new HashMap<>();
-        scriptResults.put(RETURN_RESULT, buildResultFromResponseStreams(receiveResult.get(RETURN_RESULT), OutputStream.STDOUT));
-        scriptResults.put(Constants.OutputNames.STDERR, buildResultFromResponseStreams(receiveResult.get(RETURN_RESULT), OutputStream.STDERR));
-        scriptResults.put(Constants.OutputNames.SCRIPT_EXIT_CODE, WSManUtils.getScriptExitCode(receiveResult.get(RETURN_RESULT)));
-        return scriptResults;
+    private boolean appendResponseStreams(WSManResponse receiveResponse, CommandOutputBuffer stdout, CommandOutputBuffer stderr) {
+        List<String> stdoutStreams = receiveResponse.getStreams(OutputStream.STDOUT.getValue());
+        List<String> stderrStreams = receiveResponse.getStreams(OutputStream.STDERR.getValue());
+        for (String stream : stdoutStreams) {
+            stdout.append(stream);
+        }
+        for (String stream : stderrStreams) {
+            stderr.append(stream);
+        }
+        return !stdoutStreams.isEmpty() || !stderrStreams.isEmpty();
     }
 
     /**
-     * Constructs the executed command response from multiple streams of data containing the encoded result of the execution.
+     * This method builds the script results from the collected stdout and stderr streams and the last execution response.
      *
-     * @param response
-     * @param outputStream
-     * @return the decoded result of the command in a string.
-     * @throws ParserConfigurationException
-     * @throws SAXException
-     * @throws XPathExpressionException
-     * @throws IOException
+     * @param receiveResponse The parsed response from the service, which reports the end of the command.
+     * @param stdout
+     * @param stderr
+     * @return a map containing the stdout, stderr streams and the script exit code.
      */
-    private String buildResultFromResponseStreams(String response, OutputStream outputStream) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        StringBuilder commandResult = new StringBuilder();
-        int noOfStreams = WSManUtils.countStreamElements(response);
-        for (int streamNo = 0; streamNo < noOfStreams; streamNo++) {
-            String stream = XMLUtils.parseXml(response, String.format(RECEIVE_RESPONSE_XPATH, outputStream.getValue(), streamNo));
-            if (!"DQo=".equals(stream)) {
-                commandResult.append(EncoderDecoder.decodeBase64String(stream));
-            }
-        }
-        return commandResult.toString();
+    private Map<String, String> processCommandExecutionResponse(WSManResponse receiveResponse, CommandOutputBuffer stdout, CommandOutputBuffer stderr) {
+        Map<String, String> scriptResults = new HashMap<>();
+        scriptResults.put(RETURN_RESULT, stdout.getOutput());
+        scriptResults.put(Constants.OutputNames.STDERR, stderr.getOutput());
+        scriptResults.put(Constants.OutputNames.SCRIPT_EXIT_CODE, WSManUtils.getScriptExitCode(receiveResponse));
+        scriptResults.put(Constants.OutputNames.OUTPUT_TRUNCATED, String.valueOf(stdout.isTruncated() || stderr.isTruncated()));
+        return scriptResults;
     }
 
     /**
@@ -373,44 +456,38 @@ public class WSManRemoteShellService {
         return false;
     }
 
-    private String createCreateShellRequestBody(String doc, String url, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
-        doc = replaceCommonPlaceholders(doc, url, maxEnvelopeSize, winrmLocale, operationTimeout);
-        return replacePlaceholder(doc, MESSAGE_ID_PLACEHOLDER_NAME, UUID_LABEL + UUID.randomUUID().toString());
+    private String createCreateShellRequestBody(WSManRequestTemplate template, String url, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
+        return template.render(createCommonPlaceholderValues(url, maxEnvelopeSize, winrmLocale, operationTimeout));
     }
 
-    private String createExecuteCommandRequestBody(String doc, String url, String shellId, String command, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
-        doc = replaceCommonPlaceholders(doc, url, maxEnvelopeSize, winrmLocale, operationTimeout);
-        doc = replacePlaceholder(doc, SHELL_ID_PLACEHOLDER_NAME, shellId);
-        doc = replacePlaceholder(doc, MESSAGE_ID_PLACEHOLDER_NAME, UUID_LABEL + UUID.randomUUID().toString());
-        return replacePlaceholder(doc, COMMAND_PLACEHOLDER_NAME, command);
+    private String createExecuteCommandRequestBody(WSManRequestTemplate template, String url, String shellId, String command, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
+        Map<String, String> values = createCommonPlaceholderValues(url, maxEnvelopeSize, winrmLocale, operationTimeout);
+        values.put(SHELL_ID_PLACEHOLDER_NAME, shellId);
+        values.put(COMMAND_PLACEHOLDER_NAME, command);
+        return template.render(values);
     }
 
-    private String createReceiveRequestBody(String doc, String url, String shellId, String commandId, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
-        doc = replaceCommonPlaceholders(doc, url, maxEnvelopeSize, winrmLocale, operationTimeout);
-        doc = replacePlaceholder(doc, SHELL_ID_PLACEHOLDER_NAME, shellId);
-        doc = replacePlaceholder(doc, MESSAGE_ID_PLACEHOLDER_NAME, UUID_LABEL + UUID.randomUUID().toString());
-        return replacePlaceholder(doc, COMMAND_ID_PLACEHOLDER_NAME, commandId);
+    private String createReceiveRequestBody(WSManRequestTemplate template, String url, String shellId, String commandId, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
+        Map<String, String> values = createCommonPlaceholderValues(url, maxEnvelopeSize, winrmLocale, operationTimeout);
+        values.put(SHELL_ID_PLACEHOLDER_NAME, shellId);
+        values.put(COMMAND_ID_PLACEHOLDER_NAME, commandId);
+        return template.render(values);
     }
 
-    private String createDeleteShellRequestBody(String doc, String url, String shellId, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
-        doc = replaceCommonPlaceholders(doc, url, maxEnvelopeSize, winrmLocale, operationTimeout);
-        doc = replacePlaceholder(doc, SHELL_ID_PLACEHOLDER_NAME, shellId);
-        return replacePlaceholder(doc, MESSAGE_ID_PLACEHOLDER_NAME, UUID_LABEL + UUID.randomUUID().toString());
+    private String createDeleteShellRequestBody(WSManRequestTemplate template, String url, String shellId, String maxEnvelopeSize, String winrmLocale, String operationTimeout) throws RuntimeException {
+        Map<String, String> values = createCommonPlaceholderValues(url, maxEnvelopeSize, winrmLocale, operationTimeout);
+        values.put(SHELL_ID_PLACEHOLDER_NAME, shellId);
+        return template.render(values);
     }
 
-    private String replaceCommonPlaceholders(String doc, String url, String maxEnvelopeSize, String winrmLocale, String operationTimeout) {
-        doc = replacePlaceholder(doc, SERVICE_ADDRESS_PLACEHOLDER_NAME, url);
-        doc = replacePlaceholder(doc, MAX_ENVELOPE_SIZE_PLACEHOLDER_NAME, maxEnvelopeSize);
-        doc = replacePlaceholder(doc, WINRM_LOCALE_PLACEHOLDER_NAME, winrmLocale);
-        return replacePlaceholder(doc, OPERATION_TIMEOUT_PLACEHOLDER_NAME, operationTimeout);
-    }
-
-    private String replacePlaceholder(String document, String placeholderName, String placeholderValue) throws RuntimeException {
-        if (StringUtils.containsIgnoreCase(document, placeholderName)) {
-            return StringUtils.replace(document, placeholderName, placeholderValue);
-        } else {
-            throw new RuntimeException(PLACEHOLDER_NOT_FOUND + placeholderName);
-        }
+    private Map<String, String> createCommonPlaceholderValues(String url, String maxEnvelopeSize, String winrmLocale, String operationTimeout) {
+        Map<String, String> values = new HashMap<>();
+        values.put(SERVICE_ADDRESS_PLACEHOLDER_NAME, url);
+        values.put(MAX_ENVELOPE_SIZE_PLACEHOLDER_NAME, maxEnvelopeSize);
+        values.put(WINRM_LOCALE_PLACEHOLDER_NAME, winrmLocale);
+        values.put(OPERATION_TIMEOUT_PLACEHOLDER_NAME, operationTimeout);
+        values.put(MESSAGE_ID_PLACEHOLDER_NAME, UUID_LABEL + UUID.randomUUID().toString());
+        return values;
     }
 
     private URL buildURL(WSManRequestInputs wsManRequestInputs, String resource) throws MalformedURLException {
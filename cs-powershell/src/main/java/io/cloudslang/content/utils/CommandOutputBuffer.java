@@ -0,0 +1,101 @@
+package io.cloudslang.content.utils;
+
+import org.apache.commons.codec.binary.Base64;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Collects one output stream of a command from the base64 chunks of the Receive responses. Each chunk is decoded as
+ * soon as it arrives, through a fixed size char buffer, and a character split between two chunks is completed with the
+ * bytes of the next chunk. At most maxOutputSize characters are kept, if it is greater than 0, the rest of the output
+ * is discarded and the buffer is marked as truncated.
+ */
+public class CommandOutputBuffer {
+
+    private static final int DECODE_BUFFER_SIZE = 8192;
+    private static final String NEW_LINE_CHUNK = "DQo=";
+
+    private final StringBuilder output = new StringBuilder();
+    private final CharsetDecoder decoder;
+    private final CharBuffer decodeBuffer = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+    private final int maxOutputSize;
+    private ByteBuffer pendingBytes = ByteBuffer.allocate(0);
+    private boolean truncated;
+
+    /**
+     * @param charset       The charset of the command output.
+     * @param maxOutputSize The maximum number of characters kept, 0 or less to keep the whole output.
+     */
+    public CommandOutputBuffer(Charset charset, int maxOutputSize) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.maxOutputSize = maxOutputSize;
+    }
+
+    /**
+     * Decodes a base64 chunk of the stream. Chunks holding only a new line, and every chunk once the output is
+     * truncated, are skipped.
+     *
+     * @param chunk The base64 content of a Stream element.
+     */
+    public void append(String chunk) {
+        if (truncated || NEW_LINE_CHUNK.equals(chunk)) {
+            return;
+        }
+        byte[] bytes = Base64.decodeBase64(chunk);
+        ByteBuffer input;
+        if (pendingBytes.hasRemaining()) {
+            input = ByteBuffer.allocate(pendingBytes.remaining() + bytes.length);
+            input.put(pendingBytes).put(bytes).flip();
+        } else {
+            input = ByteBuffer.wrap(bytes);
+        }
+        decode(input, false);
+        pendingBytes = input.hasRemaining() ? input.slice() : ByteBuffer.allocate(0);
+    }
+
+    /**
+     * @return the decoded output, with the bytes of an incomplete trailing character replaced.
+     */
+    public String getOutput() {
+        decode(pendingBytes, true);
+        pendingBytes = ByteBuffer.allocate(0);
+        decodeBuffer.clear();
+        decoder.flush(decodeBuffer);
+        keep(decodeBuffer);
+        decoder.reset();
+        return output.toString();
+    }
+
+    /**
+     * @return true if part of the output was discarded because it exceeded the maximum output size.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private void decode(ByteBuffer input, boolean endOfInput) {
+        CoderResult result;
+        do {
+            decodeBuffer.clear();
+            result = decoder.decode(input, decodeBuffer, endOfInput);
+            keep(decodeBuffer);
+        } while (result.isOverflow());
+    }
+
+    private void keep(CharBuffer chars) {
+        chars.flip();
+        int room = maxOutputSize - output.length();
+        if (maxOutputSize > 0 && chars.remaining() > room) {
+            truncated = true;
+            chars.limit(chars.position() + Math.max(room, 0));
+        }
+        output.append(chars);
+    }
+}
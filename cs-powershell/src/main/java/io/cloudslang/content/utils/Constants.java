@@ -13,14 +13,22 @@ public class Constants {
         public static final String WINRM_LOCALE = "winrmLocale";
         public static final String PROTOCOL = "protocol";
         public static final String OPERATION_TIMEOUT = "operationTimeout";
+        public static final String REUSE_SHELL = "reuseShell";
+        public static final String MAX_OUTPUT_SIZE = "maxOutputSize";
+        public static final String INPUT_HOSTS = "hosts";
+        public static final String HOSTS_DELIMITER = "hostsDelimiter";
+        public static final String CONCURRENCY = "concurrency";
     }
 
     public static final class OutputNames {
         public static final String RETURN_RESULT = "returnResult";
         public static final String STDERR = "stderr";
         public static final String SCRIPT_EXIT_CODE = "scriptExitCode";
+        public static final String OUTPUT_TRUNCATED = "outputTruncated";
         public static final String EXCEPTION = "exception";
         public static final String RETURN_CODE = "returnCode";
+        public static final String HOST = "host";
+        public static final String FAILED_HOSTS = "failedHosts";
     }
 
     public static final class ReturnCodes {
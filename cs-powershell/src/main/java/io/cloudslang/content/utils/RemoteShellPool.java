@@ -0,0 +1,363 @@
+package io.cloudslang.content.utils;
+
+import io.cloudslang.content.entities.WSManRequestInputs;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of WinRM remote shells shared by the executions of the PowerShell operations, so a script does not pay for
+ * the creation of a shell, and of its process on the Windows host, when a shell for the same host and credentials is
+ * already opened.
+ * <p/>
+ * A shell runs one command at a time: the commands sent to a host use the free shells, then new shells are created
+ * up to the shells limit of a host, then the commands wait for a free shell. Idle shells are deleted after the idle
+ * timeout and the shells are retired before the lifetime requested when they were created runs out.
+ */
+public class RemoteShellPool {
+    public static final String EVICTION_THREAD_NAME = "winrm-shell-pool-eviction";
+    public static final int DEFAULT_MAX_SHELLS_PER_HOST = 5;
+    public static final long DEFAULT_SHELL_IDLE_TIMEOUT = 60000;
+    // the shells are created with a lifetime of 1000 seconds, see templates/CreateShell.xml
+    public static final long DEFAULT_SHELL_MAX_AGE = 900000;
+
+    private static final RemoteShellPool INSTANCE = new RemoteShellPool(DEFAULT_MAX_SHELLS_PER_HOST,
+            DEFAULT_SHELL_IDLE_TIMEOUT, DEFAULT_SHELL_MAX_AGE);
+
+    private final Map<String, HostShells> hosts = new ConcurrentHashMap<>();
+    private final int maxShellsPerHost;
+    private final long idleTimeout;
+    private final long maxAge;
+    private ScheduledExecutorService evictionExecutor;
+
+    /**
+     * @param maxShellsPerHost The maximum number of shells opened on the same host with the same credentials.
+     * @param idleTimeout      The time in milliseconds after which an unused shell is deleted.
+     * @param maxAge           The time in milliseconds after which a shell is deleted instead of being reused.
+     */
+    public RemoteShellPool(int maxShellsPerHost, long idleTimeout, long maxAge) {
+        if (maxShellsPerHost < 1) {
+            throw new IllegalArgumentException("The WinRM shell pool limit should be greater than 0.");
+        }
+        this.maxShellsPerHost = maxShellsPerHost;
+        this.idleTimeout = idleTimeout;
+        this.maxAge = maxAge;
+    }
+
+    public static RemoteShellPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the key of the shells that can be shared: the same WinRM endpoint reached the same way,
+     * the same credentials and the same locale.
+     */
+    public static String buildShellKey(WSManRequestInputs wsManRequestInputs) {
+        return wsManRequestInputs.getProtocol() + "://" + wsManRequestInputs.getHost() + ":" + wsManRequestInputs.getPort() + "-" +
+                wsManRequestInputs.getUsername() + "-" + digest(wsManRequestInputs.getPassword()) + "-" +
+                wsManRequestInputs.getAuthType() + "-" + wsManRequestInputs.getKerberosConfFile() + "-" +
+                wsManRequestInputs.getKerberosLoginConfFile() + "-" + wsManRequestInputs.getKerberosSkipPortForLookup() + "-" +
+                wsManRequestInputs.getProxyHost() + ":" + wsManRequestInputs.getProxyPort() + "-" +
+                wsManRequestInputs.getProxyUsername() + "-" + digest(wsManRequestInputs.getProxyPassword()) + "-" +
+                wsManRequestInputs.getTrustAllRoots() + "-" + wsManRequestInputs.getX509HostnameVerifier() + "-" +
+                wsManRequestInputs.getKeystore() + "-" + digest(wsManRequestInputs.getKeystorePassword()) + "-" +
+                wsManRequestInputs.getTrustKeystore() + "-" + digest(wsManRequestInputs.getTrustPassword()) + "-" +
+                wsManRequestInputs.getWinrmLocale();
+    }
+
+    /**
+     * Leases a free shell of the host, creating a new one if the limit allows it.
+     *
+     * @param shellKey     The key of the host and credentials, see {@link #buildShellKey}.
+     * @param shellFactory Creates a new shell when no pooled shell is free, and deletes it when it leaves the pool.
+     * @param waitTimeout  The time in milliseconds to wait for a free shell when the limit is reached.
+     * @return the leased shell, it should be given back with {@link #release(PooledShell, boolean)}.
+     */
+    public PooledShell lease(String shellKey, ShellFactory shellFactory, long waitTimeout) {
+        startEviction();
+        HostShells hostShells = getHostShells(shellKey);
+        long deadline = System.currentTimeMillis() + waitTimeout;
+        List<PooledShell> toDelete = new ArrayList<>();
+        try {
+            synchronized (hostShells) {
+                while (true) {
+                    evictExpired(hostShells, toDelete);
+                    for (PooledShell pooledShell : hostShells.shells) {
+                        if (!pooledShell.leased) {
+                            pooledShell.leased = true;
+                            pooledShell.uses++;
+                            return pooledShell;
+                        }
+                    }
+                    if (hostShells.shells.size() + hostShells.creating < maxShellsPerHost) {
+                        hostShells.creating++;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new RuntimeException("Timed out waiting for a free WinRM shell.");
+                    }
+                    try {
+                        hostShells.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for a free WinRM shell.", e);
+                    }
+                }
+            }
+        } finally {
+            delete(toDelete);
+        }
+        return create(hostShells, shellFactory);
+    }
+
+    /**
+     * Gives back a leased shell.
+     *
+     * @param pooledShell The leased shell.
+     * @param reusable    If false the shell is deleted, e.g. when its command failed or is still running.
+     */
+    public void release(PooledShell pooledShell, boolean reusable) {
+        HostShells hostShells = pooledShell.hostShells;
+        boolean delete;
+        synchronized (hostShells) {
+            pooledShell.leased = false;
+            pooledShell.lastUsed = System.currentTimeMillis();
+            delete = !reusable || pooledShell.invalid || pooledShell.lastUsed - pooledShell.created > maxAge;
+            if (delete) {
+                pooledShell.invalid = true;
+                hostShells.shells.remove(pooledShell);
+            }
+            hostShells.notifyAll();
+        }
+        if (delete) {
+            delete(pooledShell);
+        }
+    }
+
+    /**
+     * Deletes the free shells of the host. It is used when a pooled shell was found dead, e.g. after the
+     * WinRM service of the host was restarted, since the other shells of the host are most likely dead too.
+     */
+    public void invalidate(String shellKey) {
+        HostShells hostShells = hosts.get(shellKey);
+        if (hostShells == null) {
+            return;
+        }
+        List<PooledShell> toDelete = new ArrayList<>();
+        synchronized (hostShells) {
+            Iterator<PooledShell> iterator = hostShells.shells.iterator();
+            while (iterator.hasNext()) {
+                PooledShell pooledShell = iterator.next();
+                if (!pooledShell.leased) {
+                    pooledShell.invalid = true;
+                    iterator.remove();
+                    toDelete.add(pooledShell);
+                }
+            }
+        }
+        delete(toDelete);
+    }
+
+    /**
+     * Deletes the shells that were not used for longer than the idle timeout or that are too old.
+     */
+    public void evictExpired() {
+        List<PooledShell> toDelete = new ArrayList<>();
+        for (HostShells hostShells : hosts.values()) {
+            synchronized (hostShells) {
+                evictExpired(hostShells, toDelete);
+            }
+        }
+        delete(toDelete);
+    }
+
+    /**
+     * Deletes all the shells that are not leased and stops the eviction thread.
+     * The leased shells are deleted when they are released.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (evictionExecutor != null) {
+                evictionExecutor.shutdownNow();
+                evictionExecutor = null;
+            }
+        }
+        List<PooledShell> toDelete = new ArrayList<>();
+        for (HostShells hostShells : hosts.values()) {
+            synchronized (hostShells) {
+                Iterator<PooledShell> iterator = hostShells.shells.iterator();
+                while (iterator.hasNext()) {
+                    PooledShell pooledShell = iterator.next();
+                    pooledShell.invalid = true;
+                    iterator.remove();
+                    if (!pooledShell.leased) {
+                        toDelete.add(pooledShell);
+                    }
+                }
+            }
+        }
+        delete(toDelete);
+    }
+
+    /**
+     * @return the number of shells of the pool, leased or free.
+     */
+    public int size() {
+        int size = 0;
+        for (HostShells hostShells : hosts.values()) {
+            synchronized (hostShells) {
+                size += hostShells.shells.size();
+            }
+        }
+        return size;
+    }
+
+    private HostShells getHostShells(String shellKey) {
+        HostShells hostShells = hosts.get(shellKey);
+        if (hostShells == null) {
+            synchronized (hosts) {
+                hostShells = hosts.get(shellKey);
+                if (hostShells == null) {
+                    hostShells = new HostShells();
+                    hosts.put(shellKey, hostShells);
+                }
+            }
+        }
+        return hostShells;
+    }
+
+    private void evictExpired(HostShells hostShells, List<PooledShell> toDelete) {
+        long now = System.currentTimeMillis();
+        Iterator<PooledShell> iterator = hostShells.shells.iterator();
+        while (iterator.hasNext()) {
+            PooledShell pooledShell = iterator.next();
+            if (!pooledShell.leased && (now - pooledShell.lastUsed > idleTimeout || now - pooledShell.created > maxAge)) {
+                pooledShell.invalid = true;
+                iterator.remove();
+                toDelete.add(pooledShell);
+            }
+        }
+    }
+
+    private PooledShell create(HostShells hostShells, ShellFactory shellFactory) {
+        String shellId;
+        try {
+            shellId = shellFactory.create();
+        } catch (Exception e) {
+            synchronized (hostShells) {
+                hostShells.creating--;
+                hostShells.notifyAll();
+            }
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+        PooledShell pooledShell = new PooledShell(hostShells, shellFactory, shellId);
+        synchronized (hostShells) {
+            hostShells.creating--;
+            hostShells.shells.add(pooledShell);
+        }
+        return pooledShell;
+    }
+
+    private void delete(List<PooledShell> pooledShells) {
+        for (PooledShell pooledShell : pooledShells) {
+            delete(pooledShell);
+        }
+    }
+
+    private void delete(PooledShell pooledShell) {
+        try {
+            pooledShell.shellFactory.delete(pooledShell.shellId);
+        } catch (Exception ignore) {
+            // the shell is deleted by the server when its lifetime or idle timeout expires
+        }
+    }
+
+    private synchronized void startEviction() {
+        if (evictionExecutor == null) {
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, EVICTION_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            long interval = Math.max(1000, idleTimeout / 2);
+            evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictExpired();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static String digest(String value) {
+        if (value == null) {
+            return "";
+        }
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, messageDigest.digest(value.getBytes(StandardCharsets.UTF_8))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates and deletes the shells of a host.
+     */
+    public interface ShellFactory {
+        String create() throws Exception;
+
+        void delete(String shellId) throws Exception;
+    }
+
+    /**
+     * A shell of the pool.
+     */
+    public static class PooledShell {
+        private final HostShells hostShells;
+        private final ShellFactory shellFactory;
+        private final String shellId;
+        private final long created = System.currentTimeMillis();
+        private long lastUsed = created;
+        private boolean leased = true;
+        private boolean invalid;
+        private int uses = 1;
+
+        private PooledShell(HostShells hostShells, ShellFactory shellFactory, String shellId) {
+            this.hostShells = hostShells;
+            this.shellFactory = shellFactory;
+            this.shellId = shellId;
+        }
+
+        public String getShellId() {
+            return shellId;
+        }
+
+        /**
+         * @return true if the shell already ran commands before the current lease.
+         */
+        public boolean isReused() {
+            return uses > 1;
+        }
+    }
+
+    private static class HostShells {
+        private final List<PooledShell> shells = new ArrayList<>();
+        private int creating;
+    }
+}
@@ -0,0 +1,137 @@
+package io.cloudslang.content.utils;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A WS-Man request template split once into its literal parts and placeholder slots. Rendering a request appends the
+ * literal parts and the XML escaped placeholder values into a single buffer, instead of reloading the template from
+ * the classpath and replacing every placeholder in a new copy of the document.
+ */
+public class WSManRequestTemplate {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$PLACEHOLDER_FOR_[A-Z_]+");
+    private static final String PLACEHOLDER_NOT_FOUND = "Resource does not contain the expected placeholder name: ";
+    private static final String PLACEHOLDER_VALUE_NOT_FOUND = "No value was given for the placeholder: ";
+    private static final ConcurrentMap<String, WSManRequestTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final String[] literals;
+    private final String[] placeholders;
+    private final Set<String> placeholderNames;
+    private final int literalsLength;
+
+    private WSManRequestTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.placeholders = placeholders.toArray(new String[placeholders.size()]);
+        this.placeholderNames = new HashSet<>(placeholders);
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalsLength = length;
+    }
+
+    /**
+     * Loads and compiles a template from the project resources. Each template is loaded only once.
+     *
+     * @param resourceFileName The name of the resource file.
+     * @return the compiled template.
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    public static WSManRequestTemplate load(String resourceFileName) throws IOException, URISyntaxException {
+        WSManRequestTemplate template = TEMPLATES.get(resourceFileName);
+        if (template == null) {
+            template = compile(ResourceLoader.loadAsString(resourceFileName));
+            WSManRequestTemplate previous = TEMPLATES.putIfAbsent(resourceFileName, template);
+            if (previous != null) {
+                template = previous;
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Splits the template in literal parts and the $PLACEHOLDER_FOR_* slots between them.
+     *
+     * @param template The template document.
+     * @return the compiled template.
+     */
+    public static WSManRequestTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(template);
+        int literalStart = 0;
+        while (matcher.find()) {
+            literals.add(template.substring(literalStart, matcher.start()));
+            placeholders.add(matcher.group());
+            literalStart = matcher.end();
+        }
+        literals.add(template.substring(literalStart));
+        return new WSManRequestTemplate(literals, placeholders);
+    }
+
+    /**
+     * Renders the request document.
+     *
+     * @param values The placeholder values, by placeholder name. The values are XML escaped.
+     * @return the request document.
+     * @throws RuntimeException if a value is given for a placeholder that the template does not contain or a
+     *                          placeholder of the template has no value.
+     */
+    public String render(Map<String, String> values) throws RuntimeException {
+        int length = literalsLength;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            if (!placeholderNames.contains(value.getKey())) {
+                throw new RuntimeException(PLACEHOLDER_NOT_FOUND + value.getKey());
+            }
+            length += value.getValue() == null ? 0 : value.getValue().length();
+        }
+        StringBuilder document = new StringBuilder(length + 64);
+        for (int slot = 0; slot < placeholders.length; slot++) {
+            document.append(literals[slot]);
+            if (!values.containsKey(placeholders[slot])) {
+                throw new RuntimeException(PLACEHOLDER_VALUE_NOT_FOUND + placeholders[slot]);
+            }
+            appendEscaped(document, values.get(placeholders[slot]));
+        }
+        return document.append(literals[placeholders.length]).toString();
+    }
+
+    private static void appendEscaped(StringBuilder document, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    document.append("&amp;");
+                    break;
+                case '<':
+                    document.append("&lt;");
+                    break;
+                case '>':
+                    document.append("&gt;");
+                    break;
+                case '"':
+                    document.append("&quot;");
+                    break;
+                case '\'':
+                    document.append("&apos;");
+                    break;
+                default:
+                    document.append(c);
+            }
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package io.cloudslang.content.utils;
 
+import io.cloudslang.content.entities.WSManResponse;
 import org.apache.commons.lang3.StringUtils;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
-import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -13,51 +10,55 @@ import java.util.UUID;
  */
 public class WSManUtils {
 
-    private static final String HEADER_XPATH = "/Envelope/Header";
-    private static final String FAULT_DETAIL_XPATH = "/Envelope/Body/Fault/Detail/WSManFault/Message";
-    private static final String FAULT_REASON_XPATH = "/Envelope/Body/Fault/Reason";
-    private static final String COMMAND_STATE_XPATH = "/Envelope/Body/ReceiveResponse/CommandState/@State";
-    private static final String COUNT_STREAMS_XPATH = "count(//Envelope/Body/ReceiveResponse/Stream)";
-    private static final String SCRIPT_EXIT_CODE_XPATH = "/Envelope/Body/ReceiveResponse/CommandState/ExitCode";
-
     private static final String DONE_COMMAND_STATE_ACTION = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandState/Done";
     private static final String WSMAN_FAULT_RESPONSE_ACTION = "http://schemas.dmtf.org/wbem/wsman/1/wsman/fault";
     private static final String ADDRESSING_FAULT_RESPONSE_ACTION = "http://schemas.xmlsoap.org/ws/2004/08/addressing/fault";
+    private static final String OPERATION_TIMEOUT_FAULT_CODE = "2150858793";
+    private static final String SHELL_NOT_FOUND_FAULT_CODE = "2150858843";
 
     private WSManUtils() {
     }
 
-    public static boolean isSpecificResponseAction(String response, String responseType) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return StringUtils.isNotEmpty(response) && StringUtils.containsIgnoreCase(XMLUtils.parseXml(response, HEADER_XPATH), responseType);
-    }
-
-    public static String getResponseFault(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return getResponseFaultReason(response) + getResponseFaultDetail(response);
+    public static boolean isSpecificResponseAction(WSManResponse response, String responseType) {
+        return response != null && StringUtils.containsIgnoreCase(response.getAction(), responseType);
     }
 
-    private static String getResponseFaultDetail(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return XMLUtils.parseXml(response, FAULT_DETAIL_XPATH);
+    public static String getResponseFault(WSManResponse response) {
+        return response.getFaultReason() + response.getFaultDetail();
     }
 
-    private static String getResponseFaultReason(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return XMLUtils.parseXml(response, FAULT_REASON_XPATH);
+    public static boolean commandExecutionIsDone(WSManResponse response) {
+        return StringUtils.containsIgnoreCase(response.getCommandState(), DONE_COMMAND_STATE_ACTION);
     }
 
-    public static boolean commandExecutionIsDone(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return StringUtils.containsIgnoreCase(XMLUtils.parseXml(response, COMMAND_STATE_XPATH), DONE_COMMAND_STATE_ACTION);
+    public static boolean isFaultResponse(WSManResponse response) {
+        return isSpecificResponseAction(response, WSMAN_FAULT_RESPONSE_ACTION) || isSpecificResponseAction(response, ADDRESSING_FAULT_RESPONSE_ACTION);
     }
 
-    public static int countStreamElements(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return Integer.parseInt(XMLUtils.parseXml(response, COUNT_STREAMS_XPATH));
+    /**
+     * Checks if the response is the fault sent by the WinRM service when the OperationTimeout of a request expired
+     * before the requested data was available. For a Receive request this only means that the command had no new output.
+     *
+     * @param response The parsed response.
+     * @return true if the response is an operation timeout fault.
+     */
+    public static boolean isOperationTimeoutFault(WSManResponse response) {
+        return isFaultResponse(response) && OPERATION_TIMEOUT_FAULT_CODE.equals(response.getFaultCode());
     }
 
-    public static boolean isFaultResponse(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return StringUtils.isNotEmpty(response) &&
-                (isSpecificResponseAction(response, WSMAN_FAULT_RESPONSE_ACTION) || isSpecificResponseAction(response, ADDRESSING_FAULT_RESPONSE_ACTION));
+    /**
+     * Checks if the response is the fault sent by the WinRM service for a request on a shell that does not exist
+     * anymore, e.g. because it was deleted when the shell idle timeout expired or the service was restarted.
+     *
+     * @param response The parsed response.
+     * @return true if the response is a shell not found fault.
+     */
+    public static boolean isShellNotFoundFault(WSManResponse response) {
+        return isFaultResponse(response) && SHELL_NOT_FOUND_FAULT_CODE.equals(response.getFaultCode());
     }
 
-    public static String getScriptExitCode(String response) throws ParserConfigurationException, SAXException, XPathExpressionException, IOException {
-        return XMLUtils.parseXml(response, SCRIPT_EXIT_CODE_XPATH);
+    public static String getScriptExitCode(WSManResponse response) {
+        return response.getExitCode();
     }
 
     /**
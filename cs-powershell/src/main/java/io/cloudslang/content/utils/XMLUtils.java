@@ -1,16 +1,24 @@
 package io.cloudslang.content.utils;
 
+import io.cloudslang.content.entities.WSManResponse;
+import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Created by giloan on 3/28/2016.
@@ -19,6 +27,22 @@ public class XMLUtils {
 
     private static final String RESPONSE_IS_NOT_WELL_FORMED = "The http response document is not a Well-formed XML: ";
 
+    private static final String ACTION_PATH = "/Envelope/Header/Action";
+    private static final String SELECTOR_PATH = "/Envelope/Body/ResourceCreated/ReferenceParameters/SelectorSet/Selector";
+    private static final String COMMAND_ID_PATH = "/Envelope/Body/CommandResponse/CommandId";
+    private static final String STREAM_PATH = "/Envelope/Body/ReceiveResponse/Stream";
+    private static final String COMMAND_STATE_PATH = "/Envelope/Body/ReceiveResponse/CommandState";
+    private static final String EXIT_CODE_PATH = "/Envelope/Body/ReceiveResponse/CommandState/ExitCode";
+    private static final String FAULT_REASON_PATH = "/Envelope/Body/Fault/Reason";
+    private static final String FAULT_DETAIL_PATH = "/Envelope/Body/Fault/Detail/WSManFault/Message";
+    private static final String WSMAN_FAULT_PATH = "/Envelope/Body/Fault/Detail/WSManFault";
+    private static final String NAME_ATTRIBUTE = "Name";
+    private static final String STATE_ATTRIBUTE = "State";
+    private static final String CODE_ATTRIBUTE = "Code";
+    private static final String SHELL_ID_SELECTOR = "ShellId";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
     private XMLUtils() {
     }
 
@@ -44,4 +68,133 @@ public class XMLUtils {
         XPath xPath = XPathFactory.newInstance().newXPath();
         return xPath.compile(expression).evaluate(document);
     }
+
+    /**
+     * Reads a WS-Man response in a single pass with a pull parser and collects the values needed to process the response:
+     * the action, the shell and command ids, the output streams, the command state and exit code and the fault messages
+     * and code.
+     * The elements are matched by local name, the same way the XPath expressions previously used did. When an element
+     * occurs more than once, the first occurrence is used, except for the output streams which are all kept in order.
+     *
+     * @param xml The WS-Man response.
+     * @return the parsed response. An empty response gives a response object with no values.
+     */
+    public static WSManResponse parseWSManResponse(String xml) {
+        WSManResponse.WSManResponseBuilder builder = new WSManResponse.WSManResponseBuilder().withXml(xml);
+        if (StringUtils.isEmpty(xml)) {
+            return builder.build();
+        }
+        String action = null;
+        String shellId = null;
+        String commandId = null;
+        String commandState = null;
+        String exitCode = null;
+        String faultReason = null;
+        String faultDetail = null;
+        String faultCode = null;
+
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+            StringBuilder path = new StringBuilder();
+            Deque<Integer> parentPathLengths = new ArrayDeque<>();
+            StringBuilder text = new StringBuilder();
+            String capturedPath = null;
+            String streamName = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        parentPathLengths.push(path.length());
+                        path.append('/').append(reader.getLocalName());
+                        if (capturedPath != null) {
+                            break;
+                        }
+                        if (STREAM_PATH.contentEquals(path)) {
+                            streamName = reader.getAttributeValue(null, NAME_ATTRIBUTE);
+                            capturedPath = STREAM_PATH;
+                        } else if (COMMAND_STATE_PATH.contentEquals(path)) {
+                            if (commandState == null) {
+                                commandState = reader.getAttributeValue(null, STATE_ATTRIBUTE);
+                            }
+                        } else if (WSMAN_FAULT_PATH.contentEquals(path)) {
+                            if (faultCode == null) {
+                                faultCode = reader.getAttributeValue(null, CODE_ATTRIBUTE);
+                            }
+                        } else if (SELECTOR_PATH.contentEquals(path)) {
+                            if (SHELL_ID_SELECTOR.equals(reader.getAttributeValue(null, NAME_ATTRIBUTE))) {
+                                capturedPath = SELECTOR_PATH;
+                            }
+                        } else if (ACTION_PATH.contentEquals(path) || COMMAND_ID_PATH.contentEquals(path) || EXIT_CODE_PATH.contentEquals(path)
+                                || FAULT_REASON_PATH.contentEquals(path) || FAULT_DETAIL_PATH.contentEquals(path)) {
+                            capturedPath = path.toString();
+                        }
+                        text.setLength(0);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (capturedPath != null) {
+                            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (capturedPath != null && capturedPath.contentEquals(path)) {
+                            String value = text.toString();
+                            if (STREAM_PATH.equals(capturedPath)) {
+                                if (!value.isEmpty()) {
+                                    builder.withStream(streamName, value);
+                                }
+                            } else if (ACTION_PATH.equals(capturedPath)) {
+                                action = action == null ? value : action;
+                            } else if (SELECTOR_PATH.equals(capturedPath)) {
+                                shellId = shellId == null ? value : shellId;
+                            } else if (COMMAND_ID_PATH.equals(capturedPath)) {
+                                commandId = commandId == null ? value : commandId;
+                            } else if (EXIT_CODE_PATH.equals(capturedPath)) {
+                                exitCode = exitCode == null ? value : exitCode;
+                            } else if (FAULT_REASON_PATH.equals(capturedPath)) {
+                                faultReason = faultReason == null ? value : faultReason;
+                            } else {
+                                faultDetail = faultDetail == null ? value : faultDetail;
+                            }
+                            capturedPath = null;
+                        }
+                        path.setLength(parentPathLengths.pop());
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new RuntimeException(RESPONSE_IS_NOT_WELL_FORMED + xml, e);
+        } finally {
+            closeQuietly(reader);
+        }
+        return builder.withAction(StringUtils.defaultString(action))
+                .withShellId(StringUtils.defaultString(shellId))
+                .withCommandId(StringUtils.defaultString(commandId))
+                .withCommandState(StringUtils.defaultString(commandState))
+                .withExitCode(StringUtils.defaultString(exitCode))
+                .withFaultReason(StringUtils.defaultString(faultReason))
+                .withFaultDetail(StringUtils.defaultString(faultDetail))
+                .withFaultCode(StringUtils.defaultString(faultCode))
+                .build();
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ignored) {
+                // the reader only holds a string reader
+            }
+        }
+    }
 }
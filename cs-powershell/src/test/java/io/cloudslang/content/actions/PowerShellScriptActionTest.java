@@ -45,6 +45,7 @@ public class PowerShellScriptActionTest {
     private static final String PASS = "pass";
     private static final String KEYSTORE = "keystorePath";
     private static final String MAX_ENVELOPE_SIZE = "153600";
+    private static final String MAX_OUTPUT_SIZE = "1048576";
     private static final String SCRIPT = "Get-Host";
     private static final String WINRM_LOCALE_EN_US = "en-US";
     private static final String OPERATION_TIMEOUT = "60";
@@ -91,7 +92,7 @@ public class PowerShellScriptActionTest {
 
         Map<String, String> result = powerShellScriptAction.execute(LOCALHOST, PORT, HTTPS, USER, PASS, BASIC_AUTH_TYPE, PROXY_HOST, PROXY_PORT,
                 PROXY_USER, PASS, Boolean.TRUE.toString(), X_509_HOSTNAME_VERIFIER_STRICT, TRUST_KEYSTORE, PASS, KERBEROS_CONF_FILE, KERBEROS_LOGIN_CONF_FILE, KERBEROS_SKIP_PORT_FOR_LOOKUP, KEYSTORE, PASS,
-                MAX_ENVELOPE_SIZE, SCRIPT, WINRM_LOCALE_EN_US, OPERATION_TIMEOUT);
+                MAX_ENVELOPE_SIZE, SCRIPT, WINRM_LOCALE_EN_US, OPERATION_TIMEOUT, Boolean.TRUE.toString(), MAX_OUTPUT_SIZE);
 
         verifyNew(WSManRemoteShellService.class).withNoArguments();
         verifyMockInteractions();
@@ -104,7 +105,7 @@ public class PowerShellScriptActionTest {
 
         Map<String, String> result = powerShellScriptAction.execute(LOCALHOST, EMPTY_STRING, EMPTY_STRING, USER, PASS, BASIC_AUTH_TYPE, PROXY_HOST, PROXY_PORT,
                 PROXY_USER, PASS, EMPTY_STRING, EMPTY_STRING, TRUST_KEYSTORE, PASS, KERBEROS_CONF_FILE, KERBEROS_LOGIN_CONF_FILE, KERBEROS_SKIP_PORT_FOR_LOOKUP, KEYSTORE, PASS,
-                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING);
+                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING);
 
         verifyNew(WSManRemoteShellService.class).withNoArguments();
         verifyMockInteractions();
@@ -118,7 +119,7 @@ public class PowerShellScriptActionTest {
 
         Map<String, String> result = powerShellScriptAction.execute(LOCALHOST, EMPTY_STRING, EMPTY_STRING, USER, BASIC_AUTH_TYPE, PASS, PROXY_HOST, PROXY_PORT,
                 PROXY_USER, PASS, EMPTY_STRING, EMPTY_STRING, TRUST_KEYSTORE, PASS, KERBEROS_CONF_FILE, KERBEROS_LOGIN_CONF_FILE, KERBEROS_SKIP_PORT_FOR_LOOKUP, KEYSTORE, PASS,
-                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING);
+                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING);
 
         assertTrue(result.get(EXCEPTION).contains(EXCEPTION_MESSAGE));
         assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
@@ -133,7 +134,7 @@ public class PowerShellScriptActionTest {
 
         Map<String, String> result = powerShellScriptAction.execute(LOCALHOST, EMPTY_STRING, EMPTY_STRING, USER, PASS, BASIC_AUTH_TYPE, PROXY_HOST, PROXY_PORT,
                 PROXY_USER, PASS, EMPTY_STRING, EMPTY_STRING, TRUST_KEYSTORE, PASS, KERBEROS_CONF_FILE, KERBEROS_LOGIN_CONF_FILE, KERBEROS_SKIP_PORT_FOR_LOOKUP, KEYSTORE, PASS,
-                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING);
+                EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING);
 
         verifyNew(WSManRemoteShellService.class).withNoArguments();
         verify(serviceMock, times(1)).runCommand(any(WSManRequestInputs.class));
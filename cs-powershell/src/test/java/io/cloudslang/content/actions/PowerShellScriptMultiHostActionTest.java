@@ -0,0 +1,157 @@
+package io.cloudslang.content.actions;
+
+import com.hp.oo.sdk.content.plugin.GlobalSessionObject;
+import com.hp.oo.sdk.content.plugin.SessionResource;
+import io.cloudslang.content.entities.WSManRequestInputs;
+import io.cloudslang.content.services.WSManRemoteShellService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.whenNew;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({PowerShellScriptMultiHostAction.class, WSManRemoteShellService.class})
+public class PowerShellScriptMultiHostActionTest {
+
+    private static final String EMPTY_STRING = "";
+    private static final String USER = "user";
+    private static final String PASS = "pass";
+    private static final String SCRIPT = "Get-Host";
+    private static final String RETURN_CODE = "returnCode";
+    private static final String RETURN_RESULT = "returnResult";
+    private static final String FAILED_HOSTS = "failedHosts";
+    private static final String EXCEPTION = "exception";
+    private static final String SCRIPT_EXIT_CODE = "scriptExitCode";
+    private static final String RETURN_CODE_SUCCESS = "0";
+    private static final String RETURN_CODE_FAILURE = "-1";
+    private static final String UNREACHABLE_HOST = "unreachable";
+    private static final String FAILING_HOST = "failing";
+
+    private final AtomicInteger runningScripts = new AtomicInteger();
+    private final AtomicInteger maxRunningScripts = new AtomicInteger();
+    private PowerShellScriptMultiHostAction action;
+
+    @Mock
+    private WSManRemoteShellService serviceMock;
+
+    @Before
+    public void setUp() throws Exception {
+        action = new PowerShellScriptMultiHostAction();
+        whenNew(WSManRemoteShellService.class).withNoArguments().thenReturn(serviceMock);
+        doAnswer(new Answer<Map<String, String>>() {
+            @Override
+            public Map<String, String> answer(InvocationOnMock invocation) throws Throwable {
+                String host = ((WSManRequestInputs) invocation.getArguments()[0]).getHost();
+                int running = runningScripts.incrementAndGet();
+                synchronized (maxRunningScripts) {
+                    maxRunningScripts.set(Math.max(maxRunningScripts.get(), running));
+                }
+                try {
+                    Thread.sleep(50);
+                } finally {
+                    runningScripts.decrementAndGet();
+                }
+                if (UNREACHABLE_HOST.equals(host)) {
+                    throw new RuntimeException("Connection refused: " + host);
+                }
+                Map<String, String> result = new HashMap<>();
+                result.put(RETURN_RESULT, "output of \"" + host + "\"");
+                result.put(SCRIPT_EXIT_CODE, FAILING_HOST.equals(host) ? "1" : "0");
+                return result;
+            }
+        }).when(serviceMock).runCommand(any(WSManRequestInputs.class));
+    }
+
+    @Test
+    public void testExecuteOnAllHosts() throws Exception {
+        Map<String, String> result = execute("host1, host2,host3", EMPTY_STRING, EMPTY_STRING);
+
+        assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        assertEquals(EMPTY_STRING, result.get(FAILED_HOSTS));
+        assertEquals("[{\"host\":\"host1\",\"returnCode\":\"0\",\"returnResult\":\"output of \\\"host1\\\"\",\"scriptExitCode\":\"0\"}," +
+                "{\"host\":\"host2\",\"returnCode\":\"0\",\"returnResult\":\"output of \\\"host2\\\"\",\"scriptExitCode\":\"0\"}," +
+                "{\"host\":\"host3\",\"returnCode\":\"0\",\"returnResult\":\"output of \\\"host3\\\"\",\"scriptExitCode\":\"0\"}]",
+                result.get(RETURN_RESULT));
+        verify(serviceMock, times(3)).runCommand(any(WSManRequestInputs.class));
+    }
+
+    @Test
+    public void testExecuteReportsFailedHosts() throws Exception {
+        Map<String, String> result = execute("host1;" + UNREACHABLE_HOST + ";" + FAILING_HOST, ";", EMPTY_STRING);
+
+        assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
+        assertEquals(UNREACHABLE_HOST + ";" + FAILING_HOST, result.get(FAILED_HOSTS));
+        assertTrue(result.get(RETURN_RESULT).contains("{\"host\":\"" + UNREACHABLE_HOST + "\",\"returnCode\":\"-1\",\"exception\":\"java.lang.RuntimeException: Connection refused: unreachable"));
+        assertTrue(result.get(RETURN_RESULT).contains("{\"host\":\"" + FAILING_HOST + "\",\"returnCode\":\"-1\",\"returnResult\":\"output of \\\"failing\\\"\",\"scriptExitCode\":\"1\"}"));
+    }
+
+    @Test
+    public void testExecuteRespectsConcurrency() throws Exception {
+        Map<String, String> result = execute("h1,h2,h3,h4,h5,h6,h7,h8", EMPTY_STRING, "3");
+
+        assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        assertTrue(maxRunningScripts.get() <= 3);
+        assertTrue(maxRunningScripts.get() > 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteReleasesConnectionPool() throws Exception {
+        final SessionResource<Map<String, Object>> connectionPoolResource = mock(SessionResource.class);
+        doAnswer(new Answer<Map<String, String>>() {
+            @Override
+            public Map<String, String> answer(InvocationOnMock invocation) throws Throwable {
+                GlobalSessionObject<Map<String, Object>> connectionPoolSessionObject =
+                        ((WSManRequestInputs) invocation.getArguments()[0]).getConnectionPoolSessionObject();
+                connectionPoolSessionObject.setResource(connectionPoolResource);
+                Map<String, String> result = new HashMap<>();
+                result.put(SCRIPT_EXIT_CODE, "0");
+                return result;
+            }
+        }).when(serviceMock).runCommand(any(WSManRequestInputs.class));
+
+        Map<String, String> result = execute("host1", EMPTY_STRING, EMPTY_STRING);
+
+        assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        verify(connectionPoolResource).release();
+    }
+
+    @Test
+    public void testExecuteWithInvalidConcurrency() throws Exception {
+        Map<String, String> result = execute("host1", EMPTY_STRING, "0");
+
+        assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
+        assertTrue(result.get(EXCEPTION).contains("The concurrency input must be a positive integer: 0"));
+    }
+
+    @Test
+    public void testExecuteWithoutHosts() throws Exception {
+        Map<String, String> result = execute(" , ", EMPTY_STRING, EMPTY_STRING);
+
+        assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
+        assertTrue(result.get(EXCEPTION).contains("The hosts input does not contain any host."));
+    }
+
+    private Map<String, String> execute(String hosts, String hostsDelimiter, String concurrency) {
+        return action.execute(hosts, hostsDelimiter, concurrency, EMPTY_STRING, EMPTY_STRING, USER, PASS, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING,
+                EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING,
+                EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, SCRIPT, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING, EMPTY_STRING);
+    }
+}
@@ -0,0 +1,261 @@
+package io.cloudslang.content.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.cloudslang.content.entities.WSManRequestInputs;
+import io.cloudslang.content.utils.RemoteShellPool;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.cloudslang.content.utils.Constants.OutputNames.RETURN_RESULT;
+import static io.cloudslang.content.utils.Constants.OutputNames.SCRIPT_EXIT_CODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the scripts against a local stand-in of the WS-Man endpoint, which implements the shell operations of the
+ * WinRM service: the shells are kept until they are deleted and the commands print "hello" to the standard output.
+ */
+public class WSManRemoteShellServiceEndpointTest {
+
+    private static final String SHELL_NAMESPACES = "xmlns:s=\"http://www.w3.org/2003/05/soap-envelope\" " +
+            "xmlns:a=\"http://schemas.xmlsoap.org/ws/2004/08/addressing\" " +
+            "xmlns:w=\"http://schemas.dmtf.org/wbem/wsman/1/wsman.xsd\" " +
+            "xmlns:x=\"http://schemas.xmlsoap.org/ws/2004/09/transfer\" " +
+            "xmlns:f=\"http://schemas.microsoft.com/wbem/wsman/1/wsmanfault\" " +
+            "xmlns:rsp=\"http://schemas.microsoft.com/wbem/wsman/1/windows/shell\"";
+    private static final Pattern SHELL_ID_PATTERN = Pattern.compile("<wsman:Selector Name=\"ShellId\">\\s*([^<\\s]+)\\s*</wsman:Selector>");
+    private static final int CONCURRENT_SCRIPTS = 4;
+
+    private final Set<String> shells = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<String> busyShells = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger createdShells = new AtomicInteger();
+    private final AtomicInteger deletedShells = new AtomicInteger();
+    private volatile boolean sharedShell;
+    private volatile long receiveDelay;
+    private volatile boolean unauthorized;
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/wsman", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String response;
+                try (InputStream in = exchange.getRequestBody()) {
+                    response = respond(IOUtils.toString(in, StandardCharsets.UTF_8));
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/soap+xml;charset=UTF-8");
+                exchange.sendResponseHeaders(unauthorized ? 401 : 200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        RemoteShellPool.getInstance().shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void scriptsReuseTheShell() throws Exception {
+        WSManRemoteShellService service = new WSManRemoteShellService();
+        for (int i = 0; i < 3; i++) {
+            Map<String, String> result = service.runCommand(buildInputs("true"));
+            assertEquals("hello", result.get(RETURN_RESULT));
+            assertEquals("0", result.get(SCRIPT_EXIT_CODE));
+        }
+
+        assertEquals(1, createdShells.get());
+        assertEquals(0, deletedShells.get());
+        assertEquals(1, RemoteShellPool.getInstance().size());
+
+        RemoteShellPool.getInstance().shutdown();
+        assertEquals(1, deletedShells.get());
+        assertTrue(shells.isEmpty());
+    }
+
+    @Test
+    public void scriptsWithoutShellReuse() throws Exception {
+        WSManRemoteShellService service = new WSManRemoteShellService();
+        for (int i = 0; i < 2; i++) {
+            assertEquals("hello", service.runCommand(buildInputs("false")).get(RETURN_RESULT));
+        }
+
+        assertEquals(2, createdShells.get());
+        assertEquals(2, deletedShells.get());
+        assertEquals(0, RemoteShellPool.getInstance().size());
+    }
+
+    @Test
+    public void deadShellIsReplaced() throws Exception {
+        WSManRemoteShellService service = new WSManRemoteShellService();
+        service.runCommand(buildInputs("true"));
+        // the WinRM service was restarted, the pooled shell does not exist anymore
+        shells.clear();
+
+        Map<String, String> result = service.runCommand(buildInputs("true"));
+
+        assertEquals("hello", result.get(RETURN_RESULT));
+        assertEquals(2, createdShells.get());
+        assertEquals(1, RemoteShellPool.getInstance().size());
+    }
+
+    @Test
+    public void unauthorizedCommandIsNotRetried() throws Exception {
+        WSManRemoteShellService service = new WSManRemoteShellService();
+        service.runCommand(buildInputs("true"));
+        unauthorized = true;
+
+        try {
+            service.runCommand(buildInputs("true"));
+            fail("the unauthorized request should fail");
+        } catch (RuntimeException e) {
+            assertEquals("Unauthorized! Service responded with 401 status code!", e.getMessage());
+        }
+        assertEquals(1, createdShells.get());
+    }
+
+    @Test
+    public void shellsAreNotReusedByDefault() throws Exception {
+        WSManRemoteShellService service = new WSManRemoteShellService();
+        service.runCommand(buildInputs(null));
+
+        assertEquals(1, createdShells.get());
+        assertEquals(1, deletedShells.get());
+        assertEquals(0, RemoteShellPool.getInstance().size());
+    }
+
+    @Test
+    public void concurrentScriptsUseSeparateShells() throws Exception {
+        receiveDelay = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_SCRIPTS);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<>();
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < CONCURRENT_SCRIPTS; i++) {
+                    results.add(executor.submit(new Callable<Map<String, String>>() {
+                        @Override
+                        public Map<String, String> call() throws Exception {
+                            return new WSManRemoteShellService().runCommand(buildInputs("true"));
+                        }
+                    }));
+                }
+            }
+            for (Future<Map<String, String>> result : results) {
+                assertEquals("hello", result.get().get(RETURN_RESULT));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertFalse("two commands ran at the same time on one shell", sharedShell);
+        assertTrue(createdShells.get() <= CONCURRENT_SCRIPTS);
+    }
+
+    private WSManRequestInputs buildInputs(String reuseShell) {
+        return new WSManRequestInputs.WSManRequestInputsBuilder()
+                .withHost("localhost")
+                .withPort(String.valueOf(server.getAddress().getPort()))
+                .withProtocol("http")
+                .withUsername("user")
+                .withPassword("password")
+                .withAuthType("Basic")
+                .withMaxEnvelopeSize(null)
+                .withTrustAllRoots(null)
+                .withX509HostnameVerifier(null)
+                .withScript("Write-Host hello")
+                .withWinrmLocale(null)
+                .withOperationTimeout("10")
+                .withReuseShell(reuseShell)
+                .build();
+    }
+
+    private String respond(String request) throws InterruptedException {
+        if (request.contains("http://schemas.xmlsoap.org/ws/2004/09/transfer/Create")) {
+            String shellId = UUID.randomUUID().toString();
+            shells.add(shellId);
+            createdShells.incrementAndGet();
+            return envelope("http://schemas.xmlsoap.org/ws/2004/09/transfer/CreateResponse",
+                    "<x:ResourceCreated><w:ReferenceParameters><w:SelectorSet>" +
+                            "<w:Selector Name=\"ShellId\">" + shellId + "</w:Selector>" +
+                            "</w:SelectorSet></w:ReferenceParameters></x:ResourceCreated>");
+        }
+        String shellId = shellId(request);
+        if (!shells.contains(shellId)) {
+            return envelope("http://schemas.dmtf.org/wbem/wsman/1/wsman/fault",
+                    "<s:Fault><s:Reason><s:Text xml:lang=\"en-US\">The request for the Windows Remote Shell failed. </s:Text></s:Reason>" +
+                            "<s:Detail><f:WSManFault Code=\"2150858843\" Machine=\"localhost\"><f:Message>The shell was not found on the server.</f:Message></f:WSManFault></s:Detail></s:Fault>");
+        }
+        if (request.contains("http://schemas.microsoft.com/wbem/wsman/1/windows/shell/Command")) {
+            if (!busyShells.add(shellId)) {
+                sharedShell = true;
+            }
+            return envelope("http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandResponse",
+                    "<rsp:CommandResponse><rsp:CommandId>" + UUID.randomUUID().toString().toUpperCase() + "</rsp:CommandId></rsp:CommandResponse>");
+        }
+        if (request.contains("http://schemas.microsoft.com/wbem/wsman/1/windows/shell/Receive")) {
+            Thread.sleep(receiveDelay);
+            busyShells.remove(shellId);
+            return envelope("http://schemas.microsoft.com/wbem/wsman/1/windows/shell/ReceiveResponse",
+                    "<rsp:ReceiveResponse>" +
+                            "<rsp:Stream Name=\"stdout\">" + Base64.encodeBase64String("hello".getBytes(StandardCharsets.UTF_8)) + "</rsp:Stream>" +
+                            "<rsp:Stream Name=\"stdout\" End=\"true\"/>" +
+                            "<rsp:CommandState State=\"http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandState/Done\">" +
+                            "<rsp:ExitCode>0</rsp:ExitCode></rsp:CommandState>" +
+                            "</rsp:ReceiveResponse>");
+        }
+        if (request.contains("http://schemas.xmlsoap.org/ws/2004/09/transfer/Delete")) {
+            shells.remove(shellId);
+            deletedShells.incrementAndGet();
+            return envelope("http://schemas.xmlsoap.org/ws/2004/09/transfer/DeleteResponse", "");
+        }
+        throw new IllegalArgumentException("Unexpected request: " + request);
+    }
+
+    private String shellId(String request) {
+        Matcher matcher = SHELL_ID_PATTERN.matcher(request);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    private String envelope(String action, String body) {
+        return "<s:Envelope " + SHELL_NAMESPACES + "><s:Header><a:Action>" + action + "</a:Action>" +
+                "<a:MessageID>uuid:" + UUID.randomUUID() + "</a:MessageID></s:Header>" +
+                "<s:Body>" + body + "</s:Body></s:Envelope>";
+    }
+}
@@ -1,9 +1,11 @@
 package io.cloudslang.content.services;
 
-import io.cloudslang.content.entities.OutputStream;
+import io.cloudslang.content.entities.WSManResponse;
 import io.cloudslang.content.entities.WSManRequestInputs;
 import io.cloudslang.content.httpclient.HttpClientInputs;
 import io.cloudslang.content.httpclient.CSHttpClient;
+import io.cloudslang.content.utils.CommandOutputBuffer;
+import io.cloudslang.content.utils.RemoteShellPool;
 import io.cloudslang.content.utils.WSManUtils;
 import io.cloudslang.content.utils.XMLUtils;
 import org.junit.After;
@@ -20,10 +22,14 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.powermock.reflect.Whitebox;
 
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 
@@ -58,10 +64,8 @@ public class WSManRemoteShellServiceTest {
     private static final String OK_STATUS_CODE = "200";
     private static final String SHELL_ID_NOT_RETRIEVED = "The shell id could not be retrieved.";
     private static final String CREATE_RESPONSE_ACTION = "http://schemas.xmlsoap.org/ws/2004/09/transfer/CreateResponse";
-    private static final String CREATE_RESPONSE_SHELL_ID_XPATH = "/Envelope/Body/ResourceCreated/ReferenceParameters/SelectorSet/Selector[@Name='ShellId']/text()";
     private static final String FAULT_MESSAGE = "fault message";
     private static final String COMMAND_RESPONSE_ACTION = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandResponse";
-    private static final String COMMAND_RESULT_COMMAND_ID_XPATH = "/Envelope/Body/CommandResponse/CommandId";
     private static final String COMMAND = "get-host";
     private static final String COMMAND_ID_NOT_RETRIEVED = "The command id could not be retrieved.";
     private static final String UNEXPECTED_SERVICE_RESPONSE = "Unexpected service response: ";
@@ -72,11 +76,14 @@ public class WSManRemoteShellServiceTest {
     private static final String UNAUTHORIZED_EXCEPTION_MESSAGE = "Unauthorized! Service responded with 401 status code!";
     private static final String STDOUT_VALUE = "stdout stream value";
     private static final String STDERR_VALUE = "stderr stream value";
+    private static final String STDOUT = "stdout";
     private static final String STDERR = "stderr";
-    private static final String RECEIVE_RESULT = "script execution result containing stdout and stderr streams";
+    private static final String DONE_COMMAND_STATE = "http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandState/Done";
+    private static final String WSMAN_FAULT_RESPONSE_ACTION = "http://schemas.dmtf.org/wbem/wsman/1/wsman/fault";
+    private static final String OPERATION_TIMEOUT_FAULT_CODE = "2150858793";
     private static final String SCRIPT_EXIT_CODE_ZERO = "0";
     private static final String SCRIPT_EXIT_CODE = "scriptExitCode";
-    private static final String BUILD_RESULT_FROM_RESPONSE_STREAMS_METHOD = "buildResultFromResponseStreams";
+    private static final String APPEND_RESPONSE_STREAMS_METHOD = "appendResponseStreams";
     private static final String PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD = "processCommandExecutionResponse";
     private static final String GET_RESOURCE_ID_METHOD = "getResourceId";
     private static final String RECEIVE_COMMAND_RESULT_METHOD = "receiveCommandResult";
@@ -96,6 +103,8 @@ public class WSManRemoteShellServiceTest {
     private URL urlMock;
     @Mock
     private Map<String, String> resultMock;
+    @Mock
+    private WSManResponse wsManResponseMock;
     @Rule
     private ExpectedException thrownException = ExpectedException.none();
     private WSManRemoteShellService wsManRemoteShellServiceSpy;
@@ -132,8 +141,10 @@ public class WSManRemoteShellServiceTest {
         httpClientInputsMock = null;
         urlMock = null;
         resultMock = null;
+        wsManResponseMock = null;
         wsManRequestInputs = null;
         wsManRemoteShellServiceSpy = null;
+        RemoteShellPool.getInstance().shutdown();
     }
 
     @Test
@@ -209,16 +220,14 @@ public class WSManRemoteShellServiceTest {
     public void testCreateShell() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH)).thenReturn(SHELL_UUID);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getShellId()).thenReturn(SHELL_UUID);
 
         String result = Whitebox.invokeMethod(new WSManRemoteShellService(), CREATE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, wsManRequestInputs);
 
         assertEquals(SHELL_UUID, result);
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION);
     }
 
 
@@ -226,16 +235,14 @@ public class WSManRemoteShellServiceTest {
     public void testCreateShellThrowsShellIdNotRetrievedException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH)).thenReturn(null);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getShellId()).thenReturn(null);
 
         thrownException.expectMessage(SHELL_ID_NOT_RETRIEVED);
         Whitebox.invokeMethod(new WSManRemoteShellService(), CREATE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION);
         verify(csHttpClientMock).execute(httpClientInputsMock);
     }
 
@@ -243,95 +250,91 @@ public class WSManRemoteShellServiceTest {
     public void testCreateShellThrowsFaultException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(true);
-        Mockito.when(WSManUtils.getResponseFault(RESPONSE_BODY)).thenReturn(FAULT_MESSAGE);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(true);
+        Mockito.when(WSManUtils.getResponseFault(wsManResponseMock)).thenReturn(FAULT_MESSAGE);
 
         thrownException.expectMessage(FAULT_MESSAGE);
         Whitebox.invokeMethod(new WSManRemoteShellService(), CREATE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
-        WSManUtils.getResponseFault(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
+        WSManUtils.getResponseFault(wsManResponseMock);
     }
 
     @Test
     public void testCreateShellThrowsUnexpectedResponseException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(false);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(false);
 
         thrownException.expectMessage(UNEXPECTED_SERVICE_RESPONSE);
         Whitebox.invokeMethod(new WSManRemoteShellService(), CREATE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, CREATE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, CREATE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
     }
 
     @Test
     public void testExecuteCommand() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, COMMAND_RESULT_COMMAND_ID_XPATH)).thenReturn(COMMAND_UUID);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getCommandId()).thenReturn(COMMAND_UUID);
 
         String result = Whitebox.invokeMethod(new WSManRemoteShellService(), EXECUTE_COMMAND_METHOD, csHttpClientMock, httpClientInputsMock,
                 SHELL_UUID, wsManRequestInputs, COMMAND);
 
         assertEquals(COMMAND_UUID, result);
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, COMMAND_RESULT_COMMAND_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION);
     }
 
     @Test
     public void testExecuteCommandThrowsFaultException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(true);
-        Mockito.when(WSManUtils.getResponseFault(RESPONSE_BODY)).thenReturn(FAULT_MESSAGE);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(true);
+        Mockito.when(WSManUtils.getResponseFault(wsManResponseMock)).thenReturn(FAULT_MESSAGE);
 
         thrownException.expectMessage(FAULT_MESSAGE);
         Whitebox.invokeMethod(new WSManRemoteShellService(), EXECUTE_COMMAND_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs, COMMAND);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION);
     }
 
     @Test
     public void testExecuteCommandThrowsCommandIdNotRetrievedException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, COMMAND_RESULT_COMMAND_ID_XPATH)).thenReturn("");
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getCommandId()).thenReturn("");
 
         thrownException.expectMessage(COMMAND_ID_NOT_RETRIEVED);
         Whitebox.invokeMethod(new WSManRemoteShellService(), EXECUTE_COMMAND_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs, COMMAND);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, COMMAND_RESULT_COMMAND_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION);
     }
 
     @Test
     public void testExecuteCommandThrowsUnexpectedResponseException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(false);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(false);
 
         thrownException.expectMessage(UNEXPECTED_SERVICE_RESPONSE);
         Whitebox.invokeMethod(new WSManRemoteShellService(), EXECUTE_COMMAND_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs, COMMAND);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, COMMAND_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, COMMAND_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
     }
 
     @Test
@@ -339,18 +342,20 @@ public class WSManRemoteShellServiceTest {
         mockExecuteRequest();
         PowerMockito.doReturn(false).when(wsManRemoteShellServiceSpy, EXECUTION_IS_TIMED_OUT_METHOD, anyLong(), anyInt());
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
-        Mockito.when(WSManUtils.commandExecutionIsDone(RESPONSE_BODY)).thenReturn(true);
-        PowerMockito.doReturn(resultMock).when(wsManRemoteShellServiceSpy, PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, any(String.class));
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(WSManUtils.commandExecutionIsDone(wsManResponseMock)).thenReturn(true);
+        PowerMockito.doReturn(resultMock).when(wsManRemoteShellServiceSpy, PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, any(WSManResponse.class),
+                any(CommandOutputBuffer.class), any(CommandOutputBuffer.class));
 
         Map<String, String> result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, RECEIVE_COMMAND_RESULT_METHOD, csHttpClientMock, httpClientInputsMock,
                 SHELL_UUID, COMMAND_UUID, wsManRequestInputs);
 
         assertEquals(resultMock, result);
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        WSManUtils.commandExecutionIsDone(RESPONSE_BODY);
-        PowerMockito.verifyPrivate(wsManRemoteShellServiceSpy).invoke(PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, any(String.class));
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
+        WSManUtils.commandExecutionIsDone(wsManResponseMock);
+        PowerMockito.verifyPrivate(wsManRemoteShellServiceSpy).invoke(PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, any(WSManResponse.class),
+                any(CommandOutputBuffer.class), any(CommandOutputBuffer.class));
     }
 
     @Test
@@ -358,20 +363,50 @@ public class WSManRemoteShellServiceTest {
         mockExecuteRequest();
         PowerMockito.doReturn(false).when(wsManRemoteShellServiceSpy, EXECUTION_IS_TIMED_OUT_METHOD, anyLong(), anyInt());
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
-        Mockito.when(WSManUtils.commandExecutionIsDone(RESPONSE_BODY)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(true);
-        Mockito.when(WSManUtils.getResponseFault(RESPONSE_BODY)).thenReturn(FAULT_MESSAGE);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(WSManUtils.commandExecutionIsDone(wsManResponseMock)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(true);
+        Mockito.when(WSManUtils.getResponseFault(wsManResponseMock)).thenReturn(FAULT_MESSAGE);
 
         thrownException.expectMessage(FAULT_MESSAGE);
         Whitebox.invokeMethod(wsManRemoteShellServiceSpy, RECEIVE_COMMAND_RESULT_METHOD, csHttpClientMock, httpClientInputsMock,
                 SHELL_UUID, COMMAND_UUID, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        WSManUtils.commandExecutionIsDone(RESPONSE_BODY);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
-        WSManUtils.getResponseFault(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
+        WSManUtils.commandExecutionIsDone(wsManResponseMock);
+        WSManUtils.isFaultResponse(wsManResponseMock);
+        WSManUtils.getResponseFault(wsManResponseMock);
+    }
+
+    @Test
+    public void testReceiveCommandResultCollectsOutputOfAllResponses() throws Exception {
+        mockExecuteRequest();
+        PowerMockito.doReturn(false).when(wsManRemoteShellServiceSpy, EXECUTION_IS_TIMED_OUT_METHOD, anyLong(), anyInt());
+        WSManResponse firstResponse = new WSManResponse.WSManResponseBuilder()
+                .withAction(RECEIVE_RESPONSE_ACTION)
+                .withStream(STDOUT, "c3RyZWFt")
+                .build();
+        WSManResponse operationTimeoutResponse = new WSManResponse.WSManResponseBuilder()
+                .withAction(WSMAN_FAULT_RESPONSE_ACTION)
+                .withFaultCode(OPERATION_TIMEOUT_FAULT_CODE)
+                .build();
+        WSManResponse lastResponse = new WSManResponse.WSManResponseBuilder()
+                .withAction(RECEIVE_RESPONSE_ACTION)
+                .withStream(STDOUT, "X3ZhbA==")
+                .withStream(STDERR, "ZXJy")
+                .withCommandState(DONE_COMMAND_STATE)
+                .withExitCode(SCRIPT_EXIT_CODE_ZERO)
+                .build();
+        Mockito.when(XMLUtils.parseWSManResponse(RESPONSE_BODY)).thenReturn(firstResponse, operationTimeoutResponse, lastResponse);
+
+        Map<String, String> result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, RECEIVE_COMMAND_RESULT_METHOD, csHttpClientMock, httpClientInputsMock,
+                SHELL_UUID, COMMAND_UUID, wsManRequestInputs);
+
+        assertEquals("stream_val", result.get(RETURN_RESULT));
+        assertEquals("err", result.get(STDERR));
+        assertEquals(SCRIPT_EXIT_CODE_ZERO, result.get(SCRIPT_EXIT_CODE));
+        verify(csHttpClientMock, times(3)).execute(httpClientInputsMock);
     }
 
     @Test
@@ -387,142 +422,148 @@ public class WSManRemoteShellServiceTest {
     @Test
     public void testGetResourceId() throws Exception {
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH)).thenReturn(SHELL_UUID);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getShellId()).thenReturn(SHELL_UUID);
 
-        String result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, RESPONSE_BODY, RECEIVE_RESPONSE_ACTION,
-                CREATE_RESPONSE_SHELL_ID_XPATH, SHELL_ID_NOT_RETRIEVED);
+        String result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, wsManResponseMock, RECEIVE_RESPONSE_ACTION,
+                wsManResponseMock.getShellId(), SHELL_ID_NOT_RETRIEVED);
 
         assertEquals(result, SHELL_UUID);
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
     }
 
     @Test
     public void testGetResourceIdThrowsShellIdNotRetrieved() throws Exception {
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH)).thenReturn("");
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(wsManResponseMock.getShellId()).thenReturn("");
 
         thrownException.expectMessage(SHELL_ID_NOT_RETRIEVED);
-        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, RESPONSE_BODY, RECEIVE_RESPONSE_ACTION,
-                CREATE_RESPONSE_SHELL_ID_XPATH, SHELL_ID_NOT_RETRIEVED);
+        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, wsManResponseMock, RECEIVE_RESPONSE_ACTION,
+                wsManResponseMock.getShellId(), SHELL_ID_NOT_RETRIEVED);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        XMLUtils.parseXml(RESPONSE_BODY, CREATE_RESPONSE_SHELL_ID_XPATH);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
     }
 
     @Test
     public void testGetResourceIdThrowsFaultException() throws Exception {
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(true);
-        Mockito.when(WSManUtils.getResponseFault(RESPONSE_BODY)).thenReturn(FAULT_MESSAGE);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(true);
+        Mockito.when(WSManUtils.getResponseFault(wsManResponseMock)).thenReturn(FAULT_MESSAGE);
 
         thrownException.expectMessage(FAULT_MESSAGE);
-        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, RESPONSE_BODY, RECEIVE_RESPONSE_ACTION,
-                CREATE_RESPONSE_SHELL_ID_XPATH, SHELL_ID_NOT_RETRIEVED);
+        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, wsManResponseMock, RECEIVE_RESPONSE_ACTION,
+                wsManResponseMock.getShellId(), SHELL_ID_NOT_RETRIEVED);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
-        WSManUtils.getResponseFault(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
+        WSManUtils.getResponseFault(wsManResponseMock);
     }
 
     @Test
     public void testGetResourceIdThrowsUnexpectedResponseException() throws Exception {
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(false);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(false);
 
         thrownException.expectMessage(UNEXPECTED_SERVICE_RESPONSE);
-        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, RESPONSE_BODY, RECEIVE_RESPONSE_ACTION,
-                CREATE_RESPONSE_SHELL_ID_XPATH, SHELL_ID_NOT_RETRIEVED);
+        Whitebox.invokeMethod(wsManRemoteShellServiceSpy, GET_RESOURCE_ID_METHOD, wsManResponseMock, RECEIVE_RESPONSE_ACTION,
+                wsManResponseMock.getShellId(), SHELL_ID_NOT_RETRIEVED);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, RECEIVE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, RECEIVE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
     }
 
     @Test
     public void testProcessCommandExecutionResponse() throws Exception {
-        doReturn(RECEIVE_RESULT).when(resultMock).get(RETURN_RESULT);
-        PowerMockito.doReturn(STDOUT_VALUE).when(wsManRemoteShellServiceSpy, BUILD_RESULT_FROM_RESPONSE_STREAMS_METHOD, RECEIVE_RESULT, OutputStream.STDOUT);
-        PowerMockito.doReturn(STDERR_VALUE).when(wsManRemoteShellServiceSpy, BUILD_RESULT_FROM_RESPONSE_STREAMS_METHOD, RECEIVE_RESULT, OutputStream.STDERR);
+        CommandOutputBuffer stdout = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
+        stdout.append("c3Rkb3V0IHN0cmVhbSB2YWx1ZQ==");
+        CommandOutputBuffer stderr = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
+        stderr.append("c3RkZXJyIHN0cmVhbSB2YWx1ZQ==");
         PowerMockito.mockStatic(WSManUtils.class);
-        PowerMockito.when(WSManUtils.getScriptExitCode(RECEIVE_RESULT)).thenReturn(SCRIPT_EXIT_CODE_ZERO);
+        PowerMockito.when(WSManUtils.getScriptExitCode(wsManResponseMock)).thenReturn(SCRIPT_EXIT_CODE_ZERO);
 
-        Map<String, String> result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, resultMock);
+        Map<String, String> result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, PROCESS_COMMAND_EXECUTION_RESPONSE_METHOD, wsManResponseMock, stdout, stderr);
 
         assertEquals(STDOUT_VALUE, result.get(RETURN_RESULT));
         assertEquals(STDERR_VALUE, result.get(STDERR));
         assertEquals(SCRIPT_EXIT_CODE_ZERO, result.get(SCRIPT_EXIT_CODE));
-        verify(resultMock, times(3)).get(RETURN_RESULT);
         verifyStatic();
-        WSManUtils.getScriptExitCode(RECEIVE_RESULT);
+        WSManUtils.getScriptExitCode(wsManResponseMock);
     }
 
     @Test
     public void testDeleteShell() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION)).thenReturn(true);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION)).thenReturn(true);
 
         Whitebox.invokeMethod(wsManRemoteShellServiceSpy, WSManRemoteShellServiceTest.DELETE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION);
     }
 
     @Test
     public void testDeleteShellThrowsFaultException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(true);
-        Mockito.when(WSManUtils.getResponseFault(RESPONSE_BODY)).thenReturn(FAULT_MESSAGE);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(true);
+        Mockito.when(WSManUtils.getResponseFault(wsManResponseMock)).thenReturn(FAULT_MESSAGE);
 
         thrownException.expectMessage(FAULT_MESSAGE);
         Whitebox.invokeMethod(wsManRemoteShellServiceSpy, WSManRemoteShellServiceTest.DELETE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
-        WSManUtils.getResponseFault(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
+        WSManUtils.getResponseFault(wsManResponseMock);
     }
 
     @Test
     public void testDeleteShellThrowsUnexpectedServiceResponseException() throws Exception {
         mockExecuteRequest();
         PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION)).thenReturn(false);
-        Mockito.when(WSManUtils.isFaultResponse(RESPONSE_BODY)).thenReturn(false);
+        Mockito.when(WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION)).thenReturn(false);
+        Mockito.when(WSManUtils.isFaultResponse(wsManResponseMock)).thenReturn(false);
 
         thrownException.expectMessage(UNEXPECTED_SERVICE_RESPONSE);
         Whitebox.invokeMethod(wsManRemoteShellServiceSpy, WSManRemoteShellServiceTest.DELETE_SHELL_METHOD, csHttpClientMock, httpClientInputsMock, SHELL_UUID, wsManRequestInputs);
 
         verifyStatic();
-        WSManUtils.isSpecificResponseAction(RESPONSE_BODY, DELETE_RESPONSE_ACTION);
-        WSManUtils.isFaultResponse(RESPONSE_BODY);
+        WSManUtils.isSpecificResponseAction(wsManResponseMock, DELETE_RESPONSE_ACTION);
+        WSManUtils.isFaultResponse(wsManResponseMock);
     }
 
     @Test
-    public void testBuildResultFromResponseStreams() throws Exception {
-        PowerMockito.mockStatic(WSManUtils.class);
-        Mockito.when(WSManUtils.countStreamElements(RECEIVE_RESULT)).thenReturn(2);
-        PowerMockito.mockStatic(XMLUtils.class);
-        Mockito.when(XMLUtils.parseXml(anyString(), anyString())).thenReturn("c3RyZWFtX3ZhbA==");
+    public void testAppendResponseStreams() throws Exception {
+        Mockito.when(wsManResponseMock.getStreams(STDOUT)).thenReturn(Arrays.asList("c3RyZWFtX3ZhbA==", "DQo=", "c3RyZWFtX3ZhbA=="));
+        CommandOutputBuffer stdout = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
+        CommandOutputBuffer stderr = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
+
+        boolean receivedOutput = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, APPEND_RESPONSE_STREAMS_METHOD, wsManResponseMock, stdout, stderr);
+
+        assertTrue(receivedOutput);
+        assertEquals("stream_val" + "stream_val", stdout.getOutput());
+        assertEquals("", stderr.getOutput());
+        verify(wsManResponseMock).getStreams(STDOUT);
+        verify(wsManResponseMock).getStreams(STDERR);
+    }
+
+    @Test
+    public void testAppendResponseStreamsWithoutOutput() throws Exception {
+        CommandOutputBuffer stdout = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
+        CommandOutputBuffer stderr = new CommandOutputBuffer(Charset.defaultCharset(), Integer.MAX_VALUE);
 
-        String result = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, "buildResultFromResponseStreams", RECEIVE_RESULT, OutputStream.STDOUT);
+        boolean receivedOutput = Whitebox.invokeMethod(wsManRemoteShellServiceSpy, APPEND_RESPONSE_STREAMS_METHOD, wsManResponseMock, stdout, stderr);
 
-        assertEquals("stream_val" + "stream_val", result);
-        verifyStatic();
-        WSManUtils.countStreamElements(RECEIVE_RESULT);
-        XMLUtils.parseXml(anyString(), anyString());
+        assertFalse(receivedOutput);
     }
 
     private void mockExecuteRequest() {
@@ -530,5 +571,7 @@ public class WSManRemoteShellServiceTest {
         result.put(RETURN_RESULT, RESPONSE_BODY);
         result.put(STATUS_CODE, OK_STATUS_CODE);
         doReturn(result).when(csHttpClientMock).execute(httpClientInputsMock);
+        PowerMockito.mockStatic(XMLUtils.class);
+        Mockito.when(XMLUtils.parseWSManResponse(RESPONSE_BODY)).thenReturn(wsManResponseMock);
     }
 }
@@ -0,0 +1,75 @@
+package io.cloudslang.content.utils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandOutputBufferTest {
+
+    @Test
+    public void decodesCharacterSplitBetweenChunks() {
+        byte[] bytes = "caf\u00e9 \u20ac".getBytes(StandardCharsets.UTF_8);
+        CommandOutputBuffer buffer = new CommandOutputBuffer(StandardCharsets.UTF_8, Integer.MAX_VALUE);
+
+        // the chunks end in the middle of the two byte and of the three byte characters
+        buffer.append(Base64.encodeBase64String(Arrays.copyOfRange(bytes, 0, 4)));
+        buffer.append(Base64.encodeBase64String(Arrays.copyOfRange(bytes, 4, 7)));
+        buffer.append(Base64.encodeBase64String(Arrays.copyOfRange(bytes, 7, bytes.length)));
+
+        assertEquals("caf\u00e9 \u20ac", buffer.getOutput());
+        assertFalse(buffer.isTruncated());
+    }
+
+    @Test
+    public void skipsNewLineChunks() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(StandardCharsets.UTF_8, Integer.MAX_VALUE);
+
+        buffer.append(Base64.encodeBase64String("a".getBytes(StandardCharsets.UTF_8)));
+        buffer.append("DQo=");
+        buffer.append(Base64.encodeBase64String("b".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("ab", buffer.getOutput());
+    }
+
+    @Test
+    public void keepsAtMostMaxOutputSizeCharacters() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(StandardCharsets.UTF_8, 5);
+
+        buffer.append(Base64.encodeBase64String("abc".getBytes(StandardCharsets.UTF_8)));
+        buffer.append(Base64.encodeBase64String("defg".getBytes(StandardCharsets.UTF_8)));
+        buffer.append(Base64.encodeBase64String("hij".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("abcde", buffer.getOutput());
+        assertTrue(buffer.isTruncated());
+    }
+
+    @Test
+    public void keepsWholeOutputWhenMaxOutputSizeIsZero() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(StandardCharsets.UTF_8, 0);
+
+        buffer.append(Base64.encodeBase64String("abc".getBytes(StandardCharsets.UTF_8)));
+        buffer.append(Base64.encodeBase64String("defg".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("abcdefg", buffer.getOutput());
+        assertFalse(buffer.isTruncated());
+    }
+
+    @Test
+    public void decodesOutputLargerThanTheDecodeBuffer() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            expected.append("\u00e9x");
+        }
+        CommandOutputBuffer buffer = new CommandOutputBuffer(StandardCharsets.UTF_8, Integer.MAX_VALUE);
+
+        buffer.append(Base64.encodeBase64String(expected.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(expected.toString(), buffer.getOutput());
+    }
+}
@@ -0,0 +1,126 @@
+package io.cloudslang.content.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteShellPoolTest {
+
+    private static final String HOST = "host";
+
+    @Rule
+    public ExpectedException thrownException = ExpectedException.none();
+
+    private final List<String> deletedShells = new ArrayList<>();
+    private int createdShells;
+    private RemoteShellPool pool;
+
+    private final RemoteShellPool.ShellFactory shellFactory = new RemoteShellPool.ShellFactory() {
+        @Override
+        public String create() {
+            return "shell" + (++createdShells);
+        }
+
+        @Override
+        public void delete(String shellId) {
+            deletedShells.add(shellId);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void reusesReleasedShell() {
+        pool = new RemoteShellPool(2, 60000, 60000);
+
+        RemoteShellPool.PooledShell first = pool.lease(HOST, shellFactory, 1000);
+        assertFalse(first.isReused());
+        pool.release(first, true);
+        RemoteShellPool.PooledShell second = pool.lease(HOST, shellFactory, 1000);
+
+        assertEquals(first.getShellId(), second.getShellId());
+        assertTrue(second.isReused());
+        assertEquals(1, createdShells);
+    }
+
+    @Test
+    public void leasedShellIsNotShared() {
+        pool = new RemoteShellPool(2, 60000, 60000);
+
+        RemoteShellPool.PooledShell first = pool.lease(HOST, shellFactory, 1000);
+        RemoteShellPool.PooledShell second = pool.lease(HOST, shellFactory, 1000);
+
+        assertFalse(first.getShellId().equals(second.getShellId()));
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void waitsForFreeShell() {
+        pool = new RemoteShellPool(1, 60000, 60000);
+        pool.lease(HOST, shellFactory, 1000);
+
+        thrownException.expectMessage("Timed out waiting for a free WinRM shell.");
+        pool.lease(HOST, shellFactory, 100);
+    }
+
+    @Test
+    public void deletesShellWhichIsNotReusable() {
+        pool = new RemoteShellPool(1, 60000, 60000);
+
+        pool.release(pool.lease(HOST, shellFactory, 1000), false);
+
+        assertEquals(1, deletedShells.size());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void deletesIdleShells() throws InterruptedException {
+        pool = new RemoteShellPool(1, 10, 60000);
+        pool.release(pool.lease(HOST, shellFactory, 1000), true);
+
+        Thread.sleep(50);
+        pool.evictExpired();
+
+        assertEquals(1, deletedShells.size());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void retiresOldShells() throws InterruptedException {
+        pool = new RemoteShellPool(1, 60000, 10);
+        RemoteShellPool.PooledShell shell = pool.lease(HOST, shellFactory, 1000);
+
+        Thread.sleep(50);
+        pool.release(shell, true);
+
+        assertEquals(1, deletedShells.size());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void invalidatesFreeShellsOfHost() {
+        pool = new RemoteShellPool(2, 60000, 60000);
+        RemoteShellPool.PooledShell leased = pool.lease(HOST, shellFactory, 1000);
+        pool.release(pool.lease(HOST, shellFactory, 1000), true);
+
+        pool.invalidate(HOST);
+
+        assertEquals(1, deletedShells.size());
+        assertEquals(1, pool.size());
+        pool.release(leased, true);
+        assertEquals(1, pool.size());
+    }
+}
@@ -0,0 +1,73 @@
+package io.cloudslang.content.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WSManRequestTemplateTest {
+
+    private static final String TEMPLATE = "<s:Envelope><wsa:To>$PLACEHOLDER_FOR_SERVICE_NETWORK_ADDRESS</wsa:To>" +
+            "<wsman:OperationTimeout>PT$PLACEHOLDER_FOR_OPERATION_TIMEOUT.000S</wsman:OperationTimeout>" +
+            "<rsp:DesiredStream CommandId=\"$PLACEHOLDER_FOR_COMMAND_ID\"/></s:Envelope>";
+    private static final String RECEIVE_REQUEST_XML = "templates/Receive.xml";
+
+    @Rule
+    public ExpectedException thrownException = ExpectedException.none();
+
+    @Test
+    public void testRender() {
+        Map<String, String> values = new HashMap<>();
+        values.put("$PLACEHOLDER_FOR_SERVICE_NETWORK_ADDRESS", "https://host:5986/wsman?a=1&b=2");
+        values.put("$PLACEHOLDER_FOR_OPERATION_TIMEOUT", "60");
+        values.put("$PLACEHOLDER_FOR_COMMAND_ID", "\"<id>'");
+
+        String document = WSManRequestTemplate.compile(TEMPLATE).render(values);
+
+        assertEquals("<s:Envelope><wsa:To>https://host:5986/wsman?a=1&amp;b=2</wsa:To>" +
+                "<wsman:OperationTimeout>PT60.000S</wsman:OperationTimeout>" +
+                "<rsp:DesiredStream CommandId=\"&quot;&lt;id&gt;&apos;\"/></s:Envelope>", document);
+    }
+
+    @Test
+    public void testRenderThrowsMissingValueException() {
+        Map<String, String> values = new HashMap<>();
+        values.put("$PLACEHOLDER_FOR_SERVICE_NETWORK_ADDRESS", "https://host:5986/wsman");
+
+        thrownException.expectMessage("No value was given for the placeholder: $PLACEHOLDER_FOR_OPERATION_TIMEOUT");
+        WSManRequestTemplate.compile(TEMPLATE).render(values);
+    }
+
+    @Test
+    public void testRenderThrowsPlaceholderNotFoundException() {
+        Map<String, String> values = new HashMap<>();
+        values.put("$PLACEHOLDER_FOR_SHELL_ID", "shell");
+
+        thrownException.expectMessage("Resource does not contain the expected placeholder name: $PLACEHOLDER_FOR_SHELL_ID");
+        WSManRequestTemplate.compile(TEMPLATE).render(values);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        WSManRequestTemplate template = WSManRequestTemplate.load(RECEIVE_REQUEST_XML);
+        assertSame(template, WSManRequestTemplate.load(RECEIVE_REQUEST_XML));
+
+        Map<String, String> values = new HashMap<>();
+        for (String placeholder : new String[]{"$PLACEHOLDER_FOR_SERVICE_NETWORK_ADDRESS", "$PLACEHOLDER_FOR_MESSAGE_ID",
+                "$PLACEHOLDER_FOR_MAX_ENVELOPE_SIZE", "$PLACEHOLDER_FOR_LOCALE", "$PLACEHOLDER_FOR_SHELL_ID",
+                "$PLACEHOLDER_FOR_OPERATION_TIMEOUT", "$PLACEHOLDER_FOR_COMMAND_ID"}) {
+            values.put(placeholder, "value");
+        }
+        String document = template.render(values);
+
+        assertFalse(document.contains("$PLACEHOLDER_FOR_"));
+        assertTrue(document.contains("<rsp:DesiredStream CommandId=\"value\">"));
+    }
+}
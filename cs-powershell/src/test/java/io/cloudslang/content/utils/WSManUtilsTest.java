@@ -1,5 +1,6 @@
 package io.cloudslang.content.utils;
 
+import io.cloudslang.content.entities.WSManResponse;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -35,4 +36,16 @@ public class WSManUtilsTest {
         thrownException.expectMessage("The returned " + uuidValueOf + " is not a valid UUID value!");
         WSManUtils.validateUUID(INVALID_UUID, uuidValueOf);
     }
+
+    @Test
+    public void testIsShellNotFoundFault() {
+        String faultAction = "http://schemas.dmtf.org/wbem/wsman/1/wsman/fault";
+        assertTrue(WSManUtils.isShellNotFoundFault(new WSManResponse.WSManResponseBuilder()
+                .withAction(faultAction).withFaultCode("2150858843").build()));
+        assertFalse(WSManUtils.isShellNotFoundFault(new WSManResponse.WSManResponseBuilder()
+                .withAction(faultAction).withFaultCode("2150858793").build()));
+        assertFalse(WSManUtils.isShellNotFoundFault(new WSManResponse.WSManResponseBuilder()
+                .withAction("http://schemas.microsoft.com/wbem/wsman/1/windows/shell/CommandResponse")
+                .withFaultCode("2150858843").build()));
+    }
 }
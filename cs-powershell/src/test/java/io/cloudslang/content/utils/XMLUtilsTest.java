@@ -1,5 +1,6 @@
 package io.cloudslang.content.utils;
 
+import io.cloudslang.content.entities.WSManResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.IOException;
+import java.util.Arrays;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -52,6 +54,20 @@ public class XMLUtilsTest {
             "\t</s:Body>\n" +
             "</s:Envelope>";
 
+    private static final String faultXml = "<s:Envelope xmlns:s=\"http://www.w3.org/2003/05/soap-envelope\"\n" +
+            "            xmlns:a=\"http://schemas.xmlsoap.org/ws/2004/08/addressing\"\n" +
+            "            xmlns:f=\"http://schemas.microsoft.com/wbem/wsman/1/wsmanfault\">\n" +
+            "\t<s:Header>\n" +
+            "\t\t<a:Action>http://schemas.dmtf.org/wbem/wsman/1/wsman/fault</a:Action>\n" +
+            "\t</s:Header>\n" +
+            "\t<s:Body>\n" +
+            "\t\t<s:Fault>\n" +
+            "\t\t\t<s:Reason><s:Text xml:lang=\"en-US\">The request for the Windows Remote Shell failed. </s:Text></s:Reason>\n" +
+            "\t\t\t<s:Detail><f:WSManFault><f:Message><![CDATA[The shell was not found on the server.]]></f:Message></f:WSManFault></s:Detail>\n" +
+            "\t\t</s:Fault>\n" +
+            "\t</s:Body>\n" +
+            "</s:Envelope>";
+
     private static final String HEADER_XPATH = "/Envelope/Header";
     private static final String COMMAND_STATE_XPATH = "/Envelope/Body/ReceiveResponse/CommandState/@State";
     private static final String COUNT_STREAMS_XPATH = "count(//Envelope/Body/ReceiveResponse/Stream)";
@@ -79,4 +95,44 @@ public class XMLUtilsTest {
                 "<to>Tove</to>\n" +
                 "<from>Jani</from>", HEADER_XPATH);
     }
+
+    @Test
+    public void testParseWSManResponse() {
+        WSManResponse response = XMLUtils.parseWSManResponse(xml);
+
+        assertEquals(RECEIVE_RESPONSE_ACTION, response.getAction());
+        assertEquals(DONE_COMMAND_STATE_ACTION, response.getCommandState());
+        assertEquals("0", response.getExitCode());
+        assertEquals(Arrays.asList("Y29tcGF0aWJpbGl0eQ==", "DQpjb250ZW50DQpkb2NzDQppbnN0YWxsZXItbGludXg2NC5iaW4NCmluc3RhbGxlci13aW42NC1zdHVkaW8uZXhlDQppbnN0YWxsZXItd2luNjQuZXhlDQpsaWNlbnNlDQpvby0xMC42MC4wMC1SQzEuemlwDQpQZXJmTG9ncw0KUHJvZ3JhbSBGaWxlcw0KUHJvZ3JhbSBGaWxlcyAoeDg2KQ0KUHJvZ3JhbXMNCnJlbGVhc2Utbm90ZXMucGRmDQpzZGsNCnNvdXJjZXMNCnVwZ3JhZGUuemlwDQpVc2Vycw0KV2luZG93cw0K"),
+                response.getStreams("stdout"));
+        assertTrue(response.getStreams("stderr").isEmpty());
+        assertEquals("", response.getFaultReason());
+        assertEquals(xml, response.getXml());
+    }
+
+    @Test
+    public void testParseWSManFaultResponse() {
+        WSManResponse response = XMLUtils.parseWSManResponse(faultXml);
+
+        assertEquals("http://schemas.dmtf.org/wbem/wsman/1/wsman/fault", response.getAction());
+        assertEquals("The request for the Windows Remote Shell failed. ", response.getFaultReason());
+        assertEquals("The shell was not found on the server.", response.getFaultDetail());
+        assertEquals("", response.getCommandState());
+    }
+
+    @Test
+    public void testParseEmptyWSManResponse() {
+        WSManResponse response = XMLUtils.parseWSManResponse("");
+
+        assertEquals("", response.getAction());
+        assertTrue(response.getStreams("stdout").isEmpty());
+    }
+
+    @Test
+    public void testParseWSManResponseThrowsException() {
+        thrownException.expectMessage(RESPONSE_IS_NOT_WELL_FORMED);
+        XMLUtils.parseWSManResponse("<note>\n" +
+                "<to>Tove</to>\n" +
+                "<from>Jani</from>");
+    }
 }
@@ -51,6 +51,11 @@ public class RemoteSecureCopyAction {
      * @param knownHostsPolicy The policy used for managing known_hosts file. Valid values: allow, strict, add. Default value: strict
      * @param knownHostsPath The path to the known hosts file.
      * @param timeout Time in milliseconds to wait for the command to complete. Default value is 90000 (90 seconds)
+     * @param sourcePathDelimiter The delimiter separating several paths in sourcePath, which are copied as a batch. By default sourcePath is a single path.
+     * @param recursive If true, directories are copied with all their contents. Default value: false
+     * @param bufferSize The size in bytes of the buffers used to transfer the file contents. Default value: 262144
+     * @param parallelTransfers The maximum number of files of a batch copied at the same time, each on its own channel. Default value: 4
+     * @param checksumAlgorithm The algorithm used to verify each copied file against the destination. Valid values: md5, sha1, sha256. By default the files are not verified.
      *
      * @return - a map containing the output of the operation. Keys present in the map are:
      *     <br><b>returnResult</b> - The primary output.
@@ -85,7 +90,12 @@ public class RemoteSecureCopyAction {
             @Param(Constants.InputNames.DESTINATION_PRIVATE_KEY_FILE) String destinationPrivateKeyFile,
             @Param(Constants.InputNames.KNOWN_HOSTS_POLICY) String knownHostsPolicy,
             @Param(Constants.InputNames.KNOWN_HOSTS_PATH) String knownHostsPath,
-            @Param(Constants.InputNames.TIMEOUT) String timeout) {
+            @Param(Constants.InputNames.TIMEOUT) String timeout,
+            @Param(Constants.InputNames.SOURCE_PATH_DELIMITER) String sourcePathDelimiter,
+            @Param(Constants.InputNames.RECURSIVE) String recursive,
+            @Param(Constants.InputNames.BUFFER_SIZE) String bufferSize,
+            @Param(Constants.InputNames.PARALLEL_TRANSFERS) String parallelTransfers,
+            @Param(Constants.InputNames.CHECKSUM_ALGORITHM) String checksumAlgorithm) {
 
         RemoteSecureCopyInputs remoteSecureCopyInputs = new RemoteSecureCopyInputs(sourcePath, destinationHost, destinationPath, destinationUsername);
         remoteSecureCopyInputs.setSrcHost(sourceHost);
@@ -99,6 +109,11 @@ public class RemoteSecureCopyAction {
         remoteSecureCopyInputs.setKnownHostsPolicy(knownHostsPolicy);
         remoteSecureCopyInputs.setKnownHostsPath(knownHostsPath);
         remoteSecureCopyInputs.setTimeout(timeout);
+        remoteSecureCopyInputs.setSourcePathDelimiter(sourcePathDelimiter);
+        remoteSecureCopyInputs.setRecursive(recursive);
+        remoteSecureCopyInputs.setBufferSize(bufferSize);
+        remoteSecureCopyInputs.setParallelTransfers(parallelTransfers);
+        remoteSecureCopyInputs.setChecksumAlgorithm(checksumAlgorithm);
 
         return new RemoteSecureCopyService().execute(remoteSecureCopyInputs);
 
@@ -32,6 +32,11 @@ public class RemoteSecureCopyInputs {
     private String knownHostsPolicy;
     private String knownHostsPath;
     private String timeout;
+    private String sourcePathDelimiter;
+    private String recursive;
+    private String bufferSize;
+    private String parallelTransfers;
+    private String checksumAlgorithm;
 
     public RemoteSecureCopyInputs(String srcPath, String destHost, String destPath, String destUsername) {
         this.srcPath = srcPath;
@@ -160,4 +165,44 @@ public class RemoteSecureCopyInputs {
         this.timeout = timeout;
     }
 
+    public String getSourcePathDelimiter() {
+        return sourcePathDelimiter;
+    }
+
+    public void setSourcePathDelimiter(String sourcePathDelimiter) {
+        this.sourcePathDelimiter = sourcePathDelimiter;
+    }
+
+    public String getRecursive() {
+        return recursive;
+    }
+
+    public void setRecursive(String recursive) {
+        this.recursive = recursive;
+    }
+
+    public String getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(String bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public String getParallelTransfers() {
+        return parallelTransfers;
+    }
+
+    public void setParallelTransfers(String parallelTransfers) {
+        this.parallelTransfers = parallelTransfers;
+    }
+
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
 }
\ No newline at end of file
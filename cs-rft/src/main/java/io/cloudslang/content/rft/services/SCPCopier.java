@@ -12,13 +12,24 @@ package io.cloudslang.content.rft.services;
 
 import com.jcraft.jsch.*;
 import io.cloudslang.content.rft.entities.*;
+import io.cloudslang.content.rft.utils.ChecksumAlgorithm;
 import io.cloudslang.content.rft.utils.Constants;
 import io.cloudslang.content.rft.utils.StringUtils;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 /**
  * Date: 7/30/2015
@@ -27,26 +38,49 @@ import java.util.Locale;
  */
 public class SCPCopier {
 
-    private static final String EXEC_CHANNEL = "exec";
     private static final String KNOWN_HOSTS_ALLOW = "allow";
     private static final String KNOWN_HOSTS_STRICT = "strict";
     private static final String KNOWN_HOSTS_ADD = "add";
 
-    private Session session;
     private RemoteSecureCopyInputs remoteSecureCopyInputs;
 
     public SCPCopier(RemoteSecureCopyInputs remoteSecureCopyInputs) {
         this.remoteSecureCopyInputs = remoteSecureCopyInputs;
     }
 
+    /**
+     * Copies the source files directly from the source host to the destination host, without storing them locally.
+     * The files of a batch are copied in parallel, each on its own pair of channels of the two shared sessions.
+     */
     public boolean copyFromRemoteToRemote() throws IOException {
-        File temporaryDestFile = File.createTempFile("SCPCopy", ".tmp");
-        String temporaryDestFilePath = temporaryDestFile.getCanonicalPath().replace("\\", "\\\\");
-
-        boolean result = copyFromRemoteToLocal(remoteSecureCopyInputs.getSrcPath(), temporaryDestFilePath) && copyFromLocalToRemote(temporaryDestFilePath, remoteSecureCopyInputs.getDestPath());
-        temporaryDestFile.delete();
-
-        return result;
+        Session srcSession = null;
+        Session destSession = null;
+        try {
+            srcSession = openSession(remoteSecureCopyInputs.getSrcUsername(), remoteSecureCopyInputs.getSrcHost(),
+                    remoteSecureCopyInputs.getSrcPort(), remoteSecureCopyInputs.getSrcPrivateKeyFile(), remoteSecureCopyInputs.getSrcPassword(), true);
+            destSession = openSession(remoteSecureCopyInputs.getDestUsername(), remoteSecureCopyInputs.getDestHost(),
+                    remoteSecureCopyInputs.getDestPort(), remoteSecureCopyInputs.getDestPrivateKeyFile(), remoteSecureCopyInputs.getDestPassword(), false);
+
+            final SCPTransfer transfer = buildTransfer();
+            final Session source = srcSession;
+            final Session destination = destSession;
+            final String destPath = remoteSecureCopyInputs.getDestPath();
+            List<Callable<Boolean>> transfers = new ArrayList<>();
+            for (final String srcPath : splitSourcePaths(remoteSecureCopyInputs.getSrcPath())) {
+                transfers.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return transfer.relay(source, srcPath, destination, destPath);
+                    }
+                });
+            }
+            return runTransfers(transfers);
+        } catch (JSchException e) {
+            throw new RuntimeException(e);
+        } finally {
+            disconnect(srcSession);
+            disconnect(destSession);
+        }
     }
 
     public boolean copyFromLocalToRemote(){
@@ -57,195 +91,54 @@ public class SCPCopier {
         return copyFromRemoteToLocal(remoteSecureCopyInputs.getSrcPath(), remoteSecureCopyInputs.getDestPath());
     }
 
-    protected boolean copyFromLocalToRemote(String srcPath, String destPath){
-        FileInputStream fileInputStream = null;
-
+    protected boolean copyFromLocalToRemote(String srcPath, final String destPath){
+        Session session = null;
         try {
-
-            JSch jsch = new JSch();
-            session = jsch.getSession(remoteSecureCopyInputs.getDestUsername(), remoteSecureCopyInputs.getDestHost(), StringUtils.toInt(remoteSecureCopyInputs.getDestPort(), Constants.DEFAULT_PORT));
-
-            establishKnownHostsConfiguration(ConnectionUtils.resolveKnownHosts(remoteSecureCopyInputs.getKnownHostsPolicy(), remoteSecureCopyInputs.getKnownHostsPath()), jsch, session);
-            establishPrivateKeyFile(ConnectionUtils.getKeyFile(remoteSecureCopyInputs.getDestPrivateKeyFile(), remoteSecureCopyInputs.getDestPassword()), jsch, session, false);
-
-            session.connect(StringUtils.toInt(remoteSecureCopyInputs.getTimeout(), Constants.DEFAULT_TIMEOUT));
-
-            String command = "scp " + "-p -t " + destPath;
-            Channel channel = session.openChannel(EXEC_CHANNEL);
-            ((ChannelExec) channel).setCommand(command);
-
-            OutputStream out = channel.getOutputStream();
-            InputStream in = channel.getInputStream();
-
-            channel.connect();
-
-            if (checkAck(in) != 0) {
-                return false;
-            }
-
-            File srcFile = new File(srcPath);
-            command = "T" + (srcFile.lastModified() / 1000) + " 0";
-            command += (" " + (srcFile.lastModified() / 1000) + " 0\n");
-            out.write(command.getBytes());
-            out.flush();
-
-            if (checkAck(in) != 0) {
-                return false;
-            }
-
-            long filesize = srcFile.length();
-            command = "C0644 " + filesize + " ";
-
-            if (srcPath.lastIndexOf('/') > 0) {
-                command += srcPath.substring(srcPath.lastIndexOf('/') + 1);
-            } else {
-                command += srcPath;
-            }
-            command += "\n";
-            out.write(command.getBytes());
-            out.flush();
-
-            if (checkAck(in) != 0) {   // returns 1 if location where file is to be copied does not exist
-                return false;
-            }
-
-            // send a content of srcPath
-            fileInputStream = new FileInputStream(srcPath);
-            byte[] buf = new byte[1024];
-            while (true) {
-                int len = fileInputStream.read(buf, 0, buf.length);
-                if (len <= 0)
-                    break;
-                out.write(buf, 0, len);
-                out.flush();
-            }
-            fileInputStream.close();
-            fileInputStream = null;
-            // send '\0'
-            buf[0] = 0;
-            out.write(buf, 0, 1);
-            out.flush();
-            if (checkAck(in) != 0) {
-                return false;
+            session = openSession(remoteSecureCopyInputs.getDestUsername(), remoteSecureCopyInputs.getDestHost(),
+                    remoteSecureCopyInputs.getDestPort(), remoteSecureCopyInputs.getDestPrivateKeyFile(), remoteSecureCopyInputs.getDestPassword(), false);
+
+            final SCPTransfer transfer = buildTransfer();
+            final Session destination = session;
+            List<Callable<Boolean>> transfers = new ArrayList<>();
+            for (final String path : splitSourcePaths(srcPath)) {
+                transfers.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return transfer.upload(destination, new File(path), destPath);
+                    }
+                });
             }
-            out.close();
-
-            channel.disconnect();
-            session.disconnect();
-            return true;
+            return runTransfers(transfers);
         } catch (JSchException | IOException e) {
             throw new RuntimeException(e);
-        } finally{
-            try{
-                if (fileInputStream != null){
-                    fileInputStream.close();
-                }
-            }catch (IOException ioe) {}
+        } finally {
+            disconnect(session);
         }
     }
 
     protected boolean copyFromRemoteToLocal(String srcPath, String destPath){
-        FileOutputStream fileOutputStream = null;
-
+        Session session = null;
         try {
-
-            JSch jsch = new JSch();
-            session = jsch.getSession(remoteSecureCopyInputs.getSrcUsername(), remoteSecureCopyInputs.getSrcHost(), StringUtils.toInt(remoteSecureCopyInputs.getSrcPort(), Constants.DEFAULT_PORT));
-
-            establishKnownHostsConfiguration(ConnectionUtils.resolveKnownHosts(remoteSecureCopyInputs.getKnownHostsPolicy(), remoteSecureCopyInputs.getKnownHostsPath()), jsch, session);
-            establishPrivateKeyFile(ConnectionUtils.getKeyFile(remoteSecureCopyInputs.getSrcPrivateKeyFile(), remoteSecureCopyInputs.getSrcPassword()), jsch, session, true);
-
-            session.connect(StringUtils.toInt(remoteSecureCopyInputs.getTimeout(), Constants.DEFAULT_TIMEOUT));
-
-            String command = "scp -f " + srcPath;
-            Channel channel = session.openChannel(EXEC_CHANNEL);
-            ((ChannelExec) channel).setCommand(command);
-
-            OutputStream out = channel.getOutputStream();
-            InputStream in = channel.getInputStream();
-
-            channel.connect();
-            byte[] buf = new byte[1024];
-
-            buf[0] = 0;
-            out.write(buf, 0, 1);
-            out.flush();
-
-            while (true) {
-                int c = checkAck(in);
-
-                if (c == 1 || c == 2){
-                    return false;
-                }
-                if (c != 'C') {
-                    break;
-                }
-
-                in.read(buf, 0, 5);
-                long filesize = 0L;
-                while (true) {
-                    if (in.read(buf, 0, 1) < 0) {
-                        return false;
-                    }
-                    if (buf[0] == ' ') {
-                        break;
-                    }
-                    filesize = filesize * 10L + (long) (buf[0] - '0');
-                }
-
-                for (int i = 0; ; i++) {
-                    in.read(buf, i, 1);
-                    if (buf[i] == (byte) 0x0a) {
-                        break;
-                    }
-                }
-                buf[0] = 0;
-                out.write(buf, 0, 1);
-                out.flush();
-
-                fileOutputStream = new FileOutputStream(destPath);
-
-                int foo;
-                while (true) {
-                    if (buf.length < filesize) {
-                        foo = buf.length;
-                    } else {
-                        foo = (int) filesize;
+            session = openSession(remoteSecureCopyInputs.getSrcUsername(), remoteSecureCopyInputs.getSrcHost(),
+                    remoteSecureCopyInputs.getSrcPort(), remoteSecureCopyInputs.getSrcPrivateKeyFile(), remoteSecureCopyInputs.getSrcPassword(), true);
+
+            final SCPTransfer transfer = buildTransfer();
+            final Session source = session;
+            final File dest = new File(destPath);
+            List<Callable<Boolean>> transfers = new ArrayList<>();
+            for (final String path : splitSourcePaths(srcPath)) {
+                transfers.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return transfer.download(source, path, dest);
                     }
-                    foo = in.read(buf, 0, foo);
-                    if (foo < 0) {
-                        return false;
-                    }
-                    fileOutputStream.write(buf, 0, foo);
-                    filesize -= foo;
-                    if (filesize == 0L) {
-                        break;
-                    }
-                }
-                fileOutputStream.close();
-                fileOutputStream = null;
-                if (checkAck(in) != 0) {
-                    return false;
-                }
-                buf[0] = 0;
-                out.write(buf, 0, 1);
-                out.flush();
+                });
             }
-            channel.disconnect();
-            session.disconnect();
-            return true;
-
+            return runTransfers(transfers);
         } catch (JSchException | IOException e) {
             throw new RuntimeException(e);
-        } finally {
-            try {
-                if (fileOutputStream != null) {
-                    fileOutputStream.close();
-                }
-            }
-            catch (Exception ee){
-
-            }
+        }  finally {
+            disconnect(session);
         }
     }
 
@@ -294,27 +187,82 @@ public class SCPCopier {
             }
         }
     }
-    private int checkAck(InputStream in) throws IOException {
-        int b = in.read();
-        // b may be 0 for success,
-        //          1 for error,
-        //          2 for fatal error,
-        //          -1
-        if(b == 0) return b;
-        if(b == -1) return b;
+    protected Session openSession(String username, String host, String port, String privateKeyFile, String password,
+                                  boolean usesSrcPrivateKeyFile) throws JSchException, IOException {
+        JSch jsch = new JSch();
+        Session session = jsch.getSession(username, host, StringUtils.toInt(port, Constants.DEFAULT_PORT));
 
-        if(b==1 || b==2){
-            StringBuffer sb = new StringBuffer();
-            int c;
-            do {
-                c=in.read();
-                sb.append((char)c);
-            } while(c!='\n');
+        establishKnownHostsConfiguration(ConnectionUtils.resolveKnownHosts(remoteSecureCopyInputs.getKnownHostsPolicy(), remoteSecureCopyInputs.getKnownHostsPath()), jsch, session);
+        establishPrivateKeyFile(ConnectionUtils.getKeyFile(privateKeyFile, password), jsch, session, usesSrcPrivateKeyFile);
 
-            throw new RuntimeException(sb.toString());
+        session.connect(StringUtils.toInt(remoteSecureCopyInputs.getTimeout(), Constants.DEFAULT_TIMEOUT));
+        return session;
+    }
 
+    protected SCPTransfer buildTransfer() {
+        return new SCPTransfer(StringUtils.toInt(remoteSecureCopyInputs.getBufferSize(), Constants.DEFAULT_BUFFER_SIZE),
+                StringUtils.toBoolean(remoteSecureCopyInputs.getRecursive(), Constants.DEFAULT_RECURSIVE),
+                ChecksumAlgorithm.fromString(remoteSecureCopyInputs.getChecksumAlgorithm()));
+    }
 
+    /**
+     * Runs the transfers of a batch, at most parallelTransfers at a time. A single transfer runs on the current thread.
+     *
+     * @return true if all the transfers succeeded.
+     */
+    private boolean runTransfers(List<Callable<Boolean>> transfers) {
+        int parallelTransfers = Math.min(transfers.size(),
+                StringUtils.toInt(remoteSecureCopyInputs.getParallelTransfers(), Constants.DEFAULT_PARALLEL_TRANSFERS));
+        boolean copied = true;
+        if (parallelTransfers <= 1) {
+            for (Callable<Boolean> transfer : transfers) {
+                try {
+                    copied &= transfer.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return copied;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelTransfers);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(transfers)) {
+                copied &= result.get();
+            }
+            return copied;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<String> splitSourcePaths(String srcPath) {
+        String delimiter = remoteSecureCopyInputs.getSourcePathDelimiter();
+        if (StringUtils.isEmpty(delimiter)) {
+            return Collections.singletonList(srcPath);
+        }
+        List<String> paths = new ArrayList<>();
+        for (String path : srcPath.split(Pattern.quote(delimiter))) {
+            if (!path.trim().isEmpty()) {
+                paths.add(path.trim());
+            }
+        }
+        return paths;
+    }
+
+    private void disconnect(Session session) {
+        if (session != null) {
+            session.disconnect();
         }
-        return b;
     }
 }
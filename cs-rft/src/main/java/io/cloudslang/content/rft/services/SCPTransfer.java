@@ -0,0 +1,576 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.rft.services;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import io.cloudslang.content.rft.utils.ChecksumAlgorithm;
+import io.cloudslang.content.rft.utils.RingBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Implements the SCP protocol over the exec channels of already connected sessions. The file contents are moved with
+ * buffers of the configured size and the channel is flushed only at the end of each protocol message or file, so the
+ * data is sent in full SSH packets. Several transfers can run at the same time over the same session, each on its own
+ * channel.
+ */
+public class SCPTransfer {
+
+    private static final String EXEC_CHANNEL = "exec";
+    private static final String PIPE_THREAD_NAME = "scp-remote-to-remote";
+    private static final int PIPE_BUFFER_SIZE = 1024 * 1024;
+    private static final String FILE_MODE = "0644";
+    private static final String DIRECTORY_MODE = "0755";
+    private static final ExecutorService PIPE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, PIPE_THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final int bufferSize;
+    private final boolean recursive;
+    private final ChecksumAlgorithm checksumAlgorithm;
+
+    /**
+     * @param bufferSize        the size of the buffers used for the file contents.
+     * @param recursive         if true directories are copied with their contents.
+     * @param checksumAlgorithm the algorithm used to verify each copied file, or null to skip the verification.
+     */
+    public SCPTransfer(int bufferSize, boolean recursive, ChecksumAlgorithm checksumAlgorithm) {
+        if (bufferSize < 1) {
+            throw new RuntimeException("The buffer size should be greater than 0.");
+        }
+        this.bufferSize = bufferSize;
+        this.recursive = recursive;
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * Copies a local file, or a local directory when the transfer is recursive, to the destination path.
+     *
+     * @return false if the destination did not acknowledge a message.
+     */
+    public boolean upload(Session session, File source, String destPath) throws JSchException, IOException {
+        if (source.isDirectory() && !recursive) {
+            throw new RuntimeException("The source path " + source.getPath() + " is a directory, set recursive to true to copy it.");
+        }
+        boolean destIsDirectory = checksumAlgorithm != null && isRemoteDirectory(session, destPath);
+        Map<String, String> checksums = new LinkedHashMap<>();
+
+        ChannelExec channel = (ChannelExec) session.openChannel(EXEC_CHANNEL);
+        try {
+            channel.setCommand(buildCommand("-t", destPath));
+            OutputStream out = channel.getOutputStream();
+            InputStream in = channel.getInputStream();
+            channel.connect();
+
+            if (checkAck(in) != 0) {
+                return false;
+            }
+            if (!send(source, "", out, in, checksums)) {
+                return false;
+            }
+            out.close();
+        } finally {
+            channel.disconnect();
+        }
+
+        for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+            verifyChecksum(session, destinationPath(destPath, destIsDirectory, checksum.getKey()), checksum.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Copies a remote file, or a remote directory when the transfer is recursive, to the local destination.
+     *
+     * @return false if the source sent an unexpected message.
+     */
+    public boolean download(Session session, String srcPath, File dest) throws JSchException, IOException {
+        Map<String, String> checksums = new LinkedHashMap<>();
+
+        ChannelExec channel = (ChannelExec) session.openChannel(EXEC_CHANNEL);
+        try {
+            channel.setCommand(buildCommand("-f", srcPath));
+            OutputStream out = channel.getOutputStream();
+            InputStream in = channel.getInputStream();
+            channel.connect();
+
+            sendAck(out);
+            Deque<File> directories = new ArrayDeque<>();
+            Deque<String> relativePaths = new ArrayDeque<>();
+            boolean done = false;
+            while (!done) {
+                int c = checkAck(in);
+                switch (c) {
+                    case 'T':
+                        readLine(in);
+                        break;
+                    case 'D': {
+                        String name = parseName(readLine(in));
+                        File directory = resolveLocal(directories, dest, name);
+                        if (!directory.isDirectory() && !directory.mkdirs()) {
+                            throw new IOException("Could not create the directory " + directory.getPath() + ".");
+                        }
+                        directories.push(directory);
+                        relativePaths.push(relativePath(relativePaths, name));
+                        break;
+                    }
+                    case 'E':
+                        readLine(in);
+                        directories.pop();
+                        relativePaths.pop();
+                        break;
+                    case 'C': {
+                        String header = readLine(in);
+                        String name = parseName(header);
+                        File file = resolveLocal(directories, dest, name);
+                        sendAck(out);
+                        MessageDigest digest = newDigest();
+                        FileOutputStream fileOutputStream = new FileOutputStream(file);
+                        try {
+                            copy(in, fileOutputStream, parseSize(header), digest);
+                        } finally {
+                            fileOutputStream.close();
+                        }
+                        if (checkAck(in) != 0) {
+                            return false;
+                        }
+                        addChecksum(checksums, relativePath(relativePaths, name), digest);
+                        break;
+                    }
+                    default:
+                        // the end of the transfer
+                        done = true;
+                        continue;
+                }
+                sendAck(out);
+            }
+        } finally {
+            channel.disconnect();
+        }
+
+        String srcParent = parentPath(srcPath);
+        for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+            verifyChecksum(session, joinPath(srcParent, checksum.getKey()), checksum.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Copies a file, or a directory when the transfer is recursive, from the source host to the destination host.
+     * The file contents are not stored locally: the data read from the source channel is written to the destination
+     * channel through a bounded buffer, so reading and writing overlap and the source waits when the destination is
+     * slower.
+     *
+     * @return false if one of the hosts sent an unexpected message.
+     */
+    public boolean relay(Session srcSession, String srcPath, Session destSession, String destPath) throws JSchException, IOException {
+        boolean destIsDirectory = checksumAlgorithm != null && isRemoteDirectory(destSession, destPath);
+        Map<String, String> checksums = new LinkedHashMap<>();
+
+        ChannelExec srcChannel = (ChannelExec) srcSession.openChannel(EXEC_CHANNEL);
+        ChannelExec destChannel = null;
+        try {
+            srcChannel.setCommand(buildCommand("-f", srcPath));
+            OutputStream srcOut = srcChannel.getOutputStream();
+            InputStream srcIn = srcChannel.getInputStream();
+
+            destChannel = (ChannelExec) destSession.openChannel(EXEC_CHANNEL);
+            destChannel.setCommand(buildCommand("-t", destPath));
+            OutputStream destOut = destChannel.getOutputStream();
+            InputStream destIn = destChannel.getInputStream();
+
+            srcChannel.connect();
+            destChannel.connect();
+
+            if (checkAck(destIn) != 0) {
+                return false;
+            }
+            sendAck(srcOut);
+
+            // forward the messages of the source to the destination, the file contents are streamed between them
+            Deque<String> relativePaths = new ArrayDeque<>();
+            while (true) {
+                int c = checkAck(srcIn);
+                if (c == -1) {
+                    break;
+                }
+                if (c != 'C' && c != 'D' && c != 'E' && c != 'T') {
+                    return false;
+                }
+                String header = (char) c + readLine(srcIn);
+                destOut.write(header.getBytes(StandardCharsets.UTF_8));
+                destOut.flush();
+                if (checkAck(destIn) != 0) {
+                    return false;
+                }
+                if (c == 'D') {
+                    relativePaths.push(relativePath(relativePaths, parseName(header)));
+                } else if (c == 'E') {
+                    relativePaths.pop();
+                } else if (c == 'C') {
+                    sendAck(srcOut);
+                    MessageDigest digest = newDigest();
+                    pipe(srcIn, destOut, parseSize(header), digest);
+                    if (checkAck(srcIn) != 0) {
+                        return false;
+                    }
+                    sendAck(destOut);
+                    if (checkAck(destIn) != 0) {
+                        return false;
+                    }
+                    addChecksum(checksums, relativePath(relativePaths, parseName(header)), digest);
+                }
+                sendAck(srcOut);
+            }
+            destOut.close();
+        } finally {
+            srcChannel.disconnect();
+            if (destChannel != null) {
+                destChannel.disconnect();
+            }
+        }
+
+        for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+            verifyChecksum(destSession, destinationPath(destPath, destIsDirectory, checksum.getKey()), checksum.getValue());
+        }
+        return true;
+    }
+
+    private boolean send(File file, String parentPath, OutputStream out, InputStream in, Map<String, String> checksums) throws IOException {
+        String name = file.getName();
+        long modified = file.lastModified() / 1000;
+        write(out, "T" + modified + " 0 " + modified + " 0\n");
+        if (checkAck(in) != 0) {
+            return false;
+        }
+
+        if (file.isDirectory()) {
+            write(out, "D" + DIRECTORY_MODE + " 0 " + name + "\n");
+            if (checkAck(in) != 0) {
+                return false;
+            }
+            File[] children = file.listFiles();
+            if (children == null) {
+                throw new IOException("Could not list the directory " + file.getPath() + ".");
+            }
+            for (File child : children) {
+                if (!send(child, parentPath + name + "/", out, in, checksums)) {
+                    return false;
+                }
+            }
+            write(out, "E\n");
+            return checkAck(in) == 0;
+        }
+
+        write(out, "C" + FILE_MODE + " " + file.length() + " " + name + "\n");
+        if (checkAck(in) != 0) {   // returns 1 if location where file is to be copied does not exist
+            return false;
+        }
+        MessageDigest digest = newDigest();
+        FileInputStream fileInputStream = new FileInputStream(file.getPath());
+        try {
+            byte[] buf = new byte[bufferSize];
+            int len;
+            while ((len = fileInputStream.read(buf, 0, buf.length)) > 0) {
+                out.write(buf, 0, len);
+                if (digest != null) {
+                    digest.update(buf, 0, len);
+                }
+            }
+        } finally {
+            fileInputStream.close();
+        }
+        // the end of the file is marked with '\0'
+        sendAck(out);
+        if (checkAck(in) != 0) {
+            return false;
+        }
+        addChecksum(checksums, parentPath + name, digest);
+        return true;
+    }
+
+    private void copy(InputStream in, OutputStream out, long size, MessageDigest digest) throws IOException {
+        byte[] buf = new byte[bufferSize];
+        long remaining = size;
+        while (remaining > 0) {
+            int length = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+            if (length < 0) {
+                throw new EOFException("The source closed the connection before the end of the file.");
+            }
+            out.write(buf, 0, length);
+            if (digest != null) {
+                digest.update(buf, 0, length);
+            }
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Copies size bytes from the source to the destination. A pooled thread reads the source into a bounded
+     * buffer while the current thread writes the buffer to the destination.
+     */
+    private void pipe(final InputStream in, OutputStream out, final long size, MessageDigest digest) throws IOException {
+        final RingBuffer buffer = new RingBuffer(Math.max(PIPE_BUFFER_SIZE, 2 * bufferSize));
+        PIPE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] chunk = new byte[bufferSize];
+                long remaining = size;
+                try {
+                    while (remaining > 0) {
+                        int length = in.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                        if (length < 0) {
+                            throw new EOFException("The source closed the connection before the end of the file.");
+                        }
+                        buffer.write(chunk, 0, length);
+                        remaining -= length;
+                    }
+                    buffer.close();
+                } catch (IOException e) {
+                    buffer.fail(e);
+                }
+            }
+        });
+
+        try {
+            byte[] chunk = new byte[bufferSize];
+            long remaining = size;
+            while (remaining > 0) {
+                int length = buffer.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                if (length < 0) {
+                    throw new EOFException("The source closed the connection before the end of the file.");
+                }
+                out.write(chunk, 0, length);
+                if (digest != null) {
+                    digest.update(chunk, 0, length);
+                }
+                remaining -= length;
+            }
+        } finally {
+            // stops the reader if the destination failed
+            buffer.close();
+        }
+    }
+
+    private boolean isRemoteDirectory(Session session, String path) throws JSchException, IOException {
+        return runCommand(session, "test -d " + quote(path), new ByteArrayOutputStream()) == 0;
+    }
+
+    private void verifyChecksum(Session session, String remotePath, String expected) throws JSchException, IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int exitStatus = runCommand(session, checksumAlgorithm.getCommand() + " " + quote(remotePath), output);
+        String checksum = output.toString(StandardCharsets.UTF_8.name()).trim().split("\\s+")[0];
+        if (exitStatus != 0 || checksum.isEmpty()) {
+            throw new RuntimeException("Could not compute the checksum of " + remotePath + ".");
+        }
+        if (!checksum.equalsIgnoreCase(expected)) {
+            throw new RuntimeException("The checksum of " + remotePath + " does not match the copied data.");
+        }
+    }
+
+    private int runCommand(Session session, String command, OutputStream output) throws JSchException, IOException {
+        ChannelExec channel = (ChannelExec) session.openChannel(EXEC_CHANNEL);
+        try {
+            channel.setCommand(command);
+            InputStream in = channel.getInputStream();
+            ClosingOutputStream err = new ClosingOutputStream();
+            channel.setErrStream(err);
+            channel.connect();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) >= 0) {
+                output.write(buf, 0, len);
+            }
+            // the exit status may arrive after the end of the output, the error stream is closed with the channel
+            try {
+                err.awaitClose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the command to exit.");
+            }
+            return channel.getExitStatus();
+        } finally {
+            channel.disconnect();
+        }
+    }
+
+    private String buildCommand(String mode, String path) {
+        return "scp " + (recursive ? "-r " : "") + "-p " + mode + " " + quote(path);
+    }
+
+    private MessageDigest newDigest() {
+        return checksumAlgorithm == null ? null : checksumAlgorithm.newDigest();
+    }
+
+    private void addChecksum(Map<String, String> checksums, String relativePath, MessageDigest digest) {
+        if (digest != null) {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            checksums.put(relativePath, hex.toString());
+        }
+    }
+
+    private File resolveLocal(Deque<File> directories, File dest, String name) {
+        if (!directories.isEmpty()) {
+            return new File(directories.peek(), name);
+        }
+        return dest.isDirectory() ? new File(dest, name) : dest;
+    }
+
+    /**
+     * @return the remote path of a copied file, given its path relative to the copied file or directory.
+     */
+    private String destinationPath(String destPath, boolean destIsDirectory, String relativePath) {
+        if (destIsDirectory) {
+            return joinPath(destPath, relativePath);
+        }
+        // the copied file or directory was created with the destination name
+        int separator = relativePath.indexOf('/');
+        return separator < 0 ? destPath : joinPath(destPath, relativePath.substring(separator + 1));
+    }
+
+    private String relativePath(Deque<String> parents, String name) {
+        return parents.isEmpty() ? name : parents.peek() + "/" + name;
+    }
+
+    private String parentPath(String path) {
+        String trimmed = path;
+        while (trimmed.length() > 1 && trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        int separator = trimmed.lastIndexOf('/');
+        if (separator < 0) {
+            return "";
+        }
+        return separator == 0 ? "/" : trimmed.substring(0, separator);
+    }
+
+    private String joinPath(String parent, String child) {
+        if (parent.isEmpty()) {
+            return child;
+        }
+        return parent.endsWith("/") ? parent + child : parent + "/" + child;
+    }
+
+    private String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * @return the size from a "C&lt;mode&gt; &lt;size&gt; &lt;name&gt;" message.
+     */
+    private long parseSize(String header) {
+        return Long.parseLong(header.trim().split(" ", 3)[1]);
+    }
+
+    /**
+     * @return the name from a "C&lt;mode&gt; &lt;size&gt; &lt;name&gt;" or "D&lt;mode&gt; 0 &lt;name&gt;" message. The name
+     * comes from the source host and must be a single path element, so the source cannot write outside of the
+     * destination.
+     */
+    private String parseName(String header) {
+        String[] parts = header.split(" ", 3);
+        if (parts.length < 3) {
+            throw new RuntimeException("Invalid SCP message: " + header);
+        }
+        String name = parts[2].endsWith("\n") ? parts[2].substring(0, parts[2].length() - 1) : parts[2];
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name) || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0) {
+            throw new RuntimeException("The source sent an invalid file name: " + name);
+        }
+        return name;
+    }
+
+    private void write(OutputStream out, String message) throws IOException {
+        out.write(message.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        do {
+            c = in.read();
+            if (c < 0) {
+                throw new EOFException("The connection was closed before the end of the line.");
+            }
+            line.write(c);
+        } while (c != '\n');
+        return line.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private void sendAck(OutputStream out) throws IOException {
+        out.write(0);
+        out.flush();
+    }
+
+    private int checkAck(InputStream in) throws IOException {
+        int b = in.read();
+        // b may be 0 for success,
+        //          1 for error,
+        //          2 for fatal error,
+        //          -1
+        if (b == 1 || b == 2) {
+            throw new RuntimeException(readLine(in));
+        }
+        return b;
+    }
+
+    /**
+     * Discards the error output of a command. The channel closes the stream when it is closed, after the exit
+     * status was received.
+     */
+    private static class ClosingOutputStream extends OutputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        private void awaitClose() throws InterruptedException {
+            closed.await();
+        }
+    }
+}
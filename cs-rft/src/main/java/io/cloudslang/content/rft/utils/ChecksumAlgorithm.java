@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.rft.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * The checksum algorithms which can verify a copied file, with the command computing the same checksum on the remote host.
+ */
+public enum ChecksumAlgorithm {
+    MD5("MD5", "md5sum"),
+    SHA1("SHA-1", "sha1sum"),
+    SHA256("SHA-256", "sha256sum");
+
+    private final String digestName;
+    private final String command;
+
+    ChecksumAlgorithm(String digestName, String command) {
+        this.digestName = digestName;
+        this.command = command;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * @return the algorithm with the given name, or null if the name is empty.
+     */
+    public static ChecksumAlgorithm fromString(String value) {
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        switch (value.toLowerCase(Locale.ENGLISH).replace("-", "")) {
+            case "md5":
+                return MD5;
+            case "sha1":
+                return SHA1;
+            case "sha256":
+                return SHA256;
+            default:
+                throw new RuntimeException("Unknown checksum algorithm: " + value + ". Valid values: md5, sha1, sha256.");
+        }
+    }
+}
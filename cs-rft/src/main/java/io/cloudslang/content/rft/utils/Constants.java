@@ -29,6 +29,9 @@ public class Constants {
     public static final int DEFAULT_TIMEOUT = 90000;
     public static final String DEFAULT_KNOWN_HOSTS_POLICY = "strict";
     public static final Path DEFAULT_KNOWN_HOSTS_PATH = Paths.get(System.getProperty("user.home"), ".ssh", "known_hosts");
+    public static final boolean DEFAULT_RECURSIVE = false;
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    public static final int DEFAULT_PARALLEL_TRANSFERS = 4;
 
     public static final class InputNames {
         public static final String SOURCE_HOST = "sourceHost";
@@ -46,6 +49,11 @@ public class Constants {
         public static final String KNOWN_HOSTS_POLICY = "knownHostsPolicy";
         public static final String KNOWN_HOSTS_PATH = "knownHostsPath";
         public static final String TIMEOUT = "timeout";
+        public static final String SOURCE_PATH_DELIMITER = "sourcePathDelimiter";
+        public static final String RECURSIVE = "recursive";
+        public static final String BUFFER_SIZE = "bufferSize";
+        public static final String PARALLEL_TRANSFERS = "parallelTransfers";
+        public static final String CHECKSUM_ALGORITHM = "checksumAlgorithm";
 
     }
 
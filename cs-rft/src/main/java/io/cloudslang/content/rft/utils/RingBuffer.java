@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.rft.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Bounded byte buffer between a writer thread and a reader thread. The writer waits while the buffer is full and
+ * the reader waits while it is empty, so a fast source cannot get ahead of a slow destination by more than the
+ * buffer capacity.
+ */
+public class RingBuffer {
+
+    private final byte[] buffer;
+    private int readPosition;
+    private int count;
+    private boolean closed;
+    private IOException failure;
+
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The buffer capacity should be greater than 0.");
+        }
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Writes all the bytes, waiting for free space when the buffer is full.
+     *
+     * @throws IOException if the buffer was closed by the reader.
+     */
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            while (count == buffer.length && !closed) {
+                waitForChange();
+            }
+            if (closed) {
+                throw new IOException("The buffer is closed.");
+            }
+            int writePosition = (readPosition + count) % buffer.length;
+            int chunk = Math.min(len, Math.min(buffer.length - count, buffer.length - writePosition));
+            System.arraycopy(b, off, buffer, writePosition, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Reads the available bytes, waiting for data when the buffer is empty.
+     *
+     * @return the number of bytes read, or -1 if the buffer is closed and empty.
+     * @throws IOException the failure of the writer.
+     */
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        while (count == 0 && !closed) {
+            waitForChange();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (count == 0) {
+            return -1;
+        }
+        int chunk = Math.min(len, Math.min(count, buffer.length - readPosition));
+        System.arraycopy(buffer, readPosition, b, off, chunk);
+        readPosition = (readPosition + chunk) % buffer.length;
+        count -= chunk;
+        notifyAll();
+        return chunk;
+    }
+
+    /**
+     * Marks the end of the data. The reader gets the remaining bytes and then the end of the data, the writer fails.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Closes the buffer with the failure of the writer, which is thrown to the reader.
+     */
+    public synchronized void fail(IOException e) {
+        failure = e;
+        close();
+    }
+
+    private void waitForChange() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the buffer.");
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * (c) Copyright 2014 Hewlett-Packard Development Company, L.P.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Apache License v2.0 which accompany this distribution.
+ *
+ * The Apache License is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *******************************************************************************/
+
+package io.cloudslang.content.rft.services;
+
+import io.cloudslang.content.rft.entities.RemoteSecureCopyInputs;
+import org.apache.sshd.SshServer;
+import org.apache.sshd.common.file.nativefs.NativeFileSystemFactory;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.CommandFactory;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.PasswordAuthenticator;
+import org.apache.sshd.server.command.ScpCommandFactory;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copies files between two directories of an embedded SSH server, which plays both the source and the destination host.
+ * Besides SCP the server understands "test -d" and the checksum commands used to verify the copied files.
+ */
+public class SCPCopierEmbeddedServerTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SshServer sshServer;
+    private File srcDir;
+    private File destDir;
+    private volatile String maliciousFileName;
+
+    @Before
+    public void setUp() throws IOException {
+        sshServer = SshServer.setUpDefaultServer();
+        sshServer.setHost("localhost");
+        sshServer.setPort(0);
+        // an RSA host key, the DSA keys generated by the JDK are too long to be signed with SHA-1
+        sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(null, "RSA"));
+        sshServer.setPasswordAuthenticator(new PasswordAuthenticator() {
+            @Override
+            public boolean authenticate(String username, String password, ServerSession session) {
+                return USERNAME.equals(username) && PASSWORD.equals(password);
+            }
+        });
+        final CommandFactory scpCommandFactory = new ScpCommandFactory(new CommandFactory() {
+            @Override
+            public Command createCommand(String command) {
+                return new ChecksumCommand(command);
+            }
+        });
+        sshServer.setCommandFactory(new CommandFactory() {
+            @Override
+            public Command createCommand(String command) {
+                if (maliciousFileName != null && command.startsWith("scp ")) {
+                    return new MaliciousScpSourceCommand(maliciousFileName);
+                }
+                return scpCommandFactory.createCommand(command);
+            }
+        });
+        sshServer.setFileSystemFactory(new NativeFileSystemFactory());
+        sshServer.start();
+
+        srcDir = folder.newFolder("src");
+        destDir = folder.newFolder("dest");
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sshServer.stop(true);
+    }
+
+    @Test
+    public void copyFromRemoteToRemote() throws IOException {
+        byte[] content = new byte[5 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(content);
+        File srcFile = new File(srcDir, "image.bin");
+        Files.write(srcFile.toPath(), content);
+
+        String[] tempFilesBefore = tempFiles();
+        boolean copied = new SCPCopier(buildInputs(srcFile.getAbsolutePath(), destDir.getAbsolutePath())).copyFromRemoteToRemote();
+
+        assertTrue(copied);
+        assertArrayEquals(content, Files.readAllBytes(new File(destDir, "image.bin").toPath()));
+        assertArrayEquals("no local temporary file should be created", tempFilesBefore, tempFiles());
+    }
+
+    @Test
+    public void copyFromRemoteToRemoteWithSpacesInPaths() throws IOException {
+        File srcFile = new File(srcDir, "my image.bin");
+        Files.write(srcFile.toPath(), randomBytes(1000, 2));
+        File spacedDestDir = new File(destDir, "with space");
+        assertTrue(spacedDestDir.mkdir());
+
+        RemoteSecureCopyInputs inputs = buildInputs(srcFile.getAbsolutePath(), spacedDestDir.getAbsolutePath());
+        inputs.setChecksumAlgorithm("sha256");
+        assertTrue(new SCPCopier(inputs).copyFromRemoteToRemote());
+        assertArrayEquals(randomBytes(1000, 2), Files.readAllBytes(new File(spacedDestDir, "my image.bin").toPath()));
+    }
+
+    @Test
+    public void copyFromRemoteToRemoteEmptyFile() throws IOException {
+        File srcFile = new File(srcDir, "empty.txt");
+        Files.write(srcFile.toPath(), new byte[0]);
+
+        boolean copied = new SCPCopier(buildInputs(srcFile.getAbsolutePath(), new File(destDir, "renamed.txt").getAbsolutePath())).copyFromRemoteToRemote();
+
+        assertTrue(copied);
+        assertEquals(0, new File(destDir, "renamed.txt").length());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void copyFromRemoteToRemoteMissingSource() throws IOException {
+        new SCPCopier(buildInputs(new File(srcDir, "missing.txt").getAbsolutePath(), destDir.getAbsolutePath())).copyFromRemoteToRemote();
+    }
+
+    @Test
+    public void copyDirectoryFromLocalToRemote() throws IOException {
+        File localDir = folder.newFolder("local");
+        createTree(localDir);
+
+        RemoteSecureCopyInputs inputs = buildInputs(localDir.getAbsolutePath(), destDir.getAbsolutePath());
+        inputs.setSrcHost(null);
+        inputs.setRecursive("true");
+        inputs.setChecksumAlgorithm("sha256");
+        boolean copied = new SCPCopier(inputs).copyFromLocalToRemote();
+
+        assertTrue(copied);
+        assertTree(new File(destDir, "local"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void copyDirectoryWithoutRecursive() throws IOException {
+        File localDir = folder.newFolder("local");
+        createTree(localDir);
+
+        RemoteSecureCopyInputs inputs = buildInputs(localDir.getAbsolutePath(), destDir.getAbsolutePath());
+        inputs.setSrcHost(null);
+        new SCPCopier(inputs).copyFromLocalToRemote();
+    }
+
+    @Test
+    public void copyDirectoryFromRemoteToRemoteWithNewName() throws IOException {
+        File tree = new File(srcDir, "tree");
+        createTree(tree);
+        File renamed = new File(destDir, "renamed");
+
+        RemoteSecureCopyInputs inputs = buildInputs(tree.getAbsolutePath(), renamed.getAbsolutePath());
+        inputs.setRecursive("true");
+        inputs.setChecksumAlgorithm("md5");
+        boolean copied = new SCPCopier(inputs).copyFromRemoteToRemote();
+
+        assertTrue(copied);
+        assertTree(renamed);
+    }
+
+    @Test
+    public void copyBatchFromRemoteToRemote() throws IOException {
+        StringBuilder srcPaths = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            File srcFile = new File(srcDir, "file" + i + ".bin");
+            Files.write(srcFile.toPath(), randomBytes(100000 * i + 7, i));
+            srcPaths.append(srcFile.getAbsolutePath()).append(';');
+        }
+
+        RemoteSecureCopyInputs inputs = buildInputs(srcPaths.toString(), destDir.getAbsolutePath());
+        inputs.setSourcePathDelimiter(";");
+        inputs.setParallelTransfers("3");
+        inputs.setBufferSize("4096");
+        inputs.setChecksumAlgorithm("sha1");
+        boolean copied = new SCPCopier(inputs).copyFromRemoteToRemote();
+
+        assertTrue(copied);
+        for (int i = 0; i < 6; i++) {
+            assertArrayEquals(randomBytes(100000 * i + 7, i), Files.readAllBytes(new File(destDir, "file" + i + ".bin").toPath()));
+        }
+    }
+
+    @Test
+    public void copyDirectoryFromRemoteToLocal() throws IOException {
+        File tree = new File(srcDir, "tree");
+        createTree(tree);
+
+        RemoteSecureCopyInputs inputs = buildInputs(tree.getAbsolutePath(), destDir.getAbsolutePath());
+        inputs.setRecursive("true");
+        inputs.setChecksumAlgorithm("sha256");
+        boolean copied = new SCPCopier(inputs).copyFromRemoteToLocal();
+
+        assertTrue(copied);
+        assertTree(new File(destDir, "tree"));
+    }
+
+    @Test
+    public void checksumMismatch() throws IOException {
+        File srcFile = new File(srcDir, "corrupt.bin");
+        Files.write(srcFile.toPath(), randomBytes(1000, 1));
+
+        RemoteSecureCopyInputs inputs = buildInputs(srcFile.getAbsolutePath(), destDir.getAbsolutePath());
+        inputs.setChecksumAlgorithm("sha256");
+        try {
+            new SCPCopier(inputs).copyFromRemoteToRemote();
+            fail("the checksum mismatch should fail the copy");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("does not match"));
+        }
+    }
+
+    @Test
+    public void copyFromRemoteToLocalRejectsTraversalNames() throws IOException {
+        for (String name : new String[]{"../evil.txt", new File(folder.getRoot(), "evil.txt").getAbsolutePath(), "..", ".", "a\\evil.txt"}) {
+            maliciousFileName = name;
+            try {
+                new SCPCopier(buildInputs(new File(srcDir, "any.txt").getAbsolutePath(), destDir.getAbsolutePath())).copyFromRemoteToLocal();
+                fail("the file name " + name + " should fail the copy");
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("invalid file name"));
+            }
+        }
+
+        assertTrue(!new File(folder.getRoot(), "evil.txt").exists());
+        assertEquals(0, destDir.list().length);
+    }
+
+    private void createTree(File root) throws IOException {
+        File nested = new File(root, "nested");
+        assertTrue(nested.mkdirs());
+        Files.write(new File(root, "a.txt").toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(nested, "b.bin").toPath(), randomBytes(300000, 3));
+        Files.write(new File(nested, "empty").toPath(), new byte[0]);
+    }
+
+    private void assertTree(File actual) throws IOException {
+        assertEquals("first", new String(Files.readAllBytes(new File(actual, "a.txt").toPath()), StandardCharsets.UTF_8));
+        assertArrayEquals(randomBytes(300000, 3), Files.readAllBytes(new File(actual, "nested/b.bin").toPath()));
+        assertEquals(0, new File(actual, "nested/empty").length());
+    }
+
+    private byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private RemoteSecureCopyInputs buildInputs(String srcPath, String destPath) {
+        RemoteSecureCopyInputs inputs = new RemoteSecureCopyInputs(srcPath, "localhost", destPath, USERNAME);
+        inputs.setSrcHost("localhost");
+        inputs.setSrcPort(String.valueOf(sshServer.getPort()));
+        inputs.setSrcUsername(USERNAME);
+        inputs.setSrcPassword(PASSWORD);
+        inputs.setDestPort(String.valueOf(sshServer.getPort()));
+        inputs.setDestPassword(PASSWORD);
+        inputs.setKnownHostsPolicy("allow");
+        return inputs;
+    }
+
+    private String[] tempFiles() {
+        String[] files = new File(System.getProperty("java.io.tmpdir")).list();
+        if (files == null) {
+            return new String[0];
+        }
+        String[] scpFiles = Arrays.copyOf(files, files.length);
+        int count = 0;
+        for (String file : files) {
+            if (file.startsWith("SCPCopy")) {
+                scpFiles[count++] = file;
+            }
+        }
+        String[] result = Arrays.copyOf(scpFiles, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Plays a source host which sends a file with the given name, whatever the requested path.
+     */
+    private static class MaliciousScpSourceCommand implements Command, Runnable {
+        private final String fileName;
+        private InputStream in;
+        private OutputStream out;
+        private ExitCallback exitCallback;
+
+        private MaliciousScpSourceCommand(String fileName) {
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback exitCallback) {
+            this.exitCallback = exitCallback;
+        }
+
+        @Override
+        public void start(Environment env) {
+            new Thread(this).start();
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (in.read() == 0) {
+                    out.write(("C0644 5 " + fileName + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                    if (in.read() == 0) {
+                        out.write("evil\n".getBytes(StandardCharsets.UTF_8));
+                        out.write(0);
+                        out.flush();
+                        in.read();
+                    }
+                }
+            } catch (IOException e) {
+                // the client closed the channel
+            }
+            exitCallback.onExit(0);
+        }
+    }
+
+    private static class ChecksumCommand implements Command, Runnable {
+        private final String command;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback exitCallback;
+
+        private ChecksumCommand(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback exitCallback) {
+            this.exitCallback = exitCallback;
+        }
+
+        @Override
+        public void start(Environment env) {
+            new Thread(this).start();
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void run() {
+            int exitCode;
+            try {
+                exitCode = runCommand();
+            } catch (Exception e) {
+                exitCode = 1;
+            }
+            exitCallback.onExit(exitCode);
+        }
+
+        private int runCommand() throws Exception {
+            String[] parts = command.split(" ", 2);
+            if (command.startsWith("test -d ")) {
+                return new File(unquote(command.substring("test -d ".length()))).isDirectory() ? 0 : 1;
+            }
+            String path = unquote(parts[1]);
+            String algorithm;
+            switch (parts[0]) {
+                case "md5sum":
+                    algorithm = "MD5";
+                    break;
+                case "sha1sum":
+                    algorithm = "SHA-1";
+                    break;
+                case "sha256sum":
+                    algorithm = "SHA-256";
+                    break;
+                default:
+                    err.write(("unknown command " + parts[0] + "\n").getBytes(StandardCharsets.UTF_8));
+                    err.flush();
+                    return 127;
+            }
+            // a file named "corrupt" reports a wrong checksum
+            byte[] content = path.contains("corrupt") ? new byte[0] : Files.readAllBytes(new File(path).toPath());
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            out.write((hex + "  " + path + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return 0;
+        }
+
+        private String unquote(String path) {
+            return path.substring(1, path.length() - 1).replace("'\\''", "'");
+        }
+    }
+}
@@ -25,7 +25,6 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.verify;
-import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyNew;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -35,7 +34,7 @@ import static org.powermock.api.mockito.PowerMockito.when;
  * @author lesant
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({File.class, SCPCopier.class})
+@PrepareForTest({SCPCopier.class, SCPTransfer.class})
 public class SCPCopierTest {
 
     private static final Path KNOWN_HOSTS_PATH = Paths.get(System.getProperty("user.home"), ".ssh", "known_hosts");
@@ -61,8 +60,6 @@ public class SCPCopierTest {
     @Mock
     private ChannelExec channelExecMock;
 
-    @Mock
-    private File tempFileMock;
     @Mock
     private JSch jSchMock;
 
@@ -177,35 +174,6 @@ public class SCPCopierTest {
         verify(sessionMock).connect();
     }
 
-    @Test
-    public void copyFromRemoteToRemote() throws IOException {
-        RemoteSecureCopyInputs remoteSecureCopyInputs = getRemoteSecureCopyInputs();
-        scpCopier = new SCPCopier(remoteSecureCopyInputs) {
-            protected void establishKnownHostsConfiguration(KnownHostsFile knownHostsFile, JSch jsch, Session session) throws JSchException, IOException {
-            }
-
-            protected void establishPrivateKeyFile(KeyFile keyFile, JSch jsch, Session session, boolean usesSrcPrivateKeyFile) {
-            }
-
-            protected boolean copyFromLocalToRemote(String srcPath, String destPath) {
-                return true;
-            }
-
-            protected boolean copyFromRemoteToLocal(String srcPath, String destPath) {
-                return true;
-            }
-        };
-
-        mockStatic(File.class);
-        when(File.createTempFile(anyString(), anyString())).thenReturn(tempFileMock);
-        when(tempFileMock.getCanonicalPath()).thenReturn("C:\\myTestFolder");
-
-        boolean isCopied = scpCopier.copyFromRemoteToRemote();
-        verify(tempFileMock).delete();
-
-        assertEquals(true, isCopied);
-    }
-
     @Test
     public void establishKnownHostsConfigurationStrict() throws IOException, JSchException {
         RemoteSecureCopyInputs remoteSecureCopyInputs = getRemoteSecureCopyInputs();
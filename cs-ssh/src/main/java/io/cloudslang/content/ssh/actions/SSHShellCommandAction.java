@@ -44,9 +44,26 @@ public class SSHShellCommandAction {
      * @param closeSession        If true it closes the SSH session at completion of this operation.
      *                            If false the SSH session will be cached for future calls of this operation during the life of the flow.
      *                            Valid values: false, true. Default value: false
+     * @param outputMaxInMemorySize The maximum size in bytes of the standard output and of the standard error returned in
+     *                            'STDOUT' and 'STDERR'. A bigger output is saved to a temporary file instead and its path
+     *                            is returned in 'stdoutFile' or 'stderrFile'. The temporary files should be deleted by the caller.
+     *                            Default value: 0 (no limit). Example: 10485760
+     * @param channelType         The type of the SSH channel used to run the command. Valid values: shell, exec. Default value: shell
+     *                            The shell channel sends the command to the login shell of the user, like an interactive session.
+     *                            The exec channel runs the command directly, without the shell startup, and returns the exit status
+     *                            of the command and its standard error apart from its standard output.
      * @return - a map containing the output of the operation. Keys present in the map are:
      * <br><b>returnResult</b> - The primary output.
      * <br><b>STDOUT</b> - The standard output of the command(s).
+     * <br><b>stdoutFile</b> - The temporary file holding the standard output when it is bigger than 'outputMaxInMemorySize'.
+     * <br><b>stderrFile</b> - The temporary file holding the standard error when it is bigger than 'outputMaxInMemorySize'.
+     * <br><b>sessionsIdle</b> - The number of pooled SSH sessions not used by any command, after the command completed.
+     * <br><b>sessionsLeased</b> - The number of pooled SSH sessions used by at least one command, after the command completed.
+     * <br><b>channelsLeased</b> - The number of commands running on the pooled SSH sessions, after the command completed.
+     * <br><b>sessionsCreated</b> - The number of SSH sessions opened by the pool since it was started.
+     * <br><b>sessionsReused</b> - The number of commands run on an already opened pooled SSH session.
+     * <br><b>sessionsClosed</b> - The number of pooled SSH sessions closed since the pool was started.
+     * <br><b>failedHealthChecks</b> - The number of idle pooled SSH sessions discarded because they did not answer a keepalive message.
      * <br><b>visualized</b> - The output of the command in XML format.
      * <br><b>returnCode</b> - the return code of the operation. 0 if the operation goes to success, -1 if the operation goes to failure.
      * <br><b>exception</b> - the exception message if the operation goes to failure.
@@ -59,7 +76,16 @@ public class SSHShellCommandAction {
                     @Output(Constants.OutputNames.EXCEPTION),
                     @Output(Constants.STDOUT),
                     @Output(Constants.STDERR),
-                    @Output(Constants.EXIT_STATUS)
+                    @Output(Constants.EXIT_STATUS),
+                    @Output(Constants.STDOUT_FILE),
+                    @Output(Constants.STDERR_FILE),
+                    @Output(Constants.SESSIONS_IDLE),
+                    @Output(Constants.SESSIONS_LEASED),
+                    @Output(Constants.CHANNELS_LEASED),
+                    @Output(Constants.SESSIONS_CREATED),
+                    @Output(Constants.SESSIONS_REUSED),
+                    @Output(Constants.SESSIONS_CLOSED),
+                    @Output(Constants.FAILED_HEALTH_CHECKS)
             },
             responses = {
                     @Response(text = Constants.ResponseNames.SUCCESS, field = Constants.OutputNames.RETURN_CODE, value = Constants.ReturnCodes.RETURN_CODE_SUCCESS, matchType = MatchType.COMPARE_EQUAL, responseType = ResponseType.RESOLVED),
@@ -81,7 +107,9 @@ public class SSHShellCommandAction {
             @Param(value = Constants.InputNames.AGENT_FORWARDING) String agentForwarding,
             @Param(Constants.InputNames.TIMEOUT) String timeout,
             @Param(Constants.SSH_SESSIONS_DEFAULT_ID) GlobalSessionObject<Map<String, SSHConnection>> globalSessionObject,
-            @Param(Constants.CLOSE_SESSION) String closeSession) {
+            @Param(Constants.CLOSE_SESSION) String closeSession,
+            @Param(Constants.OUTPUT_MAX_IN_MEMORY_SIZE) String outputMaxInMemorySize,
+            @Param(Constants.CHANNEL_TYPE) String channelType) {
 
         SSHShellInputs sshShellInputs = new SSHShellInputs();
         sshShellInputs.setHost(host);
@@ -92,9 +120,11 @@ public class SSHShellCommandAction {
         sshShellInputs.setCommand(command);
         sshShellInputs.setArguments(arguments);
         sshShellInputs.setCharacterSet(characterSet);
+        sshShellInputs.setChannelType(channelType);
         sshShellInputs.setPty(pty);
         sshShellInputs.setAgentForwarding(agentForwarding);
         sshShellInputs.setTimeout(timeout);
+        sshShellInputs.setOutputMaxInMemorySize(outputMaxInMemorySize);
         sshShellInputs.setSshGlobalSessionObject(globalSessionObject);
         sshShellInputs.setCloseSession(closeSession);
         sshShellInputs.setKnownHostsPolicy(knownHostsPolicy);
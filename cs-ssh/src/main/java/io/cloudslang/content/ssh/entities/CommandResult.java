@@ -7,6 +7,8 @@ package io.cloudslang.content.ssh.entities;
 public class CommandResult {
     private String standardOutput;
     private String standardError;
+    private String standardOutputFile;
+    private String standardErrorFile;
     private int exitCode;
 
     public CommandResult() {
@@ -28,6 +30,28 @@ public class CommandResult {
         this.standardError = standardError;
     }
 
+    /**
+     * @return the temporary file holding the standard output when it was bigger than the in memory limit.
+     */
+    public String getStandardOutputFile() {
+        return standardOutputFile;
+    }
+
+    public void setStandardOutputFile(String standardOutputFile) {
+        this.standardOutputFile = standardOutputFile;
+    }
+
+    /**
+     * @return the temporary file holding the standard error when it was bigger than the in memory limit.
+     */
+    public String getStandardErrorFile() {
+        return standardErrorFile;
+    }
+
+    public void setStandardErrorFile(String standardErrorFile) {
+        this.standardErrorFile = standardErrorFile;
+    }
+
     public int getExitCode() {
         return exitCode;
     }
@@ -41,6 +65,8 @@ public class CommandResult {
         return "CommandResult{" +
                 "standardOutput='" + standardOutput + '\'' +
                 ", standardError='" + standardError + '\'' +
+                (standardOutputFile != null ? ", standardOutputFile='" + standardOutputFile + '\'' : "") +
+                (standardErrorFile != null ? ", standardErrorFile='" + standardErrorFile + '\'' : "") +
                 ", exitCode=" + exitCode +
                 '}';
     }
@@ -26,6 +26,8 @@ public class SSHShellInputs {
     private String knownHostsPolicy;
     private String knownHostsPath;
     private String agentForwarding;
+    private String outputMaxInMemorySize;
+    private String channelType;
 
     public String getHost() {
         return host;
@@ -170,4 +172,20 @@ public class SSHShellInputs {
     public void setAgentForwarding(String agentForwarding) {
         this.agentForwarding = agentForwarding;
     }
+
+    public String getOutputMaxInMemorySize() {
+        return outputMaxInMemorySize;
+    }
+
+    public void setOutputMaxInMemorySize(String outputMaxInMemorySize) {
+        this.outputMaxInMemorySize = outputMaxInMemorySize;
+    }
+
+    public String getChannelType() {
+        return channelType;
+    }
+
+    public void setChannelType(String channelType) {
+        this.channelType = channelType;
+    }
 }
@@ -27,6 +27,38 @@ public interface SSHService extends AutoCloseable {
      */
     CommandResult runShellCommand(String command, String characterSet, boolean usePseudoTerminal, int connectTimeout, int commandTimeout, boolean agentForwarding);
 
+    /**
+     * Run a Shell command(s) using SSH protocol.
+     *
+     * @param command               The Shell command(s).
+     * @param characterSet          The character set for the command and for the output of the command.
+     * @param usePseudoTerminal     If true the result will be formatted like in a terminal.
+     * @param connectTimeout        The channel connection timeout.
+     * @param commandTimeout        The command timeout.
+     * @param agentForwarding       Weathers the agent forwarding is enabled or not.
+     * @param outputMaxInMemorySize The maximum size in bytes of the standard output and of the standard error kept in memory.
+     *                              A bigger output is written to a temporary file. 0 means no limit.
+     * @return the command result.
+     */
+    CommandResult runShellCommand(String command, String characterSet, boolean usePseudoTerminal, int connectTimeout, int commandTimeout, boolean agentForwarding, long outputMaxInMemorySize);
+
+    /**
+     * Run a command using an SSH exec channel. The command is run without a shell, its standard error is kept
+     * apart from its standard output and its exit status is the exit status of the command.
+     * Many exec channels can run at the same time on one SSH session.
+     *
+     * @param command               The command.
+     * @param characterSet          The character set for the command and for the output of the command.
+     * @param usePseudoTerminal     If true the result will be formatted like in a terminal.
+     * @param connectTimeout        The channel connection timeout.
+     * @param commandTimeout        The command timeout.
+     * @param agentForwarding       Weathers the agent forwarding is enabled or not.
+     * @param outputMaxInMemorySize The maximum size in bytes of the standard output and of the standard error kept in memory.
+     *                              A bigger output is written to a temporary file. 0 means no limit.
+     * @return the command result.
+     */
+    CommandResult runExecCommand(String command, String characterSet, boolean usePseudoTerminal, int connectTimeout, int commandTimeout, boolean agentForwarding, long outputMaxInMemorySize);
+
     /**
      * Checks the SSH session.
      *
@@ -1,6 +1,7 @@
 package io.cloudslang.content.ssh.services.actions;
 
 import com.hp.oo.sdk.content.plugin.GlobalSessionObject;
+import io.cloudslang.content.ssh.entities.CommandResult;
 import io.cloudslang.content.ssh.entities.KeyFile;
 import io.cloudslang.content.ssh.entities.SSHConnection;
 import io.cloudslang.content.ssh.entities.SSHShellInputs;
@@ -12,6 +13,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import java.security.Provider;
 import java.security.Security;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -21,6 +23,7 @@ import java.util.Map;
 public abstract class SSHShellAbstract {
 
     public static final String COMMAND_IS_NOT_SPECIFIED_MESSAGE = "Command is not specified.";
+    public static final String UNKNOWN_CHANNEL_TYPE_MESSAGE = "Unknown channel type: ";
 
     protected boolean addSecurityProvider() {
         boolean providerAdded = false;
@@ -48,11 +51,45 @@ public abstract class SSHShellAbstract {
         return keyFile;
     }
 
+    /**
+     * Runs the command of the inputs in a shell channel or, if the 'channelType' input is exec, in an exec channel.
+     */
+    protected CommandResult runCommand(SSHService service, SSHShellInputs sshShellInputs) {
+        int timeoutNumber = StringUtils.toInt(sshShellInputs.getTimeout(), Constants.DEFAULT_TIMEOUT);
+        boolean usePseudoTerminal = StringUtils.toBoolean(sshShellInputs.getPty(), Constants.DEFAULT_USE_PSEUDO_TERMINAL);
+        boolean agentForwarding = StringUtils.toBoolean(sshShellInputs.getAgentForwarding(), Constants.DEFAULT_USE_AGENT_FORWARDING);
+        int outputMaxInMemorySize = StringUtils.toInt(sshShellInputs.getOutputMaxInMemorySize(), Constants.DEFAULT_OUTPUT_MAX_IN_MEMORY_SIZE);
+        String channelType = StringUtils.toNotEmptyString(sshShellInputs.getChannelType(), Constants.DEFAULT_CHANNEL_TYPE);
+        sshShellInputs.setCharacterSet(StringUtils.toNotEmptyString(sshShellInputs.getCharacterSet(), Constants.DEFAULT_CHARACTER_SET));
+
+        switch (channelType.toLowerCase(Locale.ENGLISH)) {
+            case Constants.CHANNEL_TYPE_SHELL:
+                return service.runShellCommand(
+                        sshShellInputs.getCommand(),
+                        sshShellInputs.getCharacterSet(),
+                        usePseudoTerminal,
+                        Constants.DEFAULT_CONNECT_TIMEOUT,
+                        timeoutNumber,
+                        agentForwarding,
+                        outputMaxInMemorySize);
+            case Constants.CHANNEL_TYPE_EXEC:
+                return service.runExecCommand(
+                        sshShellInputs.getCommand(),
+                        sshShellInputs.getCharacterSet(),
+                        usePseudoTerminal,
+                        Constants.DEFAULT_CONNECT_TIMEOUT,
+                        timeoutNumber,
+                        agentForwarding,
+                        outputMaxInMemorySize);
+            default:
+                throw new RuntimeException(UNKNOWN_CHANNEL_TYPE_MESSAGE + channelType);
+        }
+    }
+
     protected SSHService getFromCache(SSHShellInputs sshShellInputs, String sessionId) {
         if (sessionId != null) {
-            synchronized (sessionId) {
-                return CacheUtils.getFromCache(sshShellInputs.getSshGlobalSessionObject().getResource(), sessionId);
-            }
+            // the cached sessions are kept in a concurrent map, so no lock is needed to read them
+            return CacheUtils.getFromCache(sshShellInputs.getSshGlobalSessionObject().getResource(), sessionId);
         } else {
             return null;
         }
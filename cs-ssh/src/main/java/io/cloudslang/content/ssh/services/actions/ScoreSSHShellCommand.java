@@ -1,9 +1,12 @@
 package io.cloudslang.content.ssh.services.actions;
 
+import com.jcraft.jsch.Session;
 import io.cloudslang.content.ssh.entities.*;
 import io.cloudslang.content.ssh.services.SSHService;
 import io.cloudslang.content.ssh.services.impl.SSHServiceImpl;
+import io.cloudslang.content.ssh.utils.CacheUtils;
 import io.cloudslang.content.ssh.utils.Constants;
+import io.cloudslang.content.ssh.utils.SSHSessionPool;
 import io.cloudslang.content.ssh.utils.StringUtils;
 
 import java.nio.file.Path;
@@ -17,7 +20,9 @@ public class ScoreSSHShellCommand extends SSHShellAbstract {
 
     public Map<String, String> execute(SSHShellInputs sshShellInputs) {
         Map<String, String> returnResult = new HashMap<>();
-        SSHService service = null;
+        SSHSessionPool sessionPool = SSHSessionPool.getInstance();
+        SSHSessionPool.PooledSession pooledSession = null;
+        boolean reusable = false;
         boolean providerAdded = addSecurityProvider();
         String sessionId = "";
 
@@ -34,27 +39,33 @@ public class ScoreSSHShellCommand extends SSHShellAbstract {
             Path knownHostsPath = StringUtils.toPath(sshShellInputs.getKnownHostsPath(), Constants.DEFAULT_KNOWN_HOSTS_PATH);
 
             sessionId = "sshSession:" + sshShellInputs.getHost() + "-" + portNumber + "-" + sshShellInputs.getUsername();
+            String sessionKey = SSHSessionPool.buildSessionKey(sshShellInputs.getHost(), portNumber, sshShellInputs.getUsername(),
+                    sshShellInputs.getPassword(), sshShellInputs.getPrivateKeyFile(), knownHostsPolicy, knownHostsPath.toString());
 
             // configure ssh parameters
-            ConnectionDetails connection = new ConnectionDetails(sshShellInputs.getHost(), portNumber, sshShellInputs.getUsername(), sshShellInputs.getPassword());
-            KeyFile keyFile = getKeyFile(sshShellInputs.getPrivateKeyFile(), sshShellInputs.getPassword());
-            KnownHostsFile knownHostsFile = new KnownHostsFile(knownHostsPath, knownHostsPolicy);
-
-            // get the cached SSH session
-            service = getSshServiceFromCache(sshShellInputs, sessionId);
-            boolean saveSSHSession = false;
-            if (service == null || !service.isConnected()) {
-                saveSSHSession = true;
-                service = new SSHServiceImpl(connection, keyFile, knownHostsFile, Constants.DEFAULT_CONNECT_TIMEOUT);
-            }
-
-            runSSHCommand(sshShellInputs, returnResult, service, sessionId, saveSSHSession);
+            final ConnectionDetails connection = new ConnectionDetails(sshShellInputs.getHost(), portNumber, sshShellInputs.getUsername(), sshShellInputs.getPassword());
+            final KeyFile keyFile = getKeyFile(sshShellInputs.getPrivateKeyFile(), sshShellInputs.getPassword());
+            final KnownHostsFile knownHostsFile = new KnownHostsFile(knownHostsPath, knownHostsPolicy);
+
+            // lease a pooled SSH session, a new one is opened only when none can be reused
+            pooledSession = sessionPool.lease(sessionKey, new SSHSessionPool.SessionFactory() {
+                @Override
+                public Session create() {
+                    return new SSHServiceImpl(connection, keyFile, knownHostsFile, Constants.DEFAULT_CONNECT_TIMEOUT).getSSHSession();
+                }
+            }, Constants.DEFAULT_CONNECT_TIMEOUT);
+            SSHService service = new SSHServiceImpl(pooledSession.getSession(), null);
+
+            runSSHCommand(sshShellInputs, returnResult, service, sessionId);
+            reusable = !StringUtils.toBoolean(sshShellInputs.getCloseSession(), Constants.DEFAULT_CLOSE_SESSION);
         } catch (Exception e) {
-            if (service != null) {
-                cleanupService(sshShellInputs, service, sessionId);
-            }
+            removeFromCache(sshShellInputs, sessionId);
             populateResult(returnResult, e);
         } finally {
+            if (pooledSession != null) {
+                sessionPool.release(pooledSession, reusable);
+            }
+            populatePoolStats(returnResult, sessionPool.getStats());
             if (providerAdded) {
                 removeSecurityProvider();
             }
@@ -62,42 +73,26 @@ public class ScoreSSHShellCommand extends SSHShellAbstract {
         return returnResult;
     }
 
-    private SSHService getSshServiceFromCache(SSHShellInputs sshShellInputs, String sessionId) {
-        SSHService service = getFromCache(sshShellInputs, sessionId);
-        return service;
-    }
-
     private void runSSHCommand(
             SSHShellInputs sshShellInputs,
             Map<String, String> returnResult,
-            SSHService service, String sessionId,
-            boolean saveSSHSession) {
-
-        int timeoutNumber = StringUtils.toInt(sshShellInputs.getTimeout(), Constants.DEFAULT_TIMEOUT);
-        boolean usePseudoTerminal = StringUtils.toBoolean(sshShellInputs.getPty(), Constants.DEFAULT_USE_PSEUDO_TERMINAL);
-        boolean agentForwarding = StringUtils.toBoolean(sshShellInputs.getAgentForwarding(), Constants.DEFAULT_USE_AGENT_FORWARDING);
-        sshShellInputs.setCharacterSet(StringUtils.toNotEmptyString(sshShellInputs.getCharacterSet(), Constants.DEFAULT_CHARACTER_SET));
+            SSHService service, String sessionId) {
 
         // run the SSH command
-        CommandResult commandResult = service.runShellCommand(
-                sshShellInputs.getCommand(),
-                sshShellInputs.getCharacterSet(),
-                usePseudoTerminal,
-                Constants.DEFAULT_CONNECT_TIMEOUT,
-                timeoutNumber,
-                agentForwarding);
+        CommandResult commandResult = runCommand(service, sshShellInputs);
 
-        handleSessionClosure(sshShellInputs, service, sessionId, saveSSHSession);
+        handleSessionClosure(sshShellInputs, service, sessionId);
 
         // populate the results
         populateResult(returnResult, commandResult);
     }
 
-    private void handleSessionClosure(SSHShellInputs sshShellInputs, SSHService service, String sessionId, boolean saveSSHSession) {
+    private void handleSessionClosure(SSHShellInputs sshShellInputs, SSHService service, String sessionId) {
         boolean closeSessionBoolean = StringUtils.toBoolean(sshShellInputs.getCloseSession(), Constants.DEFAULT_CLOSE_SESSION);
         if (closeSessionBoolean) {
-            cleanupService(sshShellInputs, service, sessionId);
-        } else if (saveSSHSession) {
+            // the pooled session is closed when it is released, other commands may still run channels on it
+            removeFromCache(sshShellInputs, sessionId);
+        } else {
             // save SSH session in the cache
             final boolean saved = saveToCache(sshShellInputs.getSshGlobalSessionObject(), service, sessionId);
             if (!saved) {
@@ -106,9 +101,18 @@ public class ScoreSSHShellCommand extends SSHShellAbstract {
         }
     }
 
-    protected void cleanupService(SSHShellInputs sshShellInputs, SSHService service, String sessionId) {
-        service.close();
-        service.removeFromCache(sshShellInputs.getSshGlobalSessionObject(), sessionId);
+    protected void removeFromCache(SSHShellInputs sshShellInputs, String sessionId) {
+        CacheUtils.removeSshSession(sshShellInputs.getSshGlobalSessionObject(), sessionId);
+    }
+
+    private void populatePoolStats(Map<String, String> returnResult, SSHSessionPool.PoolStats poolStats) {
+        returnResult.put(Constants.SESSIONS_IDLE, String.valueOf(poolStats.getIdleSessions()));
+        returnResult.put(Constants.SESSIONS_LEASED, String.valueOf(poolStats.getLeasedSessions()));
+        returnResult.put(Constants.CHANNELS_LEASED, String.valueOf(poolStats.getLeasedChannels()));
+        returnResult.put(Constants.SESSIONS_CREATED, String.valueOf(poolStats.getCreatedSessions()));
+        returnResult.put(Constants.SESSIONS_REUSED, String.valueOf(poolStats.getReusedSessions()));
+        returnResult.put(Constants.SESSIONS_CLOSED, String.valueOf(poolStats.getClosedSessions()));
+        returnResult.put(Constants.FAILED_HEALTH_CHECKS, String.valueOf(poolStats.getFailedHealthChecks()));
     }
 
     private void populateResult(Map<String, String> returnResult, CommandResult commandResult) {
@@ -122,6 +126,12 @@ public class ScoreSSHShellCommand extends SSHShellAbstract {
             returnResult.put(Constants.OutputNames.RETURN_CODE, Constants.ReturnCodes.RETURN_CODE_FAILURE);
         }
         returnResult.put(Constants.EXIT_STATUS, String.valueOf(commandResult.getExitCode()));
+        if (commandResult.getStandardOutputFile() != null) {
+            returnResult.put(Constants.STDOUT_FILE, commandResult.getStandardOutputFile());
+        }
+        if (commandResult.getStandardErrorFile() != null) {
+            returnResult.put(Constants.STDERR_FILE, commandResult.getStandardErrorFile());
+        }
     }
 
 }
@@ -6,6 +6,7 @@ import io.cloudslang.content.ssh.entities.*;
 import io.cloudslang.content.ssh.exceptions.TimeoutException;
 import io.cloudslang.content.ssh.services.SSHService;
 import io.cloudslang.content.ssh.utils.CacheUtils;
+import io.cloudslang.content.ssh.utils.SpillingOutputStream;
 
 import java.io.*;
 import java.nio.file.Files;
@@ -19,8 +20,8 @@ import java.util.Map;
  * @author octavian-h
  */
 public class SSHServiceImpl implements SSHService {
-    private static final int POLLING_INTERVAL = 10;
     private static final String SHELL_CHANNEL = "shell";
+    private static final String EXEC_CHANNEL = "exec";
     private static final String KNOWN_HOSTS_ALLOW = "allow";
     private static final String KNOWN_HOSTS_STRICT = "strict";
     private static final String KNOWN_HOSTS_ADD = "add";
@@ -121,6 +122,18 @@ public class SSHServiceImpl implements SSHService {
             int connectTimeout,
             int commandTimeout,
             boolean agentForwarding) {
+        return runShellCommand(command, characterSet, usePseudoTerminal, connectTimeout, commandTimeout, agentForwarding, 0);
+    }
+
+    @Override
+    public CommandResult runShellCommand(
+            String command,
+            String characterSet,
+            boolean usePseudoTerminal,
+            int connectTimeout,
+            int commandTimeout,
+            boolean agentForwarding,
+            long outputMaxInMemorySize) {
         try {
             if (!isConnected()) {
                 session.connect(connectTimeout);
@@ -131,45 +144,96 @@ public class SSHServiceImpl implements SSHService {
             ((ChannelShell) channel).setAgentForwarding(agentForwarding);
             InputStream in = new ByteArrayInputStream(command.getBytes(characterSet));
             channel.setInputStream(in);
-            OutputStream out = new ByteArrayOutputStream();
-            channel.setOutputStream(out);
-            OutputStream err = new ByteArrayOutputStream();
-            channel.setExtOutputStream(err);
-
-            // connect to the channel and run the command(s)
-            channel.connect(connectTimeout);
-
-            // wait for response
-            long currentTime = System.currentTimeMillis();
-            long timeLimit = currentTime + commandTimeout;
-            while (!channel.isClosed() && currentTime < timeLimit) {
-                try {
-                    Thread.sleep(POLLING_INTERVAL);
-                } catch (InterruptedException ignore) {
-                }
-                currentTime = System.currentTimeMillis();
-            }
-            boolean timedOut = !channel.isClosed();
 
-            // save the response
-            CommandResult result = new CommandResult();
-            result.setStandardOutput(((ByteArrayOutputStream) out).toString(characterSet));
-            result.setStandardError(((ByteArrayOutputStream) err).toString(characterSet));
-
-            channel.disconnect();
-            // The exit status is only available after the channel was closed (more exactly, just before the channel is closed).
-            result.setExitCode(channel.getExitStatus());
+            return runChannel(channel, characterSet, connectTimeout, commandTimeout, outputMaxInMemorySize);
+        } catch (JSchException | UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            if (timedOut) {
-                throw new TimeoutException(String.valueOf(result));
+    @Override
+    public CommandResult runExecCommand(
+            String command,
+            String characterSet,
+            boolean usePseudoTerminal,
+            int connectTimeout,
+            int commandTimeout,
+            boolean agentForwarding,
+            long outputMaxInMemorySize) {
+        try {
+            if (!isConnected()) {
+                session.connect(connectTimeout);
             }
+            // create exec channel, the command is run directly without starting a shell
+            ChannelExec channel = (ChannelExec) session.openChannel(EXEC_CHANNEL);
+            channel.setCommand(command.getBytes(characterSet));
+            channel.setPty(usePseudoTerminal);
+            channel.setAgentForwarding(agentForwarding);
+            // an empty input, so the command gets the end of its standard input
+            channel.setInputStream(new ByteArrayInputStream(new byte[0]));
 
-            return result;
-        } catch (JSchException | UnsupportedEncodingException | TimeoutException e) {
+            return runChannel(channel, characterSet, connectTimeout, commandTimeout, outputMaxInMemorySize);
+        } catch (JSchException | UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private CommandResult runChannel(Channel channel, String characterSet, int connectTimeout, int commandTimeout,
+                                     long outputMaxInMemorySize) throws JSchException, UnsupportedEncodingException {
+        // the output is written by the session thread as it arrives and the streams are closed with the channel
+        SpillingOutputStream out = new SpillingOutputStream(outputMaxInMemorySize);
+        channel.setOutputStream(out);
+        SpillingOutputStream err = new SpillingOutputStream(outputMaxInMemorySize);
+        channel.setExtOutputStream(err);
+
+        // connect to the channel and run the command(s)
+        channel.connect(connectTimeout);
+
+        // wait for response
+        boolean timedOut = !waitForClose(channel, out, err, commandTimeout);
+
+        channel.disconnect();
+
+        // save the response
+        CommandResult result = new CommandResult();
+        result.setStandardOutput(out.toString(characterSet));
+        result.setStandardError(err.toString(characterSet));
+        if (out.isSpilled()) {
+            result.setStandardOutputFile(out.getFile().getAbsolutePath());
+        }
+        if (err.isSpilled()) {
+            result.setStandardErrorFile(err.getFile().getAbsolutePath());
+        }
+        // The exit status is only available after the channel was closed (more exactly, just before the channel is closed).
+        result.setExitCode(channel.getExitStatus());
+
+        if (timedOut) {
+            throw new RuntimeException(new TimeoutException(String.valueOf(result)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Waits until the remote end closes the channel, which closes the output streams of the channel.
+     *
+     * @return true if the channel was closed before the timeout.
+     */
+    private boolean waitForClose(Channel channel, SpillingOutputStream out, SpillingOutputStream err, long timeout) {
+        if (channel.isClosed()) {
+            return true;
+        }
+        long timeLimit = System.currentTimeMillis() + timeout;
+        try {
+            if (out.awaitClose(timeout) && err.awaitClose(timeLimit - System.currentTimeMillis())) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return channel.isClosed();
+    }
+
     @Override
     public void createLocalTunnel(int localPort, String remoteHost, int remotePort) {
         try {
@@ -8,8 +8,8 @@ import io.cloudslang.content.ssh.entities.SSHConnection;
 import io.cloudslang.content.ssh.services.SSHService;
 import io.cloudslang.content.ssh.services.impl.SSHServiceImpl;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author octavian-h
@@ -67,12 +67,15 @@ public class CacheUtils {
             sshConnection = new SSHConnection(session);
         }
         if (sessionParam != null) {
-            Map<String, SSHConnection> tempMap = sessionParam.get();
-            if (tempMap == null) {
-                tempMap = new HashMap<>();
+            // the session object is shared by the parallel branches of a flow
+            synchronized (sessionParam) {
+                Map<String, SSHConnection> tempMap = sessionParam.get();
+                if (tempMap == null) {
+                    tempMap = new ConcurrentHashMap<>();
+                    sessionParam.setResource(new SSHSessionResource(tempMap));
+                }
+                tempMap.put(sessionId, sshConnection);
             }
-            tempMap.put(sessionId, sshConnection);
-            sessionParam.setResource(new SSHSessionResource(tempMap));
             return true;
         }
         return false;
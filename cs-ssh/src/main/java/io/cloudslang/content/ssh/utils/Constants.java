@@ -18,21 +18,42 @@ public class Constants {
     public static final String CLOSE_SESSION = "closeSession";
     public static final String KNOWN_HOSTS_POLICY = "knownHostsPolicy";
     public static final String KNOWN_HOSTS_PATH = "knownHostsPath";
+    public static final String OUTPUT_MAX_IN_MEMORY_SIZE = "outputMaxInMemorySize";
+    public static final String CHANNEL_TYPE = "channelType";
+    public static final String CHANNEL_TYPE_SHELL = "shell";
+    public static final String CHANNEL_TYPE_EXEC = "exec";
     // outputs
     public static final String STDOUT = "STDOUT";
     public static final String STDERR = "STDERR";
     public static final String EXIT_STATUS = "exitStatus";
+    public static final String STDOUT_FILE = "stdoutFile";
+    public static final String STDERR_FILE = "stderrFile";
+    public static final String SESSIONS_IDLE = "sessionsIdle";
+    public static final String SESSIONS_LEASED = "sessionsLeased";
+    public static final String CHANNELS_LEASED = "channelsLeased";
+    public static final String SESSIONS_CREATED = "sessionsCreated";
+    public static final String SESSIONS_REUSED = "sessionsReused";
+    public static final String SESSIONS_CLOSED = "sessionsClosed";
+    public static final String FAILED_HEALTH_CHECKS = "failedHealthChecks";
     // default values
     public static final int DEFAULT_PORT = 22;
     public static final int DEFAULT_TIMEOUT = 90000; //90 seconds
     public static final int DEFAULT_CONNECT_TIMEOUT = 10000; //10 seconds
+    public static final int DEFAULT_OUTPUT_MAX_IN_MEMORY_SIZE = 0; //no limit
     public static final boolean DEFAULT_USE_PSEUDO_TERMINAL = false;
     public static final boolean DEFAULT_USE_AGENT_FORWARDING = false;
     public static final String DEFAULT_NEWLINE = "\\n";
     public static final String DEFAULT_CHARACTER_SET = "UTF-8";
+    public static final String DEFAULT_CHANNEL_TYPE = CHANNEL_TYPE_SHELL;
     public static final boolean DEFAULT_CLOSE_SESSION = false;
     public static final String DEFAULT_KNOWN_HOSTS_POLICY = "allow";
     public static final Path DEFAULT_KNOWN_HOSTS_PATH = Paths.get(System.getProperty("user.home"), ".ssh", "known_hosts");
+    // session pool
+    public static final int DEFAULT_MAX_SESSIONS_PER_HOST = 10;
+    public static final int DEFAULT_MAX_CHANNELS_PER_SESSION = 10; //the MaxSessions default of OpenSSH
+    public static final long DEFAULT_SESSION_IDLE_TIMEOUT = 300000; //5 minutes
+    public static final long DEFAULT_HEALTH_CHECK_IDLE_TIME = 10000; //10 seconds
+    public static final int DEFAULT_SERVER_ALIVE_INTERVAL = 30000; //30 seconds
 
     // errors
     public static final String ARGS_IS_DEPRECATED = "This input is deprecated, use the command input to provide arguments.";
@@ -0,0 +1,475 @@
+package io.cloudslang.content.ssh.utils;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of opened SSH sessions shared by the executions of the SSH operations, so a command does not pay for a new
+ * connection and key exchange when a session to the same host and account is already opened.
+ * <p/>
+ * A session is leased by one command at a time for each of its channels: the commands run on the same session
+ * multiplex their channels up to the channels limit of a session, then new sessions are opened up to the sessions
+ * limit of a host, then the commands wait for a free channel. Idle sessions are closed after the idle timeout and
+ * the sessions that stayed idle for a while are probed with a keepalive message before they are reused.
+ */
+public class SSHSessionPool {
+    public static final String EVICTION_THREAD_NAME = "ssh-session-pool-eviction";
+    private static final int SERVER_ALIVE_COUNT_MAX = 3;
+
+    private static final SSHSessionPool INSTANCE = new SSHSessionPool(Constants.DEFAULT_MAX_SESSIONS_PER_HOST,
+            Constants.DEFAULT_MAX_CHANNELS_PER_SESSION, Constants.DEFAULT_SESSION_IDLE_TIMEOUT,
+            Constants.DEFAULT_HEALTH_CHECK_IDLE_TIME);
+
+    private final Map<String, HostSessions> hosts = new ConcurrentHashMap<>();
+    private final int maxSessionsPerHost;
+    private final int maxChannelsPerSession;
+    private final long idleTimeout;
+    private final long healthCheckIdleTime;
+    private final AtomicLong createdSessions = new AtomicLong();
+    private final AtomicLong reusedSessions = new AtomicLong();
+    private final AtomicLong closedSessions = new AtomicLong();
+    private final AtomicLong failedHealthChecks = new AtomicLong();
+    private ScheduledExecutorService evictionExecutor;
+
+    /**
+     * @param maxSessionsPerHost    The maximum number of sessions opened to the same host and account.
+     * @param maxChannelsPerSession The maximum number of commands run at the same time on one session.
+     * @param idleTimeout           The time in milliseconds after which an unused session is closed.
+     * @param healthCheckIdleTime   The time in milliseconds after which an unused session is probed before reuse.
+     */
+    public SSHSessionPool(int maxSessionsPerHost, int maxChannelsPerSession, long idleTimeout, long healthCheckIdleTime) {
+        if (maxSessionsPerHost < 1 || maxChannelsPerSession < 1) {
+            throw new IllegalArgumentException("The SSH session pool limits should be greater than 0.");
+        }
+        this.maxSessionsPerHost = maxSessionsPerHost;
+        this.maxChannelsPerSession = maxChannelsPerSession;
+        this.idleTimeout = idleTimeout;
+        this.healthCheckIdleTime = healthCheckIdleTime;
+    }
+
+    public static SSHSessionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the key of the sessions that can be shared: the same host, port and account,
+     * authenticated with the same credentials and checked against the same known_hosts policy.
+     */
+    public static String buildSessionKey(String host, int port, String username, String password,
+                                         String privateKeyFile, String knownHostsPolicy, String knownHostsPath) {
+        return host + "-" + port + "-" + username + "-" + digest(password) + "-" + privateKeyFile + "-" +
+                knownHostsPolicy + "-" + knownHostsPath;
+    }
+
+    /**
+     * Leases a channel on an opened session to the host, opening a new session if the limits allow it.
+     *
+     * @param sessionKey     The key of the host and account, see {@link #buildSessionKey}.
+     * @param sessionFactory Opens a new session when no pooled session can be used.
+     * @param waitTimeout    The time in milliseconds to wait for a free channel when the limits are reached.
+     * @return the leased session, it should be given back with {@link #release(PooledSession, boolean)}.
+     */
+    public PooledSession lease(String sessionKey, SessionFactory sessionFactory, long waitTimeout) {
+        startEviction();
+        HostSessions hostSessions = getHostSessions(sessionKey);
+        long deadline = System.currentTimeMillis() + waitTimeout;
+        while (true) {
+            PooledSession pooledSession = leaseExisting(hostSessions, deadline);
+            if (pooledSession == null) {
+                // a new session was reserved within the sessions limit of the host
+                return open(hostSessions, sessionFactory);
+            }
+            // the keepalive message is sent without holding the lock of the host, a stalled connection only blocks
+            // this lease, the other commands skip the session meanwhile
+            if (!pooledSession.probing || probe(pooledSession)) {
+                reusedSessions.incrementAndGet();
+                return pooledSession;
+            }
+            release(pooledSession, false);
+        }
+    }
+
+    /**
+     * Leases a channel on a pooled session, or reserves the opening of a new session when none can be used.
+     *
+     * @return the leased session, or null if a new session should be opened.
+     */
+    private PooledSession leaseExisting(HostSessions hostSessions, long deadline) {
+        List<PooledSession> toClose = new ArrayList<>();
+        try {
+            synchronized (hostSessions) {
+                while (true) {
+                    evictExpired(hostSessions, toClose);
+                    PooledSession pooledSession = leaseCandidate(hostSessions, toClose);
+                    if (pooledSession != null) {
+                        return pooledSession;
+                    }
+                    if (hostSessions.sessions.size() + hostSessions.opening < maxSessionsPerHost) {
+                        hostSessions.opening++;
+                        return null;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new RuntimeException("Timed out waiting for a free SSH session.");
+                    }
+                    try {
+                        hostSessions.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for a free SSH session.", e);
+                    }
+                }
+            }
+        } finally {
+            close(toClose);
+        }
+    }
+
+    /**
+     * Gives back a leased session.
+     *
+     * @param pooledSession The leased session.
+     * @param reusable      If false the session is not leased anymore and it is closed when its last channel is released.
+     */
+    public void release(PooledSession pooledSession, boolean reusable) {
+        HostSessions hostSessions = pooledSession.hostSessions;
+        boolean close;
+        synchronized (hostSessions) {
+            pooledSession.leases--;
+            pooledSession.probing = false;
+            pooledSession.lastUsed = System.currentTimeMillis();
+            if (!reusable || !pooledSession.session.isConnected()) {
+                hostSessions.sessions.remove(pooledSession);
+                pooledSession.invalid = true;
+            }
+            close = pooledSession.invalid && pooledSession.leases == 0;
+            hostSessions.notifyAll();
+        }
+        if (close) {
+            close(pooledSession);
+        }
+    }
+
+    /**
+     * @return true if the session belongs to the pool, so it should not be closed by its users.
+     */
+    public boolean isPooled(Session session) {
+        for (HostSessions hostSessions : hosts.values()) {
+            synchronized (hostSessions) {
+                for (PooledSession pooledSession : hostSessions.sessions) {
+                    if (pooledSession.session == session) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Closes the sessions that were not used for longer than the idle timeout.
+     */
+    public void evictExpired() {
+        List<PooledSession> toClose = new ArrayList<>();
+        for (HostSessions hostSessions : hosts.values()) {
+            synchronized (hostSessions) {
+                evictExpired(hostSessions, toClose);
+            }
+        }
+        close(toClose);
+    }
+
+    /**
+     * Closes all the sessions that are not leased and stops the eviction thread.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (evictionExecutor != null) {
+                evictionExecutor.shutdownNow();
+                evictionExecutor = null;
+            }
+        }
+        List<PooledSession> toClose = new ArrayList<>();
+        for (HostSessions hostSessions : hosts.values()) {
+            synchronized (hostSessions) {
+                Iterator<PooledSession> iterator = hostSessions.sessions.iterator();
+                while (iterator.hasNext()) {
+                    PooledSession pooledSession = iterator.next();
+                    pooledSession.invalid = true;
+                    iterator.remove();
+                    if (pooledSession.leases == 0) {
+                        toClose.add(pooledSession);
+                    }
+                }
+            }
+        }
+        close(toClose);
+    }
+
+    public PoolStats getStats() {
+        int idle = 0;
+        int leased = 0;
+        int channels = 0;
+        for (HostSessions hostSessions : hosts.values()) {
+            synchronized (hostSessions) {
+                for (PooledSession pooledSession : hostSessions.sessions) {
+                    if (pooledSession.leases == 0) {
+                        idle++;
+                    } else {
+                        leased++;
+                        channels += pooledSession.leases;
+                    }
+                }
+            }
+        }
+        return new PoolStats(idle, leased, channels, createdSessions.get(), reusedSessions.get(),
+                closedSessions.get(), failedHealthChecks.get());
+    }
+
+    private HostSessions getHostSessions(String sessionKey) {
+        HostSessions hostSessions = hosts.get(sessionKey);
+        if (hostSessions == null) {
+            synchronized (hosts) {
+                hostSessions = hosts.get(sessionKey);
+                if (hostSessions == null) {
+                    hostSessions = new HostSessions();
+                    hosts.put(sessionKey, hostSessions);
+                }
+            }
+        }
+        return hostSessions;
+    }
+
+    /**
+     * Chooses the connected session with the fewest leased channels and leases a channel on it. A session that stayed
+     * idle longer than the health check idle time is marked for a probe, it is skipped by the other leases until the
+     * probe is done.
+     */
+    private PooledSession leaseCandidate(HostSessions hostSessions, List<PooledSession> toClose) {
+        while (true) {
+            PooledSession candidate = null;
+            for (PooledSession pooledSession : hostSessions.sessions) {
+                if (!pooledSession.probing && pooledSession.leases < maxChannelsPerSession
+                        && (candidate == null || pooledSession.leases < candidate.leases)) {
+                    candidate = pooledSession;
+                }
+            }
+            if (candidate == null) {
+                return null;
+            }
+            if (candidate.session.isConnected()) {
+                candidate.probing = candidate.leases == 0 && System.currentTimeMillis() - candidate.lastUsed > healthCheckIdleTime;
+                candidate.leases++;
+                return candidate;
+            }
+            hostSessions.sessions.remove(candidate);
+            candidate.invalid = true;
+            if (candidate.leases == 0) {
+                toClose.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Sends a keepalive message on a leased session.
+     *
+     * @return true if the session can be used.
+     */
+    private boolean probe(PooledSession pooledSession) {
+        try {
+            pooledSession.session.sendKeepAliveMsg();
+        } catch (Exception e) {
+            failedHealthChecks.incrementAndGet();
+            return false;
+        }
+        synchronized (pooledSession.hostSessions) {
+            pooledSession.probing = false;
+            pooledSession.hostSessions.notifyAll();
+        }
+        return true;
+    }
+
+    private void evictExpired(HostSessions hostSessions, List<PooledSession> toClose) {
+        long now = System.currentTimeMillis();
+        Iterator<PooledSession> iterator = hostSessions.sessions.iterator();
+        while (iterator.hasNext()) {
+            PooledSession pooledSession = iterator.next();
+            if (pooledSession.leases == 0 && (now - pooledSession.lastUsed > idleTimeout || !pooledSession.session.isConnected())) {
+                pooledSession.invalid = true;
+                iterator.remove();
+                toClose.add(pooledSession);
+            }
+        }
+    }
+
+    private PooledSession open(HostSessions hostSessions, SessionFactory sessionFactory) {
+        Session session = null;
+        try {
+            session = sessionFactory.create();
+            session.setServerAliveInterval(Constants.DEFAULT_SERVER_ALIVE_INTERVAL);
+            session.setServerAliveCountMax(SERVER_ALIVE_COUNT_MAX);
+        } catch (JSchException | RuntimeException e) {
+            if (session != null) {
+                session.disconnect();
+            }
+            synchronized (hostSessions) {
+                hostSessions.opening--;
+                hostSessions.notifyAll();
+            }
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+        PooledSession pooledSession = new PooledSession(hostSessions, session);
+        synchronized (hostSessions) {
+            hostSessions.opening--;
+            hostSessions.sessions.add(pooledSession);
+        }
+        createdSessions.incrementAndGet();
+        return pooledSession;
+    }
+
+    private void close(List<PooledSession> pooledSessions) {
+        for (PooledSession pooledSession : pooledSessions) {
+            close(pooledSession);
+        }
+    }
+
+    private void close(PooledSession pooledSession) {
+        try {
+            pooledSession.session.disconnect();
+        } catch (RuntimeException ignore) {
+        }
+        closedSessions.incrementAndGet();
+    }
+
+    private synchronized void startEviction() {
+        if (evictionExecutor == null) {
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, EVICTION_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            long interval = Math.max(1000, idleTimeout / 2);
+            evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictExpired();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static String digest(String value) {
+        if (value == null) {
+            return "";
+        }
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, messageDigest.digest(value.getBytes(StandardCharsets.UTF_8))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Opens a new connected SSH session.
+     */
+    public interface SessionFactory {
+        Session create() throws JSchException;
+    }
+
+    /**
+     * A session of the pool together with the number of channels leased on it.
+     */
+    public static class PooledSession {
+        private final HostSessions hostSessions;
+        private final Session session;
+        private int leases = 1;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean invalid;
+        private boolean probing;
+
+        private PooledSession(HostSessions hostSessions, Session session) {
+            this.hostSessions = hostSessions;
+            this.session = session;
+        }
+
+        public Session getSession() {
+            return session;
+        }
+    }
+
+    /**
+     * A snapshot of the sessions of the pool and the counters since the pool was created.
+     */
+    public static class PoolStats {
+        private final int idleSessions;
+        private final int leasedSessions;
+        private final int leasedChannels;
+        private final long createdSessions;
+        private final long reusedSessions;
+        private final long closedSessions;
+        private final long failedHealthChecks;
+
+        public PoolStats(int idleSessions, int leasedSessions, int leasedChannels, long createdSessions,
+                         long reusedSessions, long closedSessions, long failedHealthChecks) {
+            this.idleSessions = idleSessions;
+            this.leasedSessions = leasedSessions;
+            this.leasedChannels = leasedChannels;
+            this.createdSessions = createdSessions;
+            this.reusedSessions = reusedSessions;
+            this.closedSessions = closedSessions;
+            this.failedHealthChecks = failedHealthChecks;
+        }
+
+        public int getIdleSessions() {
+            return idleSessions;
+        }
+
+        public int getLeasedSessions() {
+            return leasedSessions;
+        }
+
+        public int getLeasedChannels() {
+            return leasedChannels;
+        }
+
+        public long getCreatedSessions() {
+            return createdSessions;
+        }
+
+        public long getReusedSessions() {
+            return reusedSessions;
+        }
+
+        public long getClosedSessions() {
+            return closedSessions;
+        }
+
+        public long getFailedHealthChecks() {
+            return failedHealthChecks;
+        }
+    }
+
+    private static class HostSessions {
+        private final List<PooledSession> sessions = new ArrayList<>();
+        private int opening;
+    }
+}
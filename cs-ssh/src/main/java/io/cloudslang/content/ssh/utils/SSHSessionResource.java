@@ -31,7 +31,10 @@ public class SSHSessionResource extends SessionResource<Map<String, SSHConnectio
         for (SSHConnection sshConnection : sshConnections) {
             synchronized (sshConnection) {
                 Session session = sshConnection.getSession();
-                session.disconnect();
+                // the pooled sessions are closed by the pool when they stay unused
+                if (!SSHSessionPool.getInstance().isPooled(session)) {
+                    session.disconnect();
+                }
                 Channel channel = sshConnection.getChannel();
                 if (channel != null) {
                     channel.disconnect();
@@ -0,0 +1,110 @@
+package io.cloudslang.content.ssh.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the output of a channel as it arrives. The output is kept in memory up to the given size,
+ * after that it is moved to a temporary file and the rest of the output is written to the file.
+ * <p/>
+ * The channel closes the stream when the remote end sent all the output, so the command completion can be
+ * awaited with {@link #awaitClose(long)} instead of polling the channel.
+ */
+public class SpillingOutputStream extends OutputStream {
+    public static final String OUTPUT_FILE_PREFIX = "sshOutput";
+    public static final String OUTPUT_FILE_SUFFIX = ".tmp";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final long maxInMemorySize;
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private File file;
+    private OutputStream fileStream;
+
+    /**
+     * @param maxInMemorySize The maximum size in bytes of the output kept in memory. 0 or less means no limit.
+     */
+    public SpillingOutputStream(long maxInMemorySize) {
+        this.maxInMemorySize = maxInMemorySize <= 0 ? Long.MAX_VALUE : maxInMemorySize;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (fileStream == null && memory.size() + (long) len > maxInMemorySize) {
+            spill();
+        }
+        if (fileStream != null) {
+            fileStream.write(b, off, len);
+        } else {
+            memory.write(b, off, len);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (fileStream != null) {
+            fileStream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            synchronized (this) {
+                if (fileStream != null && closed.getCount() > 0) {
+                    fileStream.close();
+                }
+            }
+        } finally {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Waits for the stream to be closed.
+     *
+     * @param timeout The maximum time to wait in milliseconds.
+     * @return true if the stream was closed, false if the time elapsed.
+     */
+    public boolean awaitClose(long timeout) throws InterruptedException {
+        return closed.await(Math.max(0, timeout), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return the temporary file holding the output, or null if the output is kept in memory.
+     * The file should be deleted by the caller.
+     */
+    public synchronized File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the output kept in memory, or an empty string if the output was moved to the temporary file.
+     */
+    public synchronized String toString(String characterSet) throws UnsupportedEncodingException {
+        return memory == null ? "" : memory.toString(characterSet);
+    }
+
+    private void spill() throws IOException {
+        file = File.createTempFile(OUTPUT_FILE_PREFIX, OUTPUT_FILE_SUFFIX);
+        fileStream = new BufferedOutputStream(new FileOutputStream(file), FILE_BUFFER_SIZE);
+        memory.writeTo(fileStream);
+        memory = null;
+    }
+}
@@ -0,0 +1,247 @@
+package io.cloudslang.content.ssh.services.impl;
+
+import io.cloudslang.content.ssh.entities.CommandResult;
+import io.cloudslang.content.ssh.entities.ConnectionDetails;
+import io.cloudslang.content.ssh.entities.KnownHostsFile;
+import io.cloudslang.content.ssh.entities.SSHShellInputs;
+import io.cloudslang.content.ssh.services.actions.ScoreSSHShellCommand;
+import io.cloudslang.content.ssh.utils.Constants;
+import org.apache.sshd.SshServer;
+import org.apache.sshd.common.Factory;
+import org.apache.sshd.server.Command;
+import org.apache.sshd.server.CommandFactory;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.PasswordAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the SSH commands against an embedded SSH server which understands a few test commands:
+ * "echo text" writes the text to the standard output, "fail text" writes the text to the standard error and exits
+ * with 2, "sleep millis" waits before exiting.
+ */
+public class SSHServiceImplEmbeddedServerTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int COMMAND_TIMEOUT = 10000;
+    private static final int SLEEP_MILLIS = 500;
+    private static final int CONCURRENT_COMMANDS = 5;
+
+    private SshServer sshServer;
+    private SSHServiceImpl sshService;
+
+    @Before
+    public void setUp() throws IOException {
+        sshServer = SshServer.setUpDefaultServer();
+        sshServer.setHost("localhost");
+        sshServer.setPort(0);
+        sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        sshServer.setPasswordAuthenticator(new PasswordAuthenticator() {
+            @Override
+            public boolean authenticate(String username, String password, ServerSession session) {
+                return USERNAME.equals(username) && PASSWORD.equals(password);
+            }
+        });
+        sshServer.setCommandFactory(new CommandFactory() {
+            @Override
+            public Command createCommand(String command) {
+                return new TestCommand(command);
+            }
+        });
+        sshServer.setShellFactory(new Factory<Command>() {
+            @Override
+            public Command create() {
+                return new TestCommand(null);
+            }
+        });
+        sshServer.start();
+
+        sshService = new SSHServiceImpl(new ConnectionDetails("localhost", sshServer.getPort(), USERNAME, PASSWORD), null,
+                new KnownHostsFile(Constants.DEFAULT_KNOWN_HOSTS_PATH, Constants.DEFAULT_KNOWN_HOSTS_POLICY), CONNECT_TIMEOUT);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        sshService.close();
+        sshServer.stop(true);
+    }
+
+    @Test
+    public void runExecCommand() {
+        CommandResult result = sshService.runExecCommand("echo hello", "UTF-8", false, CONNECT_TIMEOUT, COMMAND_TIMEOUT, false, 0);
+
+        assertEquals("hello\n", result.getStandardOutput());
+        assertEquals("", result.getStandardError());
+        assertEquals(0, result.getExitCode());
+    }
+
+    @Test
+    public void runExecCommandSeparatesStandardError() {
+        CommandResult result = sshService.runExecCommand("fail broken", "UTF-8", false, CONNECT_TIMEOUT, COMMAND_TIMEOUT, false, 0);
+
+        assertEquals("", result.getStandardOutput());
+        assertEquals("broken\n", result.getStandardError());
+        assertEquals(2, result.getExitCode());
+    }
+
+    @Test
+    public void runExecCommandsConcurrentlyOnOneSession() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_COMMANDS);
+        try {
+            List<Future<CommandResult>> results = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < CONCURRENT_COMMANDS; i++) {
+                results.add(executor.submit(new Callable<CommandResult>() {
+                    @Override
+                    public CommandResult call() {
+                        return sshService.runExecCommand("sleep " + SLEEP_MILLIS, "UTF-8", false, CONNECT_TIMEOUT, COMMAND_TIMEOUT, false, 0);
+                    }
+                }));
+            }
+            for (Future<CommandResult> result : results) {
+                assertEquals(0, result.get().getExitCode());
+            }
+            long elapsed = System.currentTimeMillis() - start;
+
+            assertTrue("the commands did not run concurrently, they took " + elapsed + " ms",
+                    elapsed < SLEEP_MILLIS * CONCURRENT_COMMANDS / 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runShellCommand() {
+        CommandResult result = sshService.runShellCommand("echo hello\necho world\n", "UTF-8", false, CONNECT_TIMEOUT, COMMAND_TIMEOUT, false, 0);
+
+        assertEquals("hello\nworld\n", result.getStandardOutput());
+        assertEquals(0, result.getExitCode());
+    }
+
+    @Test
+    public void executeWithExecChannel() {
+        SSHShellInputs sshShellInputs = new SSHShellInputs();
+        sshShellInputs.setHost("localhost");
+        sshShellInputs.setPort(String.valueOf(sshServer.getPort()));
+        sshShellInputs.setUsername(USERNAME);
+        sshShellInputs.setPassword(PASSWORD);
+        sshShellInputs.setCommand("fail broken");
+        sshShellInputs.setChannelType(Constants.CHANNEL_TYPE_EXEC);
+        sshShellInputs.setCloseSession("true");
+
+        Map<String, String> result = new ScoreSSHShellCommand().execute(sshShellInputs);
+
+        assertEquals("", result.get(Constants.STDOUT));
+        assertEquals("broken\n", result.get(Constants.STDERR));
+        assertEquals("2", result.get(Constants.EXIT_STATUS));
+        assertEquals(Constants.ReturnCodes.RETURN_CODE_SUCCESS, result.get(Constants.OutputNames.RETURN_CODE));
+    }
+
+    private static class TestCommand implements Command, Runnable {
+        private final String command;
+        private InputStream in;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback exitCallback;
+
+        private TestCommand(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback exitCallback) {
+            this.exitCallback = exitCallback;
+        }
+
+        @Override
+        public void start(Environment env) {
+            new Thread(this).start();
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void run() {
+            int exitCode = 0;
+            try {
+                if (command != null) {
+                    exitCode = runLine(command);
+                } else {
+                    // the shell runs the lines of its input until the end of the input
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        exitCode = runLine(line);
+                    }
+                }
+            } catch (Exception e) {
+                exitCode = 1;
+            }
+            exitCallback.onExit(exitCode);
+        }
+
+        private int runLine(String line) throws IOException, InterruptedException {
+            String[] parts = line.split(" ", 2);
+            String argument = parts.length > 1 ? parts[1] : "";
+            switch (parts[0]) {
+                case "echo":
+                    write(out, argument);
+                    return 0;
+                case "fail":
+                    write(err, argument);
+                    return 2;
+                case "sleep":
+                    Thread.sleep(Long.parseLong(argument));
+                    return 0;
+                default:
+                    write(err, "unknown command " + parts[0]);
+                    return 127;
+            }
+        }
+
+        private void write(OutputStream stream, String text) throws IOException {
+            stream.write((text + "\n").getBytes(StandardCharsets.UTF_8));
+            stream.flush();
+        }
+    }
+}
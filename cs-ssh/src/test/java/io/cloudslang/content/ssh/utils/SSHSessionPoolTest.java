@@ -0,0 +1,206 @@
+package io.cloudslang.content.ssh.utils;
+
+import com.jcraft.jsch.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SSHSessionPoolTest {
+
+    private static final String SESSION_KEY = SSHSessionPool.buildSessionKey("host", 22, "user", "password", null, "allow", "known_hosts");
+
+    @Mock
+    private Session sessionMock;
+    @Mock
+    private Session otherSessionMock;
+
+    private SSHSessionPool pool;
+    private AtomicInteger openedSessions;
+
+    @Before
+    public void setUp() {
+        pool = new SSHSessionPool(2, 2, 60000, 60000);
+        openedSessions = new AtomicInteger();
+        when(sessionMock.isConnected()).thenReturn(true);
+        when(otherSessionMock.isConnected()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void leaseReusesReleasedSession() {
+        SSHSessionPool.PooledSession pooledSession = pool.lease(SESSION_KEY, factory(sessionMock, otherSessionMock), 0);
+        pool.release(pooledSession, true);
+        SSHSessionPool.PooledSession reused = pool.lease(SESSION_KEY, factory(otherSessionMock), 0);
+
+        assertSame(sessionMock, reused.getSession());
+        assertEquals(1, openedSessions.get());
+        assertEquals(1, pool.getStats().getCreatedSessions());
+        assertEquals(1, pool.getStats().getReusedSessions());
+        assertTrue(pool.isPooled(sessionMock));
+    }
+
+    @Test
+    public void leaseMultiplexesChannelsOnSession() {
+        SSHSessionPool.SessionFactory factory = factory(sessionMock, otherSessionMock);
+        SSHSessionPool.PooledSession first = pool.lease(SESSION_KEY, factory, 0);
+        SSHSessionPool.PooledSession second = pool.lease(SESSION_KEY, factory, 0);
+        SSHSessionPool.PooledSession third = pool.lease(SESSION_KEY, factory, 0);
+
+        assertSame(sessionMock, first.getSession());
+        assertSame(sessionMock, second.getSession());
+        assertSame(otherSessionMock, third.getSession());
+        assertEquals(2, pool.getStats().getLeasedSessions());
+        assertEquals(3, pool.getStats().getLeasedChannels());
+    }
+
+    @Test
+    public void leaseWaitsForFreeChannel() {
+        SSHSessionPool.SessionFactory factory = factory(sessionMock, otherSessionMock);
+        for (int i = 0; i < 4; i++) {
+            pool.lease(SESSION_KEY, factory, 0);
+        }
+        try {
+            pool.lease(SESSION_KEY, factory, 50);
+            fail("the sessions limit of the host should be reached");
+        } catch (RuntimeException e) {
+            assertEquals("Timed out waiting for a free SSH session.", e.getMessage());
+        }
+        assertEquals(2, openedSessions.get());
+    }
+
+    @Test
+    public void leaseByHost() {
+        pool.lease(SESSION_KEY, factory(sessionMock), 0);
+        String otherKey = SSHSessionPool.buildSessionKey("host", 22, "user", "otherPassword", null, "allow", "known_hosts");
+        SSHSessionPool.PooledSession other = pool.lease(otherKey, factory(otherSessionMock), 0);
+
+        assertSame(otherSessionMock, other.getSession());
+    }
+
+    @Test
+    public void releaseNotReusableClosesAfterLastChannel() {
+        SSHSessionPool.SessionFactory factory = factory(sessionMock);
+        SSHSessionPool.PooledSession first = pool.lease(SESSION_KEY, factory, 0);
+        SSHSessionPool.PooledSession second = pool.lease(SESSION_KEY, factory, 0);
+
+        pool.release(first, false);
+        verify(sessionMock, never()).disconnect();
+        assertFalse(pool.isPooled(sessionMock));
+
+        pool.release(second, true);
+        verify(sessionMock).disconnect();
+        assertEquals(1, pool.getStats().getClosedSessions());
+    }
+
+    @Test
+    public void leaseDiscardsDisconnectedSession() {
+        pool.release(pool.lease(SESSION_KEY, factory(sessionMock), 0), true);
+        when(sessionMock.isConnected()).thenReturn(false);
+
+        SSHSessionPool.PooledSession pooledSession = pool.lease(SESSION_KEY, factory(otherSessionMock), 0);
+
+        assertSame(otherSessionMock, pooledSession.getSession());
+        verify(sessionMock).disconnect();
+    }
+
+    @Test
+    public void leaseDiscardsSessionFailingHealthCheck() throws Exception {
+        pool = new SSHSessionPool(2, 2, 60000, -1);
+        pool.release(pool.lease(SESSION_KEY, factory(sessionMock), 0), true);
+        doThrow(new Exception("broken pipe")).when(sessionMock).sendKeepAliveMsg();
+
+        SSHSessionPool.PooledSession pooledSession = pool.lease(SESSION_KEY, factory(otherSessionMock), 0);
+
+        assertSame(otherSessionMock, pooledSession.getSession());
+        assertEquals(1, pool.getStats().getFailedHealthChecks());
+        verify(sessionMock).disconnect();
+    }
+
+    @Test
+    public void leaseDoesNotHoldHostLockWhileProbing() throws Exception {
+        pool = new SSHSessionPool(2, 2, 60000, -1);
+        pool.release(pool.lease(SESSION_KEY, factory(sessionMock), 0), true);
+        final AtomicReference<Session> concurrentSession = new AtomicReference<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                // another command of the host is leased while the keepalive is in flight
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        concurrentSession.set(pool.lease(SESSION_KEY, factory(otherSessionMock), 0).getSession());
+                    }
+                });
+                thread.start();
+                thread.join(5000);
+                return null;
+            }
+        }).when(sessionMock).sendKeepAliveMsg();
+
+        SSHSessionPool.PooledSession pooledSession = pool.lease(SESSION_KEY, factory(sessionMock), 0);
+
+        assertSame(sessionMock, pooledSession.getSession());
+        assertSame(otherSessionMock, concurrentSession.get());
+    }
+
+    @Test
+    public void evictExpired() {
+        pool = new SSHSessionPool(2, 2, -1, 60000);
+        pool.release(pool.lease(SESSION_KEY, factory(sessionMock), 0), true);
+
+        pool.evictExpired();
+
+        verify(sessionMock).disconnect();
+        assertEquals(0, pool.getStats().getIdleSessions());
+    }
+
+    @Test
+    public void leaseFailedOpenFreesSlot() {
+        pool = new SSHSessionPool(1, 1, 60000, 60000);
+        try {
+            pool.lease(SESSION_KEY, new SSHSessionPool.SessionFactory() {
+                @Override
+                public Session create() {
+                    throw new RuntimeException("Auth fail");
+                }
+            }, 0);
+            fail("the session should not be opened");
+        } catch (RuntimeException e) {
+            assertEquals("Auth fail", e.getMessage());
+        }
+        assertSame(sessionMock, pool.lease(SESSION_KEY, factory(sessionMock), 0).getSession());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLimits() {
+        new SSHSessionPool(0, 1, 0, 0);
+    }
+
+    private SSHSessionPool.SessionFactory factory(final Session... sessions) {
+        return new SSHSessionPool.SessionFactory() {
+            private int next;
+
+            @Override
+            public Session create() {
+                openedSessions.incrementAndGet();
+                return sessions[next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,76 @@
+package io.cloudslang.content.ssh.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class SpillingOutputStreamTest {
+
+    private SpillingOutputStream stream;
+
+    @After
+    public void tearDown() throws Exception {
+        if (stream != null && stream.getFile() != null) {
+            Files.deleteIfExists(stream.getFile().toPath());
+        }
+    }
+
+    @Test
+    public void keepsOutputInMemory() throws Exception {
+        stream = new SpillingOutputStream(10);
+        stream.write("output".getBytes(StandardCharsets.UTF_8));
+        stream.close();
+
+        assertFalse(stream.isSpilled());
+        assertNull(stream.getFile());
+        assertEquals("output", stream.toString("UTF-8"));
+    }
+
+    @Test
+    public void spillsOutputToFile() throws Exception {
+        stream = new SpillingOutputStream(10);
+        stream.write("first ".getBytes(StandardCharsets.UTF_8));
+        stream.write("second".getBytes(StandardCharsets.UTF_8));
+        stream.write('!');
+        stream.close();
+
+        assertTrue(stream.isSpilled());
+        assertEquals("", stream.toString("UTF-8"));
+        File file = stream.getFile();
+        assertEquals("first second!", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void noLimit() throws Exception {
+        stream = new SpillingOutputStream(0);
+        stream.write(new byte[100000]);
+
+        assertFalse(stream.isSpilled());
+        assertEquals(100000, stream.toString("ISO-8859-1").length());
+    }
+
+    @Test
+    public void awaitClose() throws Exception {
+        stream = new SpillingOutputStream(0);
+        assertFalse(stream.awaitClose(10));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stream.close();
+                } catch (Exception ignore) {
+                }
+            }
+        }).start();
+
+        assertTrue(stream.awaitClose(5000));
+        stream.close();
+        assertTrue(stream.awaitClose(0));
+    }
+}
@@ -0,0 +1,66 @@
+package io.cloudslang.content.xml.actions;
+
+import com.hp.oo.sdk.content.annotations.Output;
+import com.hp.oo.sdk.content.annotations.Param;
+import com.hp.oo.sdk.content.annotations.Response;
+import io.cloudslang.content.xml.entities.inputs.EditXmlBatchInputs;
+import io.cloudslang.content.xml.services.EditXmlBatchService;
+import io.cloudslang.content.xml.utils.Constants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class used for creating @Action operation to apply several edits to an xml document, which is parsed and
+ * serialized only once.
+ */
+public class EditXmlBatch {
+
+    /**
+     * @param xml             The XML (in the form of a String).
+     * @param filePath        Absolute or remote path of the XML file.
+     * @param operations      The edits to apply, in order, as a JSON array of objects with the inputs of the Edit XML
+     *                        operation: action, xpath1, xpath2, value, type and name.
+     *                        Example: [{"action":"update","xpath1":"/Employees/Employee/age","type":"text","value":"30"},
+     *                        {"action":"delete","xpath1":"/Employees/Employee/firstname","type":"elem"}]
+     *                        Every operation is validated before the document is edited, and every XPath is evaluated
+     *                        against the document as modified by the previous operations.
+     * @param parsingFeatures The list of XML parsing features separated by new line (CRLF), as for the Edit XML
+     *                        operation.
+     * @param outputFilePath  Optional - path of a file to which the resulting XML is written instead of being returned.
+     *                        When set, returnResult holds the absolute path of the file.
+     * @return map of results containing the modified XML or the path of the output file, and the return code
+     */
+    @com.hp.oo.sdk.content.annotations.Action(name = "Edit XML Batch",
+            outputs = {
+                    @Output(Constants.Outputs.RETURN_RESULT),
+                    @Output(Constants.Outputs.RETURN_CODE),
+                    @Output(Constants.Outputs.EXCEPTION)},
+            responses = {
+                    @Response(text = Constants.ResponseNames.SUCCESS, field = Constants.ReturnCodes.SUCCESS, value = "0"),
+                    @Response(text = Constants.ResponseNames.FAILURE, field = Constants.ReturnCodes.FAILURE, value = "-1")})
+    public Map<String, String> execute(
+            @Param(value = Constants.Inputs.XML) String xml,
+            @Param(value = Constants.Inputs.FILE_PATH) String filePath,
+            @Param(value = Constants.Inputs.OPERATIONS, required = true) String operations,
+            @Param(value = Constants.Inputs.FEATURES) String parsingFeatures,
+            @Param(value = Constants.Inputs.OUTPUT_FILE_PATH) String outputFilePath) {
+        Map<String, String> result = new HashMap<>();
+        try {
+            EditXmlBatchInputs inputs = new EditXmlBatchInputs.EditXmlBatchInputsBuilder()
+                    .withXml(xml)
+                    .withFilePath(filePath)
+                    .withOperations(operations)
+                    .withParsingFeatures(parsingFeatures)
+                    .withOutputFilePath(outputFilePath)
+                    .build();
+
+            result.put(Constants.Outputs.RETURN_RESULT, new EditXmlBatchService().execute(inputs));
+            result.put(Constants.Outputs.RETURN_CODE, String.valueOf(Constants.ReturnCodes.SUCCESS));
+        } catch (Exception e) {
+            result.put(Constants.Outputs.EXCEPTION, e.getMessage());
+            result.put(Constants.Outputs.RETURN_CODE, String.valueOf(Constants.ReturnCodes.FAILURE));
+        }
+        return result;
+    }
+}
@@ -27,6 +27,9 @@ public class XpathQuery {
      * @param queryType         type of selection result from query attribute value
      * @param delimiter         optional - string to use as delimiter in case query_type is nodelist
      * @param secureProcessing  optional - whether to use secure processing
+     * @param xPathQueriesDelimiter optional - delimiter used to split xPathQuery into several queries; when set, every
+     *                          query is evaluated against the same parsed document and the selected value is a JSON
+     *                          array holding the value selected by each query, in order
      * @return map of results containing success or failure text, a result message, and the value selected
      */
     @Action(name = "XpathQuery",
@@ -44,7 +47,8 @@ public class XpathQuery {
             @Param(value = Constants.Inputs.XPATH_QUERY, required = true) String xPathQuery,
             @Param(value = Constants.Inputs.QUERY_TYPE, required = true) String queryType,
             @Param(Constants.Inputs.DELIMITER) String delimiter,
-            @Param(Constants.Inputs.SECURE_PROCESSING) String secureProcessing) {
+            @Param(Constants.Inputs.SECURE_PROCESSING) String secureProcessing,
+            @Param(Constants.Inputs.XPATH_QUERIES_DELIMITER) String xPathQueriesDelimiter) {
 
         CommonInputs commonInputs = new CommonInputs.CommonInputsBuilder()
                 .withXmlDocument(xmlDocument)
@@ -56,6 +60,7 @@ public class XpathQuery {
         CustomInputs customInputs = new CustomInputs.CustomInputsBuilder()
                 .withQueryType(queryType)
                 .withDelimiter(delimiter)
+                .withXPathQueriesDelimiter(xPathQueriesDelimiter)
                 .build();
 
         return new XpathQueryService().execute(commonInputs, customInputs);
@@ -32,4 +32,20 @@ public class SimpleNamespaceContext implements NamespaceContext {
     public Iterator getPrefixes(String namespaceURI) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SimpleNamespaceContext)) {
+            return false;
+        }
+        return PREF_MAP.equals(((SimpleNamespaceContext) o).PREF_MAP);
+    }
+
+    @Override
+    public int hashCode() {
+        return PREF_MAP.hashCode();
+    }
 }
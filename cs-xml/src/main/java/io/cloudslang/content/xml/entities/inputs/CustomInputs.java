@@ -15,6 +15,7 @@ public class CustomInputs {
     private String xsdDocumentSource;
     private String queryType;
     private String delimiter;
+    private String xPathQueriesDelimiter;
 
     public CustomInputs(CustomInputsBuilder builder) {
         this.attributeName = builder.attributeName;
@@ -24,6 +25,7 @@ public class CustomInputs {
         this.xsdDocumentSource = builder.xsdDocumentSource;
         this.queryType = builder.queryType;
         this.delimiter = builder.delimiter;
+        this.xPathQueriesDelimiter = builder.xPathQueriesDelimiter;
     }
 
     public String getAttributeName() {
@@ -54,6 +56,10 @@ public class CustomInputs {
         return delimiter;
     }
 
+    public String getXPathQueriesDelimiter() {
+        return xPathQueriesDelimiter;
+    }
+
     public static class CustomInputsBuilder {
         private String attributeName;
         private String value;
@@ -62,6 +68,7 @@ public class CustomInputs {
         private String xsdDocumentSource;
         private String queryType;
         private String delimiter;
+        private String xPathQueriesDelimiter;
 
         public CustomInputs build() {
             return new CustomInputs(this);
@@ -102,6 +109,11 @@ public class CustomInputs {
             return this;
         }
 
+        public CustomInputsBuilder withXPathQueriesDelimiter(String inputValue) {
+            xPathQueriesDelimiter = inputValue;
+            return this;
+        }
+
         public CustomInputsBuilder withXsdDocumentSource(String xsdDocumentSource) {
             this.xsdDocumentSource = InputUtils.validateXsdDocumentSource(xsdDocumentSource);
             return this;
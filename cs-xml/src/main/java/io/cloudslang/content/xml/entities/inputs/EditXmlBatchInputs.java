@@ -0,0 +1,80 @@
+package io.cloudslang.content.xml.entities.inputs;
+
+import static io.cloudslang.content.xml.utils.ValidateUtils.validateIsNotEmpty;
+
+/**
+ * Inputs of a batch of EditXml operations applied to the same document.
+ */
+public class EditXmlBatchInputs {
+    private String xml;
+    private String filePath;
+    private String operations;
+    private String parsingFeatures;
+    private String outputFilePath;
+
+    public EditXmlBatchInputs(EditXmlBatchInputsBuilder builder) {
+        this.xml = builder.xml;
+        this.filePath = builder.filePath;
+        this.operations = builder.operations;
+        this.parsingFeatures = builder.parsingFeatures;
+        this.outputFilePath = builder.outputFilePath;
+    }
+
+    public String getXml() {
+        return xml;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public String getOperations() {
+        return operations;
+    }
+
+    public String getParsingFeatures() {
+        return parsingFeatures;
+    }
+
+    public String getOutputFilePath() {
+        return outputFilePath;
+    }
+
+    public static class EditXmlBatchInputsBuilder {
+        private String xml;
+        private String filePath;
+        private String operations;
+        private String parsingFeatures;
+        private String outputFilePath;
+
+        public EditXmlBatchInputs build() {
+            return new EditXmlBatchInputs(this);
+        }
+
+        public EditXmlBatchInputs.EditXmlBatchInputsBuilder withXml(String inputValue) {
+            xml = inputValue;
+            return this;
+        }
+
+        public EditXmlBatchInputs.EditXmlBatchInputsBuilder withFilePath(String inputValue) {
+            filePath = inputValue;
+            return this;
+        }
+
+        public EditXmlBatchInputs.EditXmlBatchInputsBuilder withOperations(String inputValue) throws Exception {
+            validateIsNotEmpty(inputValue, "operations input is required.");
+            operations = inputValue;
+            return this;
+        }
+
+        public EditXmlBatchInputs.EditXmlBatchInputsBuilder withParsingFeatures(String inputValue) {
+            parsingFeatures = inputValue;
+            return this;
+        }
+
+        public EditXmlBatchInputs.EditXmlBatchInputsBuilder withOutputFilePath(String inputValue) {
+            outputFilePath = inputValue;
+            return this;
+        }
+    }
+}
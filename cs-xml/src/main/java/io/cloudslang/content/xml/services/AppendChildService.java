@@ -24,7 +24,7 @@ public class AppendChildService {
 
         try {
             Document doc = XmlUtils.getDocument(commonInputs);
-            NamespaceContext context = XmlUtils.getNamespaceContext(commonInputs, doc);
+            NamespaceContext context = XmlUtils.getNamespaceContext(doc);
 
             Document childDoc = XmlUtils.parseXML(customInputs.getXmlElement(), commonInputs.getSecureProcessing());
             Node childNode = doc.importNode(childDoc.getDocumentElement(), true);
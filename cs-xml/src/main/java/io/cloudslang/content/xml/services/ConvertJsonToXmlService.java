@@ -1,15 +1,23 @@
 package io.cloudslang.content.xml.services;
 
-import com.google.gson.*;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import io.cloudslang.content.xml.entities.inputs.ConvertJsonToXmlInputs;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom2.Attribute;
-import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.Namespace;
+import org.jdom2.Text;
+import org.jdom2.Verifier;
 import org.jdom2.output.Format;
-import org.jdom2.output.XMLOutputter;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
 
 import static io.cloudslang.content.xml.utils.Constants.*;
@@ -18,6 +26,8 @@ import static io.cloudslang.content.xml.utils.Constants.*;
  * Created by ursan on 8/2/2016.
  */
 public class ConvertJsonToXmlService {
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
     private Map<String, String> jsonArrayItemNames;
     private String jsonArrayItemName;
     private Map<String, Namespace> namespaces;
@@ -28,182 +38,250 @@ public class ConvertJsonToXmlService {
         jsonArrayItemNames = new HashMap<>();
     }
 
+    /**
+     * Converts the json while reading its tokens: every element is written as soon as its json value is read, so
+     * neither a JSON tree nor an XML tree is built. The json is read twice, first only to report a malformed
+     * document before anything is converted.
+     */
     public String convertToXmlString(ConvertJsonToXmlInputs inputs) {
-        if (StringUtils.isBlank(inputs.getJson())) {
+        String json = inputs.getJson();
+        if (StringUtils.isBlank(json)) {
             return EMPTY_STRING;
         }
-        XMLOutputter xmlWriter = new XMLOutputter();
-        xmlWriter.setFormat(getFormat(inputs.getPrettyPrint(), inputs.getShowXmlDeclaration()));
-        if (inputs.getShowXmlDeclaration()) {
-            return xmlWriter.outputString(convertJsonStringToXmlDocument(inputs.getJson(), inputs.getRootTagName()));
+        if (hasRepeatedNames(json)) {
+            // a json object keeps the last value of a repeated name at the position of the first one, which cannot
+            // be known while reading the tokens, so such a document is written back from its tree first
+            json = new JsonParser().parse(json).toString();
         }
-        return getXmlFromElements(convertJsonStringToXmlElements(inputs.getJson(), inputs.getRootTagName()), xmlWriter);
-    }
-
-    private String getXmlFromElements(List<Element> elements, XMLOutputter xmlWriter) {
-        StringBuilder result = new StringBuilder();
-        for (Element element : elements) {
-            result.append(xmlWriter.outputString(element)).append(NEW_LINE);
+        XmlWriter xmlWriter = new XmlWriter(inputs.getPrettyPrint());
+        JsonReader jsonReader = new JsonReader(new StringReader(json));
+        jsonReader.setLenient(true);
+        try {
+            if (inputs.getShowXmlDeclaration()) {
+                return convertToXmlDocument(jsonReader, inputs.getRootTagName(), xmlWriter);
+            }
+            return convertToXmlElements(jsonReader, inputs.getRootTagName(), xmlWriter);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
         }
-        result.delete(result.length() - NEW_LINE.length(), result.length());
-        return result.toString();
     }
 
-    private Format getFormat(Boolean prettyPrint, Boolean showXmlDeclaration) {
-        Format format = prettyPrint ? Format.getPrettyFormat().setIndent(INDENT) : Format.getCompactFormat();
-        return format.setOmitDeclaration(!showXmlDeclaration)
-                .setEncoding(UTF_8_ENCODING)
-                .setLineSeparator(NEW_LINE);
+    /**
+     * Reads all the tokens of the json with the same calls as JsonParser, so that a malformed json fails with the
+     * same exception.
+     *
+     * @return true if a json object contains the same name more than once
+     */
+    private static boolean hasRepeatedNames(String json) {
+        JsonReader jsonReader = new JsonReader(new StringReader(json));
+        boolean repeatedNames = false;
+        try {
+            jsonReader.setLenient(true);
+            JsonToken token;
+            try {
+                token = jsonReader.peek();
+            } catch (EOFException e) {
+                // an empty document is parsed as null
+                return false;
+            }
+            Deque<Set<String>> names = new ArrayDeque<>();
+            do {
+                switch (jsonReader.peek()) {
+                    case BEGIN_OBJECT:
+                        jsonReader.beginObject();
+                        names.push(new HashSet<String>());
+                        break;
+                    case END_OBJECT:
+                        jsonReader.endObject();
+                        names.pop();
+                        break;
+                    case BEGIN_ARRAY:
+                        jsonReader.beginArray();
+                        names.push(Collections.<String>emptySet());
+                        break;
+                    case END_ARRAY:
+                        jsonReader.endArray();
+                        names.pop();
+                        break;
+                    case NAME:
+                        repeatedNames |= !names.peek().add(jsonReader.nextName());
+                        break;
+                    case BOOLEAN:
+                        jsonReader.nextBoolean();
+                        break;
+                    case NULL:
+                        jsonReader.nextNull();
+                        break;
+                    default:
+                        jsonReader.nextString();
+                }
+            } while (!names.isEmpty());
+            jsonReader.setLenient(false);
+            if (token != JsonToken.NULL && jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Did not consume the entire document.");
+            }
+        } catch (EOFException | MalformedJsonException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return repeatedNames;
     }
 
-    private List<Element> convertJsonStringToXmlElements(String json, String rootTagName) {
-        JsonElement jsonElement = new JsonParser().parse(json);
+    private String convertToXmlElements(JsonReader jsonReader, String rootTagName, XmlWriter xmlWriter) throws IOException {
         if (StringUtils.isEmpty(rootTagName)) {
-            return convertToXmlElementsJsonElement(jsonElement);
+            if (peekDocument(jsonReader) == JsonToken.BEGIN_ARRAY) {
+                writeElements(jsonReader, jsonArrayItemName, xmlWriter);
+            } else {
+                writeElements(jsonReader, xmlWriter);
+            }
+        } else {
+            writeRootElement(jsonReader, rootTagName, xmlWriter);
         }
-        Element root = convertToXmlElementJsonElementWithRootTag(jsonElement, rootTagName);
-        return Collections.singletonList(root);
-    }
-
-    private Document convertJsonStringToXmlDocument(String json, String rootTagName) {
-        JsonElement jsonElement = new JsonParser().parse(json);
-        Document document = new Document();
-        return document.setRootElement(addRootTagJsonElement(rootTagName, jsonElement));
-
+        StringBuilder result = xmlWriter.getXml();
+        result.delete(result.length() - NEW_LINE.length(), result.length());
+        return result.toString();
     }
 
-    private Element addRootTagJsonElement(String rootTagName, JsonElement jsonElement) {
+    private String convertToXmlDocument(JsonReader jsonReader, String rootTagName, XmlWriter xmlWriter) throws IOException {
+        xmlWriter.getXml().append(XML_DECLARATION).append(NEW_LINE);
         if (StringUtils.isEmpty(rootTagName)) {
-            if (jsonElement.isJsonArray()) {
+            if (peekDocument(jsonReader) == JsonToken.BEGIN_ARRAY) {
                 // we don't know the root tag name
                 throw new IllegalArgumentException(ROOT_TAG_NAME_IS_MISSING);
-            } else {
-                List<Element> elements = convertToXmlElementsJsonObject(jsonElement.getAsJsonObject());
-                if (elements.size() != 1) {
-                    // the JSON object must have only one element
-                    throw new IllegalArgumentException(ONLY_ONE_ROOT_ELEMENT);
-                }
-                return elements.get(0);
             }
-        }
-        return convertToXmlElementJsonElementWithRootTag(jsonElement, rootTagName);
-    }
-
-    private Element convertJsonArrayToXmlElement(JsonArray jsonArray, String arrayName) {
-        Element result = createElement(arrayName);
-        for (JsonElement itemJson : jsonArray) {
-            Element elementToAdd = getXmlElementFromJsonElement(itemJson, jsonArrayItemName);
-            if (elementToAdd != null) {
-                result.addContent(elementToAdd);
+            if (writeElements(jsonReader, xmlWriter) != 1) {
+                // the JSON object must have only one element
+                throw new IllegalArgumentException(ONLY_ONE_ROOT_ELEMENT);
             }
+        } else {
+            writeRootElement(jsonReader, rootTagName, xmlWriter);
         }
-        return result;
+        return xmlWriter.getXml().toString();
     }
 
-    private List<Element> convertToXmlElementsJsonArray(JsonArray jsonArray) {
-        return convertToXmlElementsJsonArray(jsonArray, jsonArrayItemName);
-    }
-
-    private List<Element> convertToXmlElementsJsonArray(JsonArray jsonArray, String itemName) {
-        List<Element> result = new ArrayList<>();
-        for (JsonElement itemJson : jsonArray) {
-            Element xmlItem = getXmlElementFromJsonElement(itemJson, itemName);
-            if (xmlItem != null) {
-                result.add(xmlItem);
-            }
+    private void writeRootElement(JsonReader jsonReader, String rootTagName, XmlWriter xmlWriter) throws IOException {
+        if (peekDocument(jsonReader) == JsonToken.BEGIN_ARRAY) {
+            writeArrayElement(jsonReader, rootTagName, jsonArrayItemName, xmlWriter);
+        } else {
+            writeObjectElement(jsonReader, rootTagName, xmlWriter);
         }
-        return result;
     }
 
-
-    private List<Element> convertToXmlElementsJsonElement(JsonElement jsonElement) {
-        if (jsonElement.isJsonArray()) {
-            return convertToXmlElementsJsonArray(jsonElement.getAsJsonArray());
+    /**
+     * @return the first token of the json, which must be the beginning of an array or of an object
+     */
+    private static JsonToken peekDocument(JsonReader jsonReader) throws IOException {
+        JsonToken token;
+        try {
+            token = jsonReader.peek();
+        } catch (EOFException e) {
+            token = JsonToken.END_DOCUMENT;
+        }
+        if (token != JsonToken.BEGIN_ARRAY && token != JsonToken.BEGIN_OBJECT) {
+            throw new IllegalStateException("Not a JSON Object: " + new JsonParser().parse(jsonReader));
         }
-        return convertToXmlElementsJsonObject(jsonElement.getAsJsonObject());
+        return token;
     }
 
-    private Element convertToXmlElementJsonElementWithRootTag(JsonElement jsonElement, String rootTagName) {
-        if (jsonElement.isJsonArray()) {
-            return convertJsonArrayToXmlElement(jsonElement.getAsJsonArray(), rootTagName);
+    /**
+     * Writes every value of a json array as an element named itemName.
+     *
+     * @return the number of elements written
+     */
+    private int writeElements(JsonReader jsonReader, String itemName, XmlWriter xmlWriter) throws IOException {
+        int elements = 0;
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            if (writeElement(jsonReader, itemName, xmlWriter)) {
+                elements++;
+            }
         }
-        return convertJsonObjectToXmlElement(jsonElement.getAsJsonObject(), rootTagName);
+        jsonReader.endArray();
+        return elements;
     }
 
-    private List<Element> convertToXmlElementsJsonObject(JsonObject jsonObject) {
-        List<Element> result = new ArrayList<>();
-        for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-            String childTagName = entry.getKey();
-            JsonElement childJson = entry.getValue();
-            //if it's null we don't care
-            Element elementToAdd = getXmlElementFromJsonElement(childJson, childTagName);
-            if (elementToAdd != null) {
-                result.add(elementToAdd);
+    /**
+     * Writes every member of a json object as an element named after the member.
+     *
+     * @return the number of elements written
+     */
+    private int writeElements(JsonReader jsonReader, XmlWriter xmlWriter) throws IOException {
+        int elements = 0;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (writeElement(jsonReader, jsonReader.nextName(), xmlWriter)) {
+                elements++;
             }
         }
-        return result;
+        jsonReader.endObject();
+        return elements;
     }
 
-    private Element getXmlElementFromJsonElement(JsonElement childJson, String childTagName) {
-        if (childJson.isJsonPrimitive()) {
-            String childValue = getJsonPrimitiveValue(childJson.getAsJsonPrimitive());
-            return createElement(childTagName).setText(childValue);
-        } else if (childJson.isJsonObject()) {
-            return convertJsonObjectToXmlElement(childJson.getAsJsonObject(), childTagName);
-        } else if (childJson.isJsonArray()) {
-            String itemName = jsonArrayItemNames.containsKey(childTagName) ?
-                    jsonArrayItemNames.get(childTagName) : jsonArrayItemName;
-            Element container = createElement(childTagName);
-            List<Element> elements = convertToXmlElementsJsonArray(childJson.getAsJsonArray(), itemName);
-            for (Element element : elements) {
-                container.addContent(element);
-            }
-            return container;
+    /**
+     * @return false if the json value is null, which is not written
+     */
+    private boolean writeElement(JsonReader jsonReader, String tagName, XmlWriter xmlWriter) throws IOException {
+        switch (jsonReader.peek()) {
+            case BEGIN_OBJECT:
+                writeObjectElement(jsonReader, tagName, xmlWriter);
+                return true;
+            case BEGIN_ARRAY:
+                String itemName = jsonArrayItemNames.containsKey(tagName) ?
+                        jsonArrayItemNames.get(tagName) : jsonArrayItemName;
+                writeArrayElement(jsonReader, tagName, itemName, xmlWriter);
+                return true;
+            case NULL:
+                //if it's null we don't care
+                jsonReader.nextNull();
+                return false;
+            default:
+                String value = nextPrimitiveValue(jsonReader);
+                xmlWriter.startElement(tagName);
+                xmlWriter.text(value);
+                xmlWriter.endElement();
+                return true;
         }
-        return null;
     }
 
-    private Element convertJsonObjectToXmlElement(JsonObject jsonObject, String tagName) {
-        Element result = createElement(tagName);
-        for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-            String childTagName = entry.getKey();
-            JsonElement childJson = entry.getValue();
+    private void writeArrayElement(JsonReader jsonReader, String tagName, String itemName, XmlWriter xmlWriter) throws IOException {
+        xmlWriter.startElement(tagName);
+        writeElements(jsonReader, itemName, xmlWriter);
+        xmlWriter.endElement();
+    }
+
+    private void writeObjectElement(JsonReader jsonReader, String tagName, XmlWriter xmlWriter) throws IOException {
+        xmlWriter.startElement(tagName);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String childTagName = jsonReader.nextName();
             //this child element is an XML attribute
             if (childTagName.startsWith(JSON_ATTRIBUTE_PREFIX)) {
                 //if attribute value is not a primitive value we don't add it to xml element
-                if (childJson.isJsonPrimitive()) {
+                if (isPrimitive(jsonReader.peek())) {
                     //remove @ char from the attribute name
-                    childTagName = childTagName.substring(JSON_ATTRIBUTE_PREFIX.length());
-                    String attributeValue = getJsonPrimitiveValue(childJson.getAsJsonPrimitive());
-                    result.setAttribute(new Attribute(childTagName, attributeValue));
+                    xmlWriter.attribute(childTagName.substring(JSON_ATTRIBUTE_PREFIX.length()), nextPrimitiveValue(jsonReader));
+                } else {
+                    jsonReader.skipValue();
                 }
             } else {
-                //if it's null we don't care
-                Element elementToAdd = getXmlElementFromJsonElement(childJson, childTagName);
-                if (elementToAdd != null) {
-                    result.addContent(elementToAdd);
-                }
+                writeElement(jsonReader, childTagName, xmlWriter);
             }
         }
-        return result;
+        jsonReader.endObject();
+        xmlWriter.endElement();
     }
 
-    private Element createElement(String tagName) {
-        String[] tagNames = tagName.split(NAMESPACE_DELIMITER);
-        Element result = tagNames.length == 1 ? new Element(tagName) : new Element(tagNames[1], namespaces.get(tagNames[0]));
-        for (Namespace namespace : namespaces.values()) {
-            result.addNamespaceDeclaration(namespace);
-        }
-        return result;
+    private static boolean isPrimitive(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN;
     }
 
-    private String getJsonPrimitiveValue(JsonPrimitive jsonPrimitive) {
-        if (jsonPrimitive.isNumber()) {
-            return jsonPrimitive.getAsNumber().toString();
-        } else if (jsonPrimitive.isBoolean()) {
-            return Boolean.toString(jsonPrimitive.getAsBoolean());
+    private static String nextPrimitiveValue(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(jsonReader.nextBoolean());
         }
-        return jsonPrimitive.getAsString();
+        // a number is kept as written in the json
+        return jsonReader.nextString();
     }
 
     public void setJsonArrayItemNames(Map<String, String> jsonArrayItemNames) {
@@ -219,4 +297,165 @@ public class ConvertJsonToXmlService {
             namespaces.put(entry.getValue(), Namespace.getNamespace(entry.getValue(), entry.getKey()));
         }
     }
+
+    /**
+     * Writes elements in the format of the JDOM XMLOutputter: the pretty format indents the elements and trims the
+     * text, the compact format normalizes the whitespace of the text. Every top level element declares all the
+     * namespaces and is followed by a new line. Names and values are checked as JDOM checks them, and an invalid one
+     * fails with the same exception.
+     */
+    private class XmlWriter {
+        private final StringBuilder xml = new StringBuilder();
+        private final Deque<OpenElement> elements = new ArrayDeque<>();
+        private final boolean prettyPrint;
+        private final Format format;
+        private List<Namespace> sortedNamespaces;
+
+        private XmlWriter(boolean prettyPrint) {
+            this.prettyPrint = prettyPrint;
+            format = (prettyPrint ? Format.getPrettyFormat() : Format.getCompactFormat()).setEncoding(UTF_8_ENCODING);
+        }
+
+        private StringBuilder getXml() {
+            return xml;
+        }
+
+        private void startElement(String tagName) {
+            String[] tagNames = tagName.split(NAMESPACE_DELIMITER);
+            String name = tagNames.length == 1 ? tagName : tagNames[1];
+            Namespace namespace = tagNames.length == 1 ? null : namespaces.get(tagNames[0]);
+            if (namespace == null) {
+                namespace = Namespace.NO_NAMESPACE;
+            }
+            checkElement(name, namespace);
+
+            OpenElement parent = elements.peek();
+            if (parent != null) {
+                parent.closeStartTag();
+                parent.hasChildren = true;
+                indent();
+            }
+            String qualifiedName = namespace.getPrefix().isEmpty() ? name : namespace.getPrefix() + NAMESPACE_DELIMITER + name;
+            xml.append('<').append(qualifiedName);
+            if (parent == null) {
+                // the namespaces of the elements below are already in scope
+                writeNamespaceDeclarations(namespace);
+            }
+            elements.push(new OpenElement(qualifiedName, xml.length()));
+        }
+
+        /**
+         * Adds an attribute to the current element. The attribute is inserted in the start tag when children were
+         * already written after it.
+         */
+        private void attribute(String name, String value) {
+            if (Verifier.checkAttributeName(name) != null || Verifier.checkCharacterData(value) != null) {
+                // throws the JDOM exception for the invalid name or value
+                new Attribute(name, value);
+            }
+            String attribute = " " + name + "=\"" + Format.escapeAttribute(format.getEscapeStrategy(), value) + "\"";
+            OpenElement element = elements.peek();
+            xml.insert(element.attributesEnd, attribute);
+            element.attributesEnd += attribute.length();
+        }
+
+        private void text(String value) {
+            if (Verifier.checkCharacterData(value) != null) {
+                // throws the JDOM exception for the invalid text
+                new Text(value);
+            }
+            String text = prettyPrint ? Format.trimBoth(value) : Format.compact(value);
+            if (!text.isEmpty()) {
+                elements.peek().closeStartTag();
+                xml.append(Format.escapeText(format.getEscapeStrategy(), NEW_LINE, text));
+            }
+        }
+
+        private void endElement() {
+            OpenElement element = elements.pop();
+            if (!element.startTagClosed) {
+                xml.append(" />");
+            } else {
+                if (element.hasChildren) {
+                    indent();
+                }
+                xml.append("</").append(element.qualifiedName).append('>');
+            }
+            if (elements.isEmpty()) {
+                xml.append(NEW_LINE);
+            }
+        }
+
+        private void indent() {
+            if (prettyPrint) {
+                xml.append(NEW_LINE);
+                for (int i = 0; i < elements.size(); i++) {
+                    xml.append(INDENT);
+                }
+            }
+        }
+
+        private void checkElement(String name, Namespace namespace) {
+            if (Verifier.checkElementName(name) != null) {
+                // throws the JDOM exception for the invalid name
+                new Element(name, namespace);
+            }
+            for (Namespace declaredNamespace : namespaces.values()) {
+                if (Verifier.checkNamespaceCollision(declaredNamespace, namespace) != null) {
+                    new Element(name, namespace).addNamespaceDeclaration(declaredNamespace);
+                }
+            }
+        }
+
+        /**
+         * Declares the namespace of the element first, then the other namespaces ordered by prefix.
+         */
+        private void writeNamespaceDeclarations(Namespace elementNamespace) {
+            if (sortedNamespaces == null) {
+                sortedNamespaces = new ArrayList<>(namespaces.values());
+                Collections.sort(sortedNamespaces, new Comparator<Namespace>() {
+                    @Override
+                    public int compare(Namespace namespace1, Namespace namespace2) {
+                        return namespace1.getPrefix().compareTo(namespace2.getPrefix());
+                    }
+                });
+            }
+            writeNamespaceDeclaration(elementNamespace);
+            for (Namespace namespace : sortedNamespaces) {
+                if (!namespace.equals(elementNamespace)) {
+                    writeNamespaceDeclaration(namespace);
+                }
+            }
+        }
+
+        private void writeNamespaceDeclaration(Namespace namespace) {
+            if (namespace.equals(Namespace.NO_NAMESPACE) || namespace.equals(Namespace.XML_NAMESPACE)) {
+                return;
+            }
+            xml.append(" xmlns");
+            if (!namespace.getPrefix().isEmpty()) {
+                xml.append(NAMESPACE_DELIMITER).append(namespace.getPrefix());
+            }
+            xml.append("=\"").append(Format.escapeAttribute(format.getEscapeStrategy(), namespace.getURI())).append('"');
+        }
+
+        private class OpenElement {
+            private final String qualifiedName;
+            private int attributesEnd;
+            private boolean startTagClosed;
+            private boolean hasChildren;
+
+            private OpenElement(String qualifiedName, int attributesEnd) {
+                this.qualifiedName = qualifiedName;
+                this.attributesEnd = attributesEnd;
+            }
+
+            private void closeStartTag() {
+                if (!startTagClosed) {
+                    xml.append('>');
+                    startTagClosed = true;
+                }
+            }
+        }
+    }
 }
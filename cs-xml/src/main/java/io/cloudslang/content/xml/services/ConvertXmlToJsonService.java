@@ -1,19 +1,26 @@
 package io.cloudslang.content.xml.services;
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 import io.cloudslang.content.xml.entities.inputs.ConvertXmlToJsonInputs;
-import io.cloudslang.content.xml.utils.XmlUtils;
+import io.cloudslang.content.xml.utils.XmlFactoryCache;
 import org.apache.commons.lang3.StringUtils;
-import org.jdom2.*;
-import org.jdom2.input.SAXBuilder;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import static io.cloudslang.content.xml.utils.Constants.*;
 
@@ -21,6 +28,8 @@ import static io.cloudslang.content.xml.utils.Constants.*;
  * Created by ursan on 8/2/2016.
  */
 public class ConvertXmlToJsonService {
+    private static final Pattern TEXT_PATTERN = Pattern.compile(".*[a-zA-Z0-9].*");
+
     private StringBuilder namespacesPrefixes;
     private StringBuilder namespacesUris;
 
@@ -29,176 +38,305 @@ public class ConvertXmlToJsonService {
         namespacesUris = new StringBuilder();
     }
 
-    public String convertToJsonString(ConvertXmlToJsonInputs inputs) throws JDOMException, IOException, SAXException {
+    /**
+     * Converts the xml in two steps: the document is read as a stream of SAX events into a compact model of its
+     * elements, with the children of every element grouped by name as they arrive, and the model is then written with
+     * a streaming JSON writer. No DOM or JSON tree is built.
+     */
+    public String convertToJsonString(ConvertXmlToJsonInputs inputs) throws IOException, SAXException, ParserConfigurationException {
         if (StringUtils.isBlank(inputs.getXml())) {
             return EMPTY_STRING;
         }
-        InputSource inputSource = new InputSource(new StringReader(inputs.getXml()));
-        SAXBuilder builder = new SAXBuilder();
-        XmlUtils.setFeatures(builder, inputs.getParsingFeatures());
-        Document document = builder.build(inputSource);
-        Element root = document.getRootElement();
-        List<Element> xmlElements = Collections.singletonList(root);
-        JsonObject jsonObject = convertXmlElementsToJsonObject(xmlElements, inputs.getIncludeAttributes(), inputs.getTextElementsName());
-        jsonObject = getJsonObjectWithRootElement(root, jsonObject, inputs.getIncludeRootElement());
-
-        return inputs.getPrettyPrint() ? prettyPrint(jsonObject) : jsonObject.toString();
-    }
+        XmlNode root = parse(inputs.getXml(), inputs.getParsingFeatures());
 
-    private JsonObject getJsonObjectWithRootElement(Element rootElement, JsonObject jsonObject, Boolean addRootElement) {
-        if (addRootElement) {
-            JsonObject rootJson = new JsonObject();
-            rootJson.add(rootElement.getName(), jsonObject);
-            return rootJson;
+        StringWriter json = new StringWriter();
+        JsonWriter jsonWriter = new JsonWriter(json);
+        if (inputs.getPrettyPrint()) {
+            jsonWriter.setIndent(INDENT);
         }
-        return jsonObject;
-    }
-
-    private String prettyPrint(JsonObject rootJson) {
-        Gson gson = new GsonBuilder().setPrettyPrinting()
-                .disableHtmlEscaping()
-                .create();
-        return gson.toJson(rootJson);
+        if (inputs.getIncludeRootElement()) {
+            jsonWriter.beginObject();
+            jsonWriter.name(root.localName);
+            writeObject(jsonWriter, root, inputs.getIncludeAttributes(), inputs.getTextElementsName());
+            jsonWriter.endObject();
+        } else {
+            writeObject(jsonWriter, root, inputs.getIncludeAttributes(), inputs.getTextElementsName());
+        }
+        jsonWriter.flush();
+        return json.toString();
     }
 
-    private JsonObject addJsonObjectsAndPrimitives(JsonObject jsonObject, List<Element> elements, Boolean includeAttributes, String textPropName) {
-        for (Element element : elements) {
-            JsonElement jsonElement = isPrimitiveElement(element) ?
-                    new JsonPrimitive(element.getValue()) : convertXmlElementsToJsonObject(Collections.singletonList(element), includeAttributes, textPropName);
-            jsonObject.add(getElementFullName(element), jsonElement);
+    private XmlNode parse(String xml, String parsingFeatures) throws IOException, SAXException, ParserConfigurationException {
+        XmlNodeHandler handler = new XmlNodeHandler();
+        try {
+            XmlFactoryCache.getSAXParser(parsingFeatures).parse(new InputSource(new StringReader(xml)), handler);
+        } catch (SAXParseException e) {
+            throw new SAXException("Error on line " + e.getLineNumber() + ": " + e.getMessage(), e);
         }
-        return jsonObject;
+        return handler.root;
     }
 
-
-    private JsonObject convertXmlElementsToJsonObject(List<Element> xmlElements, Boolean includeAttributes, String textPropName) {
-        JsonObject result = new JsonObject();
-        for (Element xmlElement : xmlElements) {
-            result = addXmlElementToJsonObject(result, xmlElement, includeAttributes, textPropName);
+    /**
+     * Writes an element as a JSON object: the attributes, then the arrays made of the children sharing a name, in the
+     * order their names first appear, then the other children in document order, then the text. As in a JSON object,
+     * a property written twice keeps its first position and its last value.
+     */
+    private void writeObject(JsonWriter jsonWriter, XmlNode node, boolean includeAttributes, String textPropName) throws IOException {
+        addNamespaces(node.namespaces);
+        Map<String, Object> properties = new LinkedHashMap<>();
+        if (includeAttributes && node.attributes != null) {
+            for (int i = 0; i < node.attributes.size(); i += 2) {
+                putProperty(properties, JSON_ATTRIBUTE_PREFIX + node.attributes.get(i), node.attributes.get(i + 1));
+            }
+        }
+        if (node.children != null) {
+            for (Map.Entry<String, List<XmlNode>> children : node.children.entrySet()) {
+                if (children.getValue().size() > 1) {
+                    putProperty(properties, children.getKey(), children.getValue());
+                }
+            }
+            for (Map.Entry<String, List<XmlNode>> children : node.children.entrySet()) {
+                if (children.getValue().size() == 1) {
+                    putProperty(properties, children.getKey(), children.getValue().get(0));
+                }
+            }
+        }
+        if (node.text != null && TEXT_PATTERN.matcher(node.text).matches()) {
+            putProperty(properties, textPropName, node.text.toString());
         }
-        return result;
-    }
 
-    private JsonArray convertXmlElementsToJsonArray(List<Element> xmlElements, Boolean includeAttributes, String textPropName) {
-        JsonArray result = new JsonArray();
-        for (Element xmlElement : xmlElements) {
-            result.add(addXmlElementToJsonObject(new JsonObject(), xmlElement, includeAttributes, textPropName));
+        jsonWriter.beginObject();
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            jsonWriter.name(property.getKey());
+            writeValue(jsonWriter, property.getValue(), includeAttributes, textPropName);
         }
-        return result;
+        jsonWriter.endObject();
     }
 
-    private JsonObject addXmlElementToJsonObject(JsonObject jsonObject, Element xmlElement, Boolean includeAttributes, String textPropName) {
-        addNamespaces(xmlElement.getAdditionalNamespaces());
-        if (includeAttributes) {
-            jsonObject = addAttributesToJsonObject(jsonObject, xmlElement.getAttributes());
-        }
-        List<Element> children = xmlElement.getChildren();
-        jsonObject = searchAndAddArrayElementsToJsonObject(jsonObject, children, includeAttributes, textPropName);
-        children = eliminateArrayElements(children);
-        jsonObject = addJsonObjectsAndPrimitives(jsonObject, children, includeAttributes, textPropName);
-        jsonObject = addTextProp(jsonObject, xmlElement.getText(), textPropName);
-        return jsonObject;
+    @SuppressWarnings("unchecked")
+    private void writeValue(JsonWriter jsonWriter, Object value, boolean includeAttributes, String textPropName) throws IOException {
+        if (value instanceof ReplacedProperty) {
+            ReplacedProperty replacedProperty = (ReplacedProperty) value;
+            for (Object replaced : replacedProperty.replaced) {
+                collectNamespaces(replaced);
+            }
+            writeValue(jsonWriter, replacedProperty.value, includeAttributes, textPropName);
+        } else if (value instanceof String) {
+            jsonWriter.value((String) value);
+        } else if (value instanceof XmlNode) {
+            XmlNode node = (XmlNode) value;
+            if (node.isPrimitive()) {
+                jsonWriter.value(node.text == null ? EMPTY_STRING : node.text.toString());
+            } else {
+                writeObject(jsonWriter, node, includeAttributes, textPropName);
+            }
+        } else {
+            jsonWriter.beginArray();
+            for (XmlNode node : (List<XmlNode>) value) {
+                writeObject(jsonWriter, node, includeAttributes, textPropName);
+            }
+            jsonWriter.endArray();
+        }
     }
 
-    private JsonObject searchAndAddArrayElementsToJsonObject(JsonObject jsonObject, List<Element> elements, Boolean includeAttributes, String textPropName) {
-        List<String> arrayElementsNames = getListOfArrayElementNames(elements);
-        for (String arrayName : arrayElementsNames) {
-            List<Element> arrayElements = getElementsByName(arrayName, elements);
-            jsonObject.add(arrayName, convertXmlElementsToJsonArray(arrayElements, includeAttributes, textPropName));
+    private static void putProperty(Map<String, Object> properties, String name, Object value) {
+        Object previous = properties.put(name, value);
+        if (previous != null) {
+            properties.put(name, new ReplacedProperty(previous, value));
         }
-        return jsonObject;
     }
 
-    private List<Element> eliminateArrayElements(List<Element> elements) {
-        List<String> arrayElementsNames = getListOfArrayElementNames(elements);
-        for (String arrayName : arrayElementsNames) {
-            elements = eliminateElementsWithName(arrayName, elements);
+    /**
+     * Records the namespaces of a property value that was replaced by a later property with the same name, in the
+     * order they would have been recorded had the value been written.
+     */
+    @SuppressWarnings("unchecked")
+    private void collectNamespaces(Object value) {
+        if (value instanceof ReplacedProperty) {
+            for (Object replaced : ((ReplacedProperty) value).replaced) {
+                collectNamespaces(replaced);
+            }
+            collectNamespaces(((ReplacedProperty) value).value);
+        } else if (value instanceof XmlNode) {
+            XmlNode node = (XmlNode) value;
+            if (!node.isPrimitive()) {
+                collectNodeNamespaces(node);
+            }
+        } else if (value instanceof List) {
+            for (XmlNode node : (List<XmlNode>) value) {
+                collectNodeNamespaces(node);
+            }
         }
-        return elements;
     }
 
-    private JsonObject addTextProp(JsonObject jsonObject, String text, String textPropName) {
-        if (!StringUtils.isEmpty(text) && text.matches(".*[a-zA-Z0-9].*")) {
-            jsonObject.addProperty(textPropName, text);
+    private void collectNodeNamespaces(XmlNode node) {
+        addNamespaces(node.namespaces);
+        if (node.children != null) {
+            for (List<XmlNode> children : node.children.values()) {
+                if (children.size() > 1) {
+                    collectNamespaces(children);
+                }
+            }
+            for (List<XmlNode> children : node.children.values()) {
+                if (children.size() == 1) {
+                    collectNamespaces(children.get(0));
+                }
+            }
         }
-        return jsonObject;
     }
 
-    private void addNamespaces(List<Namespace> namespaces) {
-        for (Namespace namespace : namespaces) {
+    private void addNamespaces(List<String> namespaces) {
+        if (namespaces == null) {
+            return;
+        }
+        for (int i = 0; i < namespaces.size(); i += 2) {
             if (namespacesUris.length() > 0) {
                 namespacesPrefixes.append(Defaults.DELIMITER);
                 namespacesUris.append(Defaults.DELIMITER);
             }
-            namespacesPrefixes.append(namespace.getPrefix());
-            namespacesUris.append(namespace.getURI());
+            namespacesPrefixes.append(namespaces.get(i));
+            namespacesUris.append(namespaces.get(i + 1));
         }
     }
 
-    private JsonObject addAttributesToJsonObject(JsonObject jsonObject, List<Attribute> attributes) {
-        for (Attribute attribute : attributes) {
-            jsonObject.addProperty(JSON_ATTRIBUTE_PREFIX + attribute.getName(), attribute.getValue());
-        }
-        return jsonObject;
+    public String getNamespacesUris() {
+        return namespacesUris.toString();
     }
 
-    private String getElementFullName(Element element) {
-        String name = element.getNamespacePrefix();
-        if (!name.isEmpty())
-            name += Defaults.PREFIX_DELIMITER;
-        name += element.getName();
-        return name;
+    public String getNamespacesPrefixes() {
+        return namespacesPrefixes.toString();
     }
 
-    private List<String> getElementsFullName(List<Element> elements) {
-        List<String> names = new LinkedList<>();
-        for (Element element : elements) {
-            names.add(getElementFullName(element));
+    /**
+     * An element of the document. Its children are grouped by full name as they are read, so the repeated names that
+     * become JSON arrays are known without comparing every pair of siblings.
+     */
+    private static class XmlNode {
+        private final String localName;
+        private List<String> attributes;
+        private List<String> namespaces;
+        private Map<String, List<XmlNode>> children;
+        private StringBuilder text;
+        private boolean textHasLineBreak;
+        private boolean textDropped;
+
+        private XmlNode(String localName) {
+            this.localName = localName;
         }
-        return names;
-    }
 
+        private boolean isPrimitive() {
+            return children == null && attributes == null;
+        }
 
-    private Boolean isPrimitiveElement(Element element) {
-        return element.getChildren().isEmpty() && element.getAttributes().isEmpty(); //if it doesn't have child and doesn't have attributes it's primitive.
-    }
+        private void addChild(String name, XmlNode child) {
+            if (children == null) {
+                children = new LinkedHashMap<>();
+            }
+            List<XmlNode> namedChildren = children.get(name);
+            if (namedChildren == null) {
+                namedChildren = new ArrayList<>(1);
+                children.put(name, namedChildren);
+            }
+            namedChildren.add(child);
+            dropTextWithLineBreak();
+        }
 
-    private List<String> getListOfArrayElementNames(List<Element> elements) {
-        List<String> names = new LinkedList<>();
-        List<String> elementsStr = getElementsFullName(elements);
-        for (String name : elementsStr) {
-            if (elementsStr.indexOf(name) != elementsStr.lastIndexOf(name) && !names.contains(name)) {
-                names.add(name);
+        private void addText(char[] ch, int start, int length) {
+            if (textDropped) {
+                return;
+            }
+            if (text == null) {
+                text = new StringBuilder(length);
+            }
+            text.append(ch, start, length);
+            for (int i = start; i < start + length && !textHasLineBreak; i++) {
+                textHasLineBreak = ch[i] == '\n' || ch[i] == '\r';
+            }
+            if (children != null) {
+                dropTextWithLineBreak();
             }
         }
-        return names;
-    }
 
-    private List<Element> getElementsByName(String arrayName, List<Element> elementsToSearch) {
-        List<Element> elements = new LinkedList<>();
-        for (Element element : elementsToSearch) {
-            if (getElementFullName(element).equals(arrayName)) {
-                elements.add(element);
+        // the text of an element with children is only written when it matches TEXT_PATTERN, which a line break prevents
+        private void dropTextWithLineBreak() {
+            if (textHasLineBreak) {
+                text = null;
+                textDropped = true;
             }
         }
-        return elements;
     }
 
-    private List<Element> eliminateElementsWithName(String arrayName, List<Element> elements) {
-        List<Element> newElements = new LinkedList<>();
-        for (Element element : elements) {
-            if (!getElementFullName(element).equals(arrayName)) {
-                newElements.add(element);
+    private static class ReplacedProperty {
+        private final List<Object> replaced = new ArrayList<>();
+        private final Object value;
+
+        private ReplacedProperty(Object previous, Object value) {
+            if (previous instanceof ReplacedProperty) {
+                replaced.addAll(((ReplacedProperty) previous).replaced);
+                replaced.add(((ReplacedProperty) previous).value);
+            } else {
+                replaced.add(previous);
             }
+            this.value = value;
         }
-        return newElements;
     }
 
-    public String getNamespacesUris() {
-        return namespacesUris.toString();
-    }
+    private static class XmlNodeHandler extends DefaultHandler {
+        private final Deque<XmlNode> elements = new ArrayDeque<>();
+        private List<String> declaredNamespaces;
+        private XmlNode root;
 
-    public String getNamespacesPrefixes() {
-        return namespacesPrefixes.toString();
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            if (declaredNamespaces == null) {
+                declaredNamespaces = new ArrayList<>(2);
+            }
+            declaredNamespaces.add(prefix);
+            declaredNamespaces.add(uri);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            XmlNode node = new XmlNode(localName);
+            if (attributes.getLength() > 0) {
+                node.attributes = new ArrayList<>(attributes.getLength() * 2);
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    node.attributes.add(attributes.getLocalName(i));
+                    node.attributes.add(attributes.getValue(i));
+                }
+            }
+            if (declaredNamespaces != null) {
+                String prefix = qName.indexOf(':') > 0 ? qName.substring(0, qName.indexOf(':')) : EMPTY_STRING;
+                for (int i = 0; i < declaredNamespaces.size(); i += 2) {
+                    // the namespace of the element itself is not an additional namespace
+                    if (!(prefix.equals(declaredNamespaces.get(i)) && uri.equals(declaredNamespaces.get(i + 1)))) {
+                        if (node.namespaces == null) {
+                            node.namespaces = new ArrayList<>(2);
+                        }
+                        node.namespaces.add(declaredNamespaces.get(i));
+                        node.namespaces.add(declaredNamespaces.get(i + 1));
+                    }
+                }
+                declaredNamespaces = null;
+            }
+            if (elements.isEmpty()) {
+                root = node;
+            } else {
+                elements.peek().addChild(qName, node);
+            }
+            elements.push(node);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            elements.pop();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (!elements.isEmpty()) {
+                elements.peek().addText(ch, start, length);
+            }
+        }
     }
 }
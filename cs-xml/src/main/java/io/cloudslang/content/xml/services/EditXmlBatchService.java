@@ -0,0 +1,92 @@
+package io.cloudslang.content.xml.services;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.cloudslang.content.xml.entities.ActionType;
+import io.cloudslang.content.xml.entities.inputs.EditXmlBatchInputs;
+import io.cloudslang.content.xml.entities.inputs.EditXmlInputs;
+import io.cloudslang.content.xml.factory.OperationFactory;
+import io.cloudslang.content.xml.utils.Constants;
+import io.cloudslang.content.xml.utils.DocumentUtils;
+import io.cloudslang.content.xml.utils.ValidateUtils;
+import io.cloudslang.content.xml.utils.XmlUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies an ordered list of EditXml operations to a document that is parsed once and serialized once.
+ */
+public class EditXmlBatchService {
+
+    /**
+     * Validates all the operations, parses the document, applies the operations in order and serializes the result.
+     *
+     * @param inputs inputs
+     * @return the modified XML, or the absolute path of the output file when the outputFilePath input is set
+     * @throws Exception in case something goes wrong
+     */
+    public String execute(EditXmlBatchInputs inputs) throws Exception {
+        ValidateUtils.validateXmlAndFilePathInputs(inputs.getXml(), inputs.getFilePath());
+        List<EditXmlInputs> operations = getOperations(inputs);
+
+        Document doc = XmlUtils.createDocument(inputs.getXml(), inputs.getFilePath(), inputs.getParsingFeatures());
+        for (EditXmlInputs operation : operations) {
+            OperationFactory.getOperation(ActionType.valueOf(operation.getAction())).execute(doc, operation);
+        }
+
+        if (StringUtils.isEmpty(inputs.getOutputFilePath())) {
+            return DocumentUtils.documentToString(doc);
+        }
+        DocumentUtils.documentToFile(doc, inputs.getOutputFilePath());
+        return new File(inputs.getOutputFilePath()).getAbsolutePath();
+    }
+
+    /**
+     * Reads the operations input: a JSON array of objects with the action, xpath1, xpath2, value, type and name
+     * inputs of EditXml.
+     */
+    private List<EditXmlInputs> getOperations(EditXmlBatchInputs inputs) throws Exception {
+        JsonElement operationsJson = new JsonParser().parse(inputs.getOperations());
+        if (!operationsJson.isJsonArray()) {
+            throw new Exception("operations input must be a JSON array of operations.");
+        }
+        JsonArray operationsArray = operationsJson.getAsJsonArray();
+        List<EditXmlInputs> operations = new ArrayList<>(operationsArray.size());
+        for (int i = 0; i < operationsArray.size(); i++) {
+            if (!operationsArray.get(i).isJsonObject()) {
+                throw new Exception("Operation " + (i + 1) + " must be a JSON object.");
+            }
+            JsonObject operationJson = operationsArray.get(i).getAsJsonObject();
+            EditXmlInputs operation = new EditXmlInputs.EditXmlInputsBuilder()
+                    .withXml(inputs.getXml())
+                    .withFilePath(inputs.getFilePath())
+                    .withAction(getString(operationJson, Constants.Inputs.ACTION))
+                    .withXpath1(getString(operationJson, Constants.Inputs.XPATH1))
+                    .withXpath2(getString(operationJson, Constants.Inputs.XPATH2))
+                    .withName(getString(operationJson, Constants.Inputs.TYPE_NAME))
+                    .withType(getString(operationJson, Constants.Inputs.TYPE))
+                    .withValue(getString(operationJson, Constants.Inputs.VALUE))
+                    .withParsingFeatures(inputs.getParsingFeatures())
+                    .build();
+            try {
+                ActionType.valueOf(operation.getAction());
+            } catch (IllegalArgumentException e) {
+                throw new Exception("Invalid action " + operation.getAction() + " in operation " + (i + 1));
+            }
+            ValidateUtils.validateInputs(operation);
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    private static String getString(JsonObject operationJson, String name) {
+        JsonElement value = operationJson.get(name);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
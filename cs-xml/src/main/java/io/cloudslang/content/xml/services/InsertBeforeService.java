@@ -24,7 +24,7 @@ public class InsertBeforeService {
 
         try {
             Document doc = XmlUtils.getDocument(commonInputs);
-            NamespaceContext context = XmlUtils.getNamespaceContext(commonInputs, doc);
+            NamespaceContext context = XmlUtils.getNamespaceContext(doc);
 
             Document beforeDoc = XmlUtils.parseXML(customInputs.getXmlElement(), commonInputs.getSecureProcessing());
             Node beforeNode = doc.importNode(beforeDoc.getDocumentElement(), true);
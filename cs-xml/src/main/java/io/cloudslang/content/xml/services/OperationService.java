@@ -1,10 +1,21 @@
 package io.cloudslang.content.xml.services;
 
 import io.cloudslang.content.xml.entities.inputs.EditXmlInputs;
+import org.w3c.dom.Document;
 
 /**
  * Created by moldovas on 7/8/2016.
  */
 public interface OperationService {
     String execute(EditXmlInputs inputs) throws Exception;
+
+    /**
+     * Applies the operation to an already parsed document, so that several operations can edit the same document
+     * before it is serialized.
+     *
+     * @param doc    the document to edit
+     * @param inputs the operation inputs; the xml and filePath inputs are not used
+     * @throws Exception in case something goes wrong
+     */
+    void execute(Document doc, EditXmlInputs inputs) throws Exception;
 }
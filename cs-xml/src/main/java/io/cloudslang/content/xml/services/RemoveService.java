@@ -25,7 +25,7 @@ public class RemoveService {
 
         try {
             Document doc = XmlUtils.getDocument(commonInputs);
-            NamespaceContext context = XmlUtils.getNamespaceContext(commonInputs, doc);
+            NamespaceContext context = XmlUtils.getNamespaceContext(doc);
             NodeList nodeList = XmlUtils.evaluateXPathQuery(doc, context, commonInputs.getXPathQuery());
 
             XmlUtils.validateNodeList(nodeList);
@@ -26,7 +26,7 @@ public class SetValueService {
 
         try {
             Document doc = XmlUtils.getDocument(commonInputs);
-            NamespaceContext context = XmlUtils.getNamespaceContext(commonInputs, doc);
+            NamespaceContext context = XmlUtils.getNamespaceContext(doc);
             NodeList nodeList = XmlUtils.evaluateXPathQuery(doc, context, commonInputs.getXPathQuery());
 
             XmlUtils.validateNodeList(nodeList);
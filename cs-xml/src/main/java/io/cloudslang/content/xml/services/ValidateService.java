@@ -4,18 +4,22 @@ import io.cloudslang.content.xml.utils.Constants;
 import io.cloudslang.content.xml.entities.inputs.CommonInputs;
 import io.cloudslang.content.xml.entities.inputs.CustomInputs;
 import io.cloudslang.content.xml.utils.ResultUtils;
+import io.cloudslang.content.xml.utils.SchemaCache;
+import io.cloudslang.content.xml.utils.XmlFactoryCache;
 import io.cloudslang.content.xml.utils.XmlUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
 
-import javax.xml.XMLConstants;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.parsers.SAXParser;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,30 +32,25 @@ public class ValidateService {
         Map<String, String> result = new HashMap<>();
 
         try {
-            String xmlDocument;
-            String xsdDocument;
-            if (Constants.XML_PATH.equalsIgnoreCase(commonInputs.getXmlDocumentSource())) {
-                Document doc = XmlUtils.createDocumentFromFile(commonInputs.getXmlDocument(), commonInputs.getSecureProcessing());
-                xmlDocument = getStringValueOfDocument(doc);
-            } else if (Constants.XML_URL.equalsIgnoreCase(commonInputs.getXmlDocumentSource())) {
-                xmlDocument = XmlUtils.createXmlDocumentFromUrl(commonInputs);
-            } else {
-                xmlDocument = commonInputs.getXmlDocument();
-            }
-
+            Schema schema = null;
             if (Constants.XSD_PATH.equalsIgnoreCase(customInputs.getXsdDocumentSource())) {
-                Document doc = XmlUtils.createDocumentFromFile(customInputs.getXsdDocument(), commonInputs.getSecureProcessing());
-                xsdDocument = getStringValueOfDocument(doc);
-            } else {
-                xsdDocument = customInputs.getXsdDocument();
+                schema = SchemaCache.getSchema(new File(customInputs.getXsdDocument()), commonInputs.getSecureProcessing());
+            } else if (StringUtils.isNotBlank(customInputs.getXsdDocument())) {
+                schema = SchemaCache.getSchema(customInputs.getXsdDocument(), commonInputs.getSecureProcessing());
             }
-            XmlUtils.parseXML(xmlDocument, commonInputs.getSecureProcessing());
-            result.put(Constants.Outputs.RETURN_RESULT, Constants.SuccessMessages.PARSING_SUCCESS);
 
-            if (StringUtils.isNotBlank(xsdDocument)) {
-                validateAgainstXsd(xmlDocument, xsdDocument);
-                result.put(Constants.Outputs.RETURN_RESULT, Constants.SuccessMessages.VALIDATION_SUCCESS);
+            if (Constants.XML_PATH.equalsIgnoreCase(commonInputs.getXmlDocumentSource())) {
+                try (InputStream inputStream = new FileInputStream(commonInputs.getXmlDocument())) {
+                    validate(new InputSource(inputStream), schema, commonInputs.getSecureProcessing());
+                }
+            } else if (Constants.XML_URL.equalsIgnoreCase(commonInputs.getXmlDocumentSource())) {
+                String xmlDocument = XmlUtils.createXmlDocumentFromUrl(commonInputs);
+                validate(new InputSource(new StringReader(xmlDocument)), schema, commonInputs.getSecureProcessing());
+            } else {
+                validate(new InputSource(new StringReader(commonInputs.getXmlDocument())), schema, commonInputs.getSecureProcessing());
             }
+            result.put(Constants.Outputs.RETURN_RESULT, schema == null ?
+                    Constants.SuccessMessages.PARSING_SUCCESS : Constants.SuccessMessages.VALIDATION_SUCCESS);
 
             result.put(Constants.Outputs.RESULT_TEXT, Constants.ResponseNames.SUCCESS);
             result.put(Constants.Outputs.RETURN_CODE, Constants.ReturnCodes.SUCCESS);
@@ -67,14 +66,17 @@ public class ValidateService {
         return result;
     }
 
-    private static String getStringValueOfDocument(Document doc) throws TransformerException {
-        return XmlUtils.getStringWriter(doc).toString();
-    }
-
-    private static void validateAgainstXsd(String xmlDocument, String xsdDocument) throws Exception {
-        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        Schema schema = schemaFactory.newSchema(new StreamSource(new StringReader(xsdDocument)));
-        Validator validator = schema.newValidator();
-        validator.validate(new StreamSource(new StringReader(xmlDocument)));
+    /**
+     * Reads the document as a stream of SAX events, checking that it is well formed and, when a schema is given,
+     * validating it in the same pass. The document tree is never built.
+     */
+    private static void validate(InputSource inputSource, Schema schema, boolean secure) throws Exception {
+        SAXParser parser = XmlFactoryCache.getSAXParser(secure);
+        if (schema == null) {
+            parser.parse(inputSource, new DefaultHandler());
+        } else {
+            Validator validator = schema.newValidator();
+            validator.validate(new SAXSource(parser.getXMLReader(), inputSource));
+        }
     }
 }
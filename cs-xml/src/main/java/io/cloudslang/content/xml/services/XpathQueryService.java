@@ -1,9 +1,12 @@
 package io.cloudslang.content.xml.services;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
 import io.cloudslang.content.xml.utils.Constants;
 import io.cloudslang.content.xml.entities.inputs.CommonInputs;
 import io.cloudslang.content.xml.entities.inputs.CustomInputs;
 import io.cloudslang.content.xml.utils.ResultUtils;
+import io.cloudslang.content.xml.utils.StreamingXPath;
 import io.cloudslang.content.xml.utils.XmlUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -15,6 +18,9 @@ import javax.xml.namespace.NamespaceContext;
 import javax.xml.transform.TransformerException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,20 +33,33 @@ public class XpathQueryService {
 
 
         try {
-            Document doc = XmlUtils.getDocument(commonInputs);
-            NamespaceContext context = XmlUtils.getNamespaceContext(commonInputs, doc);
-
-            XPathExpression expr = XmlUtils.createXPathExpression(context, commonInputs.getXPathQuery());
+            String[] xPathQueries;
+            if (StringUtils.isEmpty(customInputs.getXPathQueriesDelimiter())) {
+                xPathQueries = new String[]{commonInputs.getXPathQuery()};
+            } else {
+                xPathQueries = StringUtils.splitByWholeSeparator(commonInputs.getXPathQuery(), customInputs.getXPathQueriesDelimiter());
+                for (int i = 0; i < xPathQueries.length; i++) {
+                    xPathQueries[i] = xPathQueries[i].trim();
+                }
+            }
 
-            String selection = xPathQuery(doc, expr, customInputs.getQueryType(), customInputs.getDelimiter());
+            StreamingXPath streamingXPath = getStreamingXPath(commonInputs, xPathQueries);
+            String[] selections = streamingXPath == null ? selectedValues(commonInputs, customInputs, xPathQueries) :
+                    streamedValues(commonInputs, customInputs, streamingXPath);
 
-            if (StringUtils.isBlank(selection)) {
-                ResultUtils.populateValueResult(result, Constants.ResponseNames.SUCCESS, Constants.SuccessMessages.SELECT_SUCCESS,
-                        Constants.NO_MATCH_FOUND, Constants.ReturnCodes.SUCCESS);
+            String selection;
+            if (StringUtils.isEmpty(customInputs.getXPathQueriesDelimiter())) {
+                selection = selections[0];
             } else {
-                ResultUtils.populateValueResult(result, Constants.ResponseNames.SUCCESS, Constants.SuccessMessages.SELECT_SUCCESS,
-                        selection, Constants.ReturnCodes.SUCCESS);
+                JsonArray jsonSelections = new JsonArray();
+                for (String value : selections) {
+                    jsonSelections.add(new JsonPrimitive(value));
+                }
+                selection = jsonSelections.toString();
             }
+
+            ResultUtils.populateValueResult(result, Constants.ResponseNames.SUCCESS, Constants.SuccessMessages.SELECT_SUCCESS,
+                    selection, Constants.ReturnCodes.SUCCESS);
         } catch (Exception e) {
             ResultUtils.populateFailureResult(result, ExceptionUtils.getStackTrace(e));
             result.put(Constants.Outputs.SELECTED_VALUE, Constants.EMPTY_STRING);
@@ -48,6 +67,43 @@ public class XpathQueryService {
         return result;
     }
 
+    /**
+     * Returns the query compiled for a streaming evaluation, which is used for a single query on a document read from a
+     * file when the query is supported by StreamingXPath, or null if the document must be parsed to a DOM. Several
+     * queries are evaluated on one DOM rather than reading the file once per query.
+     */
+    private static StreamingXPath getStreamingXPath(CommonInputs commonInputs, String[] xPathQueries) {
+        if (!Constants.XML_PATH.equalsIgnoreCase(commonInputs.getXmlDocumentSource()) || xPathQueries.length != 1) {
+            return null;
+        }
+        return StreamingXPath.compile(xPathQueries[0]);
+    }
+
+    private static String[] streamedValues(CommonInputs commonInputs, CustomInputs customInputs, StreamingXPath streamingXPath) throws Exception {
+        try (InputStream inputStream = new FileInputStream(commonInputs.getXmlDocument())) {
+            String selection = streamingXPath.evaluate(inputStream, customInputs.getQueryType(), customInputs.getDelimiter(),
+                    commonInputs.getSecureProcessing());
+            return new String[]{StringUtils.isBlank(selection) ? Constants.NO_MATCH_FOUND : selection};
+        }
+    }
+
+    private static String[] selectedValues(CommonInputs commonInputs, CustomInputs customInputs, String[] xPathQueries) throws Exception {
+        Document doc = XmlUtils.getDocument(commonInputs);
+        NamespaceContext context = XmlUtils.getNamespaceContext(doc);
+
+        String[] selections = new String[xPathQueries.length];
+        for (int i = 0; i < xPathQueries.length; i++) {
+            selections[i] = selectedValue(doc, context, xPathQueries[i], customInputs);
+        }
+        return selections;
+    }
+
+    private static String selectedValue(Document doc, NamespaceContext context, String xPathQuery, CustomInputs customInputs) throws Exception {
+        XPathExpression expr = XmlUtils.createXPathExpression(context, xPathQuery);
+        String selection = xPathQuery(doc, expr, customInputs.getQueryType(), customInputs.getDelimiter());
+        return StringUtils.isBlank(selection) ? Constants.NO_MATCH_FOUND : selection;
+    }
+
     private static String xPathQuery(Document doc, XPathExpression expr, String queryType, String delimiter) throws Exception {
         switch (queryType) {
             case Constants.QueryTypes.NODE_LIST:
@@ -76,12 +132,12 @@ public class XpathQueryService {
     }
 
     private static String nodeListToString(NodeList nodeList, String delimiter) throws TransformerException {
-        StringBuilder sb = new StringBuilder();
+        StringWriter writer = new StringWriter();
         for (int i = 0; i < nodeList.getLength() - 1; i++) {
-            sb.append(XmlUtils.nodeToString(nodeList.item(i)));
-            sb.append(delimiter);
+            XmlUtils.appendNode(nodeList.item(i), writer);
+            writer.append(delimiter);
         }
-        sb.append(XmlUtils.nodeToString(nodeList.item(nodeList.getLength() - 1)));
-            return sb.toString();
+        XmlUtils.appendNode(nodeList.item(nodeList.getLength() - 1), writer);
+        return writer.toString();
     }
 }
@@ -24,7 +24,13 @@ public class AppendOperationServiceImpl implements OperationService {
     @Override
     public String execute(EditXmlInputs inputs) throws Exception {
         Document doc = XmlUtils.createDocument(inputs.getXml(), inputs.getFilePath(), inputs.getParsingFeatures());
-        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(inputs.getXml(), inputs.getFilePath()));
+        execute(doc, inputs);
+        return DocumentUtils.documentToString(doc);
+    }
+
+    @Override
+    public void execute(Document doc, EditXmlInputs inputs) throws Exception {
+        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(doc));
         Node childNode = null;
         Node node;
         Node parentNode;
@@ -47,6 +53,5 @@ public class AppendOperationServiceImpl implements OperationService {
                 ((Element) node).setAttribute(inputs.getName(), inputs.getValue());
             }
         }
-        return DocumentUtils.documentToString(doc);
     }
 }
@@ -25,7 +25,13 @@ public class InsertOperationServiceImpl implements OperationService {
     @Override
     public String execute(EditXmlInputs inputs) throws Exception {
         Document doc = XmlUtils.createDocument(inputs.getXml(), inputs.getFilePath(), inputs.getParsingFeatures());
-        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(inputs.getXml(), inputs.getFilePath()));
+        execute(doc, inputs);
+        return DocumentUtils.documentToString(doc);
+    }
+
+    @Override
+    public void execute(Document doc, EditXmlInputs inputs) throws Exception {
+        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(doc));
         Node childNode = null;
         Node node;
         Node parentNode;
@@ -49,6 +55,5 @@ public class InsertOperationServiceImpl implements OperationService {
                 ((Element) node).setAttribute(inputs.getName(), inputs.getValue());
             }
         }
-        return DocumentUtils.documentToString(doc);
     }
 }
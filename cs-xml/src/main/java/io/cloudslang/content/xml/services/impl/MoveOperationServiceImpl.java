@@ -24,7 +24,13 @@ public class MoveOperationServiceImpl implements OperationService {
     @Override
     public String execute(EditXmlInputs inputs) throws Exception {
         Document doc = XmlUtils.createDocument(inputs.getXml(), inputs.getFilePath(), inputs.getParsingFeatures());
-        NamespaceContext ctx = XmlUtils.getNamespaceContext(inputs.getXml(), inputs.getFilePath());
+        execute(doc, inputs);
+        return DocumentUtils.documentToString(doc);
+    }
+
+    @Override
+    public void execute(Document doc, EditXmlInputs inputs) throws Exception {
+        NamespaceContext ctx = XmlUtils.getNamespaceContext(doc);
         NodeList nodeListToMove = XmlUtils.readNode(doc, inputs.getXpath1(), ctx);
         NodeList nodeListWhereToMove = XmlUtils.readNode(doc, inputs.getXpath2(), ctx);
         Node nodeToMove;
@@ -48,6 +54,5 @@ public class MoveOperationServiceImpl implements OperationService {
                 }
             }
         }
-        return DocumentUtils.documentToString(doc);
     }
 }
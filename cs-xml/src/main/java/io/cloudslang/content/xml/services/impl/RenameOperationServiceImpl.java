@@ -25,7 +25,13 @@ public class RenameOperationServiceImpl implements OperationService {
     @Override
     public String execute(EditXmlInputs inputs) throws Exception {
         Document doc = XmlUtils.createDocument(inputs.getXml(), inputs.getFilePath(), inputs.getParsingFeatures());
-        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(inputs.getXml(), inputs.getFilePath()));
+        execute(doc, inputs);
+        return DocumentUtils.documentToString(doc);
+    }
+
+    @Override
+    public void execute(Document doc, EditXmlInputs inputs) throws Exception {
+        NodeList nodeList = XmlUtils.readNode(doc, inputs.getXpath1(), XmlUtils.getNamespaceContext(doc));
         Node node;
         for (int i = 0; i < nodeList.getLength(); i++) {
             node = nodeList.item(i);
@@ -39,6 +45,5 @@ public class RenameOperationServiceImpl implements OperationService {
                 }
             }
         }
-        return DocumentUtils.documentToString(doc);
     }
 }
@@ -60,6 +60,7 @@ public class Constants {
         public static final String XPATH_ELEMENT_QUERY = "xPathElementQuery";
         public static final String QUERY_TYPE = "queryType";
         public static final String DELIMITER = "delimiter";
+        public static final String XPATH_QUERIES_DELIMITER = "xPathQueriesDelimiter";
         public static final String ATTRIBUTE_NAME = "attributeName";
         public static final String XML_ELEMENT = "xmlElement";
 
@@ -88,6 +89,8 @@ public class Constants {
         public static final String TYPE = "type";
         public static final String TYPE_NAME = "name";
         public static final String FEATURES = "parsingFeatures";
+        public static final String OPERATIONS = "operations";
+        public static final String OUTPUT_FILE_PATH = "outputFilePath";
         public static final String DELETE_ACTION = "delete";
         public static final String INSERT_ACTION = "insert";
         public static final String APPEND_ACTION = "append";
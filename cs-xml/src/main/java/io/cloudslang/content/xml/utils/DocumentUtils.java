@@ -1,29 +1,25 @@
 package io.cloudslang.content.xml.utils;
 
-import org.apache.xml.serialize.OutputFormat;
-import org.apache.xml.serialize.XMLSerializer;
 import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
-import java.io.Writer;
 
 /**
  * Created by moldovas on 7/6/2016.
  */
 public class DocumentUtils {
     /**
-     * @return a new instance of DocumentBuilder
+     * @return the DocumentBuilder of the current thread for the given features, not namespace aware
      * @throws ParserConfigurationException
      */
     public static DocumentBuilder createDocumentBuilder(String features) throws ParserConfigurationException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        XmlUtils.setFeatures(factory, features);
-        factory.setNamespaceAware(false);
-        return factory.newDocumentBuilder();
+        return XmlFactoryCache.getDocumentBuilder(features, false);
     }
 
     /**
@@ -34,16 +30,21 @@ public class DocumentUtils {
      * @throws IOException
      */
     public static String documentToString(Document xmlDocument) throws IOException {
-        String encoding = (xmlDocument.getXmlEncoding() == null) ? "UTF-8" : xmlDocument.getXmlEncoding();
-        OutputFormat format = new OutputFormat(xmlDocument);
-        format.setLineWidth(65);
-        format.setIndenting(true);
-        format.setIndent(2);
-        format.setEncoding(encoding);
-        try (Writer out = new StringWriter()) {
-            XMLSerializer serializer = new XMLSerializer(out, format);
-            serializer.serialize(xmlDocument);
-            return out.toString();
+        StringWriter out = new StringWriter();
+        XmlFactoryCache.getDomSerializer().serialize(xmlDocument, out);
+        return out.toString();
+    }
+
+    /**
+     * Writes the XML Document to a file, in the format of documentToString and in the encoding of the document.
+     *
+     * @param xmlDocument the XML Document
+     * @param filePath    the path of the file, which is replaced if it exists
+     * @throws IOException
+     */
+    public static void documentToFile(Document xmlDocument, String filePath) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filePath))) {
+            XmlFactoryCache.getDomSerializer().serialize(xmlDocument, out);
         }
     }
 }
@@ -0,0 +1,632 @@
+package io.cloudslang.content.xml.utils;
+
+import org.apache.xerces.util.EncodingMap;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes a DOM Document straight to a Writer or an OutputStream in the format of DocumentUtils.documentToString:
+ * the output of the Xerces XMLSerializer with an indent of 2 and a line width of 72, reproduced character for
+ * character, including the way it escapes characters, wraps long start tags and places comments and processing
+ * instructions found outside the root element.
+ * <p/>
+ * A DomSerializer keeps its line buffers and element stack between calls, so it must be confined to one thread;
+ * use XmlFactoryCache.getDomSerializer to get the one of the current thread.
+ */
+public class DomSerializer {
+    private static final int LINE_WIDTH = 72;
+    private static final int INDENT = 2;
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final int INITIAL_DEPTH = 10;
+    private static final String[] UNICODE_ENCODINGS = {"Unicode", "UnicodeBig", "UnicodeLittle", "GB2312", "UTF8", "UTF-16"};
+
+    private final StringBuilder line = new StringBuilder(80);
+    private final StringBuilder text = new StringBuilder(20);
+    private final List<String> preRoot = new ArrayList<>();
+    private ElementState[] elementStates = newElementStates(new ElementState[0], INITIAL_DEPTH);
+
+    private Writer writer;
+    private int spaces;
+    private int thisIndent;
+    private int nextIndent;
+    private int depth;
+    private boolean started;
+    private boolean preserveSpace;
+    private String docTypePublicId;
+    private String docTypeSystemId;
+    private String internalSubset;
+
+    private String encodingName;
+    private String javaEncoding;
+    private boolean unicodeEncoding;
+    private CharsetEncoder encoder;
+
+    /**
+     * Writes the document to the writer, which is flushed but not closed. The XML declaration names the encoding of
+     * the document, or UTF-8 if the document does not declare one.
+     *
+     * @param doc    the XML Document
+     * @param writer the destination
+     * @throws IOException if the document contains a character that is not allowed in XML or the writer fails
+     */
+    public void serialize(Document doc, Writer writer) throws IOException {
+        String encoding = getEncoding(doc);
+        setEncoding(encoding);
+        serialize(doc, encoding, writer);
+    }
+
+    /**
+     * Writes the document to the stream, in the encoding of the document or in UTF-8 if the document does not
+     * declare one. The stream is flushed but not closed.
+     *
+     * @param doc the XML Document
+     * @param out the destination
+     * @throws IOException if the document contains a character that is not allowed in XML or the stream fails
+     */
+    public void serialize(Document doc, OutputStream out) throws IOException {
+        String encoding = getEncoding(doc);
+        setEncoding(encoding);
+        serialize(doc, encoding, new OutputStreamWriter(out, javaEncoding));
+    }
+
+    private void serialize(Document doc, String encoding, Writer out) throws IOException {
+        writer = out;
+        try {
+            reset();
+            serializeNode(doc, encoding);
+            serializePreRoot();
+            flush();
+        } finally {
+            writer = null;
+            docTypePublicId = null;
+            docTypeSystemId = null;
+            internalSubset = null;
+            preRoot.clear();
+            for (int i = 0; i <= depth; i++) {
+                elementStates[i].rawName = null;
+            }
+        }
+    }
+
+    private static String getEncoding(Document doc) {
+        return (doc.getXmlEncoding() == null) ? DEFAULT_ENCODING : doc.getXmlEncoding();
+    }
+
+    private void reset() {
+        line.setLength(0);
+        text.setLength(0);
+        spaces = 0;
+        thisIndent = 0;
+        nextIndent = 0;
+        depth = 0;
+        started = false;
+        preserveSpace = false;
+        elementStates[0].init(null, false);
+    }
+
+    /**
+     * Resolves the encoding the way Xerces does: IANA names only, with every character printable in the Unicode
+     * encodings and the characters above US-ASCII printable only if the charset can encode them.
+     */
+    private void setEncoding(String encoding) throws UnsupportedEncodingException {
+        if (encoding.equals(encodingName)) {
+            return;
+        }
+        String javaName = EncodingMap.getIANA2JavaMapping(encoding.toUpperCase(Locale.ENGLISH));
+        if (javaName == null) {
+            throw new UnsupportedEncodingException(encoding.toUpperCase(Locale.ENGLISH));
+        }
+        unicodeEncoding = false;
+        for (String unicodeName : UNICODE_ENCODINGS) {
+            unicodeEncoding |= unicodeName.equalsIgnoreCase(javaName);
+        }
+        encoder = null;
+        if (!unicodeEncoding) {
+            try {
+                Charset charset = Charset.forName(javaName);
+                encoder = charset.canEncode() ? charset.newEncoder() : null;
+            } catch (IllegalArgumentException e) {
+                encoder = null;
+            }
+        }
+        javaEncoding = javaName;
+        encodingName = encoding;
+    }
+
+    private boolean isPrintable(char ch) {
+        return ch <= 0x7F || unicodeEncoding || (encoder != null && encoder.canEncode(ch));
+    }
+
+    private void serializeNode(Node node, String encoding) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.TEXT_NODE:
+                String value = node.getNodeValue();
+                if (value != null && (getElementState().preserveSpace || value.replace('\n', ' ').trim().length() != 0)) {
+                    characters(value);
+                }
+                break;
+            case Node.CDATA_SECTION_NODE:
+                if (node.getNodeValue() != null) {
+                    getElementState().doCData = true;
+                    characters(node.getNodeValue());
+                    getElementState().doCData = false;
+                }
+                break;
+            case Node.COMMENT_NODE:
+                if (node.getNodeValue() != null) {
+                    comment(node.getNodeValue());
+                }
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                getElementState().doCData = false;
+                content();
+                text.append('&').append(node.getNodeName()).append(';');
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                processingInstruction(node.getNodeName(), node.getNodeValue());
+                break;
+            case Node.ELEMENT_NODE:
+                serializeElement((Element) node, encoding);
+                break;
+            case Node.DOCUMENT_NODE:
+                DocumentType docType = ((Document) node).getDoctype();
+                if (docType != null) {
+                    docTypePublicId = docType.getPublicId();
+                    docTypeSystemId = docType.getSystemId();
+                    internalSubset = (docType.getInternalSubset() == null) ? Constants.EMPTY_STRING : docType.getInternalSubset();
+                }
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    serializeNode(child, encoding);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startDocument(String rootTagName, String encoding) throws IOException {
+        text.append("<?xml version=\"1.0\" encoding=\"").append(encoding).append("\"?>");
+        breakLine();
+        if (docTypeSystemId != null) {
+            text.append("<!DOCTYPE ").append(rootTagName);
+            if (docTypePublicId != null) {
+                text.append(" PUBLIC ");
+                printDoctypeURL(docTypePublicId);
+                breakLine();
+                for (int i = 0; i < 18 + rootTagName.length(); i++) {
+                    text.append(' ');
+                }
+            } else {
+                text.append(" SYSTEM ");
+            }
+            printDoctypeURL(docTypeSystemId);
+            if (internalSubset.length() > 0) {
+                text.append(" [");
+                printText(internalSubset, true);
+                text.append(']');
+            }
+            text.append('>');
+            breakLine();
+        } else if (internalSubset != null && internalSubset.length() > 0) {
+            text.append("<!DOCTYPE ").append(rootTagName).append(" [");
+            printText(internalSubset, true);
+            text.append("]>");
+            breakLine();
+        }
+        started = true;
+        serializePreRoot();
+    }
+
+    private void serializeElement(Element element, String encoding) throws IOException {
+        String tagName = element.getTagName();
+        ElementState state = getElementState();
+        if (depth == 0) {
+            if (!started) {
+                startDocument(tagName, encoding);
+            }
+        } else {
+            if (state.empty) {
+                text.append('>');
+            }
+            if (state.inCData) {
+                text.append("]]>");
+                state.inCData = false;
+            }
+            if (!state.preserveSpace && (state.empty || state.afterElement || state.afterComment)) {
+                breakLine();
+            }
+        }
+        preserveSpace = state.preserveSpace;
+
+        text.append('<').append(tagName);
+        indent();
+        if (element.hasAttributes()) {
+            NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attr = (Attr) attributes.item(i);
+                printAttribute(attr.getName(), (attr.getValue() == null) ? Constants.EMPTY_STRING : attr.getValue(), attr.getSpecified());
+            }
+        }
+
+        if (element.hasChildNodes()) {
+            enterElementState(tagName, preserveSpace);
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                serializeNode(child, encoding);
+            }
+            endElement();
+        } else {
+            unindent();
+            text.append("/>");
+            state.afterElement = true;
+            state.afterComment = false;
+            state.empty = false;
+            if (depth == 0) {
+                flush();
+            }
+        }
+    }
+
+    private void endElement() throws IOException {
+        unindent();
+        ElementState state = getElementState();
+        if (state.empty) {
+            text.append("/>");
+        } else {
+            if (state.inCData) {
+                text.append("]]>");
+            }
+            if (!state.preserveSpace && (state.afterElement || state.afterComment)) {
+                breakLine();
+            }
+            text.append("</").append(state.rawName).append('>');
+        }
+        state = leaveElementState();
+        state.afterElement = true;
+        state.afterComment = false;
+        state.empty = false;
+        if (depth == 0) {
+            flush();
+        }
+    }
+
+    private void printAttribute(String name, String value, boolean specified) throws IOException {
+        // attributes defaulted by the DTD are not written
+        if (specified) {
+            printSpace();
+            text.append(name).append("=\"");
+            printEscaped(value);
+            text.append('"');
+        }
+        if (name.equals("xml:space")) {
+            preserveSpace = value.equals("preserve");
+        }
+    }
+
+    private void printDoctypeURL(String url) {
+        text.append('"');
+        for (int i = 0; i < url.length(); i++) {
+            char ch = url.charAt(i);
+            if (ch == '"' || ch < 0x20 || ch > 0x7F) {
+                text.append('%').append(Integer.toHexString(ch));
+            } else {
+                text.append(ch);
+            }
+        }
+        text.append('"');
+    }
+
+    private void comment(String comment) throws IOException {
+        ElementState state = content();
+        int end = comment.indexOf("-->");
+        String markup = "<!--" + ((end >= 0) ? comment.substring(0, end) : comment) + "-->";
+        if (depth == 0) {
+            preRoot.add(markup);
+        } else {
+            if (!state.preserveSpace) {
+                breakLine();
+            }
+            indent();
+            printText(markup, true);
+            unindent();
+        }
+        state.afterComment = true;
+        state.afterElement = false;
+    }
+
+    private void processingInstruction(String target, String data) throws IOException {
+        ElementState state = content();
+        StringBuilder markup = new StringBuilder("<?");
+        int end = target.indexOf("?>");
+        markup.append((end >= 0) ? target.substring(0, end) : target);
+        if (data != null) {
+            end = data.indexOf("?>");
+            markup.append(' ').append((end >= 0) ? data.substring(0, end) : data);
+        }
+        markup.append("?>");
+        if (depth == 0) {
+            preRoot.add(markup.toString());
+        } else {
+            indent();
+            printText(markup, true);
+            unindent();
+            state.afterElement = true;
+        }
+    }
+
+    private void serializePreRoot() throws IOException {
+        for (String markup : preRoot) {
+            printText(markup, true);
+            breakLine();
+        }
+        preRoot.clear();
+    }
+
+    private ElementState content() {
+        ElementState state = getElementState();
+        if (depth > 0) {
+            if (state.inCData && !state.doCData) {
+                text.append("]]>");
+                state.inCData = false;
+            }
+            if (state.empty) {
+                text.append('>');
+                state.empty = false;
+            }
+            state.afterElement = false;
+            state.afterComment = false;
+        }
+        return state;
+    }
+
+    private void characters(String value) throws IOException {
+        ElementState state = content();
+        if (state.inCData || state.doCData) {
+            if (!state.inCData) {
+                text.append("<![CDATA[");
+                state.inCData = true;
+            }
+            int savedIndent = nextIndent;
+            nextIndent = 0;
+            printCDATAText(value);
+            nextIndent = savedIndent;
+        } else if (state.preserveSpace) {
+            int savedIndent = nextIndent;
+            nextIndent = 0;
+            printText(value, false);
+            nextIndent = savedIndent;
+        } else {
+            printText(value, false);
+        }
+    }
+
+    private void printCDATAText(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (ch == ']' && i + 2 < length && value.charAt(i + 1) == ']' && value.charAt(i + 2) == '>') {
+                text.append("]]]]><![CDATA[>");
+                i += 2;
+            } else if (!isValid(ch)) {
+                if (++i < length) {
+                    surrogates(ch, value.charAt(i));
+                } else {
+                    throw invalidCharacter(ch);
+                }
+            } else if ((ch >= ' ' && isPrintable(ch) && ch != 0xF7) || ch == '\n' || ch == '\r' || ch == '\t') {
+                // 0xF7 is escaped as Xerces does, it compares with 247 where 127 was meant
+                text.append(ch);
+            } else {
+                text.append("]]>&#x").append(Integer.toHexString(ch)).append(";<![CDATA[");
+            }
+        }
+    }
+
+    /**
+     * Prints character data: markup characters and carriage returns are escaped unless unescaped is true, characters
+     * the encoding cannot represent are written as character references.
+     */
+    private void printText(CharSequence value, boolean unescaped) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (!isValid(ch)) {
+                if (++i < length) {
+                    surrogates(ch, value.charAt(i));
+                } else {
+                    throw invalidCharacter(ch);
+                }
+            } else if (unescaped) {
+                text.append(ch);
+            } else if (ch == '\r') {
+                printHex(ch);
+            } else if (ch == '<') {
+                text.append("&lt;");
+            } else if (ch == '&') {
+                text.append("&amp;");
+            } else if (ch == '>') {
+                text.append("&gt;");
+            } else if (ch == '\n' || ch == '\t' || (ch >= ' ' && isPrintable(ch))) {
+                text.append(ch);
+            } else {
+                printHex(ch);
+            }
+        }
+    }
+
+    private void printEscaped(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char ch = value.charAt(i);
+            if (!isValid(ch)) {
+                if (++i < length) {
+                    surrogates(ch, value.charAt(i));
+                } else {
+                    throw invalidCharacter(ch);
+                }
+            } else if (ch == '\n' || ch == '\r' || ch == '\t') {
+                printHex(ch);
+            } else if (ch == '<') {
+                text.append("&lt;");
+            } else if (ch == '&') {
+                text.append("&amp;");
+            } else if (ch == '"') {
+                text.append("&quot;");
+            } else if (ch >= ' ' && isPrintable(ch)) {
+                text.append(ch);
+            } else {
+                printHex(ch);
+            }
+        }
+    }
+
+    private void surrogates(char high, char low) throws IOException {
+        if (!Character.isHighSurrogate(high)) {
+            throw invalidCharacter(high);
+        }
+        if (!Character.isLowSurrogate(low)) {
+            throw invalidCharacter(low);
+        }
+        int codePoint = Character.toCodePoint(high, low);
+        // like Xerces, this also closes the start tag of the parent when the pair is in an attribute value
+        if (content().inCData) {
+            text.append("]]>&#x").append(Integer.toHexString(codePoint)).append(";<![CDATA[");
+        } else {
+            printHex(codePoint);
+        }
+    }
+
+    private void printHex(int ch) {
+        text.append("&#x").append(Integer.toHexString(ch)).append(';');
+    }
+
+    private static boolean isValid(char ch) {
+        return ch == '\t' || ch == '\n' || ch == '\r' || (ch >= 0x20 && ch <= 0xD7FF) || (ch >= 0xE000 && ch <= 0xFFFD);
+    }
+
+    private static IOException invalidCharacter(char ch) {
+        return new IOException("The character '" + ch + "' is an invalid XML character");
+    }
+
+    private ElementState getElementState() {
+        return elementStates[depth];
+    }
+
+    private void enterElementState(String rawName, boolean preserve) {
+        if (depth + 1 == elementStates.length) {
+            elementStates = newElementStates(elementStates, elementStates.length + INITIAL_DEPTH);
+        }
+        elementStates[++depth].init(rawName, preserve);
+    }
+
+    private ElementState leaveElementState() {
+        elementStates[depth].rawName = null;
+        return elementStates[--depth];
+    }
+
+    private static ElementState[] newElementStates(ElementState[] states, int length) {
+        ElementState[] newStates = new ElementState[length];
+        System.arraycopy(states, 0, newStates, 0, states.length);
+        for (int i = states.length; i < length; i++) {
+            newStates[i] = new ElementState();
+        }
+        return newStates;
+    }
+
+    // Line handling of the Xerces IndentPrinter: text is collected until a space, where it is wrapped when the line
+    // gets longer than the line width, or until a line break. Only attributes are separated by spaces, so only start
+    // tags are wrapped.
+
+    private void printSpace() throws IOException {
+        if (text.length() > 0) {
+            if (thisIndent + line.length() + spaces + text.length() > LINE_WIDTH) {
+                flushLine();
+                writer.write(LINE_SEPARATOR);
+            }
+            for (; spaces > 0; spaces--) {
+                line.append(' ');
+            }
+            line.append(text);
+            text.setLength(0);
+        }
+        spaces++;
+    }
+
+    private void breakLine() throws IOException {
+        if (text.length() > 0) {
+            for (; spaces > 0; spaces--) {
+                line.append(' ');
+            }
+            line.append(text);
+            text.setLength(0);
+        }
+        flushLine();
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private void flushLine() throws IOException {
+        if (line.length() > 0) {
+            int indent = (2 * thisIndent > LINE_WIDTH) ? LINE_WIDTH / 2 : thisIndent;
+            for (; indent > 0; indent--) {
+                writer.write(' ');
+            }
+            thisIndent = nextIndent;
+            spaces = 0;
+            writer.append(line);
+            line.setLength(0);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (line.length() > 0 || text.length() > 0) {
+            breakLine();
+        }
+        writer.flush();
+    }
+
+    private void indent() {
+        nextIndent += INDENT;
+    }
+
+    private void unindent() {
+        nextIndent = Math.max(nextIndent - INDENT, 0);
+        if (line.length() + spaces + text.length() == 0) {
+            thisIndent = nextIndent;
+        }
+    }
+
+    private static class ElementState {
+        private String rawName;
+        private boolean preserveSpace;
+        private boolean empty;
+        private boolean afterElement;
+        private boolean afterComment;
+        private boolean doCData;
+        private boolean inCData;
+
+        private void init(String rawName, boolean preserveSpace) {
+            this.rawName = rawName;
+            this.preserveSpace = preserveSpace;
+            this.empty = true;
+            this.afterElement = false;
+            this.afterComment = false;
+            this.doCData = false;
+            this.inCData = false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.cloudslang.content.xml.utils;
+
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled XSD schemas. A schema given as a string is keyed by the SHA-256 hash of its content, a schema
+ * given as a file by its canonical path, and a cached file schema is compiled again when the last modified time or
+ * the length of the file changes. Compiled Schema objects are immutable and are shared between threads.
+ */
+public class SchemaCache {
+    private static final int MAX_SCHEMAS = 32;
+    private static final String STRING_KEY = "string:";
+    private static final String PATH_KEY = "path:";
+    private static final String SECURE_KEY = ":secure:";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final Map<String, CachedSchema> SCHEMAS = Collections.synchronizedMap(new LinkedHashMap<String, CachedSchema>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedSchema> eldest) {
+            return size() > MAX_SCHEMAS;
+        }
+    });
+
+    private SchemaCache() {
+    }
+
+    /**
+     * Returns the compiled schema of an XSD given as a string.
+     *
+     * @param xsdDocument the XSD document
+     * @param secure      whether to compile the schema with secure processing
+     * @return the compiled schema
+     * @throws SAXException if the schema cannot be compiled
+     */
+    public static Schema getSchema(String xsdDocument, boolean secure) throws SAXException {
+        String key = STRING_KEY + sha256(xsdDocument) + SECURE_KEY + secure;
+        CachedSchema cachedSchema = SCHEMAS.get(key);
+        if (cachedSchema == null) {
+            cachedSchema = new CachedSchema(newSchema(new StreamSource(new StringReader(xsdDocument)), secure), 0, 0);
+            SCHEMAS.put(key, cachedSchema);
+        }
+        return cachedSchema.schema;
+    }
+
+    /**
+     * Returns the compiled schema of an XSD file. The file is parsed with the secure DocumentBuilder, which rejects
+     * doctype declarations, and relative includes and imports are resolved against the file location.
+     *
+     * @param xsdFile the XSD file
+     * @param secure  whether to compile the schema with secure processing
+     * @return the compiled schema
+     * @throws SAXException if the schema cannot be compiled
+     * @throws IOException  if the file cannot be read
+     * @throws ParserConfigurationException if the secure DocumentBuilder cannot be created
+     */
+    public static Schema getSchema(File xsdFile, boolean secure) throws SAXException, IOException, ParserConfigurationException {
+        if (!xsdFile.isFile()) {
+            throw new IOException("Unable to open file requested, filename[" + xsdFile.getPath() + "]");
+        }
+        File canonicalFile = xsdFile.getCanonicalFile();
+        String key = PATH_KEY + canonicalFile.getPath() + SECURE_KEY + secure;
+        long lastModified = canonicalFile.lastModified();
+        long length = canonicalFile.length();
+        CachedSchema cachedSchema = SCHEMAS.get(key);
+        if (cachedSchema == null || cachedSchema.lastModified != lastModified || cachedSchema.length != length) {
+            Document xsdDocument = XmlFactoryCache.getDocumentBuilder(secure).parse(canonicalFile);
+            DOMSource source = new DOMSource(xsdDocument, canonicalFile.toURI().toString());
+            cachedSchema = new CachedSchema(newSchema(source, secure), lastModified, length);
+            SCHEMAS.put(key, cachedSchema);
+        }
+        return cachedSchema.schema;
+    }
+
+    private static Schema newSchema(Source source, boolean secure) throws SAXException {
+        SchemaFactory schemaFactory = XmlFactoryCache.getSchemaFactory();
+        schemaFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+        return schemaFactory.newSchema(source);
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class CachedSchema {
+        private final Schema schema;
+        private final long lastModified;
+        private final long length;
+
+        private CachedSchema(Schema schema, long lastModified, long length) {
+            this.schema = schema;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
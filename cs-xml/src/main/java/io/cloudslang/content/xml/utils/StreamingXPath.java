@@ -0,0 +1,530 @@
+package io.cloudslang.content.xml.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a subset of XPath on a document read as a stream of StAX events, so that querying a large file does not
+ * need the DOM of the whole document. The supported expressions are absolute location paths made of:
+ * <ul>
+ * <li>child (/) and descendant (//) steps selecting the elements with no namespace by local name, or any element
+ * with *</li>
+ * <li>attribute predicates on those steps: [@name], [@name='value'] and [@name!='value']</li>
+ * <li>optionally a last child step selecting the text nodes (/text()) or the attributes (/@name or /@*) of the
+ * selected elements</li>
+ * </ul>
+ * for example /a/b[@id='x']/c, //item[@type]/text() or /a//b/@*. Expressions with prefixes, other axes, functions or
+ * positional predicates are not supported and must be evaluated on the DOM.
+ * <p>
+ * The selection is printed as XpathQueryService prints the nodes found on the DOM. Only the subtree of a selected
+ * element is kept in memory, and node and value queries stop reading the document after the first match, so a
+ * document which is not well-formed after that point is not reported as an error.
+ */
+public class StreamingXPath {
+    private static final int MAX_STEPS = Long.SIZE - 1;
+    private static final String DOCTYPE_DISALLOWED = "DOCTYPE is disallowed when the feature " +
+            "\"http://apache.org/xml/features/disallow-doctype-decl\" set to true.";
+
+    private enum Target {ELEMENT, TEXT, ATTRIBUTE}
+
+    private final Step[] steps;
+    private final Target target;
+    private final String attributeName;
+
+    private StreamingXPath(Step[] steps, Target target, String attributeName) {
+        this.steps = steps;
+        this.target = target;
+        this.attributeName = attributeName;
+    }
+
+    /**
+     * Compiles the expression if it belongs to the supported subset.
+     *
+     * @param xPathQuery the expression text
+     * @return the compiled expression, or null if the expression is not supported
+     */
+    public static StreamingXPath compile(String xPathQuery) {
+        if (xPathQuery == null) {
+            return null;
+        }
+        try {
+            return new Parser(xPathQuery.trim()).parse();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Evaluates the expression on the document read from the stream, which is not closed.
+     *
+     * @param inputStream the XML document
+     * @param queryType   node, nodelist or value
+     * @param delimiter   the delimiter between the nodes of a nodelist query
+     * @param secure      the value of the secure processing feature
+     * @return the printed nodes or the string value of the first match, or an empty string if nothing is selected
+     * @throws Exception if the query type is invalid or the document cannot be read
+     */
+    public String evaluate(InputStream inputStream, String queryType, String delimiter, boolean secure) throws Exception {
+        if (!Constants.QueryTypes.NODE_LIST.equals(queryType) && !Constants.QueryTypes.NODE.equals(queryType)
+                && !Constants.QueryTypes.VALUE.equals(queryType)) {
+            throw new Exception("Invalid query type");
+        }
+        XMLStreamReader reader = XmlFactoryCache.getXMLInputFactory().createXMLStreamReader(inputStream);
+        try {
+            Document document = XmlUtils.getDocumentBuilder(secure).newDocument();
+            return new Evaluation(reader, document, queryType, delimiter).run();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return StringUtils.isEmpty(value) ? null : value;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return StringUtils.isEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    private static String attributeValue(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(reader.getAttributeLocalName(i)) && StringUtils.isEmpty(reader.getAttributeNamespace(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static class Step {
+        private final boolean descendant;
+        private final String localName;
+        private final List<Predicate> predicates = new ArrayList<>();
+
+        private Step(boolean descendant, String localName) {
+            this.descendant = descendant;
+            this.localName = localName;
+        }
+
+        private boolean matches(XMLStreamReader reader) {
+            if (localName != null && (!localName.equals(reader.getLocalName()) || StringUtils.isNotEmpty(reader.getNamespaceURI()))) {
+                return false;
+            }
+            for (Predicate predicate : predicates) {
+                String value = attributeValue(reader, predicate.attributeName);
+                if (value == null || predicate.value != null && predicate.value.equals(value) == predicate.negated) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Predicate {
+        private final String attributeName;
+        private final String value;
+        private final boolean negated;
+
+        private Predicate(String attributeName, String value, boolean negated) {
+            this.attributeName = attributeName;
+            this.value = value;
+            this.negated = negated;
+        }
+    }
+
+    /**
+     * Parses the supported subset, throwing IllegalArgumentException for anything else.
+     */
+    private static class Parser {
+        private static final String TEXT_TEST = "text()";
+
+        private final String expression;
+        private int position;
+
+        private Parser(String expression) {
+            this.expression = expression;
+        }
+
+        private StreamingXPath parse() {
+            List<Step> steps = new ArrayList<>();
+            Target target = Target.ELEMENT;
+            String attributeName = null;
+            while (position < expression.length()) {
+                expect('/');
+                boolean descendant = accept('/');
+                if (!steps.isEmpty() && !descendant && expression.startsWith(TEXT_TEST, position)) {
+                    position += TEXT_TEST.length();
+                    target = Target.TEXT;
+                    break;
+                }
+                if (!steps.isEmpty() && !descendant && accept('@')) {
+                    attributeName = accept('*') ? null : name();
+                    target = Target.ATTRIBUTE;
+                    break;
+                }
+                Step step = new Step(descendant, accept('*') ? null : name());
+                while (accept('[')) {
+                    step.predicates.add(predicate());
+                    expect(']');
+                }
+                steps.add(step);
+            }
+            if (steps.isEmpty() || steps.size() > MAX_STEPS || position < expression.length()) {
+                throw new IllegalArgumentException(expression);
+            }
+            return new StreamingXPath(steps.toArray(new Step[steps.size()]), target, attributeName);
+        }
+
+        private Predicate predicate() {
+            expect('@');
+            String name = name();
+            boolean negated = accept('!');
+            if (!negated && !accept('=')) {
+                return new Predicate(name, null, false);
+            }
+            if (negated) {
+                expect('=');
+            }
+            return new Predicate(name, literal(), negated);
+        }
+
+        private String literal() {
+            if (position >= expression.length()) {
+                throw new IllegalArgumentException(expression);
+            }
+            char quote = expression.charAt(position);
+            if (quote != '\'' && quote != '"') {
+                throw new IllegalArgumentException(expression);
+            }
+            int end = expression.indexOf(quote, position + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException(expression);
+            }
+            String literal = expression.substring(position + 1, end);
+            position = end + 1;
+            return literal;
+        }
+
+        private String name() {
+            int start = position;
+            if (position < expression.length() && (Character.isLetter(expression.charAt(position)) || expression.charAt(position) == '_')) {
+                position++;
+                while (position < expression.length() && isNameChar(expression.charAt(position))) {
+                    position++;
+                }
+            }
+            // a name followed by '(' or ':' is a function, a node test, an axis or a prefix
+            if (position == start || position < expression.length()
+                    && (expression.charAt(position) == '(' || expression.charAt(position) == ':')) {
+                throw new IllegalArgumentException(expression);
+            }
+            return expression.substring(start, position);
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+        }
+
+        private boolean accept(char c) {
+            if (position < expression.length() && expression.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw new IllegalArgumentException(expression);
+            }
+        }
+    }
+
+    /**
+     * The state of one pass over a document. For every open element it keeps the set of steps that may be matched
+     * by its children, as a bit mask: bit i means that the first i steps are matched by the element or an ancestor
+     * and bit steps.length that the element itself is selected.
+     */
+    private class Evaluation {
+        private final XMLStreamReader reader;
+        private final Document document;
+        private final boolean nodeList;
+        private final boolean value;
+        private final String delimiter;
+        private final long selected = 1L << steps.length;
+
+        private final StringWriter writer = new StringWriter();
+        private int count;
+        private String result;
+        private boolean done;
+
+        private long[] masks = new long[16];
+        private int depth;
+
+        // the copy of the selected element being read, and of the selected elements it contains
+        private Node current;
+        private int captureDepth;
+        private final List<Node> captured = new ArrayList<>();
+
+        // the string value of the first selected element, for value queries
+        private StringBuilder elementValue;
+        private int valueDepth;
+
+        // the text node being read: the XPath data model merges adjacent text and CDATA nodes into one text node,
+        // which is the first of the DOM nodes and whose string value is their concatenation
+        private boolean inText;
+        private boolean firstCData;
+        private boolean firstOpen;
+        private final StringBuilder firstText = new StringBuilder();
+        private final StringBuilder allText = new StringBuilder();
+
+        private Evaluation(XMLStreamReader reader, Document document, String queryType, String delimiter) {
+            this.reader = reader;
+            this.document = document;
+            this.nodeList = Constants.QueryTypes.NODE_LIST.equals(queryType);
+            this.value = Constants.QueryTypes.VALUE.equals(queryType);
+            this.delimiter = delimiter;
+            masks[0] = 1L;
+        }
+
+        private String run() throws Exception {
+            while (!done && reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        startElement();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        characters(false);
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        characters(true);
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        endText();
+                        if (current != null) {
+                            current.appendChild(document.createComment(reader.getText()));
+                        }
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        endText();
+                        if (current != null) {
+                            String data = reader.getPIData();
+                            current.appendChild(document.createProcessingInstruction(reader.getPITarget(), data == null ? "" : data));
+                        }
+                        break;
+                    case XMLStreamConstants.DTD:
+                        throw new XMLStreamException(DOCTYPE_DISALLOWED, reader.getLocation());
+                    default:
+                        break;
+                }
+            }
+            if (value) {
+                return result == null ? "" : result;
+            }
+            return writer.toString();
+        }
+
+        private void startElement() throws Exception {
+            endText();
+            long parent = masks[depth];
+            long mask = 0;
+            for (int i = 0; i < steps.length; i++) {
+                if ((parent & (1L << i)) != 0) {
+                    if (steps[i].descendant) {
+                        mask |= 1L << i;
+                    }
+                    if (steps[i].matches(reader)) {
+                        mask |= 1L << (i + 1);
+                    }
+                }
+            }
+            depth++;
+            if (depth == masks.length) {
+                masks = Arrays.copyOf(masks, depth * 2);
+            }
+            masks[depth] = mask;
+
+            boolean isSelected = (mask & selected) != 0;
+            if (current != null) {
+                current = current.appendChild(copyElement());
+            } else if (isSelected && target == Target.ELEMENT && !value) {
+                current = copyElement();
+                captureDepth = depth;
+            }
+            if (!isSelected) {
+                return;
+            }
+            if (target == Target.ELEMENT) {
+                if (value && elementValue == null) {
+                    elementValue = new StringBuilder();
+                    valueDepth = depth;
+                } else if (!value) {
+                    captured.add(current);
+                }
+            } else if (target == Target.ATTRIBUTE) {
+                selectAttributes();
+            }
+        }
+
+        private void endElement() throws Exception {
+            endText();
+            if (elementValue != null && depth == valueDepth) {
+                select(elementValue.toString(), null);
+            }
+            if (current != null) {
+                if (depth == captureDepth) {
+                    current = null;
+                    for (Node node : captured) {
+                        if (done) {
+                            break;
+                        }
+                        select(null, node);
+                    }
+                    captured.clear();
+                } else {
+                    current = current.getParentNode();
+                }
+            }
+            depth--;
+        }
+
+        private void characters(boolean cData) {
+            boolean textSelected = target == Target.TEXT && (masks[depth] & selected) != 0;
+            // the DOM has no node for an empty CDATA section, so the text around it is a single text node
+            if (elementValue == null && current == null && !textSelected || reader.getTextLength() == 0) {
+                return;
+            }
+            String text = reader.getText();
+            if (elementValue != null) {
+                elementValue.append(text);
+            }
+            if (current != null) {
+                Node last = current.getLastChild();
+                if (cData) {
+                    current.appendChild(document.createCDATASection(text));
+                } else if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                    ((Text) last).appendData(text);
+                } else {
+                    current.appendChild(document.createTextNode(text));
+                }
+            }
+            if (textSelected) {
+                if (!inText) {
+                    inText = true;
+                    firstCData = cData;
+                    firstOpen = true;
+                    firstText.setLength(0);
+                    allText.setLength(0);
+                } else if (cData || firstCData) {
+                    firstOpen = false;
+                }
+                if (firstOpen) {
+                    firstText.append(text);
+                }
+                if (value) {
+                    allText.append(text);
+                }
+            }
+        }
+
+        private void endText() throws Exception {
+            if (!inText) {
+                return;
+            }
+            inText = false;
+            if (value) {
+                select(allText.toString(), null);
+            } else {
+                String text = firstText.toString();
+                select(null, firstCData ? document.createCDATASection(text) : document.createTextNode(text));
+            }
+        }
+
+        private void selectAttributes() throws Exception {
+            if (attributeName != null) {
+                String attributeValue = attributeValue(reader, attributeName);
+                if (attributeValue != null) {
+                    selectAttribute(null, attributeName, attributeValue);
+                }
+                return;
+            }
+            // the DOM keeps the attributes of an element sorted by name
+            Integer[] indexes = new Integer[reader.getAttributeCount()];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer first, Integer second) {
+                    return attributeQualifiedName(first).compareTo(attributeQualifiedName(second));
+                }
+            });
+            for (int i = 0; i < indexes.length && !done; i++) {
+                selectAttribute(emptyToNull(reader.getAttributeNamespace(indexes[i])), attributeQualifiedName(indexes[i]),
+                        reader.getAttributeValue(indexes[i]));
+            }
+        }
+
+        private void selectAttribute(String namespaceURI, String name, String attributeValue) throws Exception {
+            if (value) {
+                select(attributeValue, null);
+            } else {
+                Attr attr = document.createAttributeNS(namespaceURI, name);
+                attr.setValue(attributeValue);
+                select(null, attr);
+            }
+        }
+
+        private String attributeQualifiedName(int index) {
+            return qualifiedName(reader.getAttributePrefix(index), reader.getAttributeLocalName(index));
+        }
+
+        private void select(String stringValue, Node node) throws Exception {
+            if (value) {
+                result = stringValue;
+                done = true;
+                return;
+            }
+            if (count > 0) {
+                writer.append(delimiter);
+            }
+            XmlUtils.appendNode(node, writer);
+            count++;
+            done = !nodeList;
+        }
+
+        private Element copyElement() {
+            Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                    qualifiedName(reader.getPrefix(), reader.getLocalName()));
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i);
+                String uri = reader.getNamespaceURI(i);
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, StringUtils.isEmpty(prefix) ?
+                        XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, uri == null ? "" : uri);
+            }
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)), attributeQualifiedName(i),
+                        reader.getAttributeValue(i));
+            }
+            return element;
+        }
+    }
+}
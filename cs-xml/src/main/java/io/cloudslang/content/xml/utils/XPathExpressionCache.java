@@ -0,0 +1,82 @@
+package io.cloudslang.content.xml.utils;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of compiled XPath expressions, keyed by the expression text and the namespace context the expression
+ * was compiled with. A compiled XPathExpression is not thread-safe, so every thread keeps its own cache.
+ */
+public class XPathExpressionCache {
+    private static final int MAX_EXPRESSIONS_PER_THREAD = 256;
+
+    private static final ThreadLocal<Map<Key, XPathExpression>> EXPRESSIONS = new ThreadLocal<Map<Key, XPathExpression>>() {
+        @Override
+        protected Map<Key, XPathExpression> initialValue() {
+            return new LinkedHashMap<Key, XPathExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, XPathExpression> eldest) {
+                    return size() > MAX_EXPRESSIONS_PER_THREAD;
+                }
+            };
+        }
+    };
+
+    private XPathExpressionCache() {
+    }
+
+    /**
+     * Returns the compiled expression from the cache of the current thread, compiling it on the first use.
+     *
+     * @param context    the namespace context used to resolve the prefixes of the expression
+     * @param xPathQuery the expression text
+     * @return the compiled expression
+     * @throws XPathExpressionException if the expression cannot be compiled
+     */
+    public static XPathExpression getExpression(NamespaceContext context, String xPathQuery) throws XPathExpressionException {
+        Map<Key, XPathExpression> expressions = EXPRESSIONS.get();
+        Key key = new Key(xPathQuery, context);
+        XPathExpression expression = expressions.get(key);
+        if (expression == null) {
+            XPath xPath = XmlFactoryCache.getXPath();
+            if (context != null) {
+                xPath.setNamespaceContext(context);
+            }
+            expression = xPath.compile(xPathQuery);
+            expressions.put(key, expression);
+        }
+        return expression;
+    }
+
+    private static class Key {
+        private final String xPathQuery;
+        private final NamespaceContext context;
+
+        private Key(String xPathQuery, NamespaceContext context) {
+            this.xPathQuery = xPathQuery;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return xPathQuery.equals(key.xPathQuery) &&
+                    (context == null ? key.context == null : context.equals(key.context));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * xPathQuery.hashCode() + (context == null ? 0 : context.hashCode());
+        }
+    }
+}
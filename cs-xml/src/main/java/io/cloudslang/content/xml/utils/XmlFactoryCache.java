@@ -0,0 +1,314 @@
+package io.cloudslang.content.xml.utils;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the parser, XPath and transformer factories of the module, so that the service lookup behind every
+ * newInstance call is made only once. The factories are not thread-safe, so they are configured once and only used
+ * to create the per-thread DocumentBuilder, XPath, Transformer and SAXParser instances handed out by this class,
+ * which also keeps a DomSerializer and an XMLInputFactory per thread.
+ * An instance returned to a thread must not be shared with another thread.
+ */
+public class XmlFactoryCache {
+    private static final int MAX_BUILDERS_PER_THREAD = 16;
+    private static final int MAX_FACTORIES = 64;
+    private static final String SECURE_KEY = "secure:";
+    private static final String FEATURES_KEY = "features:";
+    private static final String NAMESPACE_AWARE_KEY = "namespaceAware:";
+    private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final ConcurrentMap<String, DocumentBuilderFactory> DOCUMENT_BUILDER_FACTORIES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, SAXParserFactory> SAX_PARSER_FACTORIES = new ConcurrentHashMap<>();
+    private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+    private static final ThreadLocal<Map<String, DocumentBuilder>> DOCUMENT_BUILDERS = new ThreadLocal<Map<String, DocumentBuilder>>() {
+        @Override
+        protected Map<String, DocumentBuilder> initialValue() {
+            return new HashMap<>();
+        }
+    };
+    private static final ThreadLocal<XPath> XPATHS = new ThreadLocal<XPath>() {
+        @Override
+        protected XPath initialValue() {
+            synchronized (XPATH_FACTORY) {
+                return XPATH_FACTORY.newXPath();
+            }
+        }
+    };
+    private static final ThreadLocal<Map<String, SAXParser>> SAX_PARSERS = new ThreadLocal<Map<String, SAXParser>>() {
+        @Override
+        protected Map<String, SAXParser> initialValue() {
+            return new HashMap<>();
+        }
+    };
+    private static final ThreadLocal<SchemaFactory> SCHEMA_FACTORIES = new ThreadLocal<SchemaFactory>() {
+        @Override
+        protected SchemaFactory initialValue() {
+            return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        }
+    };
+    private static final ThreadLocal<DomSerializer> DOM_SERIALIZERS = new ThreadLocal<DomSerializer>() {
+        @Override
+        protected DomSerializer initialValue() {
+            return new DomSerializer();
+        }
+    };
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            if (factory.isPropertySupported(REPORT_CDATA_EVENT)) {
+                factory.setProperty(REPORT_CDATA_EVENT, true);
+            }
+            return factory;
+        }
+    };
+    private static final ThreadLocal<Transformer> TRANSFORMERS = new ThreadLocal<>();
+    private static final ThreadLocal<Transformer> NODE_TRANSFORMERS = new ThreadLocal<>();
+
+    private XmlFactoryCache() {
+    }
+
+    /**
+     * Returns the DocumentBuilder of the current thread for the secure parsing configuration: namespace aware, with
+     * external entities, external DTDs and doctype declarations disabled.
+     *
+     * @param secure the value of the secure processing feature
+     * @return a DocumentBuilder reset to its initial state
+     * @throws ParserConfigurationException if the parser does not support the configuration
+     */
+    public static DocumentBuilder getDocumentBuilder(final boolean secure) throws ParserConfigurationException {
+        String key = SECURE_KEY + secure;
+        DocumentBuilder builder = DOCUMENT_BUILDERS.get().get(key);
+        if (builder == null) {
+            DocumentBuilderFactory factory = DOCUMENT_BUILDER_FACTORIES.get(key);
+            if (factory == null) {
+                factory = DocumentBuilderFactory.newInstance();
+                factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+                factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+                factory.setXIncludeAware(false);
+                factory.setExpandEntityReferences(false);
+                factory.setNamespaceAware(true);
+                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+                factory = putIfAbsent(key, factory);
+            }
+            builder = newDocumentBuilder(key, factory);
+        }
+        builder.reset();
+        return builder;
+    }
+
+    /**
+     * Returns the DocumentBuilder of the current thread for the given parsing features.
+     *
+     * @param features       parsing features, one 'feature value' pair per line, as accepted by XmlUtils.setFeatures
+     * @param namespaceAware true if the parser must provide support for XML namespaces
+     * @return a DocumentBuilder reset to its initial state
+     * @throws ParserConfigurationException if the parser does not support one of the features
+     */
+    public static DocumentBuilder getDocumentBuilder(final String features, final boolean namespaceAware) throws ParserConfigurationException {
+        String key = NAMESPACE_AWARE_KEY + namespaceAware + FEATURES_KEY + features;
+        DocumentBuilder builder = DOCUMENT_BUILDERS.get().get(key);
+        if (builder == null) {
+            DocumentBuilderFactory factory = DOCUMENT_BUILDER_FACTORIES.get(key);
+            if (factory == null) {
+                factory = DocumentBuilderFactory.newInstance();
+                XmlUtils.setFeatures(factory, features);
+                factory.setNamespaceAware(namespaceAware);
+                factory = putIfAbsent(key, factory);
+            }
+            builder = newDocumentBuilder(key, factory);
+        }
+        builder.reset();
+        return builder;
+    }
+
+    /**
+     * Returns the SAXParser of the current thread, with the same configuration as the secure DocumentBuilder, for
+     * reading a document without building its tree.
+     *
+     * @param secure the value of the secure processing feature
+     * @return a SAXParser reset to its initial state
+     * @throws ParserConfigurationException if the parser does not support the configuration
+     * @throws SAXException                 if the parser does not support one of the features
+     */
+    public static SAXParser getSAXParser(final boolean secure) throws ParserConfigurationException, SAXException {
+        String key = SECURE_KEY + secure;
+        SAXParser parser = SAX_PARSERS.get().get(key);
+        if (parser == null) {
+            SAXParserFactory factory = SAX_PARSER_FACTORIES.get(key);
+            if (factory == null) {
+                factory = SAXParserFactory.newInstance();
+                factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+                factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+                factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+                factory.setXIncludeAware(false);
+                factory.setNamespaceAware(true);
+                factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
+                factory = putIfAbsent(key, factory);
+            }
+            parser = newSAXParser(key, factory);
+        }
+        parser.reset();
+        return parser;
+    }
+
+    /**
+     * Returns the namespace aware SAXParser of the current thread for the given parsing features.
+     *
+     * @param features parsing features, one 'feature value' pair per line, as accepted by XmlUtils.setFeatures
+     * @return a SAXParser reset to its initial state
+     * @throws ParserConfigurationException if the parser cannot be created
+     * @throws SAXException                 if the parser does not support one of the features
+     */
+    public static SAXParser getSAXParser(final String features) throws ParserConfigurationException, SAXException {
+        String key = FEATURES_KEY + features;
+        SAXParser parser = SAX_PARSERS.get().get(key);
+        if (parser == null) {
+            SAXParserFactory factory = SAX_PARSER_FACTORIES.get(key);
+            if (factory == null) {
+                factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                XmlUtils.setFeatures(factory, features);
+                factory = putIfAbsent(key, factory);
+            }
+            parser = newSAXParser(key, factory);
+        }
+        parser.reset();
+        return parser;
+    }
+
+    /**
+     * @return the W3C XML Schema SchemaFactory of the current thread
+     */
+    public static SchemaFactory getSchemaFactory() {
+        return SCHEMA_FACTORIES.get();
+    }
+
+    /**
+     * @return the namespace aware XMLInputFactory of the current thread, with DTD support and external entities
+     * disabled and CDATA sections reported as CDATA events
+     */
+    public static XMLInputFactory getXMLInputFactory() {
+        return XML_INPUT_FACTORIES.get();
+    }
+
+    /**
+     * @return the XPath of the current thread, reset to its initial state
+     */
+    public static XPath getXPath() {
+        XPath xPath = XPATHS.get();
+        xPath.reset();
+        return xPath;
+    }
+
+    /**
+     * @return the identity Transformer of the current thread, with the default output properties
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    public static Transformer getTransformer() throws TransformerConfigurationException {
+        Transformer transformer = TRANSFORMERS.get();
+        if (transformer == null) {
+            transformer = newTransformer();
+            TRANSFORMERS.set(transformer);
+        }
+        return transformer;
+    }
+
+    /**
+     * @return the identity Transformer of the current thread used to print single nodes: indented and without the
+     * XML declaration
+     * @throws TransformerConfigurationException if the transformer cannot be created
+     */
+    public static Transformer getNodeTransformer() throws TransformerConfigurationException {
+        Transformer transformer = NODE_TRANSFORMERS.get();
+        if (transformer == null) {
+            transformer = newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, Constants.YES);
+            transformer.setOutputProperty(OutputKeys.INDENT, Constants.YES);
+            NODE_TRANSFORMERS.set(transformer);
+        }
+        return transformer;
+    }
+
+    /**
+     * @return the DomSerializer of the current thread
+     */
+    public static DomSerializer getDomSerializer() {
+        return DOM_SERIALIZERS.get();
+    }
+
+    private static DocumentBuilderFactory putIfAbsent(String key, DocumentBuilderFactory factory) {
+        if (DOCUMENT_BUILDER_FACTORIES.size() >= MAX_FACTORIES) {
+            DOCUMENT_BUILDER_FACTORIES.clear();
+        }
+        DocumentBuilderFactory previous = DOCUMENT_BUILDER_FACTORIES.putIfAbsent(key, factory);
+        return previous == null ? factory : previous;
+    }
+
+    private static SAXParserFactory putIfAbsent(String key, SAXParserFactory factory) {
+        if (SAX_PARSER_FACTORIES.size() >= MAX_FACTORIES) {
+            SAX_PARSER_FACTORIES.clear();
+        }
+        SAXParserFactory previous = SAX_PARSER_FACTORIES.putIfAbsent(key, factory);
+        return previous == null ? factory : previous;
+    }
+
+    private static SAXParser newSAXParser(String key, SAXParserFactory factory) throws ParserConfigurationException, SAXException {
+        SAXParser parser;
+        synchronized (factory) {
+            parser = factory.newSAXParser();
+        }
+        Map<String, SAXParser> parsers = SAX_PARSERS.get();
+        if (parsers.size() >= MAX_BUILDERS_PER_THREAD) {
+            parsers.clear();
+        }
+        parsers.put(key, parser);
+        return parser;
+    }
+
+    private static DocumentBuilder newDocumentBuilder(String key, DocumentBuilderFactory factory) throws ParserConfigurationException {
+        DocumentBuilder builder;
+        synchronized (factory) {
+            builder = factory.newDocumentBuilder();
+        }
+        Map<String, DocumentBuilder> builders = DOCUMENT_BUILDERS.get();
+        if (builders.size() >= MAX_BUILDERS_PER_THREAD) {
+            builders.clear();
+        }
+        builders.put(key, builder);
+        return builder;
+    }
+
+    private static Transformer newTransformer() throws TransformerConfigurationException {
+        synchronized (TRANSFORMER_FACTORY) {
+            return TRANSFORMER_FACTORY.newTransformer();
+        }
+    }
+}
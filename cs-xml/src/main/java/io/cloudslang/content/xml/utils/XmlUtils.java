@@ -7,27 +7,18 @@ import io.cloudslang.content.xml.entities.SimpleNamespaceContext;
 import io.cloudslang.content.xml.entities.inputs.CommonInputs;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.methods.HttpGet;
-import org.jdom2.input.SAXBuilder;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
-import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
-import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
@@ -47,41 +38,27 @@ public class XmlUtils {
     }
 
     public static String nodeToString(Node node) throws TransformerException {
-
-        if (node == null) {
-            return Constants.EMPTY_STRING;
-        } else if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
-            return node.toString();
-        } else {
-            return transformElementNode(node);
-        }
+        StringWriter stringWriter = new StringWriter();
+        appendNode(node, stringWriter);
+        return stringWriter.toString();
     }
 
     /**
-     * Returns the Namespaces context from an xml.
+     * Appends the string representation of the node, as returned by nodeToString, to the writer.
      *
-     * @param xmlString      xml as string
-     * @param xmlFilePath path to xml file
-     * @return the Namespaces context from an xml.
-     * @throws IOException        file reading exception
-     * @throws XMLStreamException parsing exception
+     * @param node   the node, or null to append nothing
+     * @param writer the writer the node is printed to
+     * @throws TransformerException if the node cannot be printed
      */
-    public static NamespaceContext getNamespaceContext(String xmlString, String xmlFilePath) throws Exception {
-        InputStream inputXML = getStream(xmlString, xmlFilePath);
-        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
-        XMLStreamReader reader = inputFactory.createXMLStreamReader(inputXML);
-        Map<String, String> namespaces = new HashMap<>();
-        while (reader.hasNext()) {
-            int evt = reader.next();
-            if (evt == XMLStreamConstants.START_ELEMENT) {
-                QName qName = reader.getName();
-                if (qName != null) {
-                    if (qName.getPrefix() != null && qName.getPrefix().compareTo("") != 0)
-                        namespaces.put(qName.getPrefix(), qName.getNamespaceURI());
-                }
-            }
+    public static void appendNode(Node node, StringWriter writer) throws TransformerException {
+        if (node == null) {
+            return;
+        }
+        if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+            writer.write(node.toString());
+        } else {
+            transformElementNode(node, writer);
         }
-        return new SimpleNamespaceContext(namespaces);
     }
 
     public static Document parseXML(String xmlDocument, boolean secure) throws Exception {
@@ -91,22 +68,7 @@ public class XmlUtils {
     }
 
     public static DocumentBuilder getDocumentBuilder(boolean secure) throws ParserConfigurationException {
-        String feature;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-
-        feature = "http://xml.org/sax/features/external-general-entities";
-        factory.setFeature(feature, false);
-        feature = "http://xml.org/sax/features/external-parameter-entities";
-        factory.setFeature(feature, false);
-        feature = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
-        factory.setFeature(feature, false);
-        feature = "http://apache.org/xml/features/disallow-doctype-decl";
-        factory.setFeature(feature, true);
-        factory.setXIncludeAware(false);
-        factory.setExpandEntityReferences(false);
-        factory.setNamespaceAware(true);
-        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, secure);
-        return factory.newDocumentBuilder();
+        return XmlFactoryCache.getDocumentBuilder(secure);
     }
 
     /**
@@ -140,11 +102,7 @@ public class XmlUtils {
         Document xmlDocument;
         try {
             InputStream inputXML = getStream(xml, filePath);
-            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            XmlUtils.setFeatures(builderFactory, features);
-
-            builderFactory.setNamespaceAware(true);
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
+            DocumentBuilder builder = XmlFactoryCache.getDocumentBuilder(features, true);
             xmlDocument = builder.parse(inputXML);
         } catch (MalformedURLException e) {
             throw new Exception((new StringBuilder("Unable to open remote file requested, file path[")).append(filePath).append("], error[").append(e.getMessage()).append("]").toString(), e);
@@ -163,9 +121,7 @@ public class XmlUtils {
      * @throws XPathExpressionException if  xpath exception occurred
      */
     public static NodeList readNode(Document doc, String pathToNode, NamespaceContext ctx) throws XPathExpressionException {
-        XPath xPath = createXpath();
-        xPath.setNamespaceContext(ctx);
-        return (NodeList) xPath.evaluate(pathToNode, doc, XPathConstants.NODESET);
+        return evaluateXPathQuery(doc, ctx, pathToNode);
     }
 
     /**
@@ -191,15 +147,6 @@ public class XmlUtils {
         return node;
     }
 
-    /**
-     * Returns a new instance of XPath.
-     *
-     * @return XPath object
-     */
-    private static XPath createXpath() {
-        return XPathFactory.newInstance().newXPath();
-    }
-
     /**
      * Returns the InputStream representation of a file or string.
      *
@@ -226,9 +173,7 @@ public class XmlUtils {
         DOMSource domSource = new DOMSource(doc);
         StringWriter writer = new StringWriter();
         StreamResult streamResult = new StreamResult(writer);
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-        transformer.transform(domSource, streamResult);
+        XmlFactoryCache.getTransformer().transform(domSource, streamResult);
         return writer;
     }
 
@@ -238,10 +183,16 @@ public class XmlUtils {
         return (NodeList) expr.evaluate(doc, XPathConstants.NODESET);
     }
 
+    /**
+     * Returns the compiled XPath expression, from the expression cache of the current thread.
+     *
+     * @param context    the namespace context of the expression
+     * @param xPathQuery the XPath expression
+     * @return the compiled expression; it must not be shared with other threads
+     * @throws XPathExpressionException if the expression cannot be compiled
+     */
     public static XPathExpression createXPathExpression(NamespaceContext context, String xPathQuery) throws XPathExpressionException {
-        XPath xpath = XPathFactory.newInstance().newXPath();
-        xpath.setNamespaceContext(context);
-        return xpath.compile(xPathQuery);
+        return XPathExpressionCache.getExpression(context, xPathQuery);
     }
 
     public static void validateNodeList(NodeList nodeList) throws Exception {
@@ -250,15 +201,23 @@ public class XmlUtils {
         }
     }
 
-    private static String transformElementNode(Node node) throws TransformerException {
-        StringWriter stringWriter = new StringWriter();
+    private static void transformElementNode(Node node, StringWriter writer) throws TransformerException {
+        StringBuffer buffer = writer.getBuffer();
+        int start = buffer.length();
 
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, Constants.YES);
-        transformer.setOutputProperty(OutputKeys.INDENT, Constants.YES);
-        transformer.transform(new DOMSource(node), new StreamResult(stringWriter));
+        XmlFactoryCache.getNodeTransformer().transform(new DOMSource(node), new StreamResult(writer));
 
-        return stringWriter.toString().trim();
+        // trim the printed node in place, as String.trim would
+        int end = buffer.length();
+        while (end > start && buffer.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        buffer.setLength(end);
+        int first = start;
+        while (first < end && buffer.charAt(first) <= ' ') {
+            first++;
+        }
+        buffer.delete(start, first);
     }
 
     public static Document getDocument(CommonInputs commonInputs) throws Exception {
@@ -271,15 +230,36 @@ public class XmlUtils {
         return doc;
     }
 
-    public static NamespaceContext getNamespaceContext(CommonInputs commonInputs, Document doc) throws Exception {
-        NamespaceContext context;
-        if (Constants.XML_PATH.equalsIgnoreCase(commonInputs.getXmlDocumentSource())) {
-            StringWriter writer = XmlUtils.getStringWriter(doc);
-            context = XmlUtils.getNamespaceContext(writer.toString(), "");
-        } else {
-            context = XmlUtils.getNamespaceContext(commonInputs.getXmlDocument(), "");
+    /**
+     * Returns the Namespaces context of a parsed document: the prefix and namespace URI of every prefixed element,
+     * read from the tree in document order instead of parsing the xml again.
+     *
+     * @param doc a document parsed by a namespace aware builder
+     * @return the Namespaces context of the document
+     */
+    public static NamespaceContext getNamespaceContext(Document doc) {
+        Map<String, String> namespaces = new HashMap<>();
+        Node node = doc.getDocumentElement();
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && StringUtils.isNotEmpty(node.getPrefix())) {
+                namespaces.put(node.getPrefix(), node.getNamespaceURI());
+            }
+            node = nextNode(node, doc);
+        }
+        return new SimpleNamespaceContext(namespaces);
+    }
+
+    private static Node nextNode(Node node, Document doc) {
+        if (node.getFirstChild() != null) {
+            return node.getFirstChild();
+        }
+        while (node != null && node != doc) {
+            if (node.getNextSibling() != null) {
+                return node.getNextSibling();
+            }
+            node = node.getParentNode();
         }
-        return context;
+        return null;
     }
 
     public static String createXmlDocumentFromUrl(CommonInputs commonInputs) throws ParserConfigurationException, SAXException, IOException {
@@ -327,11 +307,11 @@ public class XmlUtils {
 
     }
 
-    public static void setFeatures(SAXBuilder reader, String features) throws SAXException {
-        if(!StringUtils.isEmpty(features)) {
+    public static void setFeatures(SAXParserFactory factory, String features) throws ParserConfigurationException, SAXException {
+        if (StringUtils.isNotBlank(features)) {
             Map<String, Boolean> featuresMap = parseFeatures(features);
             for (String key : featuresMap.keySet()) {
-                reader.setFeature(key, featuresMap.get(key));
+                factory.setFeature(key, featuresMap.get(key));
             }
         }
     }
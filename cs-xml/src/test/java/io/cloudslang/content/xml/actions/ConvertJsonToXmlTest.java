@@ -211,4 +211,28 @@ public class ConvertJsonToXmlTest {
         assertEquals(result.get(Outputs.RETURN_CODE), Constants.ReturnCodes.FAILURE);
         assertEquals(result.get(Outputs.RETURN_RESULT),"com.google.gson.stream.MalformedJsonException: Expected name at line 1 column 28 path $.items");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConvertJsonObjectWithLateAttributeAndRepeatedName() {
+        Map<String, String> result = converter.execute(
+                "{\"a\":\"1\",\"b\":[\"x\",\"y\"],\"@id\":\"root1\",\"a\":\"2\"}",
+                "true",
+                "false",
+                "root",
+                "item",
+                "",
+                "",
+                "",
+                "",
+                ",");
+        assertNotNull(result);
+        assertEquals(result.get(Outputs.RETURN_CODE), Constants.ReturnCodes.SUCCESS);
+        assertEquals(result.get(Outputs.RETURN_RESULT), "<root id=\"root1\">" + NEW_LINE +
+                "  <a>2</a>" + NEW_LINE +
+                "  <b>" + NEW_LINE +
+                "    <item>x</item>" + NEW_LINE +
+                "    <item>y</item>" + NEW_LINE +
+                "  </b>" + NEW_LINE +
+                "</root>");
+    }
+}
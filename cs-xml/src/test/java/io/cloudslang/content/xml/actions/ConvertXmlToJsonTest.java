@@ -186,4 +186,15 @@ public class ConvertXmlToJsonTest {
         Assert.assertEquals("f,ui", result.get(Outputs.NAMESPACES_PREFIXES));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testConvertXmlToJsonWithRepeatedElements() {
+        String xml = "<root xmlns:a=\"urn:a\"><b>1</b><c>2</c><b id=\"3\"/><a:d xmlns:e=\"urn:e\"><f/></a:d></root>";
+
+        Map<String, String> result = convertXmlToJson.execute(xml, "", "false", "true", "false", "");
+
+        Assert.assertEquals(ReturnCodes.SUCCESS, result.get(Outputs.RETURN_CODE));
+        Assert.assertEquals("{\"b\":[{\"_text\":\"1\"},{\"@id\":\"3\"}],\"c\":\"2\",\"a:d\":{\"f\":\"\"}}", result.get(Outputs.RETURN_RESULT));
+        Assert.assertEquals("urn:a,urn:e", result.get(Outputs.NAMESPACES_URIS));
+        Assert.assertEquals("a,e", result.get(Outputs.NAMESPACES_PREFIXES));
+    }
+}
@@ -0,0 +1,91 @@
+package io.cloudslang.content.xml.actions;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+public class EditXmlBatchTest {
+
+    private static final String EMPTY_STRING = "";
+    private static final String RETURN_RESULT = "returnResult";
+    private static final String RETURN_CODE = "returnCode";
+    private static final String EXCEPTION = "exception";
+    private static final String RETURN_CODE_SUCCESS = "0";
+    private static final String RETURN_CODE_FAILURE = "-1";
+    private static final String OPERATIONS = "[{\"action\":\"update\",\"xpath1\":\"/Employees/Employee/age\",\"type\":\"text\",\"value\":\"40\"}," +
+            "{\"action\":\"delete\",\"xpath1\":\"/Employees/Employee/email\",\"type\":\"elem\"}," +
+            "{\"action\":\"rename\",\"xpath1\":\"/Employees/Employee\",\"type\":\"attr\",\"name\":\"emplid\",\"value\":\"id\"}," +
+            "{\"action\":\"subnode\",\"xpath1\":\"/Employees/Employee[@id='2222']\",\"value\":\"<phone>555</phone>\"}]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EditXmlBatch editXmlBatch;
+    private String stringXml;
+
+    @Before
+    public void setUp() throws URISyntaxException, IOException {
+        editXmlBatch = new EditXmlBatch();
+        stringXml = FileUtils.readFileToString(new File(getClass().getResource("/editxmlres/xmlString.xml").toURI()));
+    }
+
+    @Test
+    public void testBatchEqualsSuccessiveEdits() {
+        EditXml editXml = new EditXml();
+        String expected = editXml.xPathReplaceNode(stringXml, EMPTY_STRING, "update", "/Employees/Employee/age", EMPTY_STRING,
+                "40", "text", EMPTY_STRING, EMPTY_STRING).get(RETURN_RESULT);
+        expected = editXml.xPathReplaceNode(expected, EMPTY_STRING, "delete", "/Employees/Employee/email", EMPTY_STRING,
+                EMPTY_STRING, "elem", EMPTY_STRING, EMPTY_STRING).get(RETURN_RESULT);
+        expected = editXml.xPathReplaceNode(expected, EMPTY_STRING, "rename", "/Employees/Employee", EMPTY_STRING,
+                "id", "attr", "emplid", EMPTY_STRING).get(RETURN_RESULT);
+        expected = editXml.xPathReplaceNode(expected, EMPTY_STRING, "subnode", "/Employees/Employee[@id='2222']", EMPTY_STRING,
+                "<phone>555</phone>", EMPTY_STRING, EMPTY_STRING, EMPTY_STRING).get(RETURN_RESULT);
+
+        Map<String, String> result = editXmlBatch.execute(stringXml, EMPTY_STRING, OPERATIONS, EMPTY_STRING, EMPTY_STRING);
+
+        Assert.assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        Assert.assertEquals(expected, result.get(RETURN_RESULT));
+        Assert.assertTrue(result.get(RETURN_RESULT).contains("<Employee id=\"2222\" type=\"admin\">"));
+        Assert.assertTrue(result.get(RETURN_RESULT).contains("<phone>555</phone>"));
+        Assert.assertFalse(result.get(RETURN_RESULT).contains("<email>"));
+    }
+
+    @Test
+    public void testBatchWritesOutputFile() throws IOException {
+        File outputFile = new File(folder.getRoot(), "result.xml");
+        String expected = editXmlBatch.execute(stringXml, EMPTY_STRING, OPERATIONS, EMPTY_STRING, EMPTY_STRING).get(RETURN_RESULT);
+
+        Map<String, String> result = editXmlBatch.execute(stringXml, EMPTY_STRING, OPERATIONS, EMPTY_STRING, outputFile.getPath());
+
+        Assert.assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        Assert.assertEquals(outputFile.getAbsolutePath(), result.get(RETURN_RESULT));
+        Assert.assertEquals(expected, FileUtils.readFileToString(outputFile, "UTF-8"));
+    }
+
+    @Test
+    public void testBatchWithInvalidOperation() {
+        Map<String, String> result = editXmlBatch.execute(stringXml, EMPTY_STRING,
+                "[{\"action\":\"delete\",\"xpath1\":\"/Employees\",\"type\":\"text\"},{\"action\":\"copy\",\"xpath1\":\"/Employees\"}]",
+                EMPTY_STRING, EMPTY_STRING);
+
+        Assert.assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
+        Assert.assertEquals("Invalid action copy in operation 2", result.get(EXCEPTION));
+    }
+
+    @Test
+    public void testBatchWithMissingType() {
+        Map<String, String> result = editXmlBatch.execute(stringXml, EMPTY_STRING,
+                "[{\"action\":\"update\",\"xpath1\":\"/Employees\"}]", EMPTY_STRING, EMPTY_STRING);
+
+        Assert.assertEquals(RETURN_CODE_FAILURE, result.get(RETURN_CODE));
+        Assert.assertEquals("type input is required for action 'update'", result.get(EXCEPTION));
+    }
+}
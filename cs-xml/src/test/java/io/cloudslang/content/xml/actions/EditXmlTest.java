@@ -333,6 +333,18 @@ public class EditXmlTest {
         Assert.assertEquals(nameSpaceResult3, (resultFormatted));
     }
 
+    @Test
+    public void testUpdateTextInDocumentEncoding() {
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<!--employees-->\n" +
+                "<Employees><Employee id=\"1\"><name>Ana</name></Employee></Employees>";
+        result = editXml.xPathReplaceNode(xml, EMPTY_STRING, UPDATE, "/Employees/Employee/name", EMPTY_STRING,
+                "Ana \u00e9 \u20ac < B", TEXT, EMPTY_STRING, "");
+        Assert.assertEquals(RETURN_CODE_SUCCESS, result.get(RETURN_CODE));
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<!--employees-->\n<Employees>\n" +
+                "  <Employee id=\"1\">\n    <name>Ana \u00e9 &#x20ac; &lt; B</name>\n  </Employee>\n</Employees>\n",
+                result.get(RETURN_RESULT));
+    }
+
     private String getResponseFromFile(String file) throws Exception {
         String filePath = this.getClass().getResource(file).getPath();
         Document xmlDocument;
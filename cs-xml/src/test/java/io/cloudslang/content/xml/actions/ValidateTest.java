@@ -4,13 +4,16 @@ import io.cloudslang.content.xml.utils.Constants;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.net.URI;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by markowis on 18/02/2016.
@@ -21,6 +24,9 @@ public class ValidateTest {
     private Validate validate;
     String xml;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception{
         validate = new Validate();
@@ -88,4 +94,74 @@ public class ValidateTest {
                 "cvc-complex-type.4: Attribute 'someid' must appear on element 'root'.",
                 result.get(Constants.Outputs.ERROR_MESSAGE));
     }
+
+    @Test
+    public void testWithXmlPathAndXsdPath() throws Exception {
+        String xmlPath = getClass().getResource("/xml/valid.xml").toURI().getPath();
+        String xsdPath = getClass().getResource("/xml/test.xsd").toURI().getPath();
+
+        Map<String, String> result = validate.execute(xmlPath, "xmlPath", xsdPath, "xsdPath", EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, "false");
+
+        assertEquals(Constants.ReturnCodes.SUCCESS, result.get(Constants.Outputs.RETURN_CODE));
+        assertEquals(Constants.SuccessMessages.VALIDATION_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
+    }
+
+    @Test
+    public void testWithChangedXsdFile() throws Exception {
+        URI resourceXML = getClass().getResource("/xml/valid.xml").toURI();
+        xml = FileUtils.readFileToString(new File(resourceXML));
+        URI resourceXSD = getClass().getResource("/xml/test.xsd").toURI();
+        String xsd = FileUtils.readFileToString(new File(resourceXSD));
+        File xsdFile = folder.newFile("changing.xsd");
+        FileUtils.writeStringToFile(xsdFile, xsd);
+
+        Map<String, String> result = validate.execute(xml, EMPTY_STR, xsdFile.getPath(), "xsdPath", EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, "false");
+        assertEquals(Constants.ReturnCodes.SUCCESS, result.get(Constants.Outputs.RETURN_CODE));
+
+        FileUtils.writeStringToFile(xsdFile, xsd.replace("name=\"element2\"", "name=\"element4\""));
+        xsdFile.setLastModified(xsdFile.lastModified() + 2000);
+        result = validate.execute(xml, EMPTY_STR, xsdFile.getPath(), "xsdPath", EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, "false");
+
+        assertEquals(Constants.ReturnCodes.FAILURE, result.get(Constants.Outputs.RETURN_CODE));
+    }
+
+    @Test
+    public void testWithDoctypeDeclaration() {
+        xml = "<!DOCTYPE root [<!ENTITY e \"value\">]><root>&e;</root>";
+
+        Map<String, String> result = validate.execute(xml, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, null, "false");
+
+        assertEquals(Constants.ReturnCodes.FAILURE, result.get(Constants.Outputs.RETURN_CODE));
+    }
+
+    @Test
+    public void testWithDoctypeDeclarationInXsdFile() throws Exception {
+        URI resourceXML = getClass().getResource("/xml/valid.xml").toURI();
+        xml = FileUtils.readFileToString(new File(resourceXML));
+        File secretFile = folder.newFile("secret.txt");
+        FileUtils.writeStringToFile(secretFile, "element1");
+        File xsdFile = folder.newFile("doctype.xsd");
+        FileUtils.writeStringToFile(xsdFile, "<!DOCTYPE xs:schema [<!ENTITY secret SYSTEM \"" + secretFile.toURI() + "\">]>" +
+                "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:element name=\"&secret;\"/></xs:schema>");
+
+        Map<String, String> result = validate.execute(xml, EMPTY_STR, xsdFile.getPath(), "xsdPath", EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, "false");
+
+        assertEquals(Constants.ReturnCodes.FAILURE, result.get(Constants.Outputs.RETURN_CODE));
+        assertTrue(result.get(Constants.Outputs.ERROR_MESSAGE), result.get(Constants.Outputs.ERROR_MESSAGE).contains("DOCTYPE is disallowed"));
+    }
+
+    @Test
+    public void testWithRelativeIncludeInXsdFile() throws Exception {
+        File includeDir = folder.newFolder("include");
+        FileUtils.writeStringToFile(new File(includeDir, "types.xsd"), "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">" +
+                "<xs:element name=\"root\" type=\"xs:string\"/></xs:schema>");
+        File xsdFile = new File(includeDir, "main.xsd");
+        FileUtils.writeStringToFile(xsdFile, "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">" +
+                "<xs:include schemaLocation=\"types.xsd\"/></xs:schema>");
+
+        Map<String, String> result = validate.execute("<root>text</root>", EMPTY_STR, xsdFile.getPath(), "xsdPath", EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, EMPTY_STR, "false");
+
+        assertEquals(Constants.ReturnCodes.SUCCESS, result.get(Constants.Outputs.RETURN_CODE));
+        assertEquals(Constants.SuccessMessages.VALIDATION_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
+    }
 }
@@ -44,7 +44,7 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.VALUE;
         String expectedResult = "Sub3";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -56,7 +56,7 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.NODE;
         String expectedResult = "<subelement attr=\"toDelete\">Sub3</subelement>";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -69,7 +69,7 @@ public class XpathQueryTest {
         String delimiter = ",";
         String expectedResult = "<subelement attr=\"toDelete\">Sub2</subelement>,<subelement attr=\"toDelete\">Sub3</subelement>";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, delimiter, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, delimiter, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -82,7 +82,7 @@ public class XpathQueryTest {
         String delimiter = ",";
         String expectedResult = "someid=\"5\"";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, delimiter, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, delimiter, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -94,7 +94,7 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.VALUE;
         String expectedResult = "No match found";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -106,7 +106,7 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.NODE;
         String expectedResult = "No match found";
 
-        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -122,12 +122,24 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.NODE;
         String expectedResult = "<foo:element1 xmlns:foo=\"http://www.foo.org/\">First element</foo:element1>";
 
-        Map<String, String> result = select.execute(namespaceXml, "", xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(namespaceXml, "", xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
     }
 
+    @Test
+    public void testFindWithNameSpaceWithXmlPath() throws Exception {
+        String path = getClass().getResource("/xml/namespaceTest.xml").toURI().getPath();
+        String xPathQuery = "//foo:element1";
+        String queryType = Constants.QueryTypes.VALUE;
+
+        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, null, "false", null);
+
+        assertEquals("First element", result.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
+    }
+
     @Test
     public void testSelectElementWithXmlPath() throws IOException, URISyntaxException {
         String path = getClass().getResource("/xml/test.xml").toURI().getPath();
@@ -135,7 +147,7 @@ public class XpathQueryTest {
         String queryType = Constants.QueryTypes.VALUE;
         String expectedResult = "Sub3";
 
-        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, null, "false", null);
 
         assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
         assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
@@ -148,9 +160,91 @@ public class XpathQueryTest {
         String xPathQuery = "/root/element3/subelement";
         String queryType = Constants.QueryTypes.VALUE;
 
-        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, null, "false");
+        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, null, "false", null);
 
         assertEquals(Constants.ResponseNames.FAILURE, result.get(Constants.Outputs.RESULT_TEXT));
         assertEquals(Constants.ReturnCodes.FAILURE, result.get("returnCode"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSelectValuesWithSeveralQueries() {
+        String xPathQuery = "/root/element3/subelement|/root/@someid|/root/element1/@id";
+        String queryType = Constants.QueryTypes.VALUE;
+        String expectedResult = "[\"Sub3\",\"5\",\"No match found\"]";
+
+        Map<String, String> result = select.execute(xml, "", xPathQuery, queryType, null, "false", "|");
+
+        assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
+    }
+
+    @Test
+    public void testSelectWithSameQueryAndDifferentNamespaces() {
+        String xPathQuery = "//foo:element1";
+        String queryType = Constants.QueryTypes.VALUE;
+        String firstXml = "<root xmlns:foo=\"http://www.foo.org/\"><foo:element1>First</foo:element1></root>";
+        String secondXml = "<root xmlns:foo=\"http://www.bar.org/\" xmlns:baz=\"http://www.foo.org/\">" +
+                "<baz:element1>First</baz:element1><foo:element1>Second</foo:element1></root>";
+
+        Map<String, String> firstResult = select.execute(firstXml, "", xPathQuery, queryType, null, "false", null);
+        Map<String, String> secondResult = select.execute(secondXml, "", xPathQuery, queryType, null, "false", null);
+
+        assertEquals("First", firstResult.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals("Second", secondResult.get(Constants.Outputs.SELECTED_VALUE));
+    }
+
+    @Test
+    public void testSelectListsWithXmlPath() throws URISyntaxException {
+        String path = getClass().getResource("/xml/test.xml").toURI().getPath();
+        String xPathQuery = "/root/*/subelement[@attr='toDelete']|//element1/text()|/root//*[@attr]/@attr";
+        String queryType = Constants.QueryTypes.NODE_LIST;
+        String expectedResult = "[\"<subelement attr=\\\"toDelete\\\">Sub2</subelement>,<subelement attr=\\\"toDelete\\\">Sub3</subelement>\"," +
+                "\"First element\",\"attr=\\\"ibute\\\",attr=\\\"toDelete\\\",attr=\\\"toDelete\\\"\"]";
+
+        Map<String, String> result = select.execute(path, XML_PATH, xPathQuery, queryType, ",", "false", "|");
+        Map<String, String> domResult = select.execute(xml, XML_STRING, xPathQuery, queryType, ",", "false", "|");
+
+        assertEquals(expectedResult, result.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals(domResult.get(Constants.Outputs.SELECTED_VALUE), result.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals(Constants.SuccessMessages.SELECT_SUCCESS, result.get(Constants.Outputs.RETURN_RESULT));
+    }
+
+    @Test
+    public void testSelectNodeWithXmlPathStopsAtFirstMatch() throws IOException {
+        File file = File.createTempFile("xpathQuery", ".xml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "<root><a id=\"1\"><b>x</b></a><a id=\"2\"><b>y</b></a><unclosed></root>");
+
+        Map<String, String> node = select.execute(file.getPath(), XML_PATH, "//a[@id!='1']/b", Constants.QueryTypes.NODE, null, "false", null);
+        Map<String, String> value = select.execute(file.getPath(), XML_PATH, "/root/a/b", Constants.QueryTypes.VALUE, null, "false", null);
+        Map<String, String> nodeList = select.execute(file.getPath(), XML_PATH, "/root/a/b", Constants.QueryTypes.NODE_LIST, ",", "false", null);
+
+        assertEquals("<b>y</b>", node.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals("x", value.get(Constants.Outputs.SELECTED_VALUE));
+        assertEquals(Constants.ReturnCodes.FAILURE, nodeList.get("returnCode"));
+    }
+
+    @Test
+    public void testSelectSeveralQueriesWithXmlPathParsesWholeDocument() throws IOException {
+        File file = File.createTempFile("xpathQuery", ".xml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "<root><a id=\"1\"><b>x</b></a><a id=\"2\"><b>y</b></a><unclosed></root>");
+
+        Map<String, String> result = select.execute(file.getPath(), XML_PATH, "/root/a/b|//a[@id!='1']/b", Constants.QueryTypes.NODE, null, "false", "|");
+
+        assertEquals(Constants.ReturnCodes.FAILURE, result.get("returnCode"));
+        assertEquals(Constants.EMPTY_STRING, result.get(Constants.Outputs.SELECTED_VALUE));
+    }
+
+    @Test
+    public void testSelectWithDoctypeWithXmlPath() throws IOException {
+        File file = File.createTempFile("xpathQuery", ".xml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "<!DOCTYPE root [<!ENTITY e \"v\">]><root>&e;</root>");
+
+        Map<String, String> result = select.execute(file.getPath(), XML_PATH, "/root", Constants.QueryTypes.VALUE, null, "false", null);
+
+        assertEquals(Constants.ResponseNames.FAILURE, result.get(Constants.Outputs.RESULT_TEXT));
+        assertEquals(Constants.EMPTY_STRING, result.get(Constants.Outputs.SELECTED_VALUE));
+    }
+}
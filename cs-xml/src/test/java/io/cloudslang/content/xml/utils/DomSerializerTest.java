@@ -0,0 +1,202 @@
+package io.cloudslang.content.xml.utils;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The expected documents are the output of the Xerces 2.8.0 XMLSerializer in the format DocumentUtils used before,
+ * so a difference here is a change of the output of the xml operations.
+ */
+public class DomSerializerTest {
+
+    private static final String ENCODING_XML = "<root attr=\"\u00e9\u20ac\u4e2d\u00f7&lt;&amp;&quot;&#9;&#10;\">" +
+            "\u00e9\u20ac\u4e2d\u00f7\ud83d\ude00&lt;&amp;&gt;&#13;&#9;</root>";
+
+    private final DomSerializer serializer = new DomSerializer();
+
+    @Test
+    public void testWrapsStartTagsAtLineWidth72() throws Exception {
+        // the second start tag is one character longer than the line width, the text is never wrapped
+        assertSerialized("UTF-8", "<root><e a1=\"1111111111111111111111\" a2=\"2222222222222222222222\" a3=\"333333\" a4=\"4\"/>" +
+                        "<e a1=\"1111111111111111111111\" a2=\"2222222222222222222222\" a3=\"3333333\" a4=\"4\">" +
+                        "a text longer than the line width is written on the line of its element</e></root>",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<root>\n" +
+                        "  <e a1=\"1111111111111111111111\" a2=\"2222222222222222222222\" a3=\"333333\" a4=\"4\"/>\n" +
+                        "  <e a1=\"1111111111111111111111\" a2=\"2222222222222222222222\"\n" +
+                        "    a3=\"3333333\" a4=\"4\">a text longer than the line width is written on the line of its element</e>\n" +
+                        "</root>\n");
+    }
+
+    @Test
+    public void testIndentStopsAtHalfTheLineWidth() throws Exception {
+        assertSerialized("UTF-8", "<a><b><c><d><e><f><g><h><i><j><k><l><m><n><o><p><q><r><s><t><u>deep</u></t></s>" +
+                        "</r></q></p></o></n></m></l></k></j></i></h></g></f></e></d></c></b></a>",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<a>\n" +
+                        "  <b>\n" +
+                        "    <c>\n" +
+                        "      <d>\n" +
+                        "        <e>\n" +
+                        "          <f>\n" +
+                        "            <g>\n" +
+                        "              <h>\n" +
+                        "                <i>\n" +
+                        "                  <j>\n" +
+                        "                    <k>\n" +
+                        "                      <l>\n" +
+                        "                        <m>\n" +
+                        "                          <n>\n" +
+                        "                            <o>\n" +
+                        "                              <p>\n" +
+                        "                                <q>\n" +
+                        "                                  <r>\n" +
+                        "                                    <s>\n" +
+                        "                                    <t>\n" +
+                        "                                    <u>deep</u>\n" +
+                        "                                    </t>\n" +
+                        "                                    </s>\n" +
+                        "                                  </r>\n" +
+                        "                                </q>\n" +
+                        "                              </p>\n" +
+                        "                            </o>\n" +
+                        "                          </n>\n" +
+                        "                        </m>\n" +
+                        "                      </l>\n" +
+                        "                    </k>\n" +
+                        "                  </j>\n" +
+                        "                </i>\n" +
+                        "              </h>\n" +
+                        "            </g>\n" +
+                        "          </f>\n" +
+                        "        </e>\n" +
+                        "      </d>\n" +
+                        "    </c>\n" +
+                        "  </b>\n" +
+                        "</a>\n");
+    }
+
+    @Test
+    public void testEscapesDivisionSignInCDataWithUtf8() throws Exception {
+        assertSerialized("UTF-8", "<root><data><![CDATA[a \u00f7 b \u00e9 c \u20ac d <&>]]></data><text>a \u00f7 b</text></root>",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<root>\n" +
+                        "  <data><![CDATA[a ]]>&#xf7;<![CDATA[ b \u00e9 c \u20ac d <&>]]></data>\n" +
+                        "  <text>a \u00f7 b</text>\n" +
+                        "</root>\n");
+    }
+
+    @Test
+    public void testEscapesDivisionSignInCDataWithIso88591() throws Exception {
+        assertSerialized("ISO-8859-1", "<root><data><![CDATA[a \u00f7 b \u00e9 c \u20ac d <&>]]></data><text>a \u00f7 b</text></root>",
+                "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                        "<root>\n" +
+                        "  <data><![CDATA[a ]]>&#xf7;<![CDATA[ b \u00e9 c ]]>&#x20ac;<![CDATA[ d <&>]]></data>\n" +
+                        "  <text>a \u00f7 b</text>\n" +
+                        "</root>\n");
+    }
+
+    @Test
+    public void testEscapesCDataWithUsAscii() throws Exception {
+        assertSerialized("US-ASCII", "<root><data><![CDATA[a \u00f7 b \u00e9 c \u20ac d <&>]]></data><text>a \u00f7 b</text></root>",
+                "<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n" +
+                        "<root>\n" +
+                        "  <data><![CDATA[a ]]>&#xf7;<![CDATA[ b ]]>&#xe9;<![CDATA[ c ]]>&#x20ac;<![CDATA[ d <&>]]></data>\n" +
+                        "  <text>a &#xf7; b</text>\n" +
+                        "</root>\n");
+    }
+
+    @Test
+    public void testPlacesContentOutsideRootAfterDoctype() throws Exception {
+        // everything before the root goes after the doctype, a processing instruction without data keeps its space
+        assertSerialized("UTF-8", "<?before-pi data?>\n<!--before-->\n<!DOCTYPE root [<!ELEMENT root ANY>]>\n" +
+                        "<root><!--inside--><child/></root>\n<!--after-->\n<?after-pi?>",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<!DOCTYPE root [<!ELEMENT root ANY>\n" +
+                        "]>\n" +
+                        "<?before-pi data?>\n" +
+                        "<!--before-->\n" +
+                        "<root>\n" +
+                        "  <!--inside-->\n" +
+                        "  <child/>\n" +
+                        "</root>\n" +
+                        "<!--after-->\n" +
+                        "<?after-pi ?>\n");
+    }
+
+    @Test
+    public void testPlacesCommentsOutsideRoot() throws Exception {
+        assertSerialized("UTF-8", "<!--before-->\n<root/>\n<!--after-->",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<!--before-->\n" +
+                        "<root/>\n" +
+                        "<!--after-->\n");
+    }
+
+    @Test
+    public void testEscapingWithUtf8() throws Exception {
+        assertSerialized("UTF-8", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<root attr=\"\u00e9\u20ac\u4e2d\u00f7&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "\u00e9\u20ac\u4e2d\u00f7&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    @Test
+    public void testEscapingWithUtf16() throws Exception {
+        assertSerialized("UTF-16", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"UTF-16\"?>\n" +
+                "<root attr=\"\u00e9\u20ac\u4e2d\u00f7&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "\u00e9\u20ac\u4e2d\u00f7&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    @Test
+    public void testEscapingWithIso88591() throws Exception {
+        assertSerialized("ISO-8859-1", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+                "<root attr=\"\u00e9&#x20ac;&#x4e2d;\u00f7&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "\u00e9&#x20ac;&#x4e2d;\u00f7&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    @Test
+    public void testEscapingWithUsAscii() throws Exception {
+        assertSerialized("US-ASCII", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n" +
+                "<root attr=\"&#xe9;&#x20ac;&#x4e2d;&#xf7;&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "&#xe9;&#x20ac;&#x4e2d;&#xf7;&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    @Test
+    public void testEscapingWithWindows1252() throws Exception {
+        assertSerialized("windows-1252", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"windows-1252\"?>\n" +
+                "<root attr=\"\u00e9\u20ac&#x4e2d;\u00f7&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "\u00e9\u20ac&#x4e2d;\u00f7&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    @Test
+    public void testEscapingWithShiftJis() throws Exception {
+        assertSerialized("Shift_JIS", ENCODING_XML, "<?xml version=\"1.0\" encoding=\"Shift_JIS\"?>\n" +
+                "<root attr=\"&#xe9;&#x20ac;\u4e2d\u00f7&lt;&amp;&quot;&#x9;&#xa;\">" +
+                "&#xe9;&#x20ac;\u4e2d\u00f7&#x1f600;&lt;&amp;&gt;&#xd;\t</root>\n");
+    }
+
+    /**
+     * Checks the characters written to a Writer and the bytes written to a stream in the encoding of the document.
+     */
+    private void assertSerialized(String encoding, String xml, String expected) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(
+                new StringReader("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n" + xml)));
+
+        StringWriter writer = new StringWriter();
+        serializer.serialize(document, writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(document, out);
+        assertArrayEquals(expected.getBytes(encoding), out.toByteArray());
+    }
+}